@@ -208,3 +208,18 @@ jclass find_class_from_native_thread(JNIEnv **envSetter) {
 	return result;
 }
 
+JNIEXPORT void JNICALL Java_org_tomahawk_libtomahawk_resolver_spotify_LibSpotifyWrapper_nativesetaudiobufferconfig(JNIEnv *je, jclass jc, jint buffer_depth, jint enqueued_buffers) {
+	set_audio_buffer_config(buffer_depth, enqueued_buffers);
+}
+
+JNIEXPORT jint JNICALL Java_org_tomahawk_libtomahawk_resolver_spotify_LibSpotifyWrapper_nativegetunderruncount(JNIEnv *je, jclass jc) {
+	return get_audio_underrun_count();
+}
+
+JNIEXPORT jint JNICALL Java_org_tomahawk_libtomahawk_resolver_spotify_LibSpotifyWrapper_nativegetbackpressurecount(JNIEnv *je, jclass jc) {
+	return get_audio_backpressure_count();
+}
+
+JNIEXPORT jint JNICALL Java_org_tomahawk_libtomahawk_resolver_spotify_LibSpotifyWrapper_nativegetdroppedframecount(JNIEnv *je, jclass jc) {
+	return get_audio_dropped_frame_count();
+}
@@ -46,5 +46,9 @@ JNIEXPORT void JNICALL Java_org_tomahawk_libtomahawk_resolver_spotify_LibSpotify
 JNIEXPORT void JNICALL Java_org_tomahawk_libtomahawk_resolver_spotify_LibSpotifyWrapper_nativestar(JNIEnv *je, jclass jc);
 JNIEXPORT void JNICALL Java_org_tomahawk_libtomahawk_resolver_spotify_LibSpotifyWrapper_nativeunstar(JNIEnv *je, jclass jc);
 JNIEXPORT void JNICALL Java_org_tomahawk_libtomahawk_resolver_spotify_LibSpotifyWrapper_nativesetbitrate(JNIEnv *je, jclass jc, jint bitratemode);
+JNIEXPORT void JNICALL Java_org_tomahawk_libtomahawk_resolver_spotify_LibSpotifyWrapper_nativesetaudiobufferconfig(JNIEnv *je, jclass jc, jint buffer_depth, jint enqueued_buffers);
+JNIEXPORT jint JNICALL Java_org_tomahawk_libtomahawk_resolver_spotify_LibSpotifyWrapper_nativegetunderruncount(JNIEnv *je, jclass jc);
+JNIEXPORT jint JNICALL Java_org_tomahawk_libtomahawk_resolver_spotify_LibSpotifyWrapper_nativegetbackpressurecount(JNIEnv *je, jclass jc);
+JNIEXPORT jint JNICALL Java_org_tomahawk_libtomahawk_resolver_spotify_LibSpotifyWrapper_nativegetdroppedframecount(JNIEnv *je, jclass jc);
 
 }
@@ -28,21 +28,38 @@
 /**
  * Simple layer between libspotify and OpenSL.
  *
- * Libspotify delivers raw PCM data in the music_delivery callback. This data will be put in one of two buffers and
- * enqueued to openSL through the enqueu method. There is only two buffers and changing the size of them will affect the
- * application a lot. OpenSL will tell when it has consumed one buffer through the bqPlayerCallback callback. Since the buffers
- * are shared among two different threads (libspotify and internal openSL thread) they share a mutex. The size of the buffers are
- * used to notify when a buffer is filled. A buffer with a nonzero size is assumed to be filled.
+ * Libspotify delivers raw PCM data in the music_delivery callback. This data is copied into a ring of equally sized
+ * buffers. OpenSL will tell when it has consumed one buffer through the bqPlayerCallback callback. The ring is a
+ * single-producer/single-consumer queue, libspotify's thread is the only one filling buffers and the internal openSL
+ * thread is the only one releasing them, so no mutex is needed. Both sides only ever advance their own index and
+ * publish it with a memory barrier.
  *
- * The two buffers have a fixed size which could casue problems if libspotify is delivering more data then it fits. In this case the
- * parts that cant fit is rejected which casues sound-glitches, but should be rare if the buffers are big (half a second or more).
+ * The number of buffers in the ring (its depth) and the number of buffers which are enqueued to openSL at the same time
+ * can be configured through set_audio_buffer_config before the player is initialized. A deeper ring survives longer
+ * stalls of libspotify, but makes actions like pause and seek take longer to be heard. If the ring is full, music_delivery
+ * only takes as many frames as fit, libspotify will deliver the rest again later, so no audio is dropped.
+ *
+ * Both threads may hand filled buffers to openSL: the callback refills the queue after a buffer has been played and
+ * libspotify's thread restarts the queue after it has run dry. Whoever wins a try-lock does the enqueueing, the other
+ * side never waits for it.
+ *
+ * Underruns (the openSL queue ran dry while libspotify was still delivering) are counted as audible glitches. Backpressure
+ * (a delivery didn't fit into the ring completely) loses nothing, but is counted as well, so that the configuration can
+ * be tuned per device.
+ *
+ * libspotify delivers from its own internal thread, also while the player is being destroyed or initialized again. So
+ * destroy_audio_player first raises s_is_shut_down, which makes music_delivery return 0 without touching the ring or
+ * openSL, and waits until no delivery is in flight anymore. Only then are the player and the ring released.
+ * init_audio_player lowers the flag again, once the new player is complete.
  *
  * When intitializing the soundbuffer the PCM format is set in a static fasion. This should be changed if Spotify supports other PCM
  * formats.
  */
 
 #include <assert.h>
-#include <pthread.h>
+#include <stdint.h>
+#include <stdlib.h>
+#include <unistd.h>
 // for native audio
 #include <SLES/OpenSLES.h>
 #include <SLES/OpenSLES_Android.h>
@@ -53,136 +70,222 @@
 #include "tasks.h"
 #include "run_loop.h"
 #include "logger.h"
+#include "sound_driver.h"
 
 static SLAndroidSimpleBufferQueueItf bqPlayerBufferQueue;
 
-// Size of the buffer in one second divided by SECOND_DIVIDER. Increase the number to make the buffer smaller.
-// Bigger buffers will produce slow feedback for actions like pause and seek.
-static const int SECOND_DIVIDER = 4;
+// Size of one buffer in one second divided by SECOND_DIVIDER. Increase the number to make the buffers smaller.
+static const int SECOND_DIVIDER = 10;
 static const int SAMPLE_RATE = 44100;
-static const int SAMPLES_PER_BUFFER = SAMPLE_RATE / SECOND_DIVIDER;
+static const int FRAMES_PER_BUFFER = SAMPLE_RATE / SECOND_DIVIDER;
 
 static const int NR_CHANNELS = 2;
+static const int SAMPLES_PER_BUFFER = FRAMES_PER_BUFFER * NR_CHANNELS;
+
+// By default the ring holds 800ms of audio, 200ms of which are enqueued to openSL
+static const int DEFAULT_BUFFER_DEPTH = 8;
+static const int DEFAULT_ENQUEUED_BUFFERS = 2;
+static const int MAX_BUFFER_DEPTH = 64;
+
+// The configuration which is used by the next call to init_audio_player
+static int s_config_buffer_depth = DEFAULT_BUFFER_DEPTH;
+static int s_config_enqueued_buffers = DEFAULT_ENQUEUED_BUFFERS;
+
+// The ring of buffers, buffer_depth * SAMPLES_PER_BUFFER samples
+static int16_t *s_ring = NULL;
+static uint32_t s_buffer_depth = DEFAULT_BUFFER_DEPTH;
+static uint32_t s_enqueued_buffers = DEFAULT_ENQUEUED_BUFFERS;
+
+// The indexes only ever grow, the buffer of an index is index % s_buffer_depth. Every buffer
+// below s_write_index has been filled, every buffer below s_enqueue_index has been handed to
+// openSL and every buffer below s_release_index has been played and may be filled again.
+// s_write_index is only written by libspotify's thread, s_release_index only by openSL's thread
+// and s_enqueue_index only by the holder of s_enqueue_lock.
+static volatile uint32_t s_write_index = 0;
+static volatile uint32_t s_enqueue_index = 0;
+static volatile uint32_t s_release_index = 0;
+static volatile int32_t s_enqueue_lock = 0;
+
+// The number of samples in the buffer which libspotify is currently filling
+static int s_write_position = 0;
+
+// Whether or not libspotify has delivered frames since the last buffer was enqueued
+static volatile int32_t s_has_pending_frames = 0;
+
+static volatile int32_t s_underrun_count = 0;
+// The number of deliveries which didn't fit into the ring completely. Nothing is lost, libspotify
+// delivers the remaining frames again.
+static volatile int32_t s_backpressure_count = 0;
+// The number of frames which couldn't be played at all, because there was no ring to copy them to
+static volatile int32_t s_dropped_frame_count = 0;
+
+// Set while there is no complete player, music_delivery doesn't touch the ring or openSL then
+static volatile int32_t s_is_shut_down = 1;
+// The number of music_delivery calls which have passed the s_is_shut_down check and haven't returned yet
+static volatile int32_t s_delivery_count = 0;
+
+static inline uint32_t load_acquire(volatile uint32_t *index) {
+	uint32_t value = *index;
+	__sync_synchronize();
+	return value;
+}
 
-// Make buffers four times as big because we guess that music_delivery never delivers more
-// pcm data. If it does the overflowing data will not be put in the buffer, resulting in
-// temporary audio weirdness
-static const int BUFFER_SIZE = SAMPLES_PER_BUFFER * sizeof(int16_t) * NR_CHANNELS * 4;
-
-// The two sound buffers
-static int16_t buffer1[BUFFER_SIZE];
-static int16_t buffer2[BUFFER_SIZE];
+static inline void store_release(volatile uint32_t *index, uint32_t value) {
+	__sync_synchronize();
+	*index = value;
+}
 
-// buffers and sizes shared by libspotify and openSL
-static int buffer1_size = 0;
-static int buffer2_size = 0;
-static int position = 0;
-static short *next_buffer = buffer2;
-static int *current_buffer_size = &buffer1_size;
-static int *next_buffer_size = &buffer2_size;
+// Whether or not a filled buffer is waiting and there is room for it in openSL's queue
+static bool has_enqueue_work() {
+	uint32_t enqueue_index = load_acquire(&s_enqueue_index);
+	return enqueue_index != load_acquire(&s_write_index)
+			&& enqueue_index - load_acquire(&s_release_index) < s_enqueued_buffers;
+}
 
-static pthread_mutex_t g_buffer_mutex;
+// Hand filled buffers to openSL until s_enqueued_buffers are queued. Must only be called while holding s_enqueue_lock.
+static void enqueue_filled_buffers() {
+	while (has_enqueue_work()) {
+		uint32_t enqueue_index = s_enqueue_index;
+		int16_t *buffer = s_ring + (enqueue_index % s_buffer_depth) * SAMPLES_PER_BUFFER;
+		// Publish the index first, openSL may call back before Enqueue has returned
+		store_release(&s_enqueue_index, enqueue_index + 1);
+		s_has_pending_frames = 0;
+		SLresult result = (*bqPlayerBufferQueue)->Enqueue(bqPlayerBufferQueue, buffer,
+				SAMPLES_PER_BUFFER * sizeof(int16_t));
+		if (result != SL_RESULT_SUCCESS) {
+			log("Enqueue of buffer %u failed with %u", enqueue_index % s_buffer_depth, result);
+			store_release(&s_enqueue_index, enqueue_index);
+			break;
+		}
+		logPlayback("Enqueued buffer %u", enqueue_index % s_buffer_depth);
+	}
+}
 
-// Tell openSL to play the filled buffer and switch to filling the other buffer
-void enqueue(short *buffer, int size) {
-	// Play the buffer and flip to the other buffer
+// Enqueue filled buffers, unless the other thread is already doing it. In that case it will
+// notice our work after releasing the lock, so nothing is lost and nobody has to wait.
+static void try_enqueue() {
+	while (bqPlayerBufferQueue != NULL && has_enqueue_work()) {
+		if (!__sync_bool_compare_and_swap(&s_enqueue_lock, 0, 1))
+			return;
+		enqueue_filled_buffers();
+		__sync_lock_release(&s_enqueue_lock);
+	}
+}
 
-	logPlayback("Consume buffer %d", (buffer == buffer1) ? 1 : 2);
-	SLresult result = (*bqPlayerBufferQueue)->Enqueue(bqPlayerBufferQueue, buffer, size);
-	assert(SL_RESULT_SUCCESS != result);
+static int deliver(const sp_audioformat *format, const void *frames, int num_frames);
 
-	current_buffer_size = (buffer == buffer1) ? &buffer1_size : &buffer2_size;
-	next_buffer = (buffer == buffer1) ? buffer2 : buffer1;
-	next_buffer_size = (buffer == buffer1) ? &buffer2_size : &buffer1_size;
+int music_delivery(sp_session *sess, const sp_audioformat *format, const void *frames, int num_frames) {
+	__sync_fetch_and_add(&s_delivery_count, 1);
+	if (__sync_fetch_and_add(&s_is_shut_down, 0)) {
+		// The player is being destroyed or initialized, libspotify delivers these frames again later
+		__sync_fetch_and_sub(&s_delivery_count, 1);
+		return 0;
+	}
+	int consumed_frames = deliver(format, frames, num_frames);
+	__sync_fetch_and_sub(&s_delivery_count, 1);
+	return consumed_frames;
 }
 
-int music_delivery(sp_session *sess, const sp_audioformat *format, const void *frames, int num_frames) {
+static int deliver(const sp_audioformat *format, const void *frames, int num_frames) {
 	if (num_frames == 0) {
 		logPlayback("No more audio");
 		return 0; // Audio discontinuity, do nothing
 	}
 
-	pthread_mutex_lock(&g_buffer_mutex);
-
 	assert(format->channels == NR_CHANNELS);
 	assert(format->sample_rate == SAMPLE_RATE);
-	static short *current_buffer = buffer1;
-	static int *current_buffer_size = &buffer1_size;
-
-	// Fill the current buffer only if it has been consumed
-	if (*current_buffer_size == 0) {
-
-		static int total_samples = 0;
-
-		// fill the current buffer with frames
-		int size = num_frames * sizeof(int16_t) * format->channels;
-
-		// if we dont exceed buffer size then dont copy anything more into the buffer (should be rare) and will
-		// result in audio loss
-		if ((position + size) >= BUFFER_SIZE) {
-			log("Buffer to small... Buffer size %d, try to fill with size %d", BUFFER_SIZE, size);
-		} else {
-			memcpy(current_buffer + position, frames, size);
-			// advance by half the size because buffer1 is of size int16_t
-			position += size / sizeof(int16_t);
-			total_samples += num_frames;
-		}
 
-		// If one second of data has been filled that make it available to the consumer and start fill the other buffer
-		if (total_samples > SAMPLES_PER_BUFFER) {
-			int total_size = total_samples * sizeof(int16_t) * format->channels;
-
-			// play the buffer if both buffers are empty (no sound is playing)
-			if (buffer1_size == 0 && buffer2_size == 0) {
-				logPlayback("No sound, play buffer %d", (current_buffer == buffer1) ? 1 : 2);
-				enqueue(current_buffer, total_size);
-			} else {
-				// Make it possible for the consumer to use this buffer
-				logPlayback("Produced buffer %d", (current_buffer == buffer1) ? 1 : 2);
-			}
-			*current_buffer_size = total_size;
-
-			total_samples = 0;
-			position = 0;
-
-			// start fill the next buffer
-			current_buffer_size = (current_buffer == buffer1) ? &buffer2_size : &buffer1_size;
-			current_buffer = (current_buffer == buffer1) ? buffer2 : buffer1;
+	if (s_ring == NULL) {
+		// The ring couldn't be allocated, drop the frames instead of stalling libspotify
+		__sync_fetch_and_add(&s_dropped_frame_count, num_frames);
+		return num_frames;
+	}
+
+	const int16_t *samples = (const int16_t *) frames;
+	int num_samples = num_frames * format->channels;
+	int copied_samples = 0;
+	uint32_t write_index = s_write_index;
+	while (copied_samples < num_samples
+			&& write_index - load_acquire(&s_release_index) < s_buffer_depth) {
+		int16_t *buffer = s_ring + (write_index % s_buffer_depth) * SAMPLES_PER_BUFFER;
+		int count = SAMPLES_PER_BUFFER - s_write_position;
+		if (count > num_samples - copied_samples)
+			count = num_samples - copied_samples;
+		memcpy(buffer + s_write_position, samples + copied_samples, count * sizeof(int16_t));
+		s_write_position += count;
+		copied_samples += count;
+
+		// Make a full buffer available to the consumer and start filling the next one
+		if (s_write_position == SAMPLES_PER_BUFFER) {
+			logPlayback("Produced buffer %u", write_index % s_buffer_depth);
+			write_index++;
+			store_release(&s_write_index, write_index);
+			s_write_position = 0;
 		}
-	} else {
-		// if both buffers are filled then tell libspotify it cant get more.
-		logPlayback("Both buffers are filled");
-		num_frames = 0;
 	}
-	pthread_mutex_unlock(&g_buffer_mutex);
-	return num_frames;
+	if (copied_samples > 0)
+		s_has_pending_frames = 1;
+	if (copied_samples < num_samples) {
+		// The ring is full, libspotify will deliver the remaining frames again
+		logPlayback("Ring is full, took %d of %d frames", copied_samples / format->channels, num_frames);
+		__sync_fetch_and_add(&s_backpressure_count, 1);
+	}
 
+	// Restart openSL if its queue has run dry
+	try_enqueue();
+	return copied_samples / format->channels;
 }
 
 // this callback handler is called every time a buffer finishes playing
 void bqPlayerCallback(SLAndroidSimpleBufferQueueItf bq, void *context) {
-	static int player_position = 0;
 	static int counter = 0;
-	pthread_mutex_lock(&g_buffer_mutex);
 	assert(bq == bqPlayerBufferQueue);
 	assert(NULL == context);
 
-	// reset the buffer that was played so it can be filled again
-	*current_buffer_size = 0;
-	logPlayback("Buffer %d has been consumed", (next_buffer == buffer1) ? 2 : 1);
-
-	// play next buffer if ready and then flip to the other buffer
-	if (*next_buffer_size != 0) {
-		enqueue(next_buffer, *next_buffer_size);
-	} else {
-		logPlayback("There is no new buffer to consume?");
+	// release the buffer that was played so it can be filled again
+	uint32_t release_index = s_release_index;
+	logPlayback("Buffer %u has been consumed", release_index % s_buffer_depth);
+	store_release(&s_release_index, release_index + 1);
+
+	try_enqueue();
+	if (load_acquire(&s_enqueue_index) == release_index + 1 && s_has_pending_frames) {
+		// Nothing is left to play, although libspotify is still delivering
+		logPlayback("Underrun, there is no new buffer to consume");
+		__sync_fetch_and_add(&s_underrun_count, 1);
+		s_has_pending_frames = 0;
 	}
-	pthread_mutex_unlock(&g_buffer_mutex);
+
 	if (counter % SECOND_DIVIDER == 0)
 		addTask(on_player_position_changed, "player_position_changed");
 	counter++;
 }
 
+void set_audio_buffer_config(int buffer_depth, int enqueued_buffers) {
+	if (buffer_depth < 2)
+		buffer_depth = 2;
+	if (buffer_depth > MAX_BUFFER_DEPTH)
+		buffer_depth = MAX_BUFFER_DEPTH;
+	if (enqueued_buffers < 1)
+		enqueued_buffers = 1;
+	if (enqueued_buffers > buffer_depth)
+		enqueued_buffers = buffer_depth;
+	s_config_buffer_depth = buffer_depth;
+	s_config_enqueued_buffers = enqueued_buffers;
+	log("Audio buffer config set to depth %d with %d enqueued buffers", buffer_depth, enqueued_buffers);
+}
+
+int get_audio_underrun_count() {
+	return s_underrun_count;
+}
+
+int get_audio_backpressure_count() {
+	return s_backpressure_count;
+}
+
+int get_audio_dropped_frame_count() {
+	return s_dropped_frame_count;
+}
+
 static SLObjectItf engineObject = NULL;
 static SLEngineItf engineEngine;
 // output mix interfaces
@@ -191,7 +294,21 @@ static SLObjectItf bqPlayerObject = NULL;
 static SLPlayItf bqPlayerPlay;
 void init_audio_player() {
 
-	pthread_mutex_init(&g_buffer_mutex, NULL);
+	// Neither the old player nor libspotify must touch the old ring anymore, before it's freed
+	destroy_audio_player();
+
+	s_buffer_depth = s_config_buffer_depth;
+	s_enqueued_buffers = s_config_enqueued_buffers;
+	s_ring = (int16_t *) malloc(s_buffer_depth * SAMPLES_PER_BUFFER * sizeof(int16_t));
+	if (s_ring == NULL) {
+		log("Couldn't allocate the audio ring of %u buffers, audio will be dropped", s_buffer_depth);
+		__sync_lock_release(&s_is_shut_down);
+		return;
+	}
+	s_write_index = s_enqueue_index = s_release_index = 0;
+	s_write_position = 0;
+	s_has_pending_frames = 0;
+	s_enqueue_lock = 0;
 
 	// create engine
 	SLresult result;
@@ -213,7 +330,7 @@ void init_audio_player() {
 	assert(SL_RESULT_SUCCESS == result);
 
 	// The source is the buffer
-	SLDataLocator_AndroidSimpleBufferQueue loc_bufq = { SL_DATALOCATOR_ANDROIDSIMPLEBUFFERQUEUE, 2 };
+	SLDataLocator_AndroidSimpleBufferQueue loc_bufq = { SL_DATALOCATOR_ANDROIDSIMPLEBUFFERQUEUE, s_enqueued_buffers };
 	SLDataFormat_PCM format_pcm = { SL_DATAFORMAT_PCM, 2, SL_SAMPLINGRATE_44_1, SL_PCMSAMPLEFORMAT_FIXED_16, SL_PCMSAMPLEFORMAT_FIXED_16,
 			SL_SPEAKER_FRONT_LEFT | SL_SPEAKER_FRONT_RIGHT, SL_BYTEORDER_LITTLEENDIAN };
 	SLDataSource audioSrc = { &loc_bufq, &format_pcm };
@@ -244,13 +361,22 @@ void init_audio_player() {
 	// set the player's state to playing
 	result = (*bqPlayerPlay)->SetPlayState(bqPlayerPlay, SL_PLAYSTATE_PLAYING );
 
-	log("OpenSL was initiated with 16 bit 44100 samplerate and 2 channels");
+	// The player is complete, let libspotify deliver into the new ring
+	__sync_lock_release(&s_is_shut_down);
+
+	log("OpenSL was initiated with 16 bit 44100 samplerate and 2 channels, %u buffers of which %u are enqueued",
+			s_buffer_depth, s_enqueued_buffers);
 
 }
 
 void destroy_audio_player() {
 
 	log("Release audio player");
+	// Stop accepting deliveries and wait for the one which might be in flight
+	__sync_lock_test_and_set(&s_is_shut_down, 1);
+	while (__sync_fetch_and_add(&s_delivery_count, 0) > 0)
+		usleep(1000);
+
 	// destroy buffer queue audio player object, and invalidate all associated interfaces
 	if (bqPlayerObject != NULL) {
 		(*bqPlayerObject)->Destroy(bqPlayerObject);
@@ -271,4 +397,7 @@ void destroy_audio_player() {
 		engineObject = NULL;
 		engineEngine = NULL;
 	}
+
+	free(s_ring);
+	s_ring = NULL;
 }
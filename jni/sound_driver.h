@@ -38,4 +38,10 @@
 void init_audio_player();
 void destroy_audio_player();
 
+// Takes effect the next time the audio player is initialized
+void set_audio_buffer_config(int buffer_depth, int enqueued_buffers);
+int get_audio_underrun_count();
+int get_audio_backpressure_count();
+int get_audio_dropped_frame_count();
+
 #endif /* SOUND_DRIVER_H_ */
@@ -374,8 +374,13 @@ void destroy(list<int> int_params, list<string> string_params, sp_session *sessi
 	if (is_attached()) {
 	    detach_current_thread();
 	}
-	pthread_exit(0);
+	// libspotify must stop delivering, before the ring it delivers into is freed
+	if (s_is_playing)
+		sp_session_player_play(session, false);
+	sp_session_player_unload(session);
+	s_is_playing = false;
 	destroy_audio_player();
+	pthread_exit(0);
 }
 
 static void on_pause() {
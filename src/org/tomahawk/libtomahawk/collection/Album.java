@@ -20,11 +20,15 @@ package org.tomahawk.libtomahawk.collection;
 import org.tomahawk.libtomahawk.resolver.DataBaseResolver;
 import org.tomahawk.libtomahawk.resolver.Query;
 import org.tomahawk.libtomahawk.resolver.QueryComparator;
+import org.tomahawk.libtomahawk.utils.SortKey;
+import org.tomahawk.libtomahawk.utils.SortedSnapshotList;
 import org.tomahawk.libtomahawk.utils.TomahawkUtils;
+import org.tomahawk.libtomahawk.utils.WeakRegistry;
 import org.tomahawk.tomahawk_android.adapters.TomahawkBaseAdapter;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -32,17 +36,30 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class Album implements TomahawkBaseAdapter.TomahawkListItem {
 
-    private static ConcurrentHashMap<String, Album> sAlbums
-            = new ConcurrentHashMap<String, Album>();
+    private static final int MAX_KEPT_ALIVE_ALBUMS = 100;
 
-    private ArrayList<Query> mQueries;
+    private static WeakRegistry<Album> sAlbums
+            = new WeakRegistry<Album>("Album", MAX_KEPT_ALIVE_ALBUMS);
 
-    private ArrayList<Query> mLocalQueries;
+    // All Albums which have local queries. They are referenced by the UserCollection anyway.
+    private static SortedSnapshotList<Album> sLocalAlbums = new SortedSnapshotList<Album>(
+            new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ALPHA));
+
+    private ConcurrentHashMap<String, Query> mQueries = new ConcurrentHashMap<String, Query>();
+
+    private ConcurrentHashMap<String, Query> mLocalQueries = new ConcurrentHashMap<String, Query>();
+
+    private SortedSnapshotList<Query> mSortedQueries = new SortedSnapshotList<Query>(
+            new QueryComparator(QueryComparator.COMPARE_ALBUMPOS));
 
     private ArrayList<Query> mQueriesFetchedViaHatchet;
 
     private String mName;
 
+    private String mCacheKey;
+
+    private SortKey mSortKey;
+
     private Artist mArtist;
 
     private Image mImage;
@@ -59,29 +76,39 @@ public class Album implements TomahawkBaseAdapter.TomahawkListItem {
     private Album(String albumName, Artist artist) {
         mName = albumName;
         mArtist = artist;
-        mQueries = new ArrayList<Query>();
-        mLocalQueries = new ArrayList<Query>();
+        mCacheKey = TomahawkUtils.getCacheKey(albumName, artist.getName());
+        mSortKey = SortKey.get(albumName);
         mQueriesFetchedViaHatchet = new ArrayList<Query>();
     }
 
     /**
      * Returns the {@link Album} with the given album name and {@link org.tomahawk.libtomahawk.collection.Artist}.
-     * If none exists in our static {@link ConcurrentHashMap} yet, construct and add it.
+     * If none exists in our static {@link WeakRegistry} yet, construct and add it. A new {@link
+     * Album} is only constructed on a cache miss and added atomically, so that concurrent callers
+     * always get the same instance. The most recently constructed {@link Album}s are kept alive,
+     * even if nothing else references them.
      */
     public static Album get(String albumName, Artist artist) {
         if (artist == null) {
             artist = Artist.get("");
         }
-        Album album = new Album(albumName, artist);
-        String key = TomahawkUtils.getCacheKey(album);
-        if (!sAlbums.containsKey(key)) {
-            sAlbums.put(key, album);
+        String key = TomahawkUtils.getCacheKey(albumName, artist.getName());
+        Album album = sAlbums.get(key);
+        if (album == null) {
+            album = new Album(albumName, artist);
+            Album cachedAlbum = sAlbums.putIfAbsent(key, album);
+            if (cachedAlbum != null) {
+                album = cachedAlbum;
+            } else {
+                sAlbums.keepAlive(key, album);
+            }
         }
-        return sAlbums.get(key);
+        return album;
     }
 
     /**
-     * Get the {@link org.tomahawk.libtomahawk.collection.Album} by providing its cache key
+     * Get the {@link org.tomahawk.libtomahawk.collection.Album} by providing its cache key. Might
+     * return null, if the {@link Album} has already been garbage collected.
      */
     public static Album getAlbumByKey(String key) {
         return sAlbums.get(key);
@@ -91,25 +118,18 @@ public class Album implements TomahawkBaseAdapter.TomahawkListItem {
      * @return A {@link java.util.ArrayList} of all {@link Album}s
      */
     public static ArrayList<Album> getAlbums() {
-        ArrayList<Album> albums = new ArrayList<Album>(sAlbums.values());
+        ArrayList<Album> albums = sAlbums.values();
         Collections.sort(albums,
                 new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ALPHA));
         return albums;
     }
 
     /**
-     * @return A {@link java.util.ArrayList} of all local {@link Album}s
+     * @return A {@link java.util.List} of all local {@link Album}s. The returned snapshot is
+     * shared and unmodifiable.
      */
-    public static ArrayList<Album> getLocalAlbums() {
-        ArrayList<Album> albums = new ArrayList<Album>();
-        for (Album album : sAlbums.values()) {
-            if (album.hasLocalQueries()) {
-                albums.add(album);
-            }
-        }
-        Collections.sort(albums,
-                new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ALPHA));
-        return albums;
+    public static List<Album> getLocalAlbums() {
+        return sLocalAlbums.getSnapshot();
     }
 
     /**
@@ -128,6 +148,22 @@ public class Album implements TomahawkBaseAdapter.TomahawkListItem {
         return mName;
     }
 
+    /**
+     * @return the key under which this {@link Album} is stored in our static cache. Computed only
+     * once, since an {@link Album}'s name and {@link Artist} never change.
+     */
+    public String getCacheKey() {
+        return mCacheKey;
+    }
+
+    /**
+     * @return the {@link SortKey} of this {@link Album}'s name. Computed only once on creation.
+     */
+    @Override
+    public SortKey getSortKey() {
+        return mSortKey;
+    }
+
     /**
      * @return the {@link Album}'s {@link Artist}
      */
@@ -150,39 +186,53 @@ public class Album implements TomahawkBaseAdapter.TomahawkListItem {
      * @param query the {@link Track} to be added
      */
     public void addQuery(Query query) {
-        boolean containsQuery = false;
         String key = TomahawkUtils.getCacheKey(query);
         synchronized (this) {
-            for (Query q : mQueries) {
-                if (TomahawkUtils.getCacheKey(q).equals(key)) {
-                    containsQuery = true;
-                }
-            }
-            if (!containsQuery) {
-                mQueries.add(query);
+            if (!mQueries.containsKey(key)) {
+                mQueries.put(key, query);
+                mSortedQueries.add(query);
                 boolean isLocalQuery = query.getPreferredTrackResult() != null
                         && query.getPreferredTrackResult()
                         .getResolvedBy() instanceof DataBaseResolver;
                 if (isLocalQuery) {
-                    mLocalQueries.add(query);
+                    if (mLocalQueries.isEmpty()) {
+                        sLocalAlbums.add(this);
+                    }
+                    mLocalQueries.put(key, query);
                 }
             }
         }
     }
 
+    /**
+     * Remove a {@link Track} from this {@link Album}.
+     *
+     * @param query the {@link Track} to be removed
+     */
+    public void removeQuery(Query query) {
+        String key = TomahawkUtils.getCacheKey(query);
+        synchronized (this) {
+            Query removedQuery = mQueries.remove(key);
+            if (removedQuery != null) {
+                mSortedQueries.remove(removedQuery);
+            }
+            if (mLocalQueries.remove(key) != null && mLocalQueries.isEmpty()) {
+                sLocalAlbums.remove(this);
+            }
+        }
+    }
+
     /**
      * Get a list of all {@link org.tomahawk.libtomahawk.resolver.Query}s from this {@link Album}.
      *
      * @return list of all {@link org.tomahawk.libtomahawk.resolver.Query}s from this {@link Album}.
+     * The returned snapshot is shared and unmodifiable.
      */
-    public ArrayList<Query> getQueries() {
+    public List<Query> getQueries() {
         if (mQueriesFetchedViaHatchet.size() > 0) {
             return mQueriesFetchedViaHatchet;
         } else {
-            synchronized (this) {
-                Collections.sort(mQueries, new QueryComparator(QueryComparator.COMPARE_ALBUMPOS));
-            }
-            return mQueries;
+            return mSortedQueries.getSnapshot();
         }
     }
 
@@ -191,19 +241,17 @@ public class Album implements TomahawkBaseAdapter.TomahawkListItem {
      * Album}.
      *
      * @return list of all local {@link org.tomahawk.libtomahawk.resolver.Query}s from this {@link
-     * Album}.
+     * Album}. Whether or not a {@link org.tomahawk.libtomahawk.resolver.Query} is local is checked
+     * right now, since its preferred result can change after it has been added.
      */
     public ArrayList<Query> getLocalQueries() {
         ArrayList<Query> queries = new ArrayList<Query>();
-        synchronized (this) {
-            for (Query query : mQueries) {
-                if (query.getPreferredTrackResult() != null && query.getPreferredTrackResult()
-                        .isLocal()) {
-                    queries.add(query);
-                }
+        for (Query query : mSortedQueries.getSnapshot()) {
+            if (query.getPreferredTrackResult() != null && query.getPreferredTrackResult()
+                    .isLocal()) {
+                queries.add(query);
             }
         }
-        Collections.sort(queries, new QueryComparator(QueryComparator.COMPARE_ALBUMPOS));
         return queries;
     }
 
@@ -20,11 +20,15 @@ package org.tomahawk.libtomahawk.collection;
 import org.tomahawk.libtomahawk.resolver.DataBaseResolver;
 import org.tomahawk.libtomahawk.resolver.Query;
 import org.tomahawk.libtomahawk.resolver.QueryComparator;
+import org.tomahawk.libtomahawk.utils.SortKey;
+import org.tomahawk.libtomahawk.utils.SortedSnapshotList;
 import org.tomahawk.libtomahawk.utils.TomahawkUtils;
+import org.tomahawk.libtomahawk.utils.WeakRegistry;
 import org.tomahawk.tomahawk_android.adapters.TomahawkBaseAdapter;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -32,11 +36,21 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class Artist implements TomahawkBaseAdapter.TomahawkListItem {
 
-    private static ConcurrentHashMap<String, Artist> sArtists
-            = new ConcurrentHashMap<String, Artist>();
+    private static final int MAX_KEPT_ALIVE_ARTISTS = 100;
+
+    private static WeakRegistry<Artist> sArtists
+            = new WeakRegistry<Artist>("Artist", MAX_KEPT_ALIVE_ARTISTS);
+
+    // All Artists which have local queries. They are referenced by the UserCollection anyway.
+    private static SortedSnapshotList<Artist> sLocalArtists = new SortedSnapshotList<Artist>(
+            new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ALPHA));
 
     private String mName;
 
+    private String mCacheKey;
+
+    private SortKey mSortKey;
+
     private ConcurrentHashMap<String, Album> mAlbums = new ConcurrentHashMap<String, Album>();
 
     private ConcurrentHashMap<String, Album> mLocalAlbums = new ConcurrentHashMap<String, Album>();
@@ -48,6 +62,18 @@ public class Artist implements TomahawkBaseAdapter.TomahawkListItem {
 
     private ConcurrentHashMap<String, Query> mLocalQueries = new ConcurrentHashMap<String, Query>();
 
+    private SortedSnapshotList<Album> mSortedAlbums = new SortedSnapshotList<Album>(
+            new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ALPHA));
+
+    private SortedSnapshotList<Album> mSortedLocalAlbums = new SortedSnapshotList<Album>(
+            new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ALPHA));
+
+    private SortedSnapshotList<Query> mSortedQueries = new SortedSnapshotList<Query>(
+            new QueryComparator(QueryComparator.COMPARE_ALPHA));
+
+    private SortedSnapshotList<Query> mSortedLocalQueries = new SortedSnapshotList<Query>(
+            new QueryComparator(QueryComparator.COMPARE_ALPHA));
+
     private ArrayList<Query> mTopHits = new ArrayList<Query>();
 
     private Image mImage;
@@ -59,25 +85,36 @@ public class Artist implements TomahawkBaseAdapter.TomahawkListItem {
      */
     private Artist(String artistName) {
         mName = artistName;
+        mCacheKey = TomahawkUtils.getCacheKey(artistName);
+        mSortKey = SortKey.get(artistName);
     }
 
     /**
      * Returns the {@link Artist} with the given id. If none exists in our static {@link
-     * ConcurrentHashMap} yet, construct and add it.
+     * WeakRegistry} yet, construct and add it. A new {@link Artist} is only constructed on a cache
+     * miss and added atomically, so that concurrent callers always get the same instance. The most
+     * recently constructed {@link Artist}s are kept alive, even if nothing else references them.
      *
      * @return {@link Artist} with the given id
      */
     public static Artist get(String artistName) {
-        Artist artist = new Artist(artistName);
-        String key = TomahawkUtils.getCacheKey(artist);
-        if (!sArtists.containsKey(key)) {
-            sArtists.put(key, artist);
+        String key = TomahawkUtils.getCacheKey(artistName);
+        Artist artist = sArtists.get(key);
+        if (artist == null) {
+            artist = new Artist(artistName);
+            Artist cachedArtist = sArtists.putIfAbsent(key, artist);
+            if (cachedArtist != null) {
+                artist = cachedArtist;
+            } else {
+                sArtists.keepAlive(key, artist);
+            }
         }
-        return sArtists.get(key);
+        return artist;
     }
 
     /**
-     * Get the {@link org.tomahawk.libtomahawk.collection.Artist} by providing its cache key
+     * Get the {@link org.tomahawk.libtomahawk.collection.Artist} by providing its cache key. Might
+     * return null, if the {@link Artist} has already been garbage collected.
      */
     public static Artist getArtistByKey(String key) {
         return sArtists.get(key);
@@ -87,25 +124,18 @@ public class Artist implements TomahawkBaseAdapter.TomahawkListItem {
      * @return A {@link java.util.List} of all {@link Artist}s
      */
     public static ArrayList<Artist> getArtists() {
-        ArrayList<Artist> artists = new ArrayList<Artist>(sArtists.values());
+        ArrayList<Artist> artists = sArtists.values();
         Collections.sort(artists,
                 new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ALPHA));
         return artists;
     }
 
     /**
-     * @return A {@link java.util.List} of local all {@link Artist}s
+     * @return A {@link java.util.List} of local all {@link Artist}s. The returned snapshot is
+     * shared and unmodifiable.
      */
-    public static ArrayList<Artist> getLocalArtists() {
-        ArrayList<Artist> artists = new ArrayList<Artist>();
-        for (Artist artist : sArtists.values()) {
-            if (artist.hasLocalQueries()) {
-                artists.add(artist);
-            }
-        }
-        Collections.sort(artists,
-                new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ALPHA));
-        return artists;
+    public static List<Artist> getLocalArtists() {
+        return sLocalArtists.getSnapshot();
     }
 
     /**
@@ -124,6 +154,22 @@ public class Artist implements TomahawkBaseAdapter.TomahawkListItem {
         return mName;
     }
 
+    /**
+     * @return the key under which this {@link Artist} is stored in our static cache. Computed only
+     * once, since an {@link Artist}'s name never changes.
+     */
+    public String getCacheKey() {
+        return mCacheKey;
+    }
+
+    /**
+     * @return the {@link SortKey} of this {@link Artist}'s name. Computed only once on creation.
+     */
+    @Override
+    public SortKey getSortKey() {
+        return mSortKey;
+    }
+
     /**
      * @return this object
      */
@@ -156,33 +202,56 @@ public class Artist implements TomahawkBaseAdapter.TomahawkListItem {
         synchronized (this) {
             if (!mQueries.containsKey(key)) {
                 mQueries.put(key, query);
+                mSortedQueries.add(query);
                 boolean isLocalQuery = query.getPreferredTrackResult() != null
                         && query.getPreferredTrackResult()
                         .getResolvedBy() instanceof DataBaseResolver;
                 if (isLocalQuery) {
+                    if (mLocalQueries.isEmpty()) {
+                        sLocalArtists.add(this);
+                    }
                     mLocalQueries.put(key, query);
+                    mSortedLocalQueries.add(query);
                 }
             }
         }
     }
 
     /**
-     * @return list of all {@link org.tomahawk.libtomahawk.resolver.Query}s from this object.
+     * @param query the {@link org.tomahawk.libtomahawk.resolver.Query} to be removed
      */
-    public ArrayList<Query> getQueries() {
-        ArrayList<Query> queries = new ArrayList<Query>(mQueries.values());
-        Collections.sort(queries, new QueryComparator(QueryComparator.COMPARE_ALPHA));
-        return queries;
+    public void removeQuery(Query query) {
+        String key = TomahawkUtils.getCacheKey(query);
+        synchronized (this) {
+            Query removedQuery = mQueries.remove(key);
+            if (removedQuery != null) {
+                mSortedQueries.remove(removedQuery);
+            }
+            removedQuery = mLocalQueries.remove(key);
+            if (removedQuery != null) {
+                mSortedLocalQueries.remove(removedQuery);
+                if (mLocalQueries.isEmpty()) {
+                    sLocalArtists.remove(this);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return list of all {@link org.tomahawk.libtomahawk.resolver.Query}s from this object. The
+     * returned snapshot is shared and unmodifiable.
+     */
+    public List<Query> getQueries() {
+        return mSortedQueries.getSnapshot();
     }
 
     /**
      * Get a list of all local {@link org.tomahawk.libtomahawk.resolver.Query}s from this {@link
-     * org.tomahawk.libtomahawk.collection.Artist}.
+     * org.tomahawk.libtomahawk.collection.Artist}. The returned snapshot is shared and
+     * unmodifiable.
      */
-    public ArrayList<Query> getLocalQueries() {
-        ArrayList<Query> queries = new ArrayList<Query>(mLocalQueries.values());
-        Collections.sort(queries, new QueryComparator(QueryComparator.COMPARE_ALPHA));
-        return queries;
+    public List<Query> getLocalQueries() {
+        return mSortedLocalQueries.getSnapshot();
     }
 
     public ArrayList<Query> getTopHits() {
@@ -212,9 +281,30 @@ public class Artist implements TomahawkBaseAdapter.TomahawkListItem {
         synchronized (this) {
             if (!mAlbums.containsKey(key)) {
                 mAlbums.put(key, album);
-                if (isLocalAlbum) {
-                    mLocalAlbums.put(key, album);
-                }
+                mSortedAlbums.add(album);
+            }
+            if (isLocalAlbum && !mLocalAlbums.containsKey(key)) {
+                mLocalAlbums.put(key, album);
+                mSortedLocalAlbums.add(album);
+            }
+        }
+    }
+
+    /**
+     * Remove an {@link Album} from this object
+     *
+     * @param album the {@link Album} to be removed
+     */
+    public void removeAlbum(Album album) {
+        String key = TomahawkUtils.getCacheKey(album);
+        synchronized (this) {
+            Album removedAlbum = mAlbums.remove(key);
+            if (removedAlbum != null) {
+                mSortedAlbums.remove(removedAlbum);
+            }
+            removedAlbum = mLocalAlbums.remove(key);
+            if (removedAlbum != null) {
+                mSortedLocalAlbums.remove(removedAlbum);
             }
         }
     }
@@ -222,28 +312,24 @@ public class Artist implements TomahawkBaseAdapter.TomahawkListItem {
     /**
      * Get a list of all {@link Album}s from this object.
      *
-     * @return list of all {@link Album}s from this object.
+     * @return list of all {@link Album}s from this object. The returned snapshot is shared and
+     * unmodifiable.
      */
-    public ArrayList<Album> getAlbums() {
+    public List<Album> getAlbums() {
         if (mAlbumsFetchedViaHatchet.size() > 0) {
             return new ArrayList<Album>(mAlbumsFetchedViaHatchet.values());
         }
-        ArrayList<Album> albums = new ArrayList<Album>(mAlbums.values());
-        Collections.sort(albums,
-                new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ALPHA));
-        return albums;
+        return mSortedAlbums.getSnapshot();
     }
 
     /**
      * Get a list of all local {@link Album}s from this object.
      *
-     * @return list of all local {@link Album}s from this object.
+     * @return list of all local {@link Album}s from this object. The returned snapshot is shared
+     * and unmodifiable.
      */
-    public ArrayList<Album> getLocalAlbums() {
-        ArrayList<Album> albums = new ArrayList<Album>(mLocalAlbums.values());
-        Collections.sort(albums,
-                new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ALPHA));
-        return albums;
+    public List<Album> getLocalAlbums() {
+        return mSortedLocalAlbums.getSnapshot();
     }
 
     public void setAlbumsFetchedViaHatchet(
@@ -21,6 +21,7 @@ package org.tomahawk.libtomahawk.collection;
 import org.tomahawk.libtomahawk.resolver.Query;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * This class represents a {@link Collection} of media.
@@ -30,6 +31,20 @@ public abstract class Collection {
     public static final String COLLECTION_UPDATED
             = "org.tomahawk.tomahawk_android.COLLECTION_UPDATED";
 
+    /**
+     * Optional extras of a {@link #COLLECTION_UPDATED} broadcast, which describe what exactly has
+     * changed. Each of them is an array of {@link org.tomahawk.libtomahawk.resolver.Query} cache
+     * keys. Broadcasts without these extras mean that anything could have changed.
+     */
+    public static final String COLLECTION_UPDATED_ADDED_QUERYKEYS
+            = "org.tomahawk.tomahawk_android.COLLECTION_UPDATED_ADDED_QUERYKEYS";
+
+    public static final String COLLECTION_UPDATED_CHANGED_QUERYKEYS
+            = "org.tomahawk.tomahawk_android.COLLECTION_UPDATED_CHANGED_QUERYKEYS";
+
+    public static final String COLLECTION_UPDATED_REMOVED_QUERYKEYS
+            = "org.tomahawk.tomahawk_android.COLLECTION_UPDATED_REMOVED_QUERYKEYS";
+
     /**
      * Default constructor.
      */
@@ -39,7 +54,15 @@ public abstract class Collection {
     /**
      * Return a list of all {@link org.tomahawk.libtomahawk.resolver.Query}s.
      */
-    public abstract ArrayList<Query> getQueries();
+    public abstract List<Query> getQueries();
+
+    /**
+     * @return the {@link QueryIndex} over all {@link org.tomahawk.libtomahawk.resolver.Query}s in
+     * this {@link Collection}, or null if this {@link Collection} isn't indexed
+     */
+    public QueryIndex getQueryIndex() {
+        return null;
+    }
 
     /**
      * Return a list of all {@link UserPlaylist}s.
@@ -0,0 +1,256 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compact binary snapshot of the tracks and albums a {@link UserCollection} has imported from the
+ * MediaStore. It is written after every sync which changed something and decoded on startup, so
+ * that the {@link UserCollection} can be shown right away, while the sync validates it in the
+ * background.
+ */
+class CollectionSnapshot {
+
+    private final static String TAG = CollectionSnapshot.class.getName();
+
+    private static final int MAGIC = 0x546f6d43;
+
+    // Has to be increased every time the format changes. Snapshots of other versions are ignored
+    private static final int VERSION = 1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // The minimum number of bytes a single album and a single track take up in the snapshot file.
+    // Used to reject counts which can't be right, before anything is allocated for them
+    private static final int MIN_ALBUM_SIZE = 8 + 3;
+
+    private static final int MIN_TRACK_SIZE = 8 + 8 + 1 + 1 + 8 + 4 + 1 + 8 + 1;
+
+    private File mFile;
+
+    private HashMap<Long, AlbumInfo> mAlbumInfos;
+
+    private ArrayList<TrackInfo> mTrackInfos;
+
+    /**
+     * The information we need from MediaStore's albums table
+     */
+    static class AlbumInfo {
+
+        String mAlbumArt;
+
+        String mFirstYear;
+
+        String mLastYear;
+    }
+
+    /**
+     * The information we need from MediaStore's media table
+     */
+    static class TrackInfo {
+
+        long mId;
+
+        long mDateModified;
+
+        String mPath;
+
+        String mTitle;
+
+        long mDuration;
+
+        int mAlbumPos;
+
+        String mArtistName;
+
+        long mAlbumId;
+
+        String mAlbumName;
+    }
+
+    CollectionSnapshot(File file) {
+        mFile = file;
+    }
+
+    /**
+     * @return the {@link AlbumInfo}s of all albums, keyed by their ALBUM_ID. Only valid after a
+     * successful {@link #read()}
+     */
+    HashMap<Long, AlbumInfo> getAlbumInfos() {
+        return mAlbumInfos;
+    }
+
+    /**
+     * @return the {@link TrackInfo}s of all tracks. Only valid after a successful {@link #read()}
+     */
+    ArrayList<TrackInfo> getTrackInfos() {
+        return mTrackInfos;
+    }
+
+    /**
+     * Decode the snapshot file. A snapshot of another version or one which can't be decoded is
+     * deleted.
+     *
+     * @return whether or not a valid snapshot has been read
+     */
+    boolean read() {
+        DataInputStream in = null;
+        try {
+            long fileLength = mFile.length();
+            in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(mFile), BUFFER_SIZE));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                Log.d(TAG, "read - ignoring snapshot of another version");
+                mFile.delete();
+                return false;
+            }
+            int albumCount = in.readInt();
+            if (albumCount < 0 || albumCount > fileLength / MIN_ALBUM_SIZE) {
+                throw new IOException("invalid album count " + albumCount);
+            }
+            HashMap<Long, AlbumInfo> albumInfos = new HashMap<Long, AlbumInfo>(albumCount);
+            for (int i = 0; i < albumCount; i++) {
+                long albumId = in.readLong();
+                AlbumInfo albumInfo = new AlbumInfo();
+                albumInfo.mAlbumArt = readString(in);
+                albumInfo.mFirstYear = readString(in);
+                albumInfo.mLastYear = readString(in);
+                albumInfos.put(albumId, albumInfo);
+            }
+            int trackCount = in.readInt();
+            if (trackCount < 0 || trackCount > fileLength / MIN_TRACK_SIZE) {
+                throw new IOException("invalid track count " + trackCount);
+            }
+            ArrayList<TrackInfo> trackInfos = new ArrayList<TrackInfo>(trackCount);
+            for (int i = 0; i < trackCount; i++) {
+                TrackInfo trackInfo = new TrackInfo();
+                trackInfo.mId = in.readLong();
+                trackInfo.mDateModified = in.readLong();
+                trackInfo.mPath = readString(in);
+                trackInfo.mTitle = readString(in);
+                trackInfo.mDuration = in.readLong();
+                trackInfo.mAlbumPos = in.readInt();
+                trackInfo.mArtistName = readString(in);
+                trackInfo.mAlbumId = in.readLong();
+                trackInfo.mAlbumName = readString(in);
+                trackInfos.add(trackInfo);
+            }
+            if (in.read() != -1) {
+                throw new IOException("unexpected data after the last track");
+            }
+            mAlbumInfos = albumInfos;
+            mTrackInfos = trackInfos;
+            return true;
+        } catch (FileNotFoundException e) {
+            Log.d(TAG, "read - no snapshot available");
+        } catch (IOException e) {
+            Log.e(TAG, "read: " + e.getClass() + ": " + e.getLocalizedMessage());
+            mFile.delete();
+        } catch (RuntimeException e) {
+            // A corrupted file can make readUTF fail with e.g. an IllegalArgumentException
+            Log.e(TAG, "read: " + e.getClass() + ": " + e.getLocalizedMessage());
+            mFile.delete();
+        } finally {
+            close(in);
+        }
+        return false;
+    }
+
+    /**
+     * Write the given albums and tracks to the snapshot file. A temporary file is written first and
+     * renamed afterwards, so that a crash never leaves a truncated snapshot behind.
+     *
+     * @return whether or not the snapshot has been written
+     */
+    boolean write(Map<Long, AlbumInfo> albumInfos, java.util.Collection<TrackInfo> trackInfos) {
+        File tempFile = new File(mFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(albumInfos.size());
+            for (Map.Entry<Long, AlbumInfo> entry : albumInfos.entrySet()) {
+                out.writeLong(entry.getKey());
+                writeString(out, entry.getValue().mAlbumArt);
+                writeString(out, entry.getValue().mFirstYear);
+                writeString(out, entry.getValue().mLastYear);
+            }
+            out.writeInt(trackInfos.size());
+            for (TrackInfo trackInfo : trackInfos) {
+                out.writeLong(trackInfo.mId);
+                out.writeLong(trackInfo.mDateModified);
+                writeString(out, trackInfo.mPath);
+                writeString(out, trackInfo.mTitle);
+                out.writeLong(trackInfo.mDuration);
+                out.writeInt(trackInfo.mAlbumPos);
+                writeString(out, trackInfo.mArtistName);
+                out.writeLong(trackInfo.mAlbumId);
+                writeString(out, trackInfo.mAlbumName);
+            }
+            out.close();
+            out = null;
+            if (tempFile.renameTo(mFile)) {
+                return true;
+            }
+            Log.e(TAG, "write - couldn't rename " + tempFile + " to " + mFile);
+        } catch (IOException e) {
+            Log.e(TAG, "write: " + e.getClass() + ": " + e.getLocalizedMessage());
+        } finally {
+            close(out);
+        }
+        tempFile.delete();
+        return false;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        out.writeBoolean(string != null);
+        if (string != null) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static void close(java.io.Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Log.e(TAG, "close: " + e.getClass() + ": " + e.getLocalizedMessage());
+            }
+        }
+    }
+}
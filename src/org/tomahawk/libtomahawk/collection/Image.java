@@ -18,8 +18,7 @@
 package org.tomahawk.libtomahawk.collection;
 
 import org.tomahawk.libtomahawk.utils.TomahawkUtils;
-
-import java.util.concurrent.ConcurrentHashMap;
+import org.tomahawk.libtomahawk.utils.WeakRegistry;
 
 /**
  * Class which represents a Tomahawk {@link org.tomahawk.libtomahawk.collection.Image}.
@@ -30,11 +29,12 @@ public class Image {
 
     public static final int IMAGE_SIZE_LARGE = 360;
 
-    private static ConcurrentHashMap<String, Image> sImages
-            = new ConcurrentHashMap<String, Image>();
+    private static WeakRegistry<Image> sImages = new WeakRegistry<Image>("Image", 0);
 
     private String mImagePath;
 
+    private String mCacheKey;
+
     private boolean mIsHatchetImage;
 
     private int mWidth = -1;
@@ -46,6 +46,7 @@ public class Image {
      */
     private Image(String imagePath, boolean isHatchetImage) {
         mImagePath = imagePath;
+        mCacheKey = TomahawkUtils.getCacheKey(imagePath);
         mIsHatchetImage = isHatchetImage;
     }
 
@@ -54,6 +55,7 @@ public class Image {
      */
     private Image(String imagePath, boolean isHatchetImage, int width, int height) {
         mImagePath = imagePath;
+        mCacheKey = TomahawkUtils.getCacheKey(imagePath);
         mIsHatchetImage = isHatchetImage;
         mWidth = width;
         mHeight = height;
@@ -62,38 +64,56 @@ public class Image {
     /**
      * Returns the {@link org.tomahawk.libtomahawk.collection.Image} with the given image path and
      * boolean to determine whether or not this image should be scaled down. If none exists in our
-     * static {@link java.util.concurrent.ConcurrentHashMap} yet, construct and add it.
+     * static {@link WeakRegistry} yet, construct and add it.
      */
     public static Image get(String imagePath, boolean scaleItDown) {
-        Image image = new Image(imagePath, scaleItDown);
-        String key = TomahawkUtils.getCacheKey(image);
-        if (!sImages.containsKey(key)) {
-            sImages.put(key, image);
+        String key = TomahawkUtils.getCacheKey(imagePath);
+        Image image = sImages.get(key);
+        if (image == null) {
+            image = new Image(imagePath, scaleItDown);
+            Image cachedImage = sImages.putIfAbsent(key, image);
+            if (cachedImage != null) {
+                image = cachedImage;
+            }
         }
-        return sImages.get(key);
+        return image;
     }
 
     /**
      * Returns the {@link org.tomahawk.libtomahawk.collection.Image} with the given image path and
      * boolean to determine whether or not this image should be scaled down. If none exists in our
-     * static {@link java.util.concurrent.ConcurrentHashMap} yet, construct and add it.
+     * static {@link WeakRegistry} yet, construct and add it.
      */
     public static Image get(String imagePath, boolean scaleItDown, int width, int height) {
-        Image image = new Image(imagePath, scaleItDown, width, height);
-        String key = TomahawkUtils.getCacheKey(image);
-        if (!sImages.containsKey(key)) {
-            sImages.put(key, image);
+        String key = TomahawkUtils.getCacheKey(imagePath);
+        Image image = sImages.get(key);
+        if (image == null) {
+            image = new Image(imagePath, scaleItDown, width, height);
+            Image cachedImage = sImages.putIfAbsent(key, image);
+            if (cachedImage != null) {
+                image = cachedImage;
+            }
         }
-        return sImages.get(key);
+        return image;
     }
 
     /**
-     * Get the {@link org.tomahawk.libtomahawk.collection.Image} by providing its cache key
+     * Get the {@link org.tomahawk.libtomahawk.collection.Image} by providing its cache key. Might
+     * return null, if the {@link org.tomahawk.libtomahawk.collection.Image} has already been
+     * garbage collected.
      */
     public static Image getImageByKey(String key) {
         return sImages.get(key);
     }
 
+    /**
+     * @return the key under which this {@link org.tomahawk.libtomahawk.collection.Image} is stored
+     * in our static cache
+     */
+    public String getCacheKey() {
+        return mCacheKey;
+    }
+
     public String getImagePath() {
         return mImagePath;
     }
@@ -0,0 +1,103 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2013, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+import org.tomahawk.libtomahawk.database.UserPlaylistsDataSource;
+import org.tomahawk.libtomahawk.resolver.Query;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@link Query}s of a stored {@link UserPlaylist}, of which only the summary has been loaded.
+ * The {@link Query}s are read page by page from the database, as soon as one of them is accessed,
+ * so that only the visible window of a huge {@link UserPlaylist} is ever constructed. Only the
+ * most recently used pages are kept.
+ */
+public class PagedQueryList extends AbstractList<Query> {
+
+    private static final int PAGE_SIZE = 50;
+
+    private static final int MAX_PAGES = 4;
+
+    private UserPlaylistsDataSource mUserPlaylistsDataSource;
+
+    private UserPlaylist mSummary;
+
+    // The loaded pages mapped by their index, the least recently used one first
+    private LinkedHashMap<Integer, ArrayList<Query>> mPages
+            = new LinkedHashMap<Integer, ArrayList<Query>>(MAX_PAGES + 1, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, ArrayList<Query>> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+
+    /**
+     * @param summary the summary of the stored {@link UserPlaylist}, which provides the id and
+     *                the number of tracks
+     */
+    public PagedQueryList(UserPlaylistsDataSource userPlaylistsDataSource, UserPlaylist summary) {
+        mUserPlaylistsDataSource = userPlaylistsDataSource;
+        mSummary = summary;
+    }
+
+    /**
+     * @return the summary of the {@link UserPlaylist} whose {@link Query}s this list contains
+     */
+    public UserPlaylist getSummary() {
+        return mSummary;
+    }
+
+    @Override
+    public Query get(int location) {
+        if (location < 0 || location >= size()) {
+            throw new IndexOutOfBoundsException("Invalid index " + location + ", size is "
+                    + size());
+        }
+        int pageIndex = location / PAGE_SIZE;
+        ArrayList<Query> page = mPages.get(pageIndex);
+        if (page == null) {
+            page = mUserPlaylistsDataSource.getUserPlaylistQueries(mSummary.getId(),
+                    pageIndex * PAGE_SIZE, PAGE_SIZE);
+            mPages.put(pageIndex, page);
+        }
+        if (location % PAGE_SIZE >= page.size()) {
+            throw new IndexOutOfBoundsException("The tracks of playlist " + mSummary.getId()
+                    + " have changed, index " + location + " is gone");
+        }
+        return page.get(location % PAGE_SIZE);
+    }
+
+    /**
+     * @return the {@link Query} at the given location, or null if its page hasn't been loaded.
+     * Never reads from the database.
+     */
+    public Query peek(int location) {
+        ArrayList<Query> page = mPages.get(location / PAGE_SIZE);
+        return page != null && location % PAGE_SIZE < page.size()
+                ? page.get(location % PAGE_SIZE) : null;
+    }
+
+    @Override
+    public int size() {
+        return mSummary.getTrackCount();
+    }
+}
@@ -19,6 +19,7 @@
 package org.tomahawk.libtomahawk.collection;
 
 import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.utils.SortKey;
 import org.tomahawk.libtomahawk.utils.TomahawkUtils;
 
 import java.util.ArrayList;
@@ -33,6 +34,8 @@ public abstract class Playlist implements Playable {
 
     private String mName;
 
+    private SortKey mSortKey;
+
     private ArrayList<Query> mQueries;
 
     private ArrayList<Query> mShuffledQueries;
@@ -58,7 +61,7 @@ public abstract class Playlist implements Playable {
      * @param name {@link String} containing the name of the to be created {@link Playlist}
      */
     protected Playlist(String name) {
-        mName = name;
+        setName(name);
         mShuffled = false;
         mRepeating = false;
         setQueries(new ArrayList<Query>());
@@ -78,6 +81,17 @@ public abstract class Playlist implements Playable {
      */
     public void setName(String name) {
         this.mName = name;
+        mSortKey = SortKey.get(name);
+    }
+
+    /**
+     * @return the {@link SortKey} of this object's name. Only recomputed when the name changes.
+     */
+    public SortKey getSortKey() {
+        if (mSortKey == null) {
+            mSortKey = SortKey.get(mName);
+        }
+        return mSortKey;
     }
 
     /**
@@ -85,7 +99,7 @@ public abstract class Playlist implements Playable {
      */
     @Override
     public void setQueries(Collection<Query> queries) {
-        mQueries = (ArrayList<Query>) queries;
+        mQueries = new ArrayList<Query>(queries);
         mCurrentQueryIndex = 0;
     }
 
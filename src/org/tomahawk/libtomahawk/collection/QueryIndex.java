@@ -0,0 +1,321 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.resolver.QueryComparator;
+import org.tomahawk.libtomahawk.utils.TomahawkUtils;
+
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * An inverted trigram index over the track, album and artist names of the {@link Query}s in a
+ * {@link Collection}. Every {@link Query} gets a sequential id when it is added, so that all
+ * posting lists are sorted by construction and can be intersected in linear time. Lookups only
+ * have to verify the candidates which contain every trigram of the search string, instead of
+ * scanning the complete {@link Collection}. Found {@link Query}s are returned in the same order as
+ * {@link Collection#getQueries()}.
+ *
+ * Removed {@link Query}s only leave an empty slot behind. Once more than half of the slots are
+ * empty, the index is rebuilt from the remaining {@link Query}s, which prunes the posting lists.
+ */
+public class QueryIndex {
+
+    private static final int FIELD_TRACK = 0;
+
+    private static final int FIELD_ALBUM = 1;
+
+    private static final int FIELD_ARTIST = 2;
+
+    private static final int FIELD_COUNT = 3;
+
+    private static final int GRAM_LENGTH = 3;
+
+    // Small indexes aren't worth rebuilding
+    private static final int MIN_COMPACT_SIZE = 64;
+
+    // The order of Collection.getQueries()
+    private static final QueryComparator COMPARATOR = new QueryComparator(
+            QueryComparator.COMPARE_ALPHA);
+
+    private ArrayList<Query> mQueries = new ArrayList<Query>();
+
+    private HashMap<String, Integer> mQueryIds = new HashMap<String, Integer>();
+
+    private ArrayList<HashMap<Long, Postings>> mPostings
+            = new ArrayList<HashMap<Long, Postings>>();
+
+    private int mSize;
+
+    /**
+     * A growable, ascending list of {@link Query} ids
+     */
+    private static class Postings {
+
+        private int[] mIds = new int[4];
+
+        private int mSize;
+
+        private void add(int id) {
+            if (mSize > 0 && mIds[mSize - 1] == id) {
+                return;
+            }
+            if (mSize == mIds.length) {
+                int[] ids = new int[mIds.length * 2];
+                System.arraycopy(mIds, 0, ids, 0, mSize);
+                mIds = ids;
+            }
+            mIds[mSize++] = id;
+        }
+    }
+
+    /**
+     * Construct a new, empty {@link QueryIndex}
+     */
+    public QueryIndex() {
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            mPostings.add(new HashMap<Long, Postings>());
+        }
+    }
+
+    /**
+     * Add the given {@link Query} to this {@link QueryIndex}. {@link Query}s which have already
+     * been added are ignored, so that the index can be maintained incrementally.
+     */
+    public synchronized void add(Query query) {
+        String key = TomahawkUtils.getCacheKey(query);
+        if (mQueryIds.containsKey(key)) {
+            return;
+        }
+        int id = mQueries.size();
+        mQueries.add(query);
+        mQueryIds.put(key, id);
+        mSize++;
+        addGrams(FIELD_TRACK, query.getName(), id);
+        addGrams(FIELD_ALBUM, query.getAlbum().getName(), id);
+        addGrams(FIELD_ARTIST, query.getArtist().getName(), id);
+    }
+
+    /**
+     * Remove the given {@link Query} from this {@link QueryIndex}. Its slot is cleared and the
+     * index is compacted, once most of its slots are empty.
+     */
+    public synchronized void remove(Query query) {
+        Integer id = mQueryIds.remove(TomahawkUtils.getCacheKey(query));
+        if (id != null) {
+            mQueries.set(id, null);
+            mSize--;
+            int deadCount = mQueries.size() - mSize;
+            if (deadCount >= MIN_COMPACT_SIZE && deadCount > mSize) {
+                compact();
+            }
+        }
+    }
+
+    /**
+     * Rebuild this {@link QueryIndex} from its remaining {@link Query}s, so that neither the
+     * {@link Query} slots nor the posting lists contain any removed ids anymore
+     */
+    private void compact() {
+        ArrayList<Query> queries = new ArrayList<Query>(mSize);
+        for (Query query : mQueries) {
+            if (query != null) {
+                queries.add(query);
+            }
+        }
+        clear();
+        for (Query query : queries) {
+            add(query);
+        }
+    }
+
+    /**
+     * @return the number of slots, including the empty ones of removed {@link Query}s
+     */
+    synchronized int getSlotCount() {
+        return mQueries.size();
+    }
+
+    /**
+     * Remove all {@link Query}s from this {@link QueryIndex}
+     */
+    public synchronized void clear() {
+        mQueries.clear();
+        mQueryIds.clear();
+        for (HashMap<Long, Postings> postings : mPostings) {
+            postings.clear();
+        }
+        mSize = 0;
+    }
+
+    /**
+     * @return the number of {@link Query}s in this {@link QueryIndex}
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * Get all {@link Query}s whose track, album or artist name contains the given fullTextQuery.
+     *
+     * @param fullTextQuery the lowercase and trimmed {@link String} to search for
+     */
+    public synchronized ArrayList<Query> find(String fullTextQuery) {
+        ArrayList<Query> queries = new ArrayList<Query>();
+        if (TextUtils.isEmpty(fullTextQuery)) {
+            return queries;
+        }
+        boolean[] matched = new boolean[mQueries.size()];
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            Postings candidates = getCandidates(field, fullTextQuery);
+            int size = candidates != null ? candidates.mSize : mQueries.size();
+            for (int i = 0; i < size; i++) {
+                int id = candidates != null ? candidates.mIds[i] : i;
+                Query query = mQueries.get(id);
+                if (!matched[id] && query != null
+                        && getFieldValue(query, field).toLowerCase().contains(fullTextQuery)) {
+                    matched[id] = true;
+                }
+            }
+        }
+        for (int i = 0; i < matched.length; i++) {
+            if (matched[i]) {
+                queries.add(mQueries.get(i));
+            }
+        }
+        Collections.sort(queries, COMPARATOR);
+        return queries;
+    }
+
+    /**
+     * Get all {@link Query}s whose track name contains trackName, whose album name contains
+     * albumName and whose artist name contains artistName.
+     *
+     * @param trackName  the lowercase and trimmed track name to search for
+     * @param albumName  the lowercase and trimmed album name to search for
+     * @param artistName the lowercase and trimmed artist name to search for
+     */
+    public synchronized ArrayList<Query> find(String trackName, String albumName,
+            String artistName) {
+        Postings candidates = null;
+        String[] values = new String[]{trackName, albumName, artistName};
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            Postings fieldCandidates = getCandidates(field, values[field]);
+            if (fieldCandidates != null) {
+                candidates = candidates == null ? fieldCandidates
+                        : intersect(candidates, fieldCandidates);
+            }
+        }
+        ArrayList<Query> queries = new ArrayList<Query>();
+        int size = candidates != null ? candidates.mSize : mQueries.size();
+        for (int i = 0; i < size; i++) {
+            Query query = mQueries.get(candidates != null ? candidates.mIds[i] : i);
+            if (query != null
+                    && query.getName().toLowerCase().contains(trackName)
+                    && query.getAlbum().getName().toLowerCase().contains(albumName)
+                    && query.getArtist().getName().toLowerCase().contains(artistName)) {
+                queries.add(query);
+            }
+        }
+        Collections.sort(queries, COMPARATOR);
+        return queries;
+    }
+
+    /**
+     * Intersect the posting lists of every trigram in the given {@link String}.
+     *
+     * @return the ascending ids of all candidates, or null if the given {@link String} is too
+     * short to be looked up in the index and every {@link Query} is a candidate
+     */
+    private Postings getCandidates(int field, String value) {
+        if (value == null || value.length() < GRAM_LENGTH) {
+            return null;
+        }
+        HashMap<Long, Postings> postingsMap = mPostings.get(field);
+        Postings candidates = null;
+        for (int i = 0; i + GRAM_LENGTH <= value.length(); i++) {
+            Postings postings = postingsMap.get(gram(value, i));
+            if (postings == null) {
+                return new Postings();
+            }
+            candidates = candidates == null ? postings : intersect(candidates, postings);
+            if (candidates.mSize == 0) {
+                break;
+            }
+        }
+        return candidates;
+    }
+
+    private void addGrams(int field, String value, int id) {
+        if (value == null) {
+            return;
+        }
+        value = value.toLowerCase();
+        HashMap<Long, Postings> postingsMap = mPostings.get(field);
+        for (int i = 0; i + GRAM_LENGTH <= value.length(); i++) {
+            long gram = gram(value, i);
+            Postings postings = postingsMap.get(gram);
+            if (postings == null) {
+                postings = new Postings();
+                postingsMap.put(gram, postings);
+            }
+            postings.add(id);
+        }
+    }
+
+    private static Postings intersect(Postings a, Postings b) {
+        Postings result = new Postings();
+        int i = 0;
+        int j = 0;
+        while (i < a.mSize && j < b.mSize) {
+            if (a.mIds[i] < b.mIds[j]) {
+                i++;
+            } else if (a.mIds[i] > b.mIds[j]) {
+                j++;
+            } else {
+                result.add(a.mIds[i]);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Pack the three chars at the given offset into a single long
+     */
+    private static long gram(String value, int offset) {
+        return ((long) value.charAt(offset) << 32) | ((long) value.charAt(offset + 1) << 16)
+                | (long) value.charAt(offset + 2);
+    }
+
+    private static String getFieldValue(Query query, int field) {
+        switch (field) {
+            case FIELD_TRACK:
+                return query.getName();
+            case FIELD_ALBUM:
+                return query.getAlbum().getName();
+            default:
+                return query.getArtist().getName();
+        }
+    }
+}
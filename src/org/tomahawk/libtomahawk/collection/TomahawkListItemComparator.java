@@ -31,7 +31,7 @@ public class TomahawkListItemComparator
     public static final int COMPARE_ALPHA = 1;
 
     //Flag containing the current mode to be used
-    private static int mFlag = COMPARE_ALPHA;
+    private final int mFlag;
 
     /**
      * Construct this {@link TomahawkListItemComparator}
@@ -55,7 +55,7 @@ public class TomahawkListItemComparator
             TomahawkBaseAdapter.TomahawkListItem a2) {
         switch (mFlag) {
             case COMPARE_ALPHA:
-                return a1.getName().compareTo(a2.getName());
+                return a1.getSortKey().compareTo(a2.getSortKey());
         }
         return 0;
     }
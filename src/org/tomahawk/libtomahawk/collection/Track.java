@@ -17,21 +17,24 @@
  */
 package org.tomahawk.libtomahawk.collection;
 
+import org.tomahawk.libtomahawk.utils.SortKey;
 import org.tomahawk.libtomahawk.utils.TomahawkUtils;
+import org.tomahawk.libtomahawk.utils.WeakRegistry;
 import org.tomahawk.tomahawk_android.adapters.TomahawkBaseAdapter;
 
-import java.util.concurrent.ConcurrentHashMap;
-
 /**
  * This class represents a {@link Track}.
  */
 public class Track implements TomahawkBaseAdapter.TomahawkListItem {
 
-    private static ConcurrentHashMap<String, Track> sTracks
-            = new ConcurrentHashMap<String, Track>();
+    private static WeakRegistry<Track> sTracks = new WeakRegistry<Track>("Track", 0);
 
     private String mName;
 
+    private String mCacheKey;
+
+    private SortKey mSortKey;
+
     private Album mAlbum;
 
     private Artist mArtist;
@@ -51,11 +54,14 @@ public class Track implements TomahawkBaseAdapter.TomahawkListItem {
         mName = trackName;
         mAlbum = album;
         mArtist = artist;
+        mCacheKey = TomahawkUtils.getCacheKey(trackName, album.getName(), artist.getName());
+        mSortKey = SortKey.get(trackName);
     }
 
     /**
      * Returns the {@link Track} with the given id. If none exists in our static {@link
-     * ConcurrentHashMap} yet, construct and add it.
+     * WeakRegistry} yet, construct and add it. A new {@link Track} is only constructed on a cache
+     * miss and added atomically, so that concurrent callers always get the same instance.
      *
      * @return {@link Track} with the given id
      */
@@ -66,16 +72,21 @@ public class Track implements TomahawkBaseAdapter.TomahawkListItem {
         if (album == null) {
             album = Album.get("", artist);
         }
-        Track track = new Track(trackName, album, artist);
-        String key = TomahawkUtils.getCacheKey(track);
-        if (!sTracks.containsKey(key)) {
-            sTracks.put(key, track);
+        String key = TomahawkUtils.getCacheKey(trackName, album.getName(), artist.getName());
+        Track track = sTracks.get(key);
+        if (track == null) {
+            track = new Track(trackName, album, artist);
+            Track cachedTrack = sTracks.putIfAbsent(key, track);
+            if (cachedTrack != null) {
+                track = cachedTrack;
+            }
         }
-        return sTracks.get(key);
+        return track;
     }
 
     /**
-     * Get the {@link org.tomahawk.libtomahawk.collection.Track} by providing its cache key
+     * Get the {@link org.tomahawk.libtomahawk.collection.Track} by providing its cache key. Might
+     * return null, if the {@link Track} has already been garbage collected.
      */
     public static Track getTrackByKey(String key) {
         return sTracks.get(key);
@@ -97,6 +108,22 @@ public class Track implements TomahawkBaseAdapter.TomahawkListItem {
         return mName;
     }
 
+    /**
+     * @return the key under which this {@link Track} is stored in our static cache. Computed only
+     * once, since a {@link Track}'s name, {@link Album} and {@link Artist} never change.
+     */
+    public String getCacheKey() {
+        return mCacheKey;
+    }
+
+    /**
+     * @return the {@link SortKey} of this {@link Track}'s name. Computed only once on creation.
+     */
+    @Override
+    public SortKey getSortKey() {
+        return mSortKey;
+    }
+
     /**
      * @return the {@link Track}'s {@link Artist}
      */
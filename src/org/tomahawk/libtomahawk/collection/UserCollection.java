@@ -22,6 +22,8 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 
 import org.tomahawk.libtomahawk.authentication.AuthenticatorUtils;
+import org.tomahawk.libtomahawk.collection.CollectionSnapshot.AlbumInfo;
+import org.tomahawk.libtomahawk.collection.CollectionSnapshot.TrackInfo;
 import org.tomahawk.libtomahawk.database.UserPlaylistsDataSource;
 import org.tomahawk.libtomahawk.infosystem.hatchet.HatchetInfoPlugin;
 import org.tomahawk.libtomahawk.infosystem.InfoRequestData;
@@ -33,6 +35,7 @@ import org.tomahawk.libtomahawk.resolver.Query;
 import org.tomahawk.libtomahawk.resolver.QueryComparator;
 import org.tomahawk.libtomahawk.resolver.Resolver;
 import org.tomahawk.libtomahawk.resolver.Result;
+import org.tomahawk.libtomahawk.utils.SortedSnapshotList;
 import org.tomahawk.libtomahawk.utils.TomahawkUtils;
 import org.tomahawk.tomahawk_android.TomahawkApp;
 import org.tomahawk.tomahawk_android.services.TomahawkService;
@@ -46,11 +49,15 @@ import android.database.ContentObserver;
 import android.database.Cursor;
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.os.SystemClock;
 import android.provider.MediaStore;
 import android.text.TextUtils;
+import android.util.Log;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -61,8 +68,24 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class UserCollection extends Collection {
 
+    private final static String TAG = UserCollection.class.getName();
+
     public static final int Id = 0;
 
+    // Number of tracks which are added to the Collection at once during an import
+    private static final int IMPORT_CHUNK_SIZE = 250;
+
+    // Bursts of MediaStore change notifications within this window are coalesced into one sync
+    private static final long SYNC_DEBOUNCE_DELAY = 2000;
+
+    // A continuous stream of change notifications can't postpone a sync longer than this
+    private static final long SYNC_MAX_DELAY = 10000;
+
+    // Maximum number of MediaStore ids which are put into one "IN (...)" selection
+    private static final int SYNC_SELECTION_CHUNK_SIZE = 500;
+
+    private static final String SNAPSHOT_FILE_NAME = "collection.snapshot";
+
     private TomahawkApp mTomahawkApp;
 
     private HandlerThread mCollectionUpdateHandlerThread;
@@ -73,6 +96,34 @@ public class UserCollection extends Collection {
 
     private ConcurrentHashMap<String, Query> mQueries = new ConcurrentHashMap<String, Query>();
 
+    private QueryIndex mQueryIndex = new QueryIndex();
+
+    private SortedSnapshotList<Query> mSortedQueries = new SortedSnapshotList<Query>(
+            new QueryComparator(QueryComparator.COMPARE_ALPHA));
+
+    // The MediaStore tracks currently in this collection, keyed by their _ID. Only ever accessed
+    // from the CollectionUpdate thread
+    private HashMap<Long, LocalTrack> mLocalTracks = new HashMap<Long, LocalTrack>();
+
+    // The number of MediaStore tracks backing each Query, keyed by the Query's cache key. Only
+    // ever accessed from the CollectionUpdate thread
+    private HashMap<String, Integer> mQueryRefCounts = new HashMap<String, Integer>();
+
+    private long mFirstPendingChangeTime;
+
+    // The albums of the MediaStore as of the last import. Only ever accessed from the
+    // CollectionUpdate thread
+    private HashMap<Long, AlbumInfo> mAlbumInfos = new HashMap<Long, AlbumInfo>();
+
+    private CollectionSnapshot mSnapshot;
+
+    // Whether or not the snapshot is in sync with this collection
+    private boolean mSnapshotValid;
+
+    private long mCreationTime;
+
+    private boolean mFirstListReported;
+
     private UserPlaylist mCachedUserPlaylist;
 
     private ConcurrentHashMap<String, UserPlaylist> mUserPlaylists
@@ -86,20 +137,68 @@ public class UserCollection extends Collection {
         @Override
         public void run() {
             update();
-            mCollectionUpdateHandlerThread.getLooper().quit();
+        }
+    };
+
+    private Runnable mLoadSnapshotRunnable = new Runnable() {
+        /*
+         * (non-Javadoc)
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+            loadSnapshot();
+        }
+    };
+
+    private Runnable mSyncRunnable = new Runnable() {
+        /*
+         * (non-Javadoc)
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+            mFirstPendingChangeTime = 0;
+            syncCollection();
         }
     };
 
     /**
-     * This class watches for changes in the Media db.
+     * A track of the MediaStore and what it has been imported as
      */
-    private final ContentObserver mLocalMediaObserver = new ContentObserver(null) {
+    private static class LocalTrack {
+
+        private TrackInfo mTrackInfo;
+
+        private Query mQuery;
+
+        private Result mResult;
+    }
+
+    /**
+     * This class watches for changes in the Media db. Its callbacks are delivered on the
+     * CollectionUpdate thread. Bursts of notifications are coalesced, so that one sync is done
+     * SYNC_DEBOUNCE_DELAY after the last notification, but no later than SYNC_MAX_DELAY after the
+     * first one.
+     */
+    private class LocalMediaObserver extends ContentObserver {
+
+        public LocalMediaObserver(Handler handler) {
+            super(handler);
+        }
+
         @Override
         public void onChange(boolean selfChange) {
-            mCollectionUpdateHandlerThread.start();
-            mHandler.post(mUpdateRunnable);
+            long now = SystemClock.uptimeMillis();
+            if (mFirstPendingChangeTime == 0) {
+                mFirstPendingChangeTime = now;
+            }
+            long delay = Math.min(SYNC_DEBOUNCE_DELAY,
+                    mFirstPendingChangeTime + SYNC_MAX_DELAY - now);
+            mHandler.removeCallbacks(mSyncRunnable);
+            mHandler.postDelayed(mSyncRunnable, Math.max(delay, 0));
         }
-    };
+    }
 
     protected HashSet<String> mCorrespondingRequestIds = new HashSet<String>();
 
@@ -143,7 +242,7 @@ public class UserCollection extends Collection {
                                         ids.add(userPlaylist.getId());
                                         UserPlaylist storedUserPlaylist = mTomahawkApp
                                                 .getUserPlaylistsDataSource()
-                                                .getUserPlaylist(userPlaylist.getId());
+                                                .getUserPlaylistSummary(userPlaylist.getId());
                                         if (storedUserPlaylist == null
                                                 || storedUserPlaylist.getCurrentRevision() == null
                                                 || !storedUserPlaylist.getCurrentRevision().equals(
@@ -158,13 +257,20 @@ public class UserCollection extends Collection {
                                 // Delete every playlist that has not been fetched via Hatchet.
                                 // Meaning it is no longer valid.
                                 for (UserPlaylist userPlaylist : mTomahawkApp
-                                        .getUserPlaylistsDataSource().getHatchetUserPlaylists()) {
+                                        .getUserPlaylistsDataSource()
+                                        .getHatchetUserPlaylistSummaries()) {
                                     if (!ids.contains(userPlaylist.getId())) {
                                         mTomahawkApp.getUserPlaylistsDataSource()
-                                                .deleteUserPlaylist(userPlaylist.getId());
+                                                .deleteUserPlaylist(userPlaylist.getId(), null);
                                     }
                                 }
-                                UserCollection.this.updateUserPlaylists();
+                                mTomahawkApp.getUserPlaylistsDataSource().runAfterWrites(
+                                        new Runnable() {
+                                            @Override
+                                            public void run() {
+                                                UserCollection.this.updateUserPlaylists();
+                                            }
+                                        });
                             }
                         }
                     }).start();
@@ -177,20 +283,24 @@ public class UserCollection extends Collection {
      * Construct a new {@link UserCollection} and initializes it.
      */
     public UserCollection(TomahawkApp tomahawkApp) {
+        mCreationTime = System.currentTimeMillis();
         mTomahawkApp = tomahawkApp;
         mUserCollectionReceiver = new UserCollectionReceiver();
         mTomahawkApp.registerReceiver(mUserCollectionReceiver,
                 new IntentFilter(InfoSystem.INFOSYSTEM_RESULTSREPORTED));
 
-        TomahawkApp.getContext().getContentResolver()
-                .registerContentObserver(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, false,
-                        mLocalMediaObserver);
+        mSnapshot = new CollectionSnapshot(
+                new File(TomahawkApp.getContext().getFilesDir(), SNAPSHOT_FILE_NAME));
 
         mCollectionUpdateHandlerThread = new HandlerThread("CollectionUpdate",
                 android.os.Process.THREAD_PRIORITY_BACKGROUND);
         mCollectionUpdateHandlerThread.start();
 
         mHandler = new Handler(mCollectionUpdateHandlerThread.getLooper());
+        TomahawkApp.getContext().getContentResolver()
+                .registerContentObserver(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, false,
+                        new LocalMediaObserver(mHandler));
+        mHandler.post(mLoadSnapshotRunnable);
         mHandler.postDelayed(mUpdateRunnable, 300);
     }
 
@@ -211,11 +321,30 @@ public class UserCollection extends Collection {
     }
 
     /**
-     * Get an {@link UserPlaylist} from this {@link UserCollection} by providing an id
+     * Get an {@link UserPlaylist} from this {@link UserCollection} by providing an id, without
+     * reading its tracks. If it has been fully loaded before, the loaded one is returned,
+     * otherwise only its summary.
+     */
+    public UserPlaylist getUserPlaylistSummaryById(String id) {
+        return mUserPlaylists.get(id);
+    }
+
+    /**
+     * Get an {@link UserPlaylist} from this {@link UserCollection} by providing an id. If only its
+     * summary has been loaded so far, its tracks are read from the database now.
      */
     @Override
     public UserPlaylist getUserPlaylistById(String id) {
-        return mUserPlaylists.get(id);
+        UserPlaylist userPlaylist = mUserPlaylists.get(id);
+        if (userPlaylist != null && userPlaylist.isSummary()) {
+            UserPlaylist loadedUserPlaylist =
+                    mTomahawkApp.getUserPlaylistsDataSource().getUserPlaylist(id);
+            if (loadedUserPlaylist != null) {
+                mUserPlaylists.replace(id, userPlaylist, loadedUserPlaylist);
+                userPlaylist = loadedUserPlaylist;
+            }
+        }
+        return userPlaylist;
     }
 
     /**
@@ -234,11 +363,11 @@ public class UserCollection extends Collection {
     }
 
     /**
-     * Store the PlaybackService's currentPlaylist
+     * Store the PlaybackService's currentPlaylist. It's written to the database in the background.
      */
     public void setCachedUserPlaylist(UserPlaylist userPlaylist) {
         mCachedUserPlaylist = userPlaylist;
-        mTomahawkApp.getUserPlaylistsDataSource().storeUserPlaylist(mCachedUserPlaylist);
+        mTomahawkApp.getUserPlaylistsDataSource().storeCachedUserPlaylist(mCachedUserPlaylist);
     }
 
     /**
@@ -252,13 +381,20 @@ public class UserCollection extends Collection {
     }
 
     /**
-     * @return A {@link List} of all {@link Track}s in this {@link UserCollection}
+     * @return A {@link List} of all {@link Track}s in this {@link UserCollection}. The returned
+     * snapshot is shared and unmodifiable.
+     */
+    @Override
+    public List<Query> getQueries() {
+        return mSortedQueries.getSnapshot();
+    }
+
+    /**
+     * @return the {@link QueryIndex} over all {@link Query}s in this {@link UserCollection}
      */
     @Override
-    public ArrayList<Query> getQueries() {
-        ArrayList<Query> queries = new ArrayList<Query>(mQueries.values());
-        Collections.sort(queries, new QueryComparator(QueryComparator.COMPARE_ALPHA));
-        return queries;
+    public QueryIndex getQueryIndex() {
+        return mQueryIndex;
     }
 
     /**
@@ -270,91 +406,351 @@ public class UserCollection extends Collection {
     }
 
     /**
-     * Initialize this {@link UserCollection}. Pull all local tracks from the {@link MediaStore} and
-     * add them to our {@link UserCollection}
+     * Synchronize this {@link UserCollection} with the {@link MediaStore}. Only the _ID and
+     * DATE_MODIFIED of all local tracks are read up front. Only tracks which have been inserted or
+     * modified since the last sync are read completely and (re-)imported, tracks which have been
+     * deleted are removed. The tracks we compare against are the ones in memory, which have been
+     * restored from the snapshot after a restart. The albums table is read only if there is
+     * anything to import and joined in memory, the tracks are added in chunks of
+     * IMPORT_CHUNK_SIZE. Must only be called on the CollectionUpdate thread.
      */
-    private void initializeCollection() {
-        Resolver userCollectionResolver = mTomahawkApp.getPipeLine().getResolver(
-                TomahawkApp.RESOLVER_ID_USERCOLLECTION);
-
-        updateUserPlaylists();
-        updateHatchetUserPlaylists();
+    private void syncCollection() {
+        long startTime = System.currentTimeMillis();
+        ContentResolver resolver = TomahawkApp.getContext().getContentResolver();
 
         String selection = MediaStore.Audio.Media.IS_MUSIC + " != 0";
+        String[] projection = {MediaStore.Audio.Media._ID, MediaStore.Audio.Media.DATE_MODIFIED};
+        Cursor cursor = resolver.query(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, projection,
+                selection, null, null);
+        if (cursor == null) {
+            Log.e(TAG, "syncCollection - MediaStore is not available");
+            return;
+        }
+        HashMap<Long, Long> dateModified = new HashMap<Long, Long>(cursor.getCount());
+        ArrayList<Long> modifiedIds = new ArrayList<Long>();
+        while (cursor.moveToNext()) {
+            long id = cursor.getLong(0);
+            dateModified.put(id, cursor.getLong(1));
+            LocalTrack localTrack = mLocalTracks.get(id);
+            if (localTrack == null || localTrack.mTrackInfo.mDateModified != cursor.getLong(1)) {
+                modifiedIds.add(id);
+            }
+        }
+        cursor.close();
+        ArrayList<Long> removedIds = new ArrayList<Long>();
+        for (Long id : mLocalTracks.keySet()) {
+            if (!dateModified.containsKey(id)) {
+                removedIds.add(id);
+            }
+        }
+
+        HashSet<String> removedKeys = new HashSet<String>();
+        HashSet<String> oldKeys = new HashSet<String>();
+        for (Long id : removedIds) {
+            removeLocalTrack(id, removedKeys);
+        }
+        int updatedCount = 0;
+        for (Long id : modifiedIds) {
+            if (mLocalTracks.containsKey(id)) {
+                updatedCount++;
+                removeLocalTrack(id, oldKeys);
+            }
+        }
+        HashSet<String> addedKeys = new HashSet<String>();
+        if (!modifiedIds.isEmpty()) {
+            mAlbumInfos = readAlbumInfos(resolver);
+            if (modifiedIds.size() == dateModified.size()) {
+                // Everything has to be imported, so there's no need to select single ids
+                importTracks(resolver, selection, dateModified, addedKeys);
+            } else {
+                for (int i = 0; i < modifiedIds.size(); i += SYNC_SELECTION_CHUNK_SIZE) {
+                    List<Long> ids = modifiedIds.subList(i,
+                            Math.min(i + SYNC_SELECTION_CHUNK_SIZE, modifiedIds.size()));
+                    importTracks(resolver, selection + " AND " + MediaStore.Audio.Media._ID
+                            + " IN (" + TextUtils.join(",", ids) + ")", dateModified,
+                            addedKeys);
+                }
+            }
+        }
+
+        // A re-imported track whose Query has stayed the same counts as changed
+        HashSet<String> changedKeys = new HashSet<String>();
+        for (String key : oldKeys) {
+            if (addedKeys.remove(key)) {
+                changedKeys.add(key);
+            } else {
+                removedKeys.add(key);
+            }
+        }
+        for (String key : addedKeys) {
+            if (removedKeys.remove(key)) {
+                changedKeys.add(key);
+            }
+        }
+
+        long duration = Math.max(System.currentTimeMillis() - startTime, 1);
+        Log.d(TAG, "Synced " + dateModified.size() + " tracks in " + duration + "ms - "
+                + (modifiedIds.size() - updatedCount) + " inserted, " + updatedCount
+                + " updated, " + removedIds.size() + " deleted tracks of "
+                + mAlbumInfos.size() + " albums (" + (modifiedIds.size() * 1000L / duration)
+                + " tracks/sec)");
+
+        boolean hasChanged = !modifiedIds.isEmpty() || !removedIds.isEmpty();
+        if (hasChanged || !mSnapshotValid) {
+            ArrayList<TrackInfo> trackInfos
+                    = new ArrayList<TrackInfo>(mLocalTracks.size());
+            for (LocalTrack localTrack : mLocalTracks.values()) {
+                trackInfos.add(localTrack.mTrackInfo);
+            }
+            mSnapshotValid = mSnapshot.write(mAlbumInfos, trackInfos);
+        }
+        if (!addedKeys.isEmpty() || !changedKeys.isEmpty() || !removedKeys.isEmpty()) {
+            sendCollectionUpdatedBroadcast(addedKeys, changedKeys, removedKeys, "MediaStore");
+        }
+    }
 
+    /**
+     * Restore this {@link UserCollection} from the snapshot written after the last sync, so that it
+     * can be shown right away. The following sync only has to apply what has changed since then.
+     * Must only be called on the CollectionUpdate thread, before the first sync.
+     */
+    private void loadSnapshot() {
+        long startTime = System.currentTimeMillis();
+        if (!mSnapshot.read()) {
+            return;
+        }
+        mAlbumInfos = mSnapshot.getAlbumInfos();
+        HashSet<String> addedKeys = new HashSet<String>();
+        ArrayList<Query> chunk = new ArrayList<Query>(IMPORT_CHUNK_SIZE);
+        HashSet<Long> importedAlbumIds = new HashSet<Long>();
+        for (TrackInfo trackInfo : mSnapshot.getTrackInfos()) {
+            importTrack(trackInfo, importedAlbumIds, chunk, addedKeys);
+        }
+        addQueries(chunk);
+        mSnapshotValid = true;
+
+        Log.d(TAG, "Restored " + mLocalTracks.size() + " tracks of " + mAlbumInfos.size()
+                + " albums from snapshot in " + (System.currentTimeMillis() - startTime) + "ms");
+        if (!addedKeys.isEmpty()) {
+            sendCollectionUpdatedBroadcast(addedKeys, new HashSet<String>(),
+                    new HashSet<String>(), "snapshot");
+        }
+    }
+
+    /**
+     * Send a {@link #COLLECTION_UPDATED} broadcast, which contains the cache keys of all {@link
+     * Query}s which have been added, changed and removed. The time until the first one, which is
+     * when the library views are able to show something, is logged.
+     *
+     * @param source where the content came from, only used for logging
+     */
+    private void sendCollectionUpdatedBroadcast(HashSet<String> addedKeys,
+            HashSet<String> changedKeys, HashSet<String> removedKeys, String source) {
+        if (!mFirstListReported) {
+            mFirstListReported = true;
+            Log.d(TAG, "Time to first list: " + (System.currentTimeMillis() - mCreationTime)
+                    + "ms (loaded from " + source + ")");
+        }
+        Intent intent = new Intent(COLLECTION_UPDATED);
+        intent.putExtra(COLLECTION_UPDATED_ADDED_QUERYKEYS,
+                addedKeys.toArray(new String[addedKeys.size()]));
+        intent.putExtra(COLLECTION_UPDATED_CHANGED_QUERYKEYS,
+                changedKeys.toArray(new String[changedKeys.size()]));
+        intent.putExtra(COLLECTION_UPDATED_REMOVED_QUERYKEYS,
+                removedKeys.toArray(new String[removedKeys.size()]));
+        TomahawkApp.getContext().sendBroadcast(intent);
+    }
+
+    /**
+     * Import all tracks of the {@link MediaStore} which match the given selection
+     *
+     * @param dateModified the DATE_MODIFIED of every track in the {@link MediaStore}, keyed by _ID
+     * @param addedKeys    the cache keys of all new {@link Query}s are put in here
+     */
+    private void importTracks(ContentResolver resolver, String selection,
+            HashMap<Long, Long> dateModified, HashSet<String> addedKeys) {
         String[] projection = {MediaStore.Audio.Media._ID, MediaStore.Audio.Media.DATA,
                 MediaStore.Audio.Media.TITLE, MediaStore.Audio.Media.DURATION,
-                MediaStore.Audio.Media.TRACK, MediaStore.Audio.Media.ARTIST_ID,
-                MediaStore.Audio.Media.ARTIST, MediaStore.Audio.Media.ALBUM_ID,
-                MediaStore.Audio.Media.ALBUM};
-
-        ContentResolver resolver = TomahawkApp.getContext().getContentResolver();
+                MediaStore.Audio.Media.TRACK, MediaStore.Audio.Media.ARTIST,
+                MediaStore.Audio.Media.ALBUM_ID, MediaStore.Audio.Media.ALBUM};
 
         Cursor cursor = resolver
                 .query(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, projection, selection, null,
                         null);
 
-        // Go through the complete set of data in the MediaStore
+        ArrayList<Query> chunk = new ArrayList<Query>(IMPORT_CHUNK_SIZE);
+        HashSet<Long> importedAlbumIds = new HashSet<Long>();
         while (cursor != null && cursor.moveToNext()) {
-            Artist artist = Artist.get(cursor.getString(6));
-
-            Album album = Album.get(cursor.getString(8), artist);
-            String albumsel = MediaStore.Audio.Albums._ID + " == " + Long.toString(
-                    cursor.getLong(7));
-            String[] albumproj = {MediaStore.Audio.Albums.ALBUM_ART,
-                    MediaStore.Audio.Albums.FIRST_YEAR, MediaStore.Audio.Albums.LAST_YEAR};
-            Cursor albumcursor = resolver.query(MediaStore.Audio.Albums.EXTERNAL_CONTENT_URI,
-                    albumproj, albumsel, null, null);
-            if (albumcursor != null && albumcursor.moveToNext()) {
-                if (!TextUtils.isEmpty(albumcursor.getString(0))) {
-                    album.setImage(Image.get(albumcursor.getString(0), false));
+            TrackInfo trackInfo = new TrackInfo();
+            trackInfo.mId = cursor.getLong(0);
+            Long trackDateModified = dateModified.get(trackInfo.mId);
+            trackInfo.mDateModified = trackDateModified != null ? trackDateModified : 0;
+            trackInfo.mPath = cursor.getString(1);
+            trackInfo.mTitle = cursor.getString(2);
+            trackInfo.mDuration = cursor.getLong(3);
+            trackInfo.mAlbumPos = cursor.getInt(4);
+            trackInfo.mArtistName = cursor.getString(5);
+            trackInfo.mAlbumId = cursor.getLong(6);
+            trackInfo.mAlbumName = cursor.getString(7);
+            importTrack(trackInfo, importedAlbumIds, chunk, addedKeys);
+        }
+        addQueries(chunk);
+
+        if (cursor != null) {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Import the given track. Its {@link Query} is added to the given chunk, which is added to
+     * this {@link UserCollection} once it's full.
+     *
+     * @param importedAlbumIds the ALBUM_IDs of all albums whose {@link AlbumInfo}
+     *                         has already been applied during this import
+     * @param addedKeys        the cache key of the {@link Query} is put in here, if it is new
+     */
+    private void importTrack(TrackInfo trackInfo,
+            HashSet<Long> importedAlbumIds, ArrayList<Query> chunk, HashSet<String> addedKeys) {
+        Resolver userCollectionResolver = mTomahawkApp.getPipeLine().getResolver(
+                TomahawkApp.RESOLVER_ID_USERCOLLECTION);
+
+        Artist artist = Artist.get(trackInfo.mArtistName);
+
+        Album album = Album.get(trackInfo.mAlbumName, artist);
+        Album cachedAlbum = mAlbums.putIfAbsent(trackInfo.mAlbumId, album);
+        if (cachedAlbum != null) {
+            album = cachedAlbum;
+        }
+        if (importedAlbumIds.add(trackInfo.mAlbumId)) {
+            AlbumInfo albumInfo = mAlbumInfos.get(trackInfo.mAlbumId);
+            if (albumInfo != null) {
+                if (!TextUtils.isEmpty(albumInfo.mAlbumArt)) {
+                    album.setImage(Image.get(albumInfo.mAlbumArt, false));
                 }
-                album.setFirstYear(albumcursor.getString(1));
-                album.setLastYear(albumcursor.getString(2));
+                album.setFirstYear(albumInfo.mFirstYear);
+                album.setLastYear(albumInfo.mLastYear);
             }
-            if (albumcursor != null) {
-                albumcursor.close();
-            }
-            if (!mAlbums.containsKey(cursor.getLong(7))) {
-                mAlbums.put(cursor.getLong(7), album);
-            } else {
-                album = mAlbums.get(cursor.getLong(7));
+        }
+
+        Track track = Track.get(trackInfo.mTitle, album, artist);
+        track.setDuration(trackInfo.mDuration);
+        track.setAlbumPos(trackInfo.mAlbumPos);
+
+        Query query = Query.get(track.getName(), album.getName(), artist.getName(), true);
+        Result result = new Result(trackInfo.mPath, track);
+        result.setResolvedBy(userCollectionResolver);
+        result.setTrackScore(1f);
+        query.addTrackResult(result);
+
+        LocalTrack localTrack = new LocalTrack();
+        localTrack.mTrackInfo = trackInfo;
+        localTrack.mQuery = query;
+        localTrack.mResult = result;
+        mLocalTracks.put(trackInfo.mId, localTrack);
+
+        String key = TomahawkUtils.getCacheKey(query);
+        Integer refCount = mQueryRefCounts.get(key);
+        mQueryRefCounts.put(key, refCount == null ? 1 : refCount + 1);
+        if (refCount == null) {
+            addedKeys.add(key);
+            chunk.add(query);
+            if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                addQueries(chunk);
+                chunk.clear();
             }
+        }
+    }
+
+    /**
+     * Remove the track with the given MediaStore _ID from this {@link UserCollection}. Its {@link
+     * Query} is only removed if no other track is backing it anymore.
+     *
+     * @param removedKeys the cache key of the {@link Query} is put in here, if it has been removed
+     */
+    private void removeLocalTrack(long id, HashSet<String> removedKeys) {
+        LocalTrack localTrack = mLocalTracks.remove(id);
+        if (localTrack == null) {
+            return;
+        }
+        Query query = localTrack.mQuery;
+        query.removeTrackResult(localTrack.mResult);
+        String key = TomahawkUtils.getCacheKey(query);
+        Integer refCount = mQueryRefCounts.get(key);
+        if (refCount != null && refCount > 1) {
+            mQueryRefCounts.put(key, refCount - 1);
+            return;
+        }
+        mQueryRefCounts.remove(key);
+        mQueries.remove(key);
+        mSortedQueries.remove(query);
+        mQueryIndex.remove(query);
+        Artist artist = query.getArtist();
+        Album album = query.getAlbum();
+        artist.removeQuery(query);
+        album.removeQuery(query);
+        if (!album.hasLocalQueries()) {
+            artist.removeAlbum(album);
+            mAlbums.remove(localTrack.mTrackInfo.mAlbumId);
+        }
+        removedKeys.add(key);
+    }
 
-            Track track = Track.get(cursor.getString(2), album, artist);
-            track.setDuration(cursor.getLong(3));
-            track.setAlbumPos(cursor.getInt(4));
+    /**
+     * Read the complete albums table of the {@link MediaStore} at once
+     *
+     * @return a map of the {@link AlbumInfo}s of all albums, keyed by their ALBUM_ID
+     */
+    private static HashMap<Long, AlbumInfo> readAlbumInfos(ContentResolver resolver) {
+        HashMap<Long, AlbumInfo> albumInfos = new HashMap<Long, AlbumInfo>();
+        String[] projection = {MediaStore.Audio.Albums._ID, MediaStore.Audio.Albums.ALBUM_ART,
+                MediaStore.Audio.Albums.FIRST_YEAR, MediaStore.Audio.Albums.LAST_YEAR};
+        Cursor cursor = resolver.query(MediaStore.Audio.Albums.EXTERNAL_CONTENT_URI, projection,
+                null, null, null);
+        while (cursor != null && cursor.moveToNext()) {
+            AlbumInfo albumInfo = new AlbumInfo();
+            albumInfo.mAlbumArt = cursor.getString(1);
+            albumInfo.mFirstYear = cursor.getString(2);
+            albumInfo.mLastYear = cursor.getString(3);
+            albumInfos.put(cursor.getLong(0), albumInfo);
+        }
+        if (cursor != null) {
+            cursor.close();
+        }
+        return albumInfos;
+    }
 
-            Query query = Query.get(track.getName(), album.getName(), artist.getName(), true);
-            Result result = new Result(cursor.getString(1), track);
-            result.setResolvedBy(userCollectionResolver);
-            result.setTrackScore(1f);
-            query.addTrackResult(result);
+    /**
+     * Add the given chunk of freshly imported {@link Query}s to this {@link UserCollection}, its
+     * {@link QueryIndex} and their {@link Artist}s and {@link Album}s
+     */
+    private void addQueries(ArrayList<Query> queries) {
+        for (Query query : queries) {
             mQueries.put(TomahawkUtils.getCacheKey(query), query);
+            mQueryIndex.add(query);
 
+            Artist artist = query.getArtist();
+            Album album = query.getAlbum();
             artist.addQuery(query);
             artist.addAlbum(album, true);
             album.addQuery(query);
         }
-
-        if (cursor != null) {
-            cursor.close();
-        }
+        mSortedQueries.addAll(queries);
     }
 
     /**
-     * Fetch all user {@link UserPlaylist} from the app's database via our helper class {@link
-     * UserPlaylistsDataSource}
+     * Fetch the summaries of all user {@link UserPlaylist}s from the app's database via our helper
+     * class {@link UserPlaylistsDataSource}. A {@link UserPlaylist}'s tracks are only loaded, once
+     * it is requested via getUserPlaylistById.
      */
     public void updateUserPlaylists() {
         mUserPlaylists.clear();
         ArrayList<UserPlaylist> userPlayListList = mTomahawkApp.getUserPlaylistsDataSource()
-                .getLocalUserPlaylists();
+                .getLocalUserPlaylistSummaries();
         for (UserPlaylist userPlaylist : userPlayListList) {
             mUserPlaylists.put(userPlaylist.getId(), userPlaylist);
         }
         userPlayListList = mTomahawkApp.getUserPlaylistsDataSource()
-                .getHatchetUserPlaylists();
+                .getHatchetUserPlaylistSummaries();
         for (UserPlaylist userPlaylist : userPlayListList) {
             mUserPlaylists.put(userPlaylist.getId(), userPlaylist);
         }
@@ -373,13 +769,15 @@ public class UserCollection extends Collection {
     }
 
     /**
-     * Reinitalize this {@link UserCollection} and send a broadcast letting everybody know.
+     * Update this {@link UserCollection}'s {@link UserPlaylist}s and synchronize its tracks with
+     * the {@link MediaStore}. Everybody is notified through broadcasts.
      */
     @Override
     public void update() {
-        initializeCollection();
+        updateUserPlaylists();
+        updateHatchetUserPlaylists();
 
-        TomahawkApp.getContext().sendBroadcast(new Intent(COLLECTION_UPDATED));
+        syncCollection();
     }
 
     /**
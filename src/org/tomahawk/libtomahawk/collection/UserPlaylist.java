@@ -18,6 +18,7 @@
 package org.tomahawk.libtomahawk.collection;
 
 import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.utils.SortKey;
 import org.tomahawk.tomahawk_android.adapters.TomahawkBaseAdapter;
 
 import java.util.ArrayList;
@@ -34,6 +35,11 @@ public class UserPlaylist extends Playlist implements TomahawkBaseAdapter.Tomaha
 
     private boolean mIsHatchetPlaylist;
 
+    // Whether or not this is only the summary of a stored playlist, without its Queries
+    private boolean mIsSummary;
+
+    private int mTrackCount;
+
     private ArrayList<Artist> mContentHeaderArtists = new ArrayList<Artist>();
 
     /**
@@ -93,6 +99,20 @@ public class UserPlaylist extends Playlist implements TomahawkBaseAdapter.Tomaha
         return UserPlaylist.fromQueryList(id, name, null, false, queries, null);
     }
 
+    /**
+     * Create the summary of a stored {@link UserPlaylist}. It only knows how many tracks the
+     * playlist contains, its {@link org.tomahawk.libtomahawk.resolver.Query}s aren't loaded.
+     *
+     * @return a reference to the constructed {@link UserPlaylist}
+     */
+    public static UserPlaylist fromSummary(String id, String name, String currentRevision,
+            boolean isHatchetPlaylist, int trackCount) {
+        UserPlaylist pl = new UserPlaylist(id, name, currentRevision, isHatchetPlaylist);
+        pl.mIsSummary = true;
+        pl.mTrackCount = trackCount;
+        return pl;
+    }
+
     public String getId() {
         return mId;
     }
@@ -105,6 +125,21 @@ public class UserPlaylist extends Playlist implements TomahawkBaseAdapter.Tomaha
         return mIsHatchetPlaylist;
     }
 
+    /**
+     * @return whether or not this is only the summary of a stored {@link UserPlaylist}, which
+     * doesn't contain any {@link org.tomahawk.libtomahawk.resolver.Query}s
+     */
+    public boolean isSummary() {
+        return mIsSummary;
+    }
+
+    /**
+     * @return the number of tracks in this {@link UserPlaylist}, even if it is only a summary
+     */
+    public int getTrackCount() {
+        return mIsSummary ? mTrackCount : getCount();
+    }
+
     public ArrayList<Artist> getContentHeaderArtists() {
         return mContentHeaderArtists;
     }
@@ -121,6 +156,14 @@ public class UserPlaylist extends Playlist implements TomahawkBaseAdapter.Tomaha
         return super.getName();
     }
 
+    /**
+     * @return the {@link SortKey} of this object's name
+     */
+    @Override
+    public SortKey getSortKey() {
+        return super.getSortKey();
+    }
+
     /**
      * @return always null. This method needed to comply to the {@link org.tomahawk.tomahawk_android.adapters.TomahawkBaseAdapter.TomahawkListItem}
      * interface.
@@ -0,0 +1,111 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.database;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+/**
+ * This is a helper class to declare the column names of our resolution cache, which lives in its
+ * own database file. Its content can always be rebuilt by resolving again, so it's simply dropped
+ * onUpgrade without touching the user's playlists.
+ */
+public class ResultCacheSQLiteHelper extends SQLiteOpenHelper {
+
+    public static final String TAG = ResultCacheSQLiteHelper.class.getName();
+
+    public static final String TABLE_RESULTS = "results";
+
+    public static final String RESULTS_COLUMN_QUERYKEY = "querykey";
+
+    public static final String RESULTS_COLUMN_RESOLVERID = "resolverid";
+
+    public static final String RESULTS_COLUMN_URL = "url";
+
+    public static final String RESULTS_COLUMN_SCORE = "score";
+
+    public static final String RESULTS_COLUMN_BITRATE = "bitrate";
+
+    public static final String RESULTS_COLUMN_DURATION = "duration";
+
+    public static final String RESULTS_COLUMN_TIMESTAMP = "timestamp";
+
+    public static final String RESULTS_COLUMN_SIZE = "size";
+
+    public static final String RESULTS_COLUMN_LINKURL = "linkurl";
+
+    public static final String RESULTS_COLUMN_PURCHASEURL = "purchaseurl";
+
+    public static final String RESULTS_COLUMN_TRACKNAME = "trackname";
+
+    public static final String RESULTS_COLUMN_ALBUMNAME = "albumname";
+
+    public static final String RESULTS_COLUMN_ARTISTNAME = "artistname";
+
+    public static final String RESULTS_COLUMN_ALBUMPOS = "albumpos";
+
+    private static final String DATABASE_NAME = "resultcache.db";
+
+    private static final int DATABASE_VERSION = 2;
+
+    // Database creation sql statements
+    private static final String CREATE_TABLE_RESULTS =
+            "CREATE TABLE `" + TABLE_RESULTS + "` (  `"
+                    + RESULTS_COLUMN_QUERYKEY + "` TEXT NOT NULL ,  `"
+                    + RESULTS_COLUMN_RESOLVERID + "` INTEGER NOT NULL , `"
+                    + RESULTS_COLUMN_URL + "` TEXT , `"
+                    + RESULTS_COLUMN_SCORE + "` REAL , `"
+                    + RESULTS_COLUMN_BITRATE + "` INTEGER , `"
+                    + RESULTS_COLUMN_DURATION + "` INTEGER , `"
+                    + RESULTS_COLUMN_TIMESTAMP + "` INTEGER , `"
+                    + RESULTS_COLUMN_SIZE + "` INTEGER , `"
+                    + RESULTS_COLUMN_LINKURL + "` TEXT , `"
+                    + RESULTS_COLUMN_PURCHASEURL + "` TEXT , `"
+                    + RESULTS_COLUMN_TRACKNAME + "` TEXT , `"
+                    + RESULTS_COLUMN_ALBUMNAME + "` TEXT , `"
+                    + RESULTS_COLUMN_ARTISTNAME + "` TEXT , `"
+                    + RESULTS_COLUMN_ALBUMPOS + "` INTEGER ,"
+                    + " PRIMARY KEY (`" + RESULTS_COLUMN_QUERYKEY + "`, `"
+                    + RESULTS_COLUMN_RESOLVERID + "`));";
+
+    public ResultCacheSQLiteHelper(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    /**
+     * Creates the tables
+     */
+    @Override
+    public void onCreate(SQLiteDatabase database) {
+        database.execSQL(CREATE_TABLE_RESULTS);
+    }
+
+    /**
+     * Drops all tables and creates them again
+     */
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        Log.d(TAG, "Upgrading database from version " + oldVersion + " to " + newVersion
+                + ", which will destroy all cached results");
+        db.execSQL("DROP TABLE IF EXISTS `" + TABLE_RESULTS + "`;");
+        onCreate(db);
+    }
+
+}
@@ -59,6 +59,8 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
 
     public static final String TRACKS_COLUMN_ISFETCHEDVIAHATCHET = "isfetchedviahatchet";
 
+    public static final String TRACKS_COLUMN_POSITION = "position";
+
     public static final String TABLE_SEARCHHISTORY = "searchhistory";
 
     public static final String SEARCHHISTORY_COLUMN_ID = BaseColumns._ID;
@@ -67,9 +69,20 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
 
     public static final String TABLE_ALBUMS = "albums";
 
+    public static final String INDEX_TRACKS_PLAYLIST_POSITION = "tracks_playlist_position";
+
+    // Only used to drop this index when upgrading from an older database version
+    public static final String INDEX_SEARCHHISTORY_ENTRY = "searchhistory_entry";
+
+    public static final String TABLE_TRACKS_FTS = "tracks_fts";
+
+    public static final String TABLE_SEARCHHISTORY_FTS = "searchhistory_fts";
+
+    public static final String FTS_COLUMN_DOCID = "docid";
+
     private static final String DATABASE_NAME = "userplaylists.db";
 
-    private static final int DATABASE_VERSION = 7;
+    private static final int DATABASE_VERSION = 11;
 
     // Database creation sql statements
     private static final String CREATE_TABLE_USERPLAYLISTS =
@@ -88,7 +101,8 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
                     + TRACKS_COLUMN_ARTISTNAME + "` TEXT ,`"
                     + TRACKS_COLUMN_ALBUMNAME + "` TEXT ,`"
                     + TRACKS_COLUMN_RESULTHINT + "` TEXT ,`"
-                    + TRACKS_COLUMN_ISFETCHEDVIAHATCHET + "` INTEGER ,"
+                    + TRACKS_COLUMN_ISFETCHEDVIAHATCHET + "` INTEGER ,`"
+                    + TRACKS_COLUMN_POSITION + "` INTEGER ,"
                     + " FOREIGN KEY (`" + TRACKS_COLUMN_IDUSERPLAYLISTS + "`)"
                     + " REFERENCES `" + TABLE_USERPLAYLISTS + "` (`" + USERPLAYLISTS_COLUMN_ID
                     + "`));";
@@ -98,6 +112,56 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
                     + SEARCHHISTORY_COLUMN_ID + "` INTEGER PRIMARY KEY AUTOINCREMENT, `"
                     + SEARCHHISTORY_COLUMN_ENTRY + "` TEXT UNIQUE ON CONFLICT REPLACE);";
 
+    // Every playlist's tracks are looked up by the playlist's id and read in the order of their
+    // position
+    private static final String CREATE_INDEX_TRACKS_PLAYLIST_POSITION =
+            "CREATE INDEX IF NOT EXISTS `" + INDEX_TRACKS_PLAYLIST_POSITION + "` ON `"
+                    + TABLE_TRACKS + "` (`" + TRACKS_COLUMN_IDUSERPLAYLISTS + "`, `"
+                    + TRACKS_COLUMN_POSITION + "`);";
+
+    // Full-text indexes of the track, artist and album names of all stored tracks and of the search
+    // history. FTS4 is only available on newer devices, so we stick to FTS3. The docid of every
+    // row is the id of the row it mirrors.
+    private static final String CREATE_TABLE_TRACKS_FTS =
+            "CREATE VIRTUAL TABLE `" + TABLE_TRACKS_FTS + "` USING fts3(`"
+                    + TRACKS_COLUMN_TRACKNAME + "`, `"
+                    + TRACKS_COLUMN_ARTISTNAME + "`, `"
+                    + TRACKS_COLUMN_ALBUMNAME + "`);";
+
+    private static final String CREATE_TABLE_SEARCHHISTORY_FTS =
+            "CREATE VIRTUAL TABLE `" + TABLE_SEARCHHISTORY_FTS + "` USING fts3(`"
+                    + SEARCHHISTORY_COLUMN_ENTRY + "`);";
+
+    // The full-text indexes are kept in sync by triggers. Stored tracks are never renamed, they
+    // are only inserted and deleted. Note that rows which are replaced ON CONFLICT don't fire the
+    // delete triggers, so they have to be deleted explicitly.
+    private static final String CREATE_TRIGGER_TRACKS_FTS_INSERT =
+            "CREATE TRIGGER IF NOT EXISTS `" + TABLE_TRACKS_FTS + "_insert` AFTER INSERT ON `"
+                    + TABLE_TRACKS + "` BEGIN INSERT INTO `" + TABLE_TRACKS_FTS + "` (`"
+                    + FTS_COLUMN_DOCID + "`, `" + TRACKS_COLUMN_TRACKNAME + "`, `"
+                    + TRACKS_COLUMN_ARTISTNAME + "`, `" + TRACKS_COLUMN_ALBUMNAME
+                    + "`) VALUES (new.`" + TRACKS_COLUMN_ID + "`, new.`" + TRACKS_COLUMN_TRACKNAME
+                    + "`, new.`" + TRACKS_COLUMN_ARTISTNAME + "`, new.`" + TRACKS_COLUMN_ALBUMNAME
+                    + "`); END;";
+
+    private static final String CREATE_TRIGGER_TRACKS_FTS_DELETE =
+            "CREATE TRIGGER IF NOT EXISTS `" + TABLE_TRACKS_FTS + "_delete` AFTER DELETE ON `"
+                    + TABLE_TRACKS + "` BEGIN DELETE FROM `" + TABLE_TRACKS_FTS + "` WHERE `"
+                    + FTS_COLUMN_DOCID + "` = old.`" + TRACKS_COLUMN_ID + "`; END;";
+
+    private static final String CREATE_TRIGGER_SEARCHHISTORY_FTS_INSERT =
+            "CREATE TRIGGER IF NOT EXISTS `" + TABLE_SEARCHHISTORY_FTS + "_insert` AFTER INSERT"
+                    + " ON `" + TABLE_SEARCHHISTORY + "` BEGIN INSERT INTO `"
+                    + TABLE_SEARCHHISTORY_FTS + "` (`" + FTS_COLUMN_DOCID + "`, `"
+                    + SEARCHHISTORY_COLUMN_ENTRY + "`) VALUES (new.`" + SEARCHHISTORY_COLUMN_ID
+                    + "`, new.`" + SEARCHHISTORY_COLUMN_ENTRY + "`); END;";
+
+    private static final String CREATE_TRIGGER_SEARCHHISTORY_FTS_DELETE =
+            "CREATE TRIGGER IF NOT EXISTS `" + TABLE_SEARCHHISTORY_FTS + "_delete` AFTER DELETE"
+                    + " ON `" + TABLE_SEARCHHISTORY + "` BEGIN DELETE FROM `"
+                    + TABLE_SEARCHHISTORY_FTS + "` WHERE `" + FTS_COLUMN_DOCID + "` = old.`"
+                    + SEARCHHISTORY_COLUMN_ID + "`; END;";
+
     public TomahawkSQLiteHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
     }
@@ -110,19 +174,66 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
         database.execSQL(CREATE_TABLE_USERPLAYLISTS);
         database.execSQL(CREATE_TABLE_TRACKS);
         database.execSQL(CREATE_TABLE_SEARCHHISTORY);
+        database.execSQL(CREATE_INDEX_TRACKS_PLAYLIST_POSITION);
+        createFullTextIndexes(database);
+    }
+
+    /**
+     * Creates the full-text indexes and their triggers and fills them with the content of the
+     * tables they mirror
+     */
+    private void createFullTextIndexes(SQLiteDatabase db) {
+        db.execSQL(CREATE_TABLE_TRACKS_FTS);
+        db.execSQL(CREATE_TABLE_SEARCHHISTORY_FTS);
+        db.execSQL(CREATE_TRIGGER_TRACKS_FTS_INSERT);
+        db.execSQL(CREATE_TRIGGER_TRACKS_FTS_DELETE);
+        db.execSQL(CREATE_TRIGGER_SEARCHHISTORY_FTS_INSERT);
+        db.execSQL(CREATE_TRIGGER_SEARCHHISTORY_FTS_DELETE);
+        db.execSQL("INSERT INTO `" + TABLE_TRACKS_FTS + "` (`" + FTS_COLUMN_DOCID + "`, `"
+                + TRACKS_COLUMN_TRACKNAME + "`, `" + TRACKS_COLUMN_ARTISTNAME + "`, `"
+                + TRACKS_COLUMN_ALBUMNAME + "`) SELECT `" + TRACKS_COLUMN_ID + "`, `"
+                + TRACKS_COLUMN_TRACKNAME + "`, `" + TRACKS_COLUMN_ARTISTNAME + "`, `"
+                + TRACKS_COLUMN_ALBUMNAME + "` FROM `" + TABLE_TRACKS + "`;");
+        db.execSQL("INSERT INTO `" + TABLE_SEARCHHISTORY_FTS + "` (`" + FTS_COLUMN_DOCID + "`, `"
+                + SEARCHHISTORY_COLUMN_ENTRY + "`) SELECT `" + SEARCHHISTORY_COLUMN_ID + "`, `"
+                + SEARCHHISTORY_COLUMN_ENTRY + "` FROM `" + TABLE_SEARCHHISTORY + "`;");
     }
 
     /**
-     * Drops all tables and creates them again
+     * Migrates the tables step by step, if we know how to. Otherwise drops all tables and creates
+     * them again
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion >= 7) {
+            Log.d(TAG, "Migrating database from version " + oldVersion + " to " + newVersion);
+            if (oldVersion < 8) {
+                // Tracks have been ordered by their id so far
+                db.execSQL("ALTER TABLE `" + TABLE_TRACKS + "` ADD COLUMN `"
+                        + TRACKS_COLUMN_POSITION + "` INTEGER;");
+                db.execSQL("UPDATE `" + TABLE_TRACKS + "` SET `" + TRACKS_COLUMN_POSITION
+                        + "` = `" + TRACKS_COLUMN_ID + "`;");
+            }
+            if (oldVersion < 9) {
+                db.execSQL(CREATE_INDEX_TRACKS_PLAYLIST_POSITION);
+            }
+            if (oldVersion < 10) {
+                createFullTextIndexes(db);
+            }
+            if (oldVersion < 11) {
+                // Prefix lookups in the search history are answered by its full-text index
+                db.execSQL("DROP INDEX IF EXISTS `" + INDEX_SEARCHHISTORY_ENTRY + "`;");
+            }
+            return;
+        }
         Log.d(TAG, "Upgrading database from version " + oldVersion + " to " + newVersion
                 + ", which will destroy all old data");
         db.execSQL("DROP TABLE IF EXISTS `" + TABLE_TRACKS + "`;");
         db.execSQL("DROP TABLE IF EXISTS `" + TABLE_ALBUMS + "`;");
         db.execSQL("DROP TABLE IF EXISTS `" + TABLE_USERPLAYLISTS + "`;");
         db.execSQL("DROP TABLE IF EXISTS `" + TABLE_SEARCHHISTORY + "`;");
+        db.execSQL("DROP TABLE IF EXISTS `" + TABLE_TRACKS_FTS + "`;");
+        db.execSQL("DROP TABLE IF EXISTS `" + TABLE_SEARCHHISTORY_FTS + "`;");
         onCreate(db);
     }
 
@@ -25,18 +25,36 @@ import org.tomahawk.libtomahawk.resolver.Query;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.Log;
 
 import java.util.ArrayList;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class provides a way of storing user created {@link org.tomahawk.libtomahawk.collection.UserPlaylist}s
- * in the database
+ * in the database.
+ *
+ * All writes are done by a single background writer thread, in the order in which they have been
+ * requested. They return immediately and can be given a callback, which is run on the main thread
+ * once the write has been committed. Reads are done on the calling thread. Since the database runs
+ * in write-ahead logging mode, they don't have to wait for a running write.
  */
 public class UserPlaylistsDataSource {
 
+    private final static String TAG = UserPlaylistsDataSource.class.getName();
+
     public static final String CACHED_PLAYLIST_NAME = "Last used playlist";
 
     public static final String CACHED_PLAYLIST_ID = "cached_playlist_id";
@@ -45,6 +63,16 @@ public class UserPlaylistsDataSource {
 
     public static final int TRUE = 1;
 
+    // Minimum time between two writes of the cached playlist. Saves requested in between are
+    // coalesced, so that only the latest state is written
+    private static final long CACHED_PLAYLIST_STORE_INTERVAL = 2000;
+
+    // Maximum time flushCachedUserPlaylist() blocks the calling thread
+    private static final long FLUSH_TIMEOUT = 3000;
+
+    // Writes which had to wait longer than this for the database lock are logged as warnings
+    private static final long LOCK_WAIT_WARNING_THRESHOLD = 100;
+
     // Database fields
     private SQLiteDatabase mDatabase;
 
@@ -62,41 +90,317 @@ public class UserPlaylistsDataSource {
             TomahawkSQLiteHelper.TRACKS_COLUMN_ARTISTNAME,
             TomahawkSQLiteHelper.TRACKS_COLUMN_ALBUMNAME,
             TomahawkSQLiteHelper.TRACKS_COLUMN_RESULTHINT,
-            TomahawkSQLiteHelper.TRACKS_COLUMN_ISFETCHEDVIAHATCHET};
+            TomahawkSQLiteHelper.TRACKS_COLUMN_ISFETCHEDVIAHATCHET,
+            TomahawkSQLiteHelper.TRACKS_COLUMN_POSITION};
 
     private String[] mAllSearchHistoryColumns = {TomahawkSQLiteHelper.SEARCHHISTORY_COLUMN_ID,
             TomahawkSQLiteHelper.SEARCHHISTORY_COLUMN_ENTRY};
 
-    private ConcurrentHashMap<String, ConcurrentHashMap<Query, Long>> mPlaylistQueryIdMap
-            = new ConcurrentHashMap<String, ConcurrentHashMap<Query, Long>>();
+    // The rows of every playlist as they are currently stored in the database, keyed by the
+    // playlist's id. They only hold the rows' keys, so that no Query is kept alive by them. Only
+    // ever accessed from the writer thread
+    private HashMap<String, ArrayList<StoredEntry>> mStoredEntries
+            = new HashMap<String, ArrayList<StoredEntry>>();
+
+    // Precompiled statements. Only ever used on the writer thread
+    private SQLiteStatement mInsertTrackStatement;
+
+    private SQLiteStatement mUpdateTrackStatement;
+
+    private SQLiteStatement mDeleteTrackStatement;
+
+    private HandlerThread mWriterHandlerThread;
+
+    private Handler mWriterHandler;
+
+    private Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private final Object mPendingCachedUserPlaylistLock = new Object();
+
+    private UserPlaylist mPendingCachedUserPlaylist;
+
+    private long mLastCachedUserPlaylistStoreTime;
+
+    // Instrumentation of the writer thread. Only ever accessed from the writer thread
+    private int mWriteCount;
+
+    private long mTotalQueueWaitTime;
+
+    private long mTotalLockWaitTime;
+
+    private Runnable mStoreCachedUserPlaylistRunnable = new Runnable() {
+        /*
+         * (non-Javadoc)
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+            UserPlaylist userPlaylist;
+            synchronized (mPendingCachedUserPlaylistLock) {
+                userPlaylist = mPendingCachedUserPlaylist;
+                mPendingCachedUserPlaylist = null;
+            }
+            if (userPlaylist != null) {
+                try {
+                    doStoreUserPlaylist(userPlaylist);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "storeCachedUserPlaylist: " + e.getClass() + ": "
+                            + e.getLocalizedMessage());
+                }
+                synchronized (mPendingCachedUserPlaylistLock) {
+                    mLastCachedUserPlaylistStoreTime = System.currentTimeMillis();
+                }
+            }
+        }
+    };
+
+    /**
+     * A row of the tracks table, which belongs to a stored playlist
+     */
+    private static class StoredEntry {
+
+        private long mRowId;
+
+        // Identifies the track this row has been stored for, see getEntryKey()
+        private String mKey;
+
+        private String mResultHint;
+
+        private long mPosition;
+    }
+
+    /**
+     * A write which is done on the writer thread
+     */
+    private abstract class Write implements Runnable {
+
+        private final String mName;
+
+        private final Runnable mCallback;
+
+        private final long mRequestTime = System.currentTimeMillis();
+
+        private Write(String name, Runnable callback) {
+            mName = name;
+            mCallback = callback;
+        }
+
+        protected abstract void write();
+
+        /*
+         * (non-Javadoc)
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+            long startTime = System.currentTimeMillis();
+            mTotalQueueWaitTime += startTime - mRequestTime;
+            mWriteCount++;
+            // Whatever a failed write throws, it mustn't kill the writer thread
+            try {
+                write();
+            } catch (RuntimeException e) {
+                Log.e(TAG, mName + ": " + e.getClass() + ": " + e.getLocalizedMessage());
+            }
+            Log.d(TAG, mName + " - waited " + (startTime - mRequestTime) + "ms in queue, took "
+                    + (System.currentTimeMillis() - startTime) + "ms");
+            if (mCallback != null) {
+                mMainHandler.post(mCallback);
+            }
+        }
+    }
 
     public UserPlaylistsDataSource(Context context) {
         mDbHelper = new TomahawkSQLiteHelper(context);
+        mWriterHandlerThread = new HandlerThread("UserPlaylistsWriter",
+                android.os.Process.THREAD_PRIORITY_BACKGROUND);
+        mWriterHandlerThread.start();
+        mWriterHandler = new Handler(mWriterHandlerThread.getLooper());
     }
 
     /**
      * Always try to close the {@link TomahawkSQLiteHelper}, in case it is still open for whatever
-     * reason. Then get a reference to our database.
+     * reason. Then get a reference to our database and enable write-ahead logging, so that reads
+     * can run concurrently to the writer thread.
      */
-    public void open() throws SQLException {
+    public synchronized void open() throws SQLException {
+        releaseStatements();
         mDbHelper.close();
         mDatabase = mDbHelper.getWritableDatabase();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            if (!mDatabase.enableWriteAheadLogging()) {
+                Log.d(TAG, "open - couldn't enable write-ahead logging");
+            }
+        }
+        mStoredEntries.clear();
+        mInsertTrackStatement = mDatabase.compileStatement("INSERT INTO `"
+                + TomahawkSQLiteHelper.TABLE_TRACKS + "` (`"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS + "`, `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_TRACKNAME + "`, `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_ARTISTNAME + "`, `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_ALBUMNAME + "`, `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_RESULTHINT + "`, `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_ISFETCHEDVIAHATCHET + "`, `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_POSITION + "`)"
+                + " VALUES (?, ?, ?, ?, ?, ?, ?);");
+        mUpdateTrackStatement = mDatabase.compileStatement("UPDATE `"
+                + TomahawkSQLiteHelper.TABLE_TRACKS + "` SET `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_POSITION + "` = ?, `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_RESULTHINT + "` = ? WHERE `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_ID + "` = ?;");
+        mDeleteTrackStatement = mDatabase.compileStatement("DELETE FROM `"
+                + TomahawkSQLiteHelper.TABLE_TRACKS + "` WHERE `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_ID + "` = ?;");
     }
 
     /**
-     * Close the {@link TomahawkSQLiteHelper}
+     * Close the {@link TomahawkSQLiteHelper}, after every pending write has been done
      */
     public void close() {
-        mDbHelper.close();
+        mWriterHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (UserPlaylistsDataSource.this) {
+                    releaseStatements();
+                    mDbHelper.close();
+                }
+            }
+        });
+    }
+
+    private void releaseStatements() {
+        if (mInsertTrackStatement != null) {
+            mInsertTrackStatement.close();
+            mInsertTrackStatement = null;
+        }
+        if (mUpdateTrackStatement != null) {
+            mUpdateTrackStatement.close();
+            mUpdateTrackStatement = null;
+        }
+        if (mDeleteTrackStatement != null) {
+            mDeleteTrackStatement.close();
+            mDeleteTrackStatement = null;
+        }
+    }
+
+    /**
+     * Begin a transaction on the writer thread and keep track of how long we had to wait for the
+     * database lock
+     */
+    private void beginTransaction(String name) {
+        long startTime = System.currentTimeMillis();
+        mDatabase.beginTransaction();
+        long lockWaitTime = System.currentTimeMillis() - startTime;
+        mTotalLockWaitTime += lockWaitTime;
+        if (lockWaitTime > LOCK_WAIT_WARNING_THRESHOLD) {
+            Log.w(TAG, name + " - waited " + lockWaitTime + "ms for the database lock ("
+                    + mTotalLockWaitTime + "ms in total, " + mTotalQueueWaitTime
+                    + "ms in queue in total, " + mWriteCount + " writes)");
+        }
+    }
+
+    /**
+     * Run the given callback on the main thread, once every write which has been requested so far
+     * is done
+     */
+    public void runAfterWrites(Runnable callback) {
+        mWriterHandler.post(new Write("runAfterWrites", callback) {
+            @Override
+            protected void write() {
+            }
+        });
+    }
+
+    /**
+     * Store the given cached {@link UserPlaylist} on the writer thread. The first save is written
+     * right away, further saves within CACHED_PLAYLIST_STORE_INTERVAL are coalesced and only the
+     * latest {@link UserPlaylist} is written.
+     */
+    public void storeCachedUserPlaylist(UserPlaylist playlist) {
+        UserPlaylist copy = copyUserPlaylist(playlist);
+        synchronized (mPendingCachedUserPlaylistLock) {
+            boolean alreadyScheduled = mPendingCachedUserPlaylist != null;
+            mPendingCachedUserPlaylist = copy;
+            if (!alreadyScheduled) {
+                long delay = mLastCachedUserPlaylistStoreTime + CACHED_PLAYLIST_STORE_INTERVAL
+                        - System.currentTimeMillis();
+                mWriterHandler.postDelayed(mStoreCachedUserPlaylistRunnable, Math.max(0, delay));
+            }
+        }
+    }
+
+    /**
+     * Write the cached {@link UserPlaylist}, which is waiting to be stored, right away and block
+     * until it has been written or FLUSH_TIMEOUT has passed. Called when the app goes away, so
+     * that the latest save isn't lost with the pending delayed write.
+     */
+    public void flushCachedUserPlaylist() {
+        final CountDownLatch latch = new CountDownLatch(1);
+        mWriterHandler.removeCallbacks(mStoreCachedUserPlaylistRunnable);
+        mWriterHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mStoreCachedUserPlaylistRunnable.run();
+                latch.countDown();
+            }
+        });
+        try {
+            if (!latch.await(FLUSH_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "flushCachedUserPlaylist - timed out after " + FLUSH_TIMEOUT + "ms");
+            }
+        } catch (InterruptedException e) {
+            Log.e(TAG, "flushCachedUserPlaylist: " + e.getClass() + ": "
+                    + e.getLocalizedMessage());
+        }
     }
 
     /**
-     * Store the given {@link Playlist}
+     * Store the given {@link Playlist} on the writer thread
      *
      * @param playlist the given {@link Playlist}
      * @return String containing the stored {@link Playlist}'s id
      */
     public String storeUserPlaylist(UserPlaylist playlist) {
+        return storeUserPlaylist(playlist, null);
+    }
+
+    /**
+     * Store the given {@link Playlist} on the writer thread
+     *
+     * @param playlist the given {@link Playlist}
+     * @param callback {@link Runnable} to run on the main thread after the {@link Playlist} has
+     *                 been stored. May be null.
+     * @return String containing the stored {@link Playlist}'s id
+     */
+    public String storeUserPlaylist(UserPlaylist playlist, Runnable callback) {
+        final UserPlaylist copy = copyUserPlaylist(playlist);
+        mWriterHandler.post(new Write("storeUserPlaylist", callback) {
+            @Override
+            protected void write() {
+                doStoreUserPlaylist(copy);
+            }
+        });
+        return copy.getId();
+    }
+
+    /**
+     * Take a copy of the given {@link UserPlaylist}, so that the caller can go on modifying it
+     * while it is being stored
+     */
+    private static UserPlaylist copyUserPlaylist(UserPlaylist playlist) {
+        return UserPlaylist.fromQueryList(playlist.getId(), playlist.getName(),
+                playlist.getCurrentRevision(), playlist.isHatchetPlaylist(),
+                playlist.getQueries(), playlist.getCurrentQuery());
+    }
+
+    /**
+     * Store the given {@link Playlist}. Only the difference to the rows it has been stored as
+     * before is written: rows of removed {@link Query}s are deleted, new {@link Query}s are
+     * inserted and the rows of moved {@link Query}s get their new position. Must only be called on
+     * the writer thread.
+     */
+    private void doStoreUserPlaylist(UserPlaylist playlist) {
+        long startTime = System.currentTimeMillis();
         ContentValues values = new ContentValues();
         values.put(TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_NAME, playlist.getName());
         values.put(TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_CURRENTTRACKINDEX,
@@ -110,35 +414,162 @@ public class UserPlaylistsDataSource {
             values.put(TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ISHATCHETPLAYLIST, TRUE);
         }
         values.put(TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID, insertId);
-        mDatabase.beginTransaction();
-        mDatabase.insertWithOnConflict(TomahawkSQLiteHelper.TABLE_USERPLAYLISTS, null, values,
-                SQLiteDatabase.CONFLICT_REPLACE);
-        // Delete every already associated Track entry
-        mDatabase.delete(TomahawkSQLiteHelper.TABLE_TRACKS,
-                TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS + " = \"" + insertId + "\"",
-                null);
-        // Store every single Track in the database and store the relationship
-        // by storing the playlists's id with it
-        for (Query query : playlist.getQueries()) {
-            values.clear();
-            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS, insertId);
-            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_TRACKNAME,
-                    query.getName());
-            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_ARTISTNAME,
-                    query.getArtist().getName());
-            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_ALBUMNAME,
-                    query.getAlbum().getName());
-            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_RESULTHINT, query.updateResultHint());
-            if (query.isFetchedViaHatchet()) {
-                values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_ISFETCHEDVIAHATCHET, TRUE);
+        ArrayList<Query> queries = playlist.getQueries();
+        ArrayList<StoredEntry> storedEntries = new ArrayList<StoredEntry>(queries.size());
+        int insertedCount = 0;
+        int updatedCount = 0;
+        int deletedCount = 0;
+        boolean successful = false;
+        beginTransaction("storeUserPlaylist");
+        try {
+            mDatabase.insertWithOnConflict(TomahawkSQLiteHelper.TABLE_USERPLAYLISTS, null, values,
+                    SQLiteDatabase.CONFLICT_REPLACE);
+            // Collect the rows we have stored this playlist as before, so that we can reuse them
+            HashMap<String, LinkedList<StoredEntry>> oldEntriesMap
+                    = new HashMap<String, LinkedList<StoredEntry>>();
+            for (StoredEntry oldEntry : getStoredEntries(insertId)) {
+                LinkedList<StoredEntry> entries = oldEntriesMap.get(oldEntry.mKey);
+                if (entries == null) {
+                    entries = new LinkedList<StoredEntry>();
+                    oldEntriesMap.put(oldEntry.mKey, entries);
+                }
+                entries.add(oldEntry);
+            }
+            for (int i = 0; i < queries.size(); i++) {
+                Query query = queries.get(i);
+                String resultHint = query.updateResultHint();
+                String key = getEntryKey(query);
+                LinkedList<StoredEntry> entries = oldEntriesMap.get(key);
+                StoredEntry entry = entries != null ? entries.poll() : null;
+                if (entry == null) {
+                    entry = new StoredEntry();
+                    entry.mKey = key;
+                    entry.mResultHint = resultHint;
+                    entry.mPosition = i;
+                    entry.mRowId = insertTrack(insertId, query, resultHint, i);
+                    insertedCount++;
+                } else if (entry.mPosition != i || !equals(entry.mResultHint, resultHint)) {
+                    entry.mResultHint = resultHint;
+                    entry.mPosition = i;
+                    mUpdateTrackStatement.clearBindings();
+                    mUpdateTrackStatement.bindLong(1, i);
+                    bindStringOrNull(mUpdateTrackStatement, 2, resultHint);
+                    mUpdateTrackStatement.bindLong(3, entry.mRowId);
+                    mUpdateTrackStatement.execute();
+                    updatedCount++;
+                }
+                storedEntries.add(entry);
+            }
+            // Every row that hasn't been reused belongs to a Query that has been removed
+            for (LinkedList<StoredEntry> entries : oldEntriesMap.values()) {
+                for (StoredEntry entry : entries) {
+                    deleteTrack(entry.mRowId);
+                    deletedCount++;
+                }
+            }
+            mDatabase.setTransactionSuccessful();
+            successful = true;
+        } finally {
+            mDatabase.endTransaction();
+            if (successful) {
+                mStoredEntries.put(insertId, storedEntries);
             } else {
-                values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_ISFETCHEDVIAHATCHET, FALSE);
+                // The stored rows are unknown now, they have to be read again on the next store
+                mStoredEntries.remove(insertId);
+            }
+        }
+        Log.d(TAG, "storeUserPlaylist - stored " + queries.size() + " tracks of playlist "
+                + insertId + " (" + insertedCount + " inserted, " + updatedCount + " updated, "
+                + deletedCount + " deleted) in " + (System.currentTimeMillis() - startTime)
+                + "ms");
+    }
+
+    /**
+     * Get the rows the playlist with the given id is currently stored as. If we don't know them
+     * yet, they are read from the database. Must only be called on the writer thread.
+     */
+    private ArrayList<StoredEntry> getStoredEntries(String playlistId) {
+        ArrayList<StoredEntry> storedEntries = mStoredEntries.get(playlistId);
+        if (storedEntries == null) {
+            storedEntries = new ArrayList<StoredEntry>();
+            Cursor tracksCursor = mDatabase.query(TomahawkSQLiteHelper.TABLE_TRACKS,
+                    mAllTracksColumns, TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS + " = ?",
+                    new String[]{playlistId}, null, null,
+                    TomahawkSQLiteHelper.TRACKS_COLUMN_POSITION + ", "
+                            + TomahawkSQLiteHelper.TRACKS_COLUMN_ID);
+            try {
+                while (tracksCursor.moveToNext()) {
+                    StoredEntry entry = new StoredEntry();
+                    entry.mRowId = tracksCursor.getLong(0);
+                    entry.mResultHint = tracksCursor.getString(5);
+                    entry.mKey = getEntryKey(tracksCursor.getString(2),
+                            tracksCursor.getString(4), tracksCursor.getString(3),
+                            tracksCursor.getInt(6) == TRUE);
+                    entry.mPosition = tracksCursor.getLong(7);
+                    storedEntries.add(entry);
+                }
+            } finally {
+                tracksCursor.close();
             }
-            mDatabase.insert(TomahawkSQLiteHelper.TABLE_TRACKS, null, values);
+            mStoredEntries.put(playlistId, storedEntries);
         }
-        mDatabase.setTransactionSuccessful();
-        mDatabase.endTransaction();
-        return insertId;
+        return storedEntries;
+    }
+
+    /**
+     * @return the key which identifies a row of the tracks table by the columns, which can't be
+     * updated in place
+     */
+    private static String getEntryKey(Query query) {
+        return getEntryKey(query.getName(), query.getAlbum().getName(),
+                query.getArtist().getName(), query.isFetchedViaHatchet());
+    }
+
+    private static String getEntryKey(String trackName, String albumName, String artistName,
+            boolean isFetchedViaHatchet) {
+        // Unlike the cache keys, this is case-sensitive, because the names aren't updated in place
+        return trackName + "\t\t" + albumName + "\t\t" + artistName + "\t\t"
+                + isFetchedViaHatchet;
+    }
+
+    /**
+     * Insert a row for the given {@link Query} into the tracks table by using the precompiled
+     * insert statement
+     *
+     * @return the row id of the inserted row
+     */
+    private long insertTrack(String playlistId, Query query, String resultHint, long position) {
+        mInsertTrackStatement.clearBindings();
+        mInsertTrackStatement.bindString(1, playlistId);
+        bindStringOrNull(mInsertTrackStatement, 2, query.getName());
+        bindStringOrNull(mInsertTrackStatement, 3, query.getArtist().getName());
+        bindStringOrNull(mInsertTrackStatement, 4, query.getAlbum().getName());
+        bindStringOrNull(mInsertTrackStatement, 5, resultHint);
+        mInsertTrackStatement.bindLong(6, query.isFetchedViaHatchet() ? TRUE : FALSE);
+        mInsertTrackStatement.bindLong(7, position);
+        return mInsertTrackStatement.executeInsert();
+    }
+
+    /**
+     * Delete the row with the given id from the tracks table by using the precompiled delete
+     * statement
+     */
+    private void deleteTrack(long rowId) {
+        mDeleteTrackStatement.clearBindings();
+        mDeleteTrackStatement.bindLong(1, rowId);
+        mDeleteTrackStatement.execute();
+    }
+
+    private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value != null) {
+            statement.bindString(index, value);
+        } else {
+            statement.bindNull(index);
+        }
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
     }
 
     /**
@@ -149,35 +580,117 @@ public class UserPlaylistsDataSource {
         return getUserPlaylist(CACHED_PLAYLIST_ID);
     }
 
-    public ArrayList<UserPlaylist> getLocalUserPlaylists() {
-        return getUserPlaylists(true);
+    /**
+     * @return the summaries of all stored local {@link UserPlaylist}s
+     */
+    public ArrayList<UserPlaylist> getLocalUserPlaylistSummaries() {
+        return getUserPlaylistSummaries(
+                TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ISHATCHETPLAYLIST + " = ? AND "
+                        + TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID + " != ?",
+                new String[]{String.valueOf(FALSE), CACHED_PLAYLIST_ID});
     }
 
-    public ArrayList<UserPlaylist> getHatchetUserPlaylists() {
-        return getUserPlaylists(false);
+    /**
+     * @return the summaries of all stored {@link UserPlaylist}s which have been fetched via Hatchet
+     */
+    public ArrayList<UserPlaylist> getHatchetUserPlaylistSummaries() {
+        return getUserPlaylistSummaries(
+                TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ISHATCHETPLAYLIST + " = ? AND "
+                        + TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID + " != ?",
+                new String[]{String.valueOf(TRUE), CACHED_PLAYLIST_ID});
     }
 
     /**
-     * @return every stored {@link org.tomahawk.libtomahawk.collection.UserPlaylist} in the database
+     * @return the summary of the stored {@link UserPlaylist} with the given id or null, if there is
+     * no such {@link UserPlaylist}
      */
-    private ArrayList<UserPlaylist> getUserPlaylists(boolean onlyLocalPlaylists) {
-        ArrayList<UserPlaylist> playListList = new ArrayList<UserPlaylist>();
-        Cursor userplaylistsCursor = mDatabase
-                .query(TomahawkSQLiteHelper.TABLE_USERPLAYLISTS, mAllUserPlaylistsColumns,
-                        TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ISHATCHETPLAYLIST + " = "
-                                + (onlyLocalPlaylists ? FALSE
-                                : TRUE),
-                        null, null, null, null);
-        userplaylistsCursor.moveToFirst();
-        while (!userplaylistsCursor.isAfterLast()) {
-            if (!userplaylistsCursor.getString(0).equals(CACHED_PLAYLIST_ID)) {
-                UserPlaylist userPlaylist = getUserPlaylist(userplaylistsCursor.getString(0));
-                playListList.add(userPlaylist);
+    public UserPlaylist getUserPlaylistSummary(String playlistId) {
+        ArrayList<UserPlaylist> summaries = getUserPlaylistSummaries(
+                TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID + " = ?", new String[]{playlistId});
+        return summaries.isEmpty() ? null : summaries.get(0);
+    }
+
+    /**
+     * Read the summaries (id, name, track count and revision) of all stored {@link UserPlaylist}s
+     * matching the given selection. Their tracks are only counted, so that no {@link Query} has to
+     * be constructed.
+     */
+    private ArrayList<UserPlaylist> getUserPlaylistSummaries(String selection,
+            String[] selectionArgs) {
+        ArrayList<UserPlaylist> summaries = new ArrayList<UserPlaylist>();
+        Cursor cursor = mDatabase.rawQuery("SELECT `"
+                + TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID + "`, `"
+                + TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ISHATCHETPLAYLIST + "`, `"
+                + TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_NAME + "`, `"
+                + TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_CURRENTREVISION + "`,"
+                + " (SELECT COUNT(*) FROM `" + TomahawkSQLiteHelper.TABLE_TRACKS + "` WHERE `"
+                + TomahawkSQLiteHelper.TABLE_TRACKS + "`.`"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS + "` = `"
+                + TomahawkSQLiteHelper.TABLE_USERPLAYLISTS + "`.`"
+                + TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID + "`)"
+                + " FROM `" + TomahawkSQLiteHelper.TABLE_USERPLAYLISTS + "` WHERE " + selection,
+                selectionArgs);
+        try {
+            while (cursor.moveToNext()) {
+                summaries.add(UserPlaylist.fromSummary(cursor.getString(0), cursor.getString(2),
+                        cursor.getString(3), cursor.getInt(1) == TRUE, cursor.getInt(4)));
             }
-            userplaylistsCursor.moveToNext();
+        } finally {
+            cursor.close();
         }
-        userplaylistsCursor.close();
-        return playListList;
+        return summaries;
+    }
+
+    /**
+     * Read one page of the tracks of the stored {@link UserPlaylist} with the given id. Only the
+     * {@link Query}s of the requested window are constructed.
+     *
+     * @param playlistId the id of the {@link UserPlaylist}
+     * @param offset     the position within the {@link UserPlaylist} of the first {@link Query} to
+     *                   read
+     * @param limit      the maximum number of {@link Query}s to read
+     * @return the {@link Query}s of the requested window in the order of the {@link UserPlaylist}
+     */
+    public ArrayList<Query> getUserPlaylistQueries(String playlistId, int offset, int limit) {
+        ArrayList<Query> queries = new ArrayList<Query>();
+        Cursor tracksCursor = mDatabase.query(TomahawkSQLiteHelper.TABLE_TRACKS, mAllTracksColumns,
+                TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS + " = ?",
+                new String[]{playlistId}, null, null,
+                TomahawkSQLiteHelper.TRACKS_COLUMN_POSITION + ", "
+                        + TomahawkSQLiteHelper.TRACKS_COLUMN_ID, offset + ", " + limit);
+        try {
+            while (tracksCursor.moveToNext()) {
+                queries.add(Query.get(tracksCursor.getString(2), tracksCursor.getString(4),
+                        tracksCursor.getString(3), tracksCursor.getString(5), false,
+                        tracksCursor.getInt(6) == TRUE));
+            }
+        } finally {
+            tracksCursor.close();
+        }
+        return queries;
+    }
+
+    /**
+     * @param playlistId the id of the {@link UserPlaylist}
+     * @param limit      the maximum number of artist names to read
+     * @return the names of the artists with the most tracks in the stored {@link UserPlaylist}
+     * with the given id, the one with the most tracks first
+     */
+    public ArrayList<String> getUserPlaylistArtistNames(String playlistId, int limit) {
+        ArrayList<String> artistNames = new ArrayList<String>();
+        Cursor cursor = mDatabase.query(TomahawkSQLiteHelper.TABLE_TRACKS,
+                new String[]{TomahawkSQLiteHelper.TRACKS_COLUMN_ARTISTNAME},
+                TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS + " = ?",
+                new String[]{playlistId}, TomahawkSQLiteHelper.TRACKS_COLUMN_ARTISTNAME, null,
+                "COUNT(*) DESC", String.valueOf(limit));
+        try {
+            while (cursor.moveToNext()) {
+                artistNames.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return artistNames;
     }
 
     /**
@@ -189,14 +702,15 @@ public class UserPlaylistsDataSource {
         ArrayList<Query> queries;
         Cursor userplaylistsCursor = mDatabase
                 .query(TomahawkSQLiteHelper.TABLE_USERPLAYLISTS, mAllUserPlaylistsColumns,
-                        TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID + " = \"" + playlistId + "\"",
-                        null, null, null, null);
+                        TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID + " = ?",
+                        new String[]{playlistId}, null, null, null);
         if (userplaylistsCursor.moveToFirst()) {
-            ConcurrentHashMap<Query, Long> queryIdMap = new ConcurrentHashMap<Query, Long>();
             Cursor tracksCursor = mDatabase
                     .query(TomahawkSQLiteHelper.TABLE_TRACKS, mAllTracksColumns,
-                            TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS + " = \""
-                                    + playlistId + "\"", null, null, null, null);
+                            TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS + " = ?",
+                            new String[]{playlistId}, null, null,
+                            TomahawkSQLiteHelper.TRACKS_COLUMN_POSITION + ", "
+                                    + TomahawkSQLiteHelper.TRACKS_COLUMN_ID);
             queries = new ArrayList<Query>();
             tracksCursor.moveToFirst();
             while (!tracksCursor.isAfterLast()) {
@@ -206,11 +720,9 @@ public class UserPlaylistsDataSource {
                 String resultHint = tracksCursor.getString(5);
                 Query query = Query.get(trackName, albumName, artistName, resultHint, false,
                         tracksCursor.getInt(6) == TRUE);
-                queryIdMap.put(query, tracksCursor.getLong(0));
                 queries.add(query);
                 tracksCursor.moveToNext();
             }
-            mPlaylistQueryIdMap.put(playlistId, queryIdMap);
             Query currentQuery = null;
             if (queries.size() > userplaylistsCursor.getInt(3)) {
                 currentQuery = queries.get(userplaylistsCursor.getInt(3));
@@ -229,79 +741,261 @@ public class UserPlaylistsDataSource {
     }
 
     /**
-     * Delete the {@link org.tomahawk.libtomahawk.collection.UserPlaylist} with the given id
+     * Delete the {@link org.tomahawk.libtomahawk.collection.UserPlaylist} with the given id on the
+     * writer thread
      *
      * @param playlistId String containing the id of the {@link org.tomahawk.libtomahawk.collection.UserPlaylist}
      *                   to be deleted
+     * @param callback   {@link Runnable} to run on the main thread after the {@link
+     *                   org.tomahawk.libtomahawk.collection.UserPlaylist} has been deleted. May be
+     *                   null.
      */
-    public void deleteUserPlaylist(String playlistId) {
-        mDatabase.beginTransaction();
-        mDatabase.delete(TomahawkSQLiteHelper.TABLE_TRACKS,
-                TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS + " = \"" + playlistId + "\"",
-                null);
-        mDatabase.delete(TomahawkSQLiteHelper.TABLE_USERPLAYLISTS,
-                TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID + " = \"" + playlistId + "\"", null);
-        mDatabase.setTransactionSuccessful();
-        mDatabase.endTransaction();
+    public void deleteUserPlaylist(final String playlistId, Runnable callback) {
+        mWriterHandler.post(new Write("deleteUserPlaylist", callback) {
+            @Override
+            protected void write() {
+                beginTransaction("deleteUserPlaylist");
+                try {
+                    mDatabase.delete(TomahawkSQLiteHelper.TABLE_TRACKS,
+                            TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS + " = ?",
+                            new String[]{playlistId});
+                    mDatabase.delete(TomahawkSQLiteHelper.TABLE_USERPLAYLISTS,
+                            TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID + " = ?",
+                            new String[]{playlistId});
+                    mDatabase.setTransactionSuccessful();
+                } finally {
+                    mDatabase.endTransaction();
+                    mStoredEntries.remove(playlistId);
+                }
+            }
+        });
     }
 
     /**
      * Delete the {@link org.tomahawk.libtomahawk.resolver.Query} with the given key in the {@link
-     * org.tomahawk.libtomahawk.collection.UserPlaylist} with the given playlistId
+     * org.tomahawk.libtomahawk.collection.UserPlaylist} with the given playlistId on the writer
+     * thread. The callback is run on the main thread afterwards and may be null.
      */
-    public void deleteQueryInUserPlaylist(String playlistId, Query query) {
-        Long id = mPlaylistQueryIdMap.get(playlistId).get(query);
-        mDatabase.beginTransaction();
-        mDatabase.delete(TomahawkSQLiteHelper.TABLE_TRACKS,
-                TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS + " = \"" + playlistId + "\""
-                        + " and " + TomahawkSQLiteHelper.TRACKS_COLUMN_ID + " = " + id, null);
-        mDatabase.setTransactionSuccessful();
-        mDatabase.endTransaction();
+    public void deleteQueryInUserPlaylist(final String playlistId, final Query query,
+            Runnable callback) {
+        mWriterHandler.post(new Write("deleteQueryInUserPlaylist", callback) {
+            @Override
+            protected void write() {
+                ArrayList<StoredEntry> storedEntries = getStoredEntries(playlistId);
+                String key = getEntryKey(query);
+                boolean successful = false;
+                beginTransaction("deleteQueryInUserPlaylist");
+                try {
+                    for (int i = 0; i < storedEntries.size(); i++) {
+                        if (storedEntries.get(i).mKey.equals(key)) {
+                            deleteTrack(storedEntries.get(i).mRowId);
+                            storedEntries.remove(i);
+                            break;
+                        }
+                    }
+                    mDatabase.setTransactionSuccessful();
+                    successful = true;
+                } finally {
+                    mDatabase.endTransaction();
+                    if (!successful) {
+                        mStoredEntries.remove(playlistId);
+                    }
+                }
+            }
+        });
     }
 
     /**
      * Add the given {@link ArrayList} of {@link Track}s to the {@link
-     * org.tomahawk.libtomahawk.collection.UserPlaylist} with the given playlistId
+     * org.tomahawk.libtomahawk.collection.UserPlaylist} with the given playlistId on the writer
+     * thread. The callback is run on the main thread afterwards and may be null.
      */
-    public void addQueriesToUserPlaylist(String playlistId, ArrayList<Query> queries) {
-        ContentValues values = new ContentValues();
+    public void addQueriesToUserPlaylist(final String playlistId, ArrayList<Query> queries,
+            Runnable callback) {
+        final ArrayList<Query> queriesCopy = new ArrayList<Query>(queries);
+        mWriterHandler.post(new Write("addQueriesToUserPlaylist", callback) {
+            @Override
+            protected void write() {
+                doAddQueriesToUserPlaylist(playlistId, queriesCopy);
+            }
+        });
+    }
+
+    private void doAddQueriesToUserPlaylist(String playlistId, ArrayList<Query> queries) {
         Cursor userplaylistsCursor = mDatabase
                 .query(TomahawkSQLiteHelper.TABLE_USERPLAYLISTS, mAllUserPlaylistsColumns,
-                        TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID + " = \"" + playlistId + "\"",
-                        null, null, null, null);
+                        TomahawkSQLiteHelper.USERPLAYLISTS_COLUMN_ID + " = ?",
+                        new String[]{playlistId}, null, null, null);
         if (userplaylistsCursor.moveToFirst()) {
-            mDatabase.beginTransaction();
-            // Store every single Track in the database and store the relationship
-            // by storing the playlists's id with it
-            for (Query query : queries) {
-                values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS, playlistId);
-                values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_TRACKNAME,
-                        query.getPreferredTrack().getName());
-                values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_ARTISTNAME,
-                        query.getPreferredTrack().getArtist().getName());
-                values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_ALBUMNAME,
-                        query.getPreferredTrack().getAlbum().getName());
-                mDatabase.insert(TomahawkSQLiteHelper.TABLE_TRACKS, null, values);
+            ArrayList<StoredEntry> storedEntries = mStoredEntries.get(playlistId);
+            long position = DatabaseUtils.longForQuery(mDatabase, "SELECT COALESCE(MAX(`"
+                    + TomahawkSQLiteHelper.TRACKS_COLUMN_POSITION + "`), -1) FROM `"
+                    + TomahawkSQLiteHelper.TABLE_TRACKS + "` WHERE `"
+                    + TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS + "` = ?",
+                    new String[]{playlistId}) + 1;
+            boolean successful = false;
+            beginTransaction("addQueriesToUserPlaylist");
+            try {
+                // Store every single Track in the database and store the relationship
+                // by storing the playlists's id with it
+                for (Query query : queries) {
+                    String resultHint = query.updateResultHint();
+                    StoredEntry entry = new StoredEntry();
+                    entry.mKey = getEntryKey(query);
+                    entry.mResultHint = resultHint;
+                    entry.mPosition = position;
+                    entry.mRowId = insertTrack(playlistId, query, resultHint, position);
+                    if (storedEntries != null) {
+                        storedEntries.add(entry);
+                    }
+                    position++;
+                }
+                mDatabase.setTransactionSuccessful();
+                successful = true;
+            } finally {
+                mDatabase.endTransaction();
+                if (!successful) {
+                    mStoredEntries.remove(playlistId);
+                }
             }
-            mDatabase.setTransactionSuccessful();
-            mDatabase.endTransaction();
         }
         userplaylistsCursor.close();
     }
 
-    public Cursor getSearchHistoryCursor(String entry) {
-        return mDatabase.query(TomahawkSQLiteHelper.TABLE_SEARCHHISTORY, mAllSearchHistoryColumns,
-                TomahawkSQLiteHelper.SEARCHHISTORY_COLUMN_ENTRY + " LIKE '" + entry + "%'",
-                null, null, null, TomahawkSQLiteHelper.SEARCHHISTORY_COLUMN_ID + " DESC");
+    /**
+     * Build a full-text MATCH expression out of the given text. Every word of the text has to be
+     * the prefix of a word in the matching row. The text is split into words and lowercased
+     * exactly like FTS3's "simple" tokenizer does it for the index: only ASCII characters other
+     * than letters and digits separate words and only ASCII letters are lowercased. So a word with
+     * non-ASCII letters matches, as long as those letters are typed in the same case. No word can
+     * be mistaken for an operator or a special character.
+     *
+     * @return the MATCH expression or null, if the given text doesn't contain any word
+     */
+    private static String getFullTextMatch(String text) {
+        StringBuilder match = new StringBuilder();
+        if (text != null) {
+            boolean isInWord = false;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c >= 0x80 || (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z')) {
+                    if (!isInWord && match.length() > 0) {
+                        match.append(' ');
+                    }
+                    match.append(c);
+                    isInWord = true;
+                } else if (c >= 'A' && c <= 'Z') {
+                    if (!isInWord && match.length() > 0) {
+                        match.append(' ');
+                    }
+                    match.append((char) (c + ('a' - 'A')));
+                    isInWord = true;
+                } else if (isInWord) {
+                    match.append('*');
+                    isInWord = false;
+                }
+            }
+            if (isInWord) {
+                match.append('*');
+            }
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
 
+    /**
+     * Search the track, artist and album names of the tracks of all stored {@link UserPlaylist}s
+     * by using the full-text index. This is fast enough to be done on every keystroke and doesn't
+     * touch any resolver.
+     *
+     * @param text  the text to search for. Every word of it has to be the prefix of a word in the
+     *              track's, artist's or album's name
+     * @param limit the maximum number of {@link Query}s to return
+     * @return the matching {@link Query}s, every {@link Query} only once
+     */
+    public ArrayList<Query> searchUserPlaylistQueries(String text, int limit) {
+        ArrayList<Query> queries = new ArrayList<Query>();
+        String match = getFullTextMatch(text);
+        if (match == null) {
+            return queries;
+        }
+        Cursor tracksCursor = mDatabase.rawQuery("SELECT `"
+                + TomahawkSQLiteHelper.TABLE_TRACKS + "`.`"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_TRACKNAME + "`, `"
+                + TomahawkSQLiteHelper.TABLE_TRACKS + "`.`"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_ALBUMNAME + "`, `"
+                + TomahawkSQLiteHelper.TABLE_TRACKS + "`.`"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_ARTISTNAME + "`, `"
+                + TomahawkSQLiteHelper.TABLE_TRACKS + "`.`"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_RESULTHINT + "`, `"
+                + TomahawkSQLiteHelper.TABLE_TRACKS + "`.`"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_ISFETCHEDVIAHATCHET + "`"
+                + " FROM `" + TomahawkSQLiteHelper.TABLE_TRACKS_FTS + "` JOIN `"
+                + TomahawkSQLiteHelper.TABLE_TRACKS + "` ON `"
+                + TomahawkSQLiteHelper.TABLE_TRACKS + "`.`"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_ID + "` = `"
+                + TomahawkSQLiteHelper.TABLE_TRACKS_FTS + "`.`"
+                + TomahawkSQLiteHelper.FTS_COLUMN_DOCID + "` WHERE `"
+                + TomahawkSQLiteHelper.TABLE_TRACKS_FTS + "` MATCH ?", new String[]{match});
+        try {
+            // The same track is usually contained in more than one playlist. Query.get hands out
+            // the same Query for every one of them, so we can simply skip the ones we already have
+            HashSet<Query> addedQueries = new HashSet<Query>();
+            while (queries.size() < limit && tracksCursor.moveToNext()) {
+                Query query = Query.get(tracksCursor.getString(0), tracksCursor.getString(1),
+                        tracksCursor.getString(2), tracksCursor.getString(3), false,
+                        tracksCursor.getInt(4) == TRUE);
+                if (addedQueries.add(query)) {
+                    queries.add(query);
+                }
+            }
+        } finally {
+            tracksCursor.close();
+        }
+        return queries;
     }
 
-    public void addEntryToSearchHistory(String entry) {
-        ContentValues values = new ContentValues();
-        mDatabase.beginTransaction();
-        values.put(TomahawkSQLiteHelper.SEARCHHISTORY_COLUMN_ENTRY, entry);
-        mDatabase.insert(TomahawkSQLiteHelper.TABLE_SEARCHHISTORY, null, values);
-        mDatabase.setTransactionSuccessful();
-        mDatabase.endTransaction();
+    /**
+     * @return a {@link Cursor} of all search history entries, which contain a word starting with
+     * every word of the given text. The lookup is done by using the full-text index. If the given
+     * text doesn't contain any word, all entries are returned.
+     */
+    public Cursor getSearchHistoryCursor(String entry) {
+        String match = getFullTextMatch(entry);
+        if (match == null) {
+            return mDatabase.query(TomahawkSQLiteHelper.TABLE_SEARCHHISTORY,
+                    mAllSearchHistoryColumns, null, null, null, null,
+                    TomahawkSQLiteHelper.SEARCHHISTORY_COLUMN_ID + " DESC");
+        }
+        return mDatabase.rawQuery("SELECT `" + TomahawkSQLiteHelper.FTS_COLUMN_DOCID + "` AS `"
+                + TomahawkSQLiteHelper.SEARCHHISTORY_COLUMN_ID + "`, `"
+                + TomahawkSQLiteHelper.SEARCHHISTORY_COLUMN_ENTRY + "` FROM `"
+                + TomahawkSQLiteHelper.TABLE_SEARCHHISTORY_FTS + "` WHERE `"
+                + TomahawkSQLiteHelper.TABLE_SEARCHHISTORY_FTS + "` MATCH ? ORDER BY `"
+                + TomahawkSQLiteHelper.FTS_COLUMN_DOCID + "` DESC", new String[]{match});
+    }
+
+    /**
+     * Add the given entry to the search history on the writer thread
+     */
+    public void addEntryToSearchHistory(final String entry) {
+        mWriterHandler.post(new Write("addEntryToSearchHistory", null) {
+            @Override
+            protected void write() {
+                ContentValues values = new ContentValues();
+                beginTransaction("addEntryToSearchHistory");
+                try {
+                    // A replaced row wouldn't be removed from the full-text index, so an already
+                    // existing entry is deleted explicitly
+                    mDatabase.delete(TomahawkSQLiteHelper.TABLE_SEARCHHISTORY,
+                            TomahawkSQLiteHelper.SEARCHHISTORY_COLUMN_ENTRY + " = ?",
+                            new String[]{entry});
+                    values.put(TomahawkSQLiteHelper.SEARCHHISTORY_COLUMN_ENTRY, entry);
+                    mDatabase.insert(TomahawkSQLiteHelper.TABLE_SEARCHHISTORY, null, values);
+                    mDatabase.setTransactionSuccessful();
+                } finally {
+                    mDatabase.endTransaction();
+                }
+            }
+        });
     }
 }
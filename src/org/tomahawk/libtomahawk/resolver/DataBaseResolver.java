@@ -19,6 +19,7 @@ package org.tomahawk.libtomahawk.resolver;
 
 import org.json.JSONObject;
 import org.tomahawk.libtomahawk.collection.Collection;
+import org.tomahawk.libtomahawk.collection.QueryIndex;
 import org.tomahawk.libtomahawk.collection.Track;
 import org.tomahawk.libtomahawk.collection.UserCollection;
 import org.tomahawk.libtomahawk.utils.TomahawkUtils;
@@ -27,7 +28,6 @@ import org.tomahawk.tomahawk_android.TomahawkApp;
 
 import android.graphics.drawable.Drawable;
 import android.text.TextUtils;
-import android.widget.Filter;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -68,6 +68,7 @@ public class DataBaseResolver implements Resolver {
      */
     public DataBaseResolver(int id, TomahawkApp tomahawkApp) {
         mWeight = 100;
+        mTimeout = 5000;
         mReady = false;
         mStopped = true;
         mTomahawkApp = tomahawkApp;
@@ -114,7 +115,8 @@ public class DataBaseResolver implements Resolver {
     }
 
     /**
-     * Resolve the given {@link Query}.
+     * Resolve the given {@link Query}. This is done synchronously on the calling thread, which is
+     * one of the {@link ResolverScheduler}'s worker threads.
      *
      * @param query the {@link Query} which should be resolved
      * @return whether or not the Resolver is ready to resolve
@@ -123,142 +125,74 @@ public class DataBaseResolver implements Resolver {
     public boolean resolve(Query query) {
         if (mReady) {
             mStopped = false;
+            ArrayList<Result> results;
             if (query.isFullTextQuery()) {
-                new TomahawkListItemFilter(TomahawkUtils.getCacheKey(query), this,
-                        query.getFullTextQuery()).filter(null);
+                results = getFilteredResults(query.getFullTextQuery().toLowerCase().trim(), "",
+                        "", "");
             } else {
-                new TomahawkListItemFilter(TomahawkUtils.getCacheKey(query), this, query.getName(),
-                        query.getAlbum().getName(), query.getArtist().getName()).filter(null);
+                results = getFilteredResults("", query.getName().toLowerCase().trim(),
+                        query.getAlbum().getName().toLowerCase().trim(),
+                        query.getArtist().getName().toLowerCase().trim());
             }
+            mStopped = true;
+            mTomahawkApp.getPipeLine().reportResults(TomahawkUtils.getCacheKey(query), results,
+                    mId);
         }
         return mReady;
     }
 
     /**
-     * We use a {@link Filter} to resolve our {@link Track}s from the {@link UserCollection}
+     * The actual resolving process. Either fullTextQuery or at least one of trackName, albumName
+     * and artistName has to be non-empty.
+     *
+     * @param fullTextQuery {@link String} containing the fullTextQuery to be searched for
+     * @param trackName     {@link String} containing the {@link Track}s name
+     * @param albumName     {@link String} containing the {@link org.tomahawk.libtomahawk.collection.Album}s
+     *                      name
+     * @param artistName    {@link String} containing the {@link org.tomahawk.libtomahawk.collection.Artist}s
+     *                      name
+     * @return an {@link ArrayList} of all found {@link Result}s
      */
-    private class TomahawkListItemFilter extends Filter {
-
-        private String mQid;
-
-        private Resolver mResolver;
-
-        private String mFullTextQuery = "";
-
-        private String mTrackName = "";
-
-        private String mAlbumName = "";
-
-        private String mArtistName = "";
-
-        /**
-         * Construct this {@link TomahawkListItemFilter}, if you want to do a fullTextQuery search.
-         *
-         * @param qid           the id of the {@link Query} to be resolved
-         * @param resolver      the {@link Resolver} that we will associate with the resolved {@link
-         *                      Result}s
-         * @param fullTextQuery {@link String}  containing the fullTextQuery to be searched for
-         */
-        public TomahawkListItemFilter(final String qid, final Resolver resolver,
-                final String fullTextQuery) {
-            mQid = qid;
-            mResolver = resolver;
-            mFullTextQuery = fullTextQuery.toLowerCase().trim();
-        }
-
-        /**
-         * Construct this {@link TomahawkListItemFilter}, if you want to do a fullTextQuery search.
-         *
-         * @param qid        the id of the {@link Query} to be resolved
-         * @param resolver   the {@link Resolver} that we will associate with the resolved {@link
-         *                   Result}s
-         * @param trackName  {@link String}  containing the {@link Track}s name
-         * @param albumName  {@link String}  containing the {@link org.tomahawk.libtomahawk.collection.Album}s
-         *                   name
-         * @param artistName {@link String}  containing the {@link org.tomahawk.libtomahawk.collection.Artist}s
-         *                   name
-         */
-        public TomahawkListItemFilter(final String qid, final Resolver resolver,
-                final String trackName, final String albumName, final String artistName) {
-            mQid = qid;
-            mResolver = resolver;
-            mTrackName = trackName.toLowerCase().trim();
-            mAlbumName = albumName.toLowerCase().trim();
-            mArtistName = artistName.toLowerCase().trim();
-        }
-
-        /**
-         * Called when this {@link TomahawkListItemFilter} is done with performFiltering(...)
-         *
-         * @param constraint can be ignored in our case
-         * @param results    all found {@link FilterResults}
-         */
-        @SuppressWarnings("unchecked")
-        @Override
-        protected void publishResults(CharSequence constraint, FilterResults results) {
-            final ArrayList<Result> resultList = (ArrayList<Result>) results.values;
-            mStopped = true;
-            Runnable r = new Runnable() {
-                @Override
-                public void run() {
-                    mTomahawkApp.getPipeLine().reportResults(mQid, resultList);
-                }
-            };
-            Thread t = new Thread(r);
-            t.start();
+    private ArrayList<Result> getFilteredResults(String fullTextQuery, String trackName,
+            String albumName, String artistName) {
+        ArrayList<Result> filteredResults = new ArrayList<Result>();
+        if (mCollection == null || (TextUtils.isEmpty(fullTextQuery) && TextUtils
+                .isEmpty(trackName) && TextUtils.isEmpty(albumName) && TextUtils
+                .isEmpty(artistName))) {
+            return filteredResults;
         }
-
-        /**
-         * Perform the filtering process. Automatically called whenever this {@link
-         * TomahawkListItemFilter} is constructed
-         *
-         * @param constraint can be ignored in our case
-         * @return all found {@link FilterResults}
-         */
-        @Override
-        protected FilterResults performFiltering(CharSequence constraint) {
-            ArrayList<Result> filteredResults = getFilteredResults();
-
-            FilterResults results = new FilterResults();
-            synchronized (this) {
-                results.values = filteredResults;
+        QueryIndex queryIndex = mCollection.getQueryIndex();
+        if (queryIndex != null) {
+            List<Query> queries;
+            if (!TextUtils.isEmpty(fullTextQuery)) {
+                queries = queryIndex.find(fullTextQuery);
+            } else {
+                queries = queryIndex.find(trackName, albumName, artistName);
             }
-
-            return results;
-        }
-
-        /**
-         * The actual resolving process.
-         *
-         * @return an {@link ArrayList} of all found {@link Result}s
-         */
-        protected ArrayList<Result> getFilteredResults() {
-            ArrayList<Result> filteredResults = new ArrayList<Result>();
-            if (mCollection == null || (TextUtils.isEmpty(mFullTextQuery) && TextUtils
-                    .isEmpty(mTrackName) && TextUtils
-                    .isEmpty(mAlbumName) && TextUtils.isEmpty(mArtistName))) {
-                return filteredResults;
+            for (Query query : queries) {
+                filteredResults.add(query.getPreferredTrackResult());
             }
-            List<Query> inputList = new ArrayList<Query>();
-            inputList.addAll(mCollection.getQueries());
-
-            for (Query query : inputList) {
-                if (!TextUtils.isEmpty(mFullTextQuery)) {
-                    if (query.getName().toLowerCase().contains(mFullTextQuery) ||
-                            query.getArtist().getName().toLowerCase().contains(mFullTextQuery) ||
-                            query.getAlbum().getName().toLowerCase().contains(mFullTextQuery)) {
-                        filteredResults.add(query.getPreferredTrackResult());
-                    }
-                } else {
-                    if (query.getName().toLowerCase().contains(mTrackName) &&
-                            query.getArtist().getName().toLowerCase().contains(mArtistName) &&
-                            query.getAlbum().getName().toLowerCase().contains(mAlbumName)) {
-                        filteredResults.add(query.getPreferredTrackResult());
-                    }
+            return filteredResults;
+        }
+        List<Query> inputList = new ArrayList<Query>();
+        inputList.addAll(mCollection.getQueries());
+
+        for (Query query : inputList) {
+            if (!TextUtils.isEmpty(fullTextQuery)) {
+                if (query.getName().toLowerCase().contains(fullTextQuery) ||
+                        query.getArtist().getName().toLowerCase().contains(fullTextQuery) ||
+                        query.getAlbum().getName().toLowerCase().contains(fullTextQuery)) {
+                    filteredResults.add(query.getPreferredTrackResult());
+                }
+            } else {
+                if (query.getName().toLowerCase().contains(trackName) &&
+                        query.getArtist().getName().toLowerCase().contains(artistName) &&
+                        query.getAlbum().getName().toLowerCase().contains(albumName)) {
+                    filteredResults.add(query.getPreferredTrackResult());
                 }
             }
-            return filteredResults;
         }
+        return filteredResults;
     }
 
     /**
@@ -276,4 +210,12 @@ public class DataBaseResolver implements Resolver {
     public int getWeight() {
         return mWeight;
     }
+
+    /**
+     * @return this {@link DataBaseResolver}'s timeout in milliseconds
+     */
+    @Override
+    public int getTimeout() {
+        return mTimeout;
+    }
 }
@@ -0,0 +1,207 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.resolver;
+
+import org.tomahawk.libtomahawk.collection.Playlist;
+import org.tomahawk.libtomahawk.utils.TomahawkUtils;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Resolves the {@link Query}s which are about to be played, before they are needed. The window of
+ * {@link Query}s which are resolved ahead is sized, so that it covers a certain amount of playback
+ * time. This time is longer on unmetered connections and if the {@link Resolver}s are slow. How
+ * long a {@link Query} is played on average is measured, so that the window grows if tracks are
+ * short or are skipped a lot. The window follows the order in which the {@link Playlist} is
+ * played, which is the shuffled order in shuffle mode. {@link Query}s which fall out of the window
+ * are cancelled, unless someone else has requested them as well.
+ *
+ * Must only be used on the main thread.
+ */
+public class LookAheadScheduler {
+
+    private final static String TAG = LookAheadScheduler.class.getName();
+
+    // The assumed time a Query is played, until we have measured it
+    private static final long DEFAULT_PLAY_TIME = 210000;
+
+    // Measured play times are clamped, so that a long pause doesn't distort the average
+    private static final long MIN_PLAY_TIME = 5000;
+
+    private static final long MAX_PLAY_TIME = 900000;
+
+    // The weight of the latest measured play time in the moving average
+    private static final float PLAY_TIME_WEIGHT = 0.3f;
+
+    // The playback time which should be covered by the window on unmetered connections
+    private static final long HORIZON_UNMETERED = 1200000;
+
+    // The playback time which should be covered by the window on metered connections
+    private static final long HORIZON_METERED = 480000;
+
+    // Every ms of average resolver latency adds this many ms to the horizon
+    private static final int LATENCY_HORIZON_FACTOR = 60;
+
+    private static final int MIN_WINDOW_SIZE = 2;
+
+    private static final int MAX_WINDOW_SIZE_UNMETERED = 25;
+
+    private static final int MAX_WINDOW_SIZE_METERED = 10;
+
+    // The number of Querys after a skip which are moved to the PipeLine's priority lane
+    private static final int PRIORITY_COUNT_AFTER_SKIP = 2;
+
+    private ConnectivityManager mConnectivityManager;
+
+    private PipeLine mPipeLine;
+
+    // The Querys we have requested to be resolved and which haven't been solved yet, by key
+    private HashMap<String, Query> mRequestedQueries = new HashMap<String, Query>();
+
+    // The keys of those requested Querys, which have been moved to the priority lane
+    private HashSet<String> mPrioritizedQueryKeys = new HashSet<String>();
+
+    private Query mCurrentQuery;
+
+    private long mCurrentQueryStartTime;
+
+    private long mAveragePlayTime = DEFAULT_PLAY_TIME;
+
+    private boolean mIsSkipPending;
+
+    private int mWindowSize;
+
+    public LookAheadScheduler(Context context, PipeLine pipeLine) {
+        mConnectivityManager = (ConnectivityManager) context
+                .getSystemService(Context.CONNECTIVITY_SERVICE);
+        mPipeLine = pipeLine;
+    }
+
+    /**
+     * Tell the {@link LookAheadScheduler} that the user is skipping to another {@link Query}. The
+     * {@link Query}s following the new current {@link Query} will be resolved with priority on the
+     * next call to {@link #update(Playlist)}.
+     */
+    public void onSkip() {
+        mIsSkipPending = true;
+    }
+
+    /**
+     * Update the window to the current state of the given {@link Playlist}. Has to be called every
+     * time its current {@link Query}, its contents, its order or its repeat mode has changed.
+     * {@link Query}s in the window are resolved, {@link Query}s which have fallen out of it are
+     * cancelled.
+     */
+    public void update(Playlist playlist) {
+        Query currentQuery = playlist.getCurrentQuery();
+        long now = System.currentTimeMillis();
+        if (currentQuery != mCurrentQuery) {
+            if (mCurrentQuery != null) {
+                long playTime = Math.max(MIN_PLAY_TIME,
+                        Math.min(MAX_PLAY_TIME, now - mCurrentQueryStartTime));
+                mAveragePlayTime = (long) (PLAY_TIME_WEIGHT * playTime
+                        + (1 - PLAY_TIME_WEIGHT) * mAveragePlayTime);
+            }
+            mCurrentQuery = currentQuery;
+            mCurrentQueryStartTime = now;
+        }
+        int windowSize = computeWindowSize();
+        if (windowSize != mWindowSize) {
+            Log.d(TAG, "Window size " + mWindowSize + " -> " + windowSize + " (average play time "
+                    + mAveragePlayTime + "ms)");
+            mWindowSize = windowSize;
+        }
+
+        HashMap<String, Query> window = new HashMap<String, Query>();
+        int currentIndex = playlist.getCurrentQueryIndex();
+        int count = playlist.getCount();
+        for (int i = 0; i <= windowSize && i < count; i++) {
+            int index = currentIndex + i;
+            if (index >= count) {
+                if (!playlist.isRepeating()) {
+                    break;
+                }
+                index -= count;
+            }
+            Query query = playlist.peekQueryAtPos(index);
+            if (query == null || query.isSolved()) {
+                continue;
+            }
+            String queryKey = TomahawkUtils.getCacheKey(query);
+            // The current Query and the ones right after a skip are needed first
+            boolean isPriority = i == 0 || (mIsSkipPending && i <= PRIORITY_COUNT_AFTER_SKIP);
+            // Every Query is only requested once, unless it has to be moved to the priority lane
+            if (!mRequestedQueries.containsKey(queryKey)
+                    || (isPriority && !mPrioritizedQueryKeys.contains(queryKey))) {
+                mPipeLine.resolve(query, false, isPriority, this);
+                if (isPriority) {
+                    mPrioritizedQueryKeys.add(queryKey);
+                }
+            }
+            window.put(queryKey, query);
+        }
+        mIsSkipPending = false;
+
+        Iterator<Map.Entry<String, Query>> iterator = mRequestedQueries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Query> entry = iterator.next();
+            if (!window.containsKey(entry.getKey())) {
+                if (!entry.getValue().isSolved()) {
+                    mPipeLine.cancel(entry.getValue(), this);
+                }
+                mPrioritizedQueryKeys.remove(entry.getKey());
+                iterator.remove();
+            }
+        }
+        mRequestedQueries.putAll(window);
+    }
+
+    /**
+     * @return the number of {@link Query}s after the current one, which should be resolved ahead
+     */
+    private int computeWindowSize() {
+        NetworkInfo networkInfo = mConnectivityManager.getActiveNetworkInfo();
+        if (networkInfo == null || !networkInfo.isConnected()) {
+            // Only the local collection can be resolved anyway
+            return MIN_WINDOW_SIZE;
+        }
+        boolean isUnmetered = networkInfo.getType() == ConnectivityManager.TYPE_WIFI
+                || networkInfo.getType() == ConnectivityManager.TYPE_ETHERNET;
+        long horizon = (isUnmetered ? HORIZON_UNMETERED : HORIZON_METERED)
+                + mPipeLine.getAverageResolverLatency() * LATENCY_HORIZON_FACTOR;
+        int windowSize = (int) Math.ceil((double) horizon / mAveragePlayTime);
+        int maxWindowSize = isUnmetered ? MAX_WINDOW_SIZE_UNMETERED : MAX_WINDOW_SIZE_METERED;
+        return Math.max(MIN_WINDOW_SIZE, Math.min(maxWindowSize, windowSize));
+    }
+
+    /**
+     * @return the number of {@link Query}s after the current one, which are currently resolved
+     * ahead
+     */
+    public int getWindowSize() {
+        return mWindowSize;
+    }
+}
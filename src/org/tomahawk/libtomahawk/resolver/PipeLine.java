@@ -17,15 +17,18 @@
  */
 package org.tomahawk.libtomahawk.resolver;
 
+import org.tomahawk.libtomahawk.collection.Album;
+import org.tomahawk.libtomahawk.collection.Artist;
+import org.tomahawk.libtomahawk.collection.Track;
 import org.tomahawk.libtomahawk.utils.TomahawkUtils;
+import org.tomahawk.libtomahawk.utils.WeakRegistry;
 import org.tomahawk.tomahawk_android.TomahawkApp;
 
 import android.content.Intent;
-import android.os.Handler;
-import android.os.Looper;
 import android.text.TextUtils;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -50,19 +53,45 @@ public class PipeLine {
 
     private static final float MINSCORE = 0.5F;
 
+    // Used as a pending resolver id while a Query is being looked up in the ResultCache
+    private static final int PENDING_CACHE_LOOKUP = -1;
+
     private TomahawkApp mTomahawkApp;
 
     private ArrayList<Resolver> mResolvers = new ArrayList<Resolver>();
 
-    private ConcurrentHashMap<String, Query> mQueries = new ConcurrentHashMap<String, Query>();
+    private ResolverScheduler mResolverScheduler;
+
+    private ResultCache mResultCache;
+
+    private StreamValidator mStreamValidator = new StreamValidator();
+
+    // Queries which are no longer referenced anywhere else don't need to be resolved anymore
+    private WeakRegistry<Query> mQueries = new WeakRegistry<Query>("PipeLine", 0);
 
     private ConcurrentHashMap<String, Query> mWaitingQueries
             = new ConcurrentHashMap<String, Query>();
 
+    // Every Query which is currently being resolved is referenced strongly, so that it can't be
+    // garbage collected before its Results have been reported
+    private ConcurrentHashMap<String, Query> mResolvingQueries
+            = new ConcurrentHashMap<String, Query>();
+
+    // The ids of all Resolvers the PipeLine still waits for, mapped by query key
+    private final HashMap<String, HashSet<Integer>> mPendingResolverIds
+            = new HashMap<String, HashSet<Integer>>();
+
+    // Everyone who has requested a Query which hasn't completed yet, mapped by query key. Guarded
+    // by mPendingResolverIds. Requesters which never cancel are represented by null.
+    private final HashMap<String, HashSet<Object>> mRequesters
+            = new HashMap<String, HashSet<Object>>();
+
     private boolean mAllResolversAdded;
 
     public PipeLine(TomahawkApp tomahawkApp) {
         mTomahawkApp = tomahawkApp;
+        mResolverScheduler = new ResolverScheduler(this);
+        mResultCache = new ResultCache(tomahawkApp);
     }
 
     /**
@@ -130,33 +159,188 @@ public class PipeLine {
     /**
      * This will invoke every {@link Resolver} to resolve the given {@link Query}.
      */
-    public String resolve(final Query q, boolean forceOnlyLocal) {
+    public String resolve(Query q, boolean forceOnlyLocal) {
+        return resolve(q, forceOnlyLocal, false);
+    }
+
+    /**
+     * This will invoke every {@link Resolver} to resolve the given {@link Query}. {@link Query}s
+     * which have to be resolved through the network are first looked up in the {@link
+     * ResultCache}.
+     *
+     * @param isPriority whether or not the {@link Query} should be resolved before every other
+     *                   waiting {@link Query}. Should be used for the currently playing and the
+     *                   currently visible {@link Query}s.
+     */
+    public String resolve(Query q, boolean forceOnlyLocal, boolean isPriority) {
+        return resolve(q, forceOnlyLocal, isPriority, null);
+    }
+
+    /**
+     * Resolve the given {@link Query} on behalf of the given requester, which may cancel it later
+     * on by {@link #cancel(Query, Object)}
+     *
+     * @param requester the object which requests the given {@link Query}, or null if it's never
+     *                  going to cancel it
+     */
+    public String resolve(Query q, boolean forceOnlyLocal, boolean isPriority, Object requester) {
+        String queryKey = TomahawkUtils.getCacheKey(q);
         if (!forceOnlyLocal && q.isSolved()) {
-            sendResultsReportBroadcast(TomahawkUtils.getCacheKey(q));
+            sendResultsReportBroadcast(queryKey);
+            return queryKey;
+        }
+        synchronized (mPendingResolverIds) {
+            HashSet<Object> requesters = mRequesters.get(queryKey);
+            if (requesters == null) {
+                requesters = new HashSet<Object>();
+                mRequesters.put(queryKey, requesters);
+            }
+            requesters.add(requester);
+        }
+        submit(q, forceOnlyLocal, isPriority);
+        return queryKey;
+    }
+
+    private void submit(Query q, boolean forceOnlyLocal, boolean isPriority) {
+        if (!forceOnlyLocal && !q.isOnlyLocal() && !q.isFullTextQuery()) {
+            addPendingResolverId(q, PENDING_CACHE_LOOKUP);
+            resolveFromCache(q, isPriority);
         } else {
-            if (!isEveryResolverReady()) {
-                if (!mWaitingQueries.containsKey(TomahawkUtils.getCacheKey(q))) {
-                    mWaitingQueries.put(TomahawkUtils.getCacheKey(q), q);
+            dispatch(q, forceOnlyLocal, isPriority, null);
+        }
+    }
+
+    /**
+     * Rebuild the {@link Result} which has been cached as the given {@link ResultCache.Entry} of
+     * the given {@link Query}. Its {@link Track} is the one the {@link Resolver} has originally
+     * reported, which isn't necessarily the {@link Query}'s one.
+     */
+    private static Result createResult(Query q, ResultCache.Entry entry) {
+        Result result;
+        if (entry.getTrackName() != null) {
+            Artist artist = Artist.get(entry.getArtistName() != null ? entry.getArtistName() : "");
+            Album album = Album.get(entry.getAlbumName() != null ? entry.getAlbumName() : "",
+                    artist);
+            Track track = Track.get(entry.getTrackName(), album, artist);
+            if (track.getAlbumPos() == 0) {
+                track.setAlbumPos(entry.getAlbumPos());
+            }
+            result = new Result(entry.getUrl(), track);
+        } else {
+            result = new Result(entry.getUrl(), q);
+        }
+        if (result.getTrack().getDuration() == 0) {
+            result.getTrack().setDuration(entry.getDuration());
+        }
+        result.setTrackScore(entry.getScore());
+        result.setBitrate(entry.getBitrate());
+        result.setSize(entry.getSize());
+        result.setLinkUrl(entry.getLinkUrl());
+        result.setPurchaseUrl(entry.getPurchaseUrl());
+        result.setType(Result.RESULT_TYPE_TRACK);
+        return result;
+    }
+
+    /**
+     * Asynchronously report every cached {@link Result} of the given {@link Query}. Only the
+     * {@link Resolver}s without a fresh cached {@link Result} are invoked afterwards. If the cached
+     * {@link Result}s already solve the {@link Query}, only the {@link Resolver}s with stale
+     * {@link Result}s are invoked, to revalidate them in the background.
+     */
+    private void resolveFromCache(final Query q, final boolean isPriority) {
+        mResultCache.execute(new Runnable() {
+            @Override
+            public void run() {
+                String queryKey = TomahawkUtils.getCacheKey(q);
+                HashSet<Integer> freshResolverIds = new HashSet<Integer>();
+                HashSet<Integer> staleResolverIds = new HashSet<Integer>();
+                ArrayList<Result> results = new ArrayList<Result>();
+                for (ResultCache.Entry entry : mResultCache.get(queryKey)) {
+                    Resolver resolver = getResolver(entry.getResolverId());
+                    if (resolver != null && (resolver.getId() != TomahawkApp.RESOLVER_ID_EXFM
+                            || mStreamValidator.getVerdict(entry.getUrl())
+                            != StreamValidator.VERDICT_INVALID)) {
+                        Result result = createResult(q, entry);
+                        result.setResolvedBy(resolver);
+                        results.add(result);
+                        if (entry.isStale()) {
+                            staleResolverIds.add(entry.getResolverId());
+                        } else {
+                            freshResolverIds.add(entry.getResolverId());
+                        }
+                    }
                 }
-            } else {
-                mQueries.put(TomahawkUtils.getCacheKey(q), q);
-                for (final Resolver resolver : mResolvers) {
-                    if ((forceOnlyLocal && resolver instanceof DataBaseResolver)
-                            || (!forceOnlyLocal && q.isOnlyLocal()
-                            && resolver instanceof DataBaseResolver)
-                            || (!forceOnlyLocal && !q.isOnlyLocal())) {
-                        Handler handler = new Handler(Looper.getMainLooper());
-                        handler.post(new Runnable() {
-                            @Override
-                            public void run() {
-                                resolver.resolve(q);
-                            }
-                        });
+                if (!results.isEmpty()) {
+                    mQueries.putIfAbsent(queryKey, q);
+                    q.addTrackResults(results);
+                    sendResultsReportBroadcast(queryKey);
+                    for (Result result : results) {
+                        if (needsValidation(result) && mStreamValidator.getVerdict(
+                                result.getPath()) == StreamValidator.VERDICT_UNKNOWN) {
+                            validate(q, result);
+                        }
                     }
                 }
+                boolean isCancelled;
+                synchronized (mPendingResolverIds) {
+                    isCancelled = !mPendingResolverIds.containsKey(queryKey);
+                }
+                if (isCancelled) {
+                    // The Query has been cancelled while we were looking it up
+                    return;
+                } else if (!q.isSolved()) {
+                    dispatch(q, false, isPriority, freshResolverIds);
+                } else if (!staleResolverIds.isEmpty()) {
+                    HashSet<Integer> skippedResolverIds = new HashSet<Integer>();
+                    for (Resolver resolver : mResolvers) {
+                        if (!staleResolverIds.contains(resolver.getId())) {
+                            skippedResolverIds.add(resolver.getId());
+                        }
+                    }
+                    dispatch(q, false, false, skippedResolverIds);
+                }
+                if (removePendingResolverId(queryKey, PENDING_CACHE_LOOKUP, false)) {
+                    sendResultsReportBroadcast(queryKey);
+                }
+            }
+        });
+    }
+
+    /**
+     * Schedule the given {@link Query} for every {@link Resolver} which should resolve it. If not
+     * every {@link Resolver} is ready yet, the {@link Query} has to wait.
+     *
+     * @param skippedResolverIds the ids of all {@link Resolver}s which don't have to resolve the
+     *                           given {@link Query}, or null
+     */
+    private void dispatch(Query q, boolean forceOnlyLocal, boolean isPriority,
+            HashSet<Integer> skippedResolverIds) {
+        if (!isEveryResolverReady()) {
+            if (!mWaitingQueries.containsKey(TomahawkUtils.getCacheKey(q))) {
+                mWaitingQueries.put(TomahawkUtils.getCacheKey(q), q);
+            }
+        } else {
+            String queryKey = TomahawkUtils.getCacheKey(q);
+            mQueries.putIfAbsent(queryKey, q);
+            for (Resolver resolver : mResolvers) {
+                if (skippedResolverIds != null && skippedResolverIds.contains(resolver.getId())) {
+                    continue;
+                }
+                if ((forceOnlyLocal && resolver instanceof DataBaseResolver)
+                        || (!forceOnlyLocal && q.isOnlyLocal()
+                        && resolver instanceof DataBaseResolver)
+                        || (!forceOnlyLocal && !q.isOnlyLocal())) {
+                    addPendingResolverId(q, resolver.getId());
+                    mResolverScheduler.schedule(resolver, q, isPriority);
+                }
+            }
+            synchronized (mPendingResolverIds) {
+                if (!mPendingResolverIds.containsKey(queryKey)) {
+                    // No Resolver has been asked, so there's nothing anyone could cancel
+                    mRequesters.remove(queryKey);
+                }
             }
         }
-        return TomahawkUtils.getCacheKey(q);
     }
 
     /**
@@ -172,11 +356,23 @@ public class PipeLine {
      * HashSet containing all query keys
      */
     public HashSet<String> resolve(ArrayList<Query> queries, boolean forceOnlyLocal) {
+        return resolve(queries, forceOnlyLocal, false);
+    }
+
+    /**
+     * Resolve the given ArrayList of {@link org.tomahawk.libtomahawk.resolver.Query}s and return a
+     * HashSet containing all query keys
+     *
+     * @param isPriority whether or not the {@link Query}s should be resolved before every other
+     *                   waiting {@link Query}
+     */
+    public HashSet<String> resolve(ArrayList<Query> queries, boolean forceOnlyLocal,
+            boolean isPriority) {
         HashSet<String> queryKeys = new HashSet<String>();
         if (queries != null) {
             for (Query query : queries) {
                 if (forceOnlyLocal || !query.isSolved()) {
-                    queryKeys.add(resolve(query, forceOnlyLocal));
+                    queryKeys.add(resolve(query, forceOnlyLocal, isPriority));
                 }
             }
         }
@@ -192,37 +388,112 @@ public class PipeLine {
         mTomahawkApp.sendBroadcast(reportIntent);
     }
 
+    private void addPendingResolverId(Query q, int resolverId) {
+        String queryKey = TomahawkUtils.getCacheKey(q);
+        synchronized (mPendingResolverIds) {
+            HashSet<Integer> resolverIds = mPendingResolverIds.get(queryKey);
+            if (resolverIds == null) {
+                resolverIds = new HashSet<Integer>();
+                mPendingResolverIds.put(queryKey, resolverIds);
+                mResolvingQueries.put(queryKey, q);
+            }
+            resolverIds.add(resolverId);
+        }
+    }
+
+    /**
+     * Stop waiting for the given {@link Resolver} to resolve the {@link Query} with the given key.
+     *
+     * @param isSolved whether or not the given {@link Resolver} has reported a perfect {@link
+     *                 Result}. In that case we stop waiting for every {@link Resolver} which
+     *                 couldn't outweigh it, so that the {@link Query} completes early.
+     * @return true, if the {@link Query} has been completed by this call
+     */
+    private boolean removePendingResolverId(String queryKey, int resolverId, boolean isSolved) {
+        synchronized (mPendingResolverIds) {
+            HashSet<Integer> resolverIds = mPendingResolverIds.get(queryKey);
+            if (resolverIds == null || !resolverIds.remove(resolverId)) {
+                return false;
+            }
+            if (isSolved && !resolverIds.contains(PENDING_CACHE_LOOKUP)) {
+                Resolver solvingResolver = getResolver(resolverId);
+                boolean outweighed = false;
+                for (Integer pendingResolverId : resolverIds) {
+                    Resolver pendingResolver = getResolver(pendingResolverId);
+                    if (pendingResolver != null && solvingResolver != null
+                            && pendingResolver.getWeight() > solvingResolver.getWeight()) {
+                        outweighed = true;
+                    }
+                }
+                if (!outweighed) {
+                    resolverIds.clear();
+                    mResolverScheduler.cancel(queryKey);
+                }
+            }
+            if (resolverIds.isEmpty()) {
+                mPendingResolverIds.remove(queryKey);
+                mRequesters.remove(queryKey);
+                // Keep the Query registered, so that it can still be looked up by the receivers
+                // of the results report
+                Query q = mResolvingQueries.remove(queryKey);
+                if (q != null) {
+                    mQueries.putIfAbsent(queryKey, q);
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Called by the {@link ResolverScheduler} if the given {@link Resolver} won't report the
+     * {@link Query} with the given key, because it has timed out or wasn't ready. Results which
+     * are reported later on are still merged.
+     */
+    public void onResolverAborted(int resolverId, String queryKey) {
+        if (removePendingResolverId(queryKey, resolverId, false)) {
+            sendResultsReportBroadcast(queryKey);
+        }
+    }
+
     /**
      * If the {@link ScriptResolver} has resolved the {@link Query}, this method will be called.
      * This method will then calculate a score and assign it to every {@link Result}. If the score
      * is higher than MINSCORE the {@link Result} is added to the output resultList.
      *
-     * @param queryKey the {@link Query}'s key
-     * @param results  the unfiltered {@link ArrayList} of {@link Result}s
+     * @param queryKey   the {@link Query}'s key
+     * @param results    the unfiltered {@link ArrayList} of {@link Result}s
+     * @param resolverId the id of the {@link Resolver} which has resolved the {@link Query}
      */
-    public void reportResults(String queryKey, ArrayList<Result> results) {
+    public void reportResults(String queryKey, ArrayList<Result> results, int resolverId) {
+        mResolverScheduler.onResolved(resolverId, queryKey);
         ArrayList<Result> cleanTrackResults = new ArrayList<Result>();
         ArrayList<Result> cleanAlbumResults = new ArrayList<Result>();
         ArrayList<Result> cleanArtistResults = new ArrayList<Result>();
+        ArrayList<Result> unvalidatedResults = new ArrayList<Result>();
         Query q = getQuery(queryKey);
         if (q != null && results != null) {
             for (Result r : results) {
                 if (r != null) {
-                    r.setTrackScore(q.howSimilar(r, PIPELINE_SEARCHTYPE_TRACKS));
+                    r.setTrackScore(q.howSimilar(r, PIPELINE_SEARCHTYPE_TRACKS, MINSCORE));
                     if (r.getTrackScore() >= MINSCORE && !cleanTrackResults.contains(r)) {
-                        if (r.getResolvedBy().getId() != TomahawkApp.RESOLVER_ID_EXFM
-                                || TomahawkUtils.httpHeaderRequest(r.getPath())) {
+                        int verdict = needsValidation(r) ? mStreamValidator.getVerdict(r.getPath())
+                                : StreamValidator.VERDICT_VALID;
+                        if (verdict != StreamValidator.VERDICT_INVALID) {
                             r.setType(Result.RESULT_TYPE_TRACK);
                             cleanTrackResults.add(r);
+                            if (verdict == StreamValidator.VERDICT_UNKNOWN) {
+                                unvalidatedResults.add(r);
+                            }
                         }
                     }
                     if (q.isFullTextQuery()) {
-                        r.setAlbumScore(q.howSimilar(r, PIPELINE_SEARCHTYPE_ALBUMS));
+                        r.setAlbumScore(q.howSimilar(r, PIPELINE_SEARCHTYPE_ALBUMS, MINSCORE));
                         if (r.getAlbumScore() >= MINSCORE && !cleanAlbumResults.contains(r)) {
                             r.setType(Result.RESULT_TYPE_ALBUM);
                             cleanAlbumResults.add(r);
                         }
-                        r.setArtistScore(q.howSimilar(r, PIPELINE_SEARCHTYPE_ARTISTS));
+                        r.setArtistScore(q.howSimilar(r, PIPELINE_SEARCHTYPE_ARTISTS, MINSCORE));
                         if (r.getArtistScore() >= MINSCORE && !cleanArtistResults.contains(r)) {
                             r.setType(Result.RESULT_TYPE_ARTIST);
                             cleanArtistResults.add(r);
@@ -230,30 +501,157 @@ public class PipeLine {
                     }
                 }
             }
-            mQueries.get(queryKey).addArtistResults(cleanArtistResults);
-            mQueries.get(queryKey).addAlbumResults(cleanAlbumResults);
-            mQueries.get(queryKey).addTrackResults(cleanTrackResults);
+            q.addArtistResults(cleanArtistResults);
+            q.addAlbumResults(cleanAlbumResults);
+            q.addTrackResults(cleanTrackResults);
+            Result bestResult = getBestResult(cleanTrackResults);
+            removePendingResolverId(queryKey, resolverId,
+                    !q.isFullTextQuery() && bestResult != null
+                            && bestResult.getTrackScore() == 1f);
             sendResultsReportBroadcast(TomahawkUtils.getCacheKey(q));
+            if (!q.isFullTextQuery() && resolverId != TomahawkApp.RESOLVER_ID_USERCOLLECTION) {
+                mResultCache.put(queryKey, resolverId, bestResult);
+            }
+            for (Result r : unvalidatedResults) {
+                validate(q, r);
+            }
+        } else if (removePendingResolverId(queryKey, resolverId, false)) {
+            sendResultsReportBroadcast(queryKey);
+        }
+    }
+
+    /**
+     * @return whether or not the stream url of the given {@link Result} has to be checked, before
+     * we can rely on it. Only ex.fm tends to report dead links.
+     */
+    private static boolean needsValidation(Result result) {
+        return result.getResolvedBy() != null
+                && result.getResolvedBy().getId() == TomahawkApp.RESOLVER_ID_EXFM;
+    }
+
+    /**
+     * Validate the stream url of the given {@link Result}, which has already been optimistically
+     * added to the given {@link Query}. If it isn't available, the {@link Result} is removed
+     * again and the {@link ResultCache} is updated.
+     */
+    private void validate(final Query q, final Result result) {
+        mStreamValidator.validate(result.getPath(), new Runnable() {
+            @Override
+            public void run() {
+                String queryKey = TomahawkUtils.getCacheKey(q);
+                int resolverId = result.getResolvedBy().getId();
+                q.removeTrackResult(result);
+                if (!q.isFullTextQuery()) {
+                    ArrayList<Result> remainingResults = new ArrayList<Result>();
+                    for (Result r : q.getTrackResults()) {
+                        if (r.getResolvedBy() != null && r.getResolvedBy().getId() == resolverId) {
+                            remainingResults.add(r);
+                        }
+                    }
+                    mResultCache.put(queryKey, resolverId, getBestResult(remainingResults));
+                }
+                sendResultsReportBroadcast(queryKey);
+            }
+        });
+    }
+
+    /**
+     * @return the {@link Result} with the highest track score, or null if the given {@link
+     * ArrayList} is empty
+     */
+    private static Result getBestResult(ArrayList<Result> results) {
+        Result bestResult = null;
+        for (Result result : results) {
+            if (bestResult == null || result.getTrackScore() > bestResult.getTrackScore()) {
+                bestResult = result;
+            }
         }
+        return bestResult;
     }
 
     /**
-     * @return true if one or more {@link ScriptResolver}s are currently resolving. False otherwise
+     * @return true if one or more {@link Query}s are still waiting for a {@link Resolver}. False
+     * otherwise
      */
     public boolean isResolving() {
-        for (Resolver resolver : mResolvers) {
-            if (resolver.isResolving() || !resolver.isReady()) {
+        synchronized (mPendingResolverIds) {
+            if (!mPendingResolverIds.isEmpty()) {
                 return true;
             }
         }
-        return false;
+        return !isEveryResolverReady();
+    }
+
+    /**
+     * @return true if the given {@link Query} is still waiting for a {@link Resolver}, which
+     * hasn't reported back and hasn't timed out yet. False otherwise
+     */
+    public boolean isResolving(Query query) {
+        synchronized (mPendingResolverIds) {
+            if (mPendingResolverIds.containsKey(TomahawkUtils.getCacheKey(query))) {
+                return true;
+            }
+        }
+        return !isEveryResolverReady();
+    }
+
+    /**
+     * Withdraw the given requester's request of the given {@link Query}. Only if nobody else is
+     * still waiting for it, we stop resolving it. It's removed from the queues of all {@link
+     * Resolver}s and we no longer wait for it. {@link Query}s which are already in flight are not
+     * affected, their late results are still merged.
+     *
+     * @param requester the object which has passed to {@link #resolve(Query, boolean, boolean,
+     *                  Object)}
+     */
+    public void cancel(Query query, Object requester) {
+        String queryKey = TomahawkUtils.getCacheKey(query);
+        synchronized (mPendingResolverIds) {
+            HashSet<Object> requesters = mRequesters.get(queryKey);
+            if (requesters == null || !requesters.remove(requester) || !requesters.isEmpty()) {
+                // Either the Query has already completed or someone else still needs it
+                return;
+            }
+            mRequesters.remove(queryKey);
+            mPendingResolverIds.remove(queryKey);
+            mResolvingQueries.remove(queryKey);
+        }
+        mWaitingQueries.remove(queryKey);
+        mResolverScheduler.cancel(queryKey);
+    }
+
+    /**
+     * @return the average time in ms, which the slowest {@link Resolver} takes to report back. 0
+     * if no {@link Resolver} has reported anything yet.
+     */
+    public long getAverageResolverLatency() {
+        long averageLatency = 0;
+        for (Resolver resolver : mResolvers) {
+            ResolverScheduler.LatencyHistogram latencyHistogram
+                    = mResolverScheduler.getLatencyHistogram(resolver.getId());
+            if (latencyHistogram != null) {
+                averageLatency = Math.max(averageLatency, latencyHistogram.getAverage());
+            }
+        }
+        return averageLatency;
+    }
+
+    /**
+     * @return the {@link ResolverScheduler} which dispatches the {@link Query}s to the {@link
+     * Resolver}s. Exposes queue depths and thread counts.
+     */
+    public ResolverScheduler getResolverScheduler() {
+        return mResolverScheduler;
     }
 
     /**
-     * Get the {@link Query} with the given id
+     * Get the {@link Query} with the given id. {@link Query}s which are still being resolved are
+     * always returned. Might return null, if the {@link Query} has already been resolved and
+     * garbage collected since.
      */
     public Query getQuery(String queryKey) {
-        return mQueries.get(queryKey);
+        Query query = mResolvingQueries.get(queryKey);
+        return query != null ? query : mQueries.get(queryKey);
     }
 
     /**
@@ -278,7 +676,8 @@ public class PipeLine {
         if (isEveryResolverReady()) {
             for (Query query : mWaitingQueries.values()) {
                 mWaitingQueries.remove(TomahawkUtils.getCacheKey(query));
-                resolve(query);
+                // The Query has already been requested when it was put on hold
+                submit(query, false, false);
             }
         }
     }
@@ -288,7 +687,6 @@ public class PipeLine {
     }
 
     public void onCollectionUpdated() {
-        ArrayList<Query> queries = new ArrayList<Query>(mQueries.values());
-        resolve(queries, true);
+        resolve(mQueries.values(), true);
     }
 }
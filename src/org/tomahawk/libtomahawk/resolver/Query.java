@@ -20,7 +20,9 @@ package org.tomahawk.libtomahawk.resolver;
 import org.tomahawk.libtomahawk.collection.Album;
 import org.tomahawk.libtomahawk.collection.Artist;
 import org.tomahawk.libtomahawk.collection.Track;
+import org.tomahawk.libtomahawk.utils.SortKey;
 import org.tomahawk.libtomahawk.utils.TomahawkUtils;
+import org.tomahawk.libtomahawk.utils.WeakRegistry;
 import org.tomahawk.tomahawk_android.adapters.TomahawkBaseAdapter;
 
 import android.text.TextUtils;
@@ -29,7 +31,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Author Enno Gottschalk <mrmaffen@googlemail.com> Date: 18.01.13
@@ -41,19 +43,29 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
 
     public static final String TAG = Query.class.getName();
 
-    private static ConcurrentHashMap<String, Query> sQueries
-            = new ConcurrentHashMap<String, Query>();
+    // Solved Queries are expensive to rebuild, so we keep the most recently solved ones alive
+    private static final int MAX_KEPT_ALIVE_QUERIES = 500;
+
+    private static WeakRegistry<Query> sQueries
+            = new WeakRegistry<Query>("Query", MAX_KEPT_ALIVE_QUERIES);
 
     private static HashSet<String> sBlacklistedResults = new HashSet<String>();
 
-    private ConcurrentHashMap<String, Result> mTrackResults
-            = new ConcurrentHashMap<String, Result>();
+    private SortedResultSet mTrackResults = new SortedResultSet(
+            new ResultComparator(ResultComparator.COMPARE_TRACK_SCORE));
+
+    private SortedResultSet mAlbumResults = new SortedResultSet(
+            new ResultComparator(ResultComparator.COMPARE_ALBUM_SCORE));
+
+    private SortedResultSet mArtistResults = new SortedResultSet(
+            new ResultComparator(ResultComparator.COMPARE_ARTIST_SCORE));
 
-    private ConcurrentHashMap<String, Result> mAlbumResults
-            = new ConcurrentHashMap<String, Result>();
+    // Incremented on every change of this Query's results
+    private AtomicInteger mVersion = new AtomicInteger();
 
-    private ConcurrentHashMap<String, Result> mArtistResults
-            = new ConcurrentHashMap<String, Result>();
+    private ArrayList<Query> mTrackQueries;
+
+    private int mTrackQueriesVersion = -1;
 
     private Track mTrack;
 
@@ -76,6 +88,30 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
 
     private boolean mIsFetchedViaHatchet;
 
+    private String mCacheKey;
+
+    // Written at most once, but possibly by several threads at the same time
+    private volatile CleanStrings mCleanStrings;
+
+    /**
+     * This {@link Query}'s own strings, cleaned up by {@link #cleanUpString(String, boolean)}.
+     * Immutable, so that the three strings are always published together.
+     */
+    private static class CleanStrings {
+
+        private final String mArtistName;
+
+        private final String mAlbumName;
+
+        private final String mTrackName;
+
+        private CleanStrings(String artistName, String albumName, String trackName) {
+            mArtistName = artistName;
+            mAlbumName = albumName;
+            mTrackName = trackName;
+        }
+    }
+
     /**
      * Constructs a new Query. ID should be generated in TomahawkApp.
      *
@@ -86,6 +122,7 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
         mFullTextQuery = fullTextQuery;
         mIsFullTextQuery = true;
         mIsOnlyLocal = onlyLocal;
+        mCacheKey = TomahawkUtils.getCacheKey(fullTextQuery);
     }
 
     /**
@@ -109,6 +146,7 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
         mIsFullTextQuery = false;
         mIsOnlyLocal = onlyLocal;
         mIsFetchedViaHatchet = isFetchedViaHatchet;
+        mCacheKey = TomahawkUtils.getCacheKey(trackName, albumName, artistName, mResultHint);
     }
 
     /**
@@ -116,8 +154,12 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
      * Queries being unique by trackname/artistname/albumname/resulthint
      */
     public static Query get(String fullTextQuery, boolean onlyLocal) {
-        Query query = new Query(fullTextQuery, onlyLocal);
-        return ensureCache(query);
+        String key = TomahawkUtils.getCacheKey(fullTextQuery);
+        Query query = sQueries.get(key);
+        if (query == null) {
+            query = ensureCache(key, new Query(fullTextQuery, onlyLocal));
+        }
+        return query;
     }
 
     /**
@@ -126,8 +168,7 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
      */
     public static Query get(String trackName, String albumName, String artistName,
             boolean onlyLocal) {
-        Query query = new Query(trackName, albumName, artistName, null, onlyLocal, false);
-        return ensureCache(query);
+        return get(trackName, albumName, artistName, null, onlyLocal, false);
     }
 
     /**
@@ -136,9 +177,7 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
      */
     public static Query get(String trackName, String albumName, String artistName,
             boolean onlyLocal, boolean isFetchedViaHatchet) {
-        Query query = new Query(trackName, albumName, artistName, null, onlyLocal,
-                isFetchedViaHatchet);
-        return ensureCache(query);
+        return get(trackName, albumName, artistName, null, onlyLocal, isFetchedViaHatchet);
     }
 
     /**
@@ -147,9 +186,14 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
      */
     public static Query get(String trackName, String albumName, String artistName,
             String resultHint, boolean onlyLocal, boolean isFetchedViaHatchet) {
-        Query query = new Query(trackName, albumName, artistName, resultHint, onlyLocal,
-                isFetchedViaHatchet);
-        return ensureCache(query);
+        String key = TomahawkUtils.getCacheKey(trackName, albumName, artistName,
+                resultHint != null ? resultHint : "");
+        Query query = sQueries.get(key);
+        if (query == null) {
+            query = ensureCache(key, new Query(trackName, albumName, artistName, resultHint,
+                    onlyLocal, isFetchedViaHatchet));
+        }
+        return query;
     }
 
     /**
@@ -157,9 +201,8 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
      * Queries being unique by trackname/artistname/albumname/resulthint
      */
     public static Query get(Track track, boolean onlyLocal) {
-        Query query = new Query(track.getName(), track.getAlbum().getName(),
-                track.getArtist().getName(), null, onlyLocal, false);
-        return ensureCache(query);
+        return get(track.getName(), track.getAlbum().getName(), track.getArtist().getName(), null,
+                onlyLocal, false);
     }
 
     /**
@@ -167,24 +210,22 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
      * Queries being unique by trackname/artistname/albumname/resulthint
      */
     public static Query get(Result result, boolean onlyLocal) {
-        Query query = new Query(result.getTrack().getName(), result.getTrack().getAlbum().getName(),
+        return get(result.getTrack().getName(), result.getTrack().getAlbum().getName(),
                 result.getTrack().getArtist().getName(), null, onlyLocal, false);
-        return ensureCache(query);
     }
 
     /**
-     * If Query is already in our cache, return that. Otherwise add it to the cache.
+     * Atomically add the given freshly constructed {@link Query} to our cache. If another thread
+     * has been faster, return its {@link Query} instead, so that Queries stay unique.
      */
-    private static Query ensureCache(Query query) {
-        String key = TomahawkUtils.getCacheKey(query);
-        if (!sQueries.containsKey(key)) {
-            sQueries.put(key, query);
-        }
-        return sQueries.get(key);
+    private static Query ensureCache(String key, Query query) {
+        Query cachedQuery = sQueries.putIfAbsent(key, query);
+        return cachedQuery != null ? cachedQuery : query;
     }
 
     /**
-     * Get the {@link Query} by providing its cache key
+     * Get the {@link Query} by providing its cache key. Might return null, if the {@link Query}
+     * has already been garbage collected.
      */
     public static Query getQueryByKey(String key) {
         return sQueries.get(key);
@@ -194,30 +235,45 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
         return sBlacklistedResults;
     }
 
+    /**
+     * @return the version of this {@link Query}'s results, which changes every time a {@link
+     * Result} is added or removed. Used to avoid rebuilding views when nothing has changed.
+     */
+    public int getVersion() {
+        return mVersion.get();
+    }
+
     /**
      * @return An ArrayList<Result> which contains all tracks in the resultList, sorted by score.
-     * Given as Results.
+     * Given as Results. The returned snapshot is shared and must not be modified.
      */
     public ArrayList<Result> getTrackResults() {
-        ArrayList<Result> results = new ArrayList<Result>(mTrackResults.values());
-        Collections.sort(results, new ResultComparator(ResultComparator.COMPARE_TRACK_SCORE));
-        return results;
+        return mTrackResults.getSnapshot();
     }
 
     /**
      * @return An ArrayList<Query> which contains all tracks in the resultList, sorted by score.
-     * Given as queries.
+     * Given as queries. Only rebuilt if the results have changed since the last call, the
+     * returned snapshot is shared and must not be modified.
      */
     public ArrayList<Query> getTrackQueries() {
-        HashMap<String, Query> queryMap = new HashMap<String, Query>();
-        for (Result result : getTrackResults()) {
-            Query query = Query.get(result, isOnlyLocal());
-            query.addTrackResult(result);
-            queryMap.put(TomahawkUtils.getCacheKey(query), query);
+        synchronized (mTrackResults) {
+            int version = mVersion.get();
+            if (mTrackQueries == null || mTrackQueriesVersion != version) {
+                HashMap<String, Query> queryMap = new HashMap<String, Query>();
+                for (Result result : getTrackResults()) {
+                    Query query = Query.get(result, isOnlyLocal());
+                    query.addTrackResult(result);
+                    queryMap.put(TomahawkUtils.getCacheKey(query), query);
+                }
+                ArrayList<Query> queries = new ArrayList<Query>(queryMap.values());
+                Collections.sort(queries,
+                        new QueryComparator(QueryComparator.COMPARE_TRACK_SCORE));
+                mTrackQueries = queries;
+                mTrackQueriesVersion = version;
+            }
+            return mTrackQueries;
         }
-        ArrayList<Query> queries = new ArrayList<Query>(queryMap.values());
-        Collections.sort(queries, new QueryComparator(QueryComparator.COMPARE_TRACK_SCORE));
-        return queries;
     }
 
     public Result getPreferredTrackResult() {
@@ -237,8 +293,10 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
             mPlayable = true;
             if (!mCurrentlyPlaying && result.getTrackScore() == 1f) {
                 mSolved = true;
+                sQueries.keepAlive(mCacheKey, this);
             }
             mTrackResults.put(key, result);
+            mVersion.incrementAndGet();
             if (!mCurrentlyPlaying && (getPreferredTrackResult() == null
                     || mResultHint.equals(key)
                     || getPreferredTrackResult().getTrackScore() < result.getTrackScore()
@@ -250,9 +308,49 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
         }
     }
 
+    /**
+     * Remove the given {@link Result}, e.g. because its stream turned out to be unavailable. If it
+     * has been the preferred {@link Result}, the next best {@link Result} takes its place. The
+     * {@link Result} which is currently being played is never removed.
+     */
+    public void removeTrackResult(Result result) {
+        String key = TomahawkUtils.getCacheKey(result);
+        if (mCurrentlyPlaying && key.equals(mTopTrackResultKey)) {
+            return;
+        }
+        if (mTrackResults.remove(key) == null) {
+            return;
+        }
+        mVersion.incrementAndGet();
+        mPlayable = false;
+        mSolved = false;
+        Result preferredResult = null;
+        for (Result r : mTrackResults.values()) {
+            mPlayable = true;
+            if (r.getTrackScore() == 1f) {
+                mSolved = true;
+            }
+            if (preferredResult == null
+                    || (!mResultHint.equals(TomahawkUtils.getCacheKey(preferredResult))
+                    && (mResultHint.equals(TomahawkUtils.getCacheKey(r))
+                    || preferredResult.getTrackScore() < r.getTrackScore()
+                    || (preferredResult.getTrackScore() == r.getTrackScore()
+                    && preferredResult.getResolvedBy().getWeight()
+                    < r.getResolvedBy().getWeight())))) {
+                preferredResult = r;
+            }
+        }
+        if (!mCurrentlyPlaying) {
+            // The playing top result is never removed, so it has to stay the top result
+            mTopTrackResultKey = preferredResult != null
+                    ? TomahawkUtils.getCacheKey(preferredResult) : "";
+        }
+    }
+
     public void blacklistTrackResult(Result result) {
         String key = TomahawkUtils.getCacheKey(result);
         sBlacklistedResults.add(key);
+        mVersion.incrementAndGet();
         for (Result r : getTrackResults()) {
             String newKey = TomahawkUtils.getCacheKey(r);
             if (!key.equals(newKey) && !sBlacklistedResults.contains(newKey)) {
@@ -276,12 +374,10 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
 
     /**
      * @return An ArrayList<Result> which contains all albums in the resultList, sorted by score.
-     * Given as Results.
+     * Given as Results. The returned snapshot is shared and must not be modified.
      */
     public ArrayList<Result> getAlbumResults() {
-        ArrayList<Result> results = new ArrayList<Result>(mAlbumResults.values());
-        Collections.sort(results, new ResultComparator(ResultComparator.COMPARE_ALBUM_SCORE));
-        return results;
+        return mAlbumResults.getSnapshot();
     }
 
     /**
@@ -299,6 +395,7 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
     public void addAlbumResult(Result result) {
         String key = TomahawkUtils.getCacheKey(result.getAlbum());
         mAlbumResults.put(key, result);
+        mVersion.incrementAndGet();
     }
 
     /**
@@ -312,12 +409,10 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
 
     /**
      * @return An ArrayList<Result> which contains all artists in the resultList, sorted by score.
-     * Given as Results.
+     * Given as Results. The returned snapshot is shared and must not be modified.
      */
     public ArrayList<Result> getArtistResults() {
-        ArrayList<Result> results = new ArrayList<Result>(mArtistResults.values());
-        Collections.sort(results, new ResultComparator(ResultComparator.COMPARE_ARTIST_SCORE));
-        return results;
+        return mArtistResults.getSnapshot();
     }
 
     /**
@@ -336,6 +431,7 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
     public void addArtistResult(Result result) {
         String key = TomahawkUtils.getCacheKey(result.getArtist());
         mArtistResults.put(key, result);
+        mVersion.incrementAndGet();
     }
 
     /**
@@ -347,6 +443,15 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
         }
     }
 
+    /**
+     * @return the key under which this {@link Query} is stored in our static cache. It is computed
+     * once, out of the track/album/artist names and the resultHint this {@link Query} has been
+     * constructed with, so that it stays the same after results have been added.
+     */
+    public String getCacheKey() {
+        return mCacheKey;
+    }
+
     public String getResultHint() {
         return mResultHint;
     }
@@ -392,21 +497,20 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
      * This method determines how similar the given result is to the search string.
      */
     public float howSimilar(Result r, int searchType) {
+        return howSimilar(r, searchType, 0F);
+    }
+
+    /**
+     * This method determines how similar the given result is to the search string.
+     *
+     * @param minScore scores below this value are of no interest. They are only guaranteed to be
+     *                 below minScore, which allows the computation to stop early.
+     */
+    public float howSimilar(Result r, int searchType, float minScore) {
+        CleanStrings clean = ensureCleanedUpStrings();
         String resultArtistName = "";
         String resultAlbumName = "";
         String resultTrackName = "";
-        String artistName;
-        String albumName;
-        String trackName;
-        if (isFullTextQuery()) {
-            artistName = cleanUpString(mFullTextQuery, true);
-            albumName = cleanUpString(mFullTextQuery, false);
-            trackName = albumName;
-        } else {
-            artistName = cleanUpString(mTrack.getArtist().getName(), false);
-            albumName = cleanUpString(mTrack.getAlbum().getName(), false);
-            trackName = cleanUpString(mTrack.getName(), false);
-        }
         if (r.getArtist().getName() != null) {
             resultArtistName = cleanUpString(r.getArtist().getName(), false);
         }
@@ -417,95 +521,161 @@ public class Query implements TomahawkBaseAdapter.TomahawkListItem {
             resultTrackName = cleanUpString(r.getTrack().getName(), false);
         }
 
-        int distanceArtist = TomahawkUtils
-                .getLevenshteinDistance(artistName, resultArtistName);
-        int distanceAlbum = TomahawkUtils
-                .getLevenshteinDistance(albumName, resultAlbumName);
-        int distanceTrack = TomahawkUtils.getLevenshteinDistance(trackName, resultTrackName);
-
-        int maxLengthArtist = Math
-                .max(artistName.length(), resultArtistName.length());
-        int maxLengthAlbum = Math
-                .max(albumName.length(), resultAlbumName.length());
-        int maxLengthTrack = Math.max(trackName.length(), resultTrackName.length());
-
-        float distanceScoreArtist = (float) (maxLengthArtist - distanceArtist) / maxLengthArtist;
-        float distanceScoreAlbum;
-        if (maxLengthAlbum > 0) {
-            distanceScoreAlbum = (float) (maxLengthAlbum - distanceAlbum) / maxLengthAlbum;
-        } else {
-            distanceScoreAlbum = 0F;
-        }
-        float distanceScoreTrack = (float) (maxLengthTrack - distanceTrack) / maxLengthTrack;
-
         if (isFullTextQuery()) {
-            final String searchString = cleanUpString(getFullTextQuery(), false);
-            ArrayList<String> resultSearchStrings = new ArrayList<String>();
+            final String searchString = clean.mTrackName;
+            String resultSearchString = null;
+            String resultSearchString2 = null;
             switch (searchType) {
                 case PipeLine.PIPELINE_SEARCHTYPE_TRACKS:
-                    resultSearchStrings
-                            .add(cleanUpString(resultArtistName + " " + resultTrackName, false));
-                    resultSearchStrings.add(cleanUpString(resultTrackName, false));
+                    resultSearchString = joinCleanStrings(resultArtistName, resultTrackName);
+                    resultSearchString2 = resultTrackName;
                     break;
                 case PipeLine.PIPELINE_SEARCHTYPE_ARTISTS:
-                    resultSearchStrings.add(cleanUpString(resultArtistName, false));
+                    resultSearchString = resultArtistName;
                     break;
                 case PipeLine.PIPELINE_SEARCHTYPE_ALBUMS:
                     if (!TextUtils.isEmpty(resultAlbumName)) {
-                        resultSearchStrings
-                                .add(cleanUpString(resultArtistName + " " + resultAlbumName,
-                                        false));
-                        resultSearchStrings.add(cleanUpString(resultAlbumName, false));
+                        resultSearchString = joinCleanStrings(resultArtistName, resultAlbumName);
+                        resultSearchString2 = resultAlbumName;
                     }
                     break;
             }
+            if (resultSearchString == null) {
+                return 0F;
+            }
 
+            // We are only interested in the maximum of all scores. So every score only has to be
+            // computed exactly, if it is higher than the best score we already know of.
             float maxResult = 0F;
-            for (String resultSearchString : resultSearchStrings) {
-                int distanceArtistTrack = TomahawkUtils
-                        .getLevenshteinDistance(searchString, resultSearchString);
-                int maxLengthArtistTrack = Math
-                        .max(searchString.length(), resultSearchString.length());
-                float distanceScoreArtistTrack =
-                        (float) (maxLengthArtistTrack - distanceArtistTrack) / maxLengthArtistTrack;
-
-                float result = Math.max(distanceScoreArtist, distanceScoreAlbum);
-                result = Math.max(result, distanceScoreArtistTrack);
-                result = Math.max(result, distanceScoreTrack);
-                if (resultSearchString.contains(searchString)) {
-                    result = Math.max(result, 0.9F);
-                }
-                maxResult = Math.max(result, maxResult);
+            if (resultSearchString.contains(searchString) || (resultSearchString2 != null
+                    && resultSearchString2.contains(searchString))) {
+                maxResult = 0.9F;
+            }
+            maxResult = Math.max(maxResult, TomahawkUtils.getSimilarityScore(clean.mArtistName,
+                    resultArtistName, Math.max(minScore, maxResult)));
+            if (!TextUtils.isEmpty(clean.mAlbumName) || !TextUtils.isEmpty(resultAlbumName)) {
+                maxResult = Math.max(maxResult, TomahawkUtils.getSimilarityScore(clean.mAlbumName,
+                        resultAlbumName, Math.max(minScore, maxResult)));
+            }
+            maxResult = Math.max(maxResult, TomahawkUtils.getSimilarityScore(clean.mTrackName,
+                    resultTrackName, Math.max(minScore, maxResult)));
+            maxResult = Math.max(maxResult, TomahawkUtils.getSimilarityScore(searchString,
+                    resultSearchString, Math.max(minScore, maxResult)));
+            if (resultSearchString2 != null) {
+                maxResult = Math.max(maxResult, TomahawkUtils.getSimilarityScore(searchString,
+                        resultSearchString2, Math.max(minScore, maxResult)));
             }
             return maxResult;
         } else {
+            float distanceScoreArtist = TomahawkUtils.getSimilarityScore(clean.mArtistName,
+                    resultArtistName, 0F);
+            float distanceScoreAlbum;
             if (TextUtils.isEmpty(mTrack.getAlbum().getName())) {
                 distanceScoreAlbum = 1F;
+            } else if (!TextUtils.isEmpty(clean.mAlbumName)
+                    || !TextUtils.isEmpty(resultAlbumName)) {
+                distanceScoreAlbum = TomahawkUtils.getSimilarityScore(clean.mAlbumName,
+                        resultAlbumName, 0F);
+            } else {
+                distanceScoreAlbum = 0F;
             }
+            // The track score, which the result needs to reach minScore in total
+            float minScoreTrack = (minScore * 10 - distanceScoreArtist * 4 - distanceScoreAlbum)
+                    / 5;
+            float distanceScoreTrack = TomahawkUtils.getSimilarityScore(clean.mTrackName,
+                    resultTrackName, minScoreTrack);
 
             return (distanceScoreArtist * 4 + distanceScoreAlbum + distanceScoreTrack * 5) / 10;
         }
     }
 
     /**
-     * Clean up the given String.
+     * Clean up this {@link Query}'s own strings, if that hasn't been done yet. They never change,
+     * so this only has to be done once per {@link Query}. Threads racing here compute equal
+     * results, so whichever one is published last doesn't matter.
+     */
+    private CleanStrings ensureCleanedUpStrings() {
+        CleanStrings clean = mCleanStrings;
+        if (clean == null) {
+            if (isFullTextQuery()) {
+                String cleanFullTextQuery = cleanUpString(mFullTextQuery, false);
+                clean = new CleanStrings(cleanUpString(mFullTextQuery, true), cleanFullTextQuery,
+                        cleanFullTextQuery);
+            } else {
+                clean = new CleanStrings(cleanUpString(mTrack.getArtist().getName(), false),
+                        cleanUpString(mTrack.getAlbum().getName(), false),
+                        cleanUpString(mTrack.getName(), false));
+            }
+            mCleanStrings = clean;
+        }
+        return clean;
+    }
+
+    /**
+     * Join the two given already cleaned up Strings with a space in between. The result is the
+     * same as cleaning up the joined String, but without doing the work again.
+     */
+    private static String joinCleanStrings(String first, String second) {
+        if (first.length() == 0) {
+            return second;
+        } else if (second.length() == 0) {
+            return first;
+        }
+        return first + " " + second;
+    }
+
+    /**
+     * Clean up the given String. Every run of two or more whitespace characters is collapsed into
+     * a single space.
      *
      * @param replaceArticle wether or not the prefix "the " should be removed
      * @return the clean String
      */
     public String cleanUpString(String in, boolean replaceArticle) {
-        String out = in.toLowerCase().trim().replaceAll("[\\s]{2,}", " ");
+        String out = in.toLowerCase().trim();
+        StringBuilder builder = null;
+        int length = out.length();
+        for (int i = 0; i < length; i++) {
+            char c = out.charAt(i);
+            if (isWhitespace(c) && i + 1 < length && isWhitespace(out.charAt(i + 1))) {
+                if (builder == null) {
+                    builder = new StringBuilder(length);
+                    builder.append(out, 0, i);
+                }
+                builder.append(' ');
+                while (i + 1 < length && isWhitespace(out.charAt(i + 1))) {
+                    i++;
+                }
+            } else if (builder != null) {
+                builder.append(c);
+            }
+        }
+        if (builder != null) {
+            out = builder.toString();
+        }
         if (replaceArticle && out.startsWith("the ")) {
             out = out.substring(4);
         }
         return out;
     }
 
+    /**
+     * @return whether or not the given char is matched by the regex character class "\\s"
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
     @Override
     public String getName() {
         return getPreferredTrack().getName();
     }
 
+    @Override
+    public SortKey getSortKey() {
+        return getPreferredTrack().getSortKey();
+    }
+
     @Override
     public Artist getArtist() {
         return getPreferredTrack().getArtist();
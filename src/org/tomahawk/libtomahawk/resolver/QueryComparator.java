@@ -32,7 +32,7 @@ public class QueryComparator implements Comparator<Query> {
     public static final int COMPARE_TRACK_SCORE = 2;
 
     //Flag containing the current mode to be used
-    private static int mFlag = COMPARE_ALBUMPOS;
+    private final int mFlag;
 
     /**
      * Construct this {@link QueryComparator}
@@ -59,7 +59,7 @@ public class QueryComparator implements Comparator<Query> {
                 Integer num2 = q2.getPreferredTrack().getAlbumPos();
                 return num1.compareTo(num2);
             case COMPARE_ALPHA:
-                return q1.getName().compareTo(q2.getName());
+                return q1.getSortKey().compareTo(q2.getSortKey());
             case COMPARE_TRACK_SCORE:
                 Float score1 = 0f;
                 if (q1.getPreferredTrackResult() != null) {
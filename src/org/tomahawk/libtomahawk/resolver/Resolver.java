@@ -55,4 +55,10 @@ public interface Resolver {
      * @return this {@link Resolver}'s weight
      */
     public int getWeight();
+
+    /**
+     * @return the time in milliseconds this {@link Resolver} may take to resolve a {@link Query},
+     * or 0 if it doesn't define one
+     */
+    public int getTimeout();
 }
@@ -0,0 +1,581 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.resolver;
+
+import org.tomahawk.libtomahawk.utils.TomahawkUtils;
+
+import android.os.Build;
+import android.util.Log;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispatches {@link Query}s to the {@link Resolver}s of the {@link PipeLine}. Every {@link
+ * Resolver} gets its own single-threaded executor and a bounded number of {@link Query}s which
+ * may be in flight at the same time. Everything else waits in the {@link Resolver}'s queue, which
+ * has a priority lane for the currently playing and the currently visible {@link Query}s. If the
+ * normal lane is full, further {@link Query}s are deferred and moved up into the lane as it
+ * drains, so that a huge playlist or collection can't flood the resolvers, but still gets
+ * resolved completely.
+ *
+ * Every {@link Query} which has been handed over to a {@link Resolver} has a deadline, which is
+ * given by {@link Resolver#getTimeout()}. If the {@link Resolver} misses it, its slot is freed
+ * and the {@link PipeLine} is told to stop waiting for it. The time every {@link Resolver} takes
+ * is recorded in a {@link LatencyHistogram}.
+ */
+public class ResolverScheduler {
+
+    private final static String TAG = ResolverScheduler.class.getName();
+
+    private static final int MAX_IN_FLIGHT = 4;
+
+    private static final int MAX_QUEUED = 50;
+
+    private static final int CALLBACK_THREADS = 2;
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    // Used for Resolvers which don't define a timeout themselves
+    private static final int DEFAULT_TIMEOUT = 10000;
+
+    // ScheduledThreadPoolExecutor.setRemoveOnCancelPolicy has been added in API 21
+    private static final int REMOVE_ON_CANCEL_SDK_INT = 21;
+
+    // Without the remove-on-cancel policy, the cancelled timeouts are purged from the queue of
+    // mTimeoutExecutor after this many cancellations
+    private static final int PURGE_INTERVAL = 100;
+
+    private PipeLine mPipeLine;
+
+    private ConcurrentHashMap<Integer, Lane> mLanes = new ConcurrentHashMap<Integer, Lane>();
+
+    private ThreadPoolExecutor mCallbackExecutor;
+
+    private ScheduledThreadPoolExecutor mTimeoutExecutor;
+
+    private boolean mIsRemoveOnCancel;
+
+    private AtomicInteger mDeferredCount = new AtomicInteger();
+
+    private AtomicInteger mCancelledTimeoutCount = new AtomicInteger();
+
+    /**
+     * A histogram of the time a {@link Resolver} took to report back, with exponentially growing
+     * buckets
+     */
+    public static class LatencyHistogram {
+
+        private static final long[] BUCKET_BOUNDS = {50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+        private int[] mCounts = new int[BUCKET_BOUNDS.length + 1];
+
+        private int mTimedOutCount;
+
+        private long mTotalTime;
+
+        private int mCount;
+
+        private synchronized void add(long latency) {
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS.length && latency > BUCKET_BOUNDS[bucket]) {
+                bucket++;
+            }
+            mCounts[bucket]++;
+            mTotalTime += latency;
+            mCount++;
+        }
+
+        private synchronized void addTimedOut() {
+            mTimedOutCount++;
+        }
+
+        /**
+         * @return the number of {@link Query}s which have been reported back within the given
+         * number of milliseconds, rounded up to the next bucket bound
+         */
+        public synchronized int getCount(long maxLatency) {
+            int count = 0;
+            for (int i = 0; i < mCounts.length; i++) {
+                count += mCounts[i];
+                if (i < BUCKET_BOUNDS.length && BUCKET_BOUNDS[i] >= maxLatency) {
+                    break;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * @return the number of {@link Query}s which haven't been reported back in time
+         */
+        public synchronized int getTimedOutCount() {
+            return mTimedOutCount;
+        }
+
+        /**
+         * @return the average time in milliseconds it took to report a {@link Query} back
+         */
+        public synchronized long getAverage() {
+            return mCount > 0 ? mTotalTime / mCount : 0;
+        }
+
+        @Override
+        public synchronized String toString() {
+            StringBuilder sb = new StringBuilder("{");
+            for (int i = 0; i < mCounts.length; i++) {
+                sb.append(i < BUCKET_BOUNDS.length ? "<=" + BUCKET_BOUNDS[i] : ">" + BUCKET_BOUNDS[
+                        BUCKET_BOUNDS.length - 1]).append("ms:").append(mCounts[i]).append(", ");
+            }
+            return sb.append("timedOut:").append(mTimedOutCount).append(", avg:")
+                    .append(getAverage()).append("ms}").toString();
+        }
+    }
+
+    /**
+     * A {@link Task} which has been handed over to a {@link Resolver}
+     */
+    private static class InFlight {
+
+        private long mStartTime;
+
+        private ScheduledFuture<?> mTimeout;
+
+        private InFlight(long startTime) {
+            mStartTime = startTime;
+        }
+    }
+
+    /**
+     * A single {@link Query} waiting to be resolved by a {@link Resolver}
+     */
+    private static class Task {
+
+        private Query mQuery;
+
+        private String mQueryKey;
+
+        private boolean mIsPriority;
+
+        private Task(Query query, boolean isPriority) {
+            mQuery = query;
+            mQueryKey = TomahawkUtils.getCacheKey(query);
+            mIsPriority = isPriority;
+        }
+    }
+
+    /**
+     * The queue, the in-flight bookkeeping and the executor of a single {@link Resolver}
+     */
+    private class Lane {
+
+        private Resolver mResolver;
+
+        private LinkedList<Task> mPriorityTasks = new LinkedList<Task>();
+
+        private LinkedList<Task> mTasks = new LinkedList<Task>();
+
+        // The Tasks which didn't fit into mTasks anymore, in the order they have been scheduled
+        private LinkedHashMap<String, Task> mDeferredTasks = new LinkedHashMap<String, Task>();
+
+        private HashMap<String, InFlight> mInFlight = new HashMap<String, InFlight>();
+
+        private ThreadPoolExecutor mExecutor;
+
+        private LatencyHistogram mLatencyHistogram = new LatencyHistogram();
+
+        private Lane(Resolver resolver) {
+            mResolver = resolver;
+            mExecutor = createExecutor("Resolver-" + resolver.getId(), 1);
+        }
+
+        private synchronized void enqueue(Task task) {
+            if (mInFlight.containsKey(task.mQueryKey)) {
+                return;
+            }
+            Task queued = remove(task.mQueryKey);
+            if (queued != null && queued.mIsPriority) {
+                task.mIsPriority = true;
+            }
+            if (task.mIsPriority) {
+                mPriorityTasks.addFirst(task);
+            } else if (mTasks.size() < MAX_QUEUED) {
+                mTasks.addLast(task);
+            } else {
+                mDeferredTasks.put(task.mQueryKey, task);
+                mDeferredCount.incrementAndGet();
+            }
+            drain();
+        }
+
+        private synchronized void onResolved(String queryKey) {
+            InFlight inFlight = mInFlight.remove(queryKey);
+            if (inFlight != null) {
+                if (inFlight.mTimeout != null) {
+                    cancelTimeout(inFlight.mTimeout);
+                }
+                mLatencyHistogram.add(System.currentTimeMillis() - inFlight.mStartTime);
+            }
+            drain();
+        }
+
+        /**
+         * Called if the {@link Resolver} wasn't ready to resolve the given {@link InFlight}
+         */
+        private synchronized void onRejected(String queryKey, InFlight inFlight) {
+            if (mInFlight.get(queryKey) == inFlight) {
+                mInFlight.remove(queryKey);
+                if (inFlight.mTimeout != null) {
+                    cancelTimeout(inFlight.mTimeout);
+                }
+            }
+            abort(queryKey);
+            drain();
+        }
+
+        /**
+         * Called as soon as the deadline of the given {@link InFlight} has passed
+         */
+        private synchronized void onTimedOut(String queryKey, InFlight inFlight) {
+            if (mInFlight.get(queryKey) == inFlight) {
+                mInFlight.remove(queryKey);
+                mLatencyHistogram.addTimedOut();
+                Log.d(TAG, "Resolver " + mResolver.getId() + " timed out after "
+                        + (System.currentTimeMillis() - inFlight.mStartTime) + "ms");
+                abort(queryKey);
+                drain();
+            }
+        }
+
+        /**
+         * Remove every waiting {@link Task} for the given {@link Query}
+         */
+        private synchronized void cancel(String queryKey) {
+            remove(queryKey);
+        }
+
+        /**
+         * Tell the {@link PipeLine} that this {@link Resolver} won't report the {@link Query} with
+         * the given key in time
+         */
+        private void abort(final String queryKey) {
+            mCallbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    mPipeLine.onResolverAborted(mResolver.getId(), queryKey);
+                }
+            });
+        }
+
+        private Task remove(String queryKey) {
+            Task task = remove(mPriorityTasks, queryKey);
+            if (task == null) {
+                task = remove(mTasks, queryKey);
+            }
+            if (task == null) {
+                task = mDeferredTasks.remove(queryKey);
+            }
+            return task;
+        }
+
+        private Task remove(LinkedList<Task> tasks, String queryKey) {
+            Iterator<Task> iterator = tasks.iterator();
+            while (iterator.hasNext()) {
+                Task task = iterator.next();
+                if (task.mQueryKey.equals(queryKey)) {
+                    iterator.remove();
+                    return task;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Move the oldest deferred {@link Task}s up into the normal lane, as long as there's room
+         */
+        private void refill() {
+            Iterator<Task> iterator = mDeferredTasks.values().iterator();
+            while (mTasks.size() < MAX_QUEUED && iterator.hasNext()) {
+                mTasks.addLast(iterator.next());
+                iterator.remove();
+            }
+        }
+
+        /**
+         * Hand over as many waiting {@link Task}s to the executor as there are free slots
+         */
+        private void drain() {
+            while (mInFlight.size() < MAX_IN_FLIGHT
+                    && (!mPriorityTasks.isEmpty() || !mTasks.isEmpty())) {
+                final Task task = !mPriorityTasks.isEmpty() ? mPriorityTasks.removeFirst()
+                        : mTasks.removeFirst();
+                refill();
+                final InFlight inFlight = new InFlight(System.currentTimeMillis());
+                mInFlight.put(task.mQueryKey, inFlight);
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (Lane.this) {
+                            // The deadline starts as soon as the Resolver actually gets the Query
+                            inFlight.mStartTime = System.currentTimeMillis();
+                            if (mInFlight.get(task.mQueryKey) == inFlight) {
+                                int timeout = mResolver.getTimeout() > 0 ? mResolver.getTimeout()
+                                        : DEFAULT_TIMEOUT;
+                                inFlight.mTimeout = mTimeoutExecutor.schedule(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        onTimedOut(task.mQueryKey, inFlight);
+                                    }
+                                }, timeout, TimeUnit.MILLISECONDS);
+                            }
+                        }
+                        if (!mResolver.resolve(task.mQuery)) {
+                            onRejected(task.mQueryKey, inFlight);
+                        }
+                    }
+                });
+            }
+        }
+
+        private synchronized int getQueueDepth() {
+            return mPriorityTasks.size() + mTasks.size() + mDeferredTasks.size();
+        }
+
+        private synchronized int getInFlightCount() {
+            return mInFlight.size();
+        }
+    }
+
+    /**
+     * Construct a new {@link ResolverScheduler}
+     *
+     * @param pipeLine the {@link PipeLine} which is told about {@link Resolver}s that have missed
+     *                 their deadline
+     */
+    public ResolverScheduler(PipeLine pipeLine) {
+        mPipeLine = pipeLine;
+        mCallbackExecutor = createExecutor("ResolverCallback", CALLBACK_THREADS);
+        mTimeoutExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ResolverTimeout");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        mIsRemoveOnCancel = setRemoveOnCancelPolicy(mTimeoutExecutor);
+    }
+
+    /**
+     * Let the given executor remove cancelled tasks from its queue right away, instead of keeping
+     * them until their delay has passed. Only available since API 21, which we don't compile
+     * against, so it's called via reflection.
+     *
+     * @return whether or not the policy has been set
+     */
+    private static boolean setRemoveOnCancelPolicy(ScheduledThreadPoolExecutor executor) {
+        if (Build.VERSION.SDK_INT >= REMOVE_ON_CANCEL_SDK_INT) {
+            try {
+                ScheduledThreadPoolExecutor.class
+                        .getMethod("setRemoveOnCancelPolicy", boolean.class)
+                        .invoke(executor, true);
+                return true;
+            } catch (NoSuchMethodException e) {
+                Log.e(TAG, "setRemoveOnCancelPolicy: " + e.getClass() + ": "
+                        + e.getLocalizedMessage());
+            } catch (IllegalAccessException e) {
+                Log.e(TAG, "setRemoveOnCancelPolicy: " + e.getClass() + ": "
+                        + e.getLocalizedMessage());
+            } catch (InvocationTargetException e) {
+                Log.e(TAG, "setRemoveOnCancelPolicy: " + e.getClass() + ": "
+                        + e.getLocalizedMessage());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Cancel the given timeout. Almost every timeout is cancelled, because its {@link Resolver}
+     * has reported back in time, so older devices purge the cancelled ones every now and then.
+     */
+    private void cancelTimeout(ScheduledFuture<?> timeout) {
+        timeout.cancel(false);
+        if (!mIsRemoveOnCancel && mCancelledTimeoutCount.incrementAndGet() % PURGE_INTERVAL == 0) {
+            mTimeoutExecutor.purge();
+        }
+    }
+
+    private static ThreadPoolExecutor createExecutor(final String name, int threadCount) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, name + "-" + mCount.incrementAndGet());
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private Lane getLane(Resolver resolver) {
+        Lane lane = mLanes.get(resolver.getId());
+        if (lane == null) {
+            lane = new Lane(resolver);
+            Lane existingLane = mLanes.putIfAbsent(resolver.getId(), lane);
+            if (existingLane != null) {
+                lane = existingLane;
+            }
+        }
+        return lane;
+    }
+
+    /**
+     * Schedule the given {@link Query} to be resolved by the given {@link Resolver}. A {@link
+     * Query} which is already waiting or in flight for this {@link Resolver} won't be scheduled
+     * twice, but it will be moved to the priority lane if isPriority is true.
+     *
+     * @param isPriority whether or not the {@link Query} should skip the normal queue. Used for
+     *                   the currently playing and the currently visible {@link Query}s
+     */
+    public void schedule(Resolver resolver, Query query, boolean isPriority) {
+        getLane(resolver).enqueue(new Task(query, isPriority));
+    }
+
+    /**
+     * Called as soon as the given {@link Resolver} has reported the results for the given {@link
+     * Query}, which frees up a slot for the next waiting {@link Query}.
+     */
+    public void onResolved(int resolverId, String queryKey) {
+        Lane lane = mLanes.get(resolverId);
+        if (lane != null) {
+            lane.onResolved(queryKey);
+        }
+    }
+
+    /**
+     * Remove the given {@link Query} from the queues of all {@link Resolver}s. {@link Query}s
+     * which are already in flight are not affected, their late results are still reported.
+     */
+    public void cancel(String queryKey) {
+        for (Lane lane : mLanes.values()) {
+            lane.cancel(queryKey);
+        }
+    }
+
+    /**
+     * Run the given {@link Runnable} on the shared, bounded callback pool. Used by the {@link
+     * Resolver}s to process their results off the calling thread.
+     */
+    public void executeCallback(Runnable runnable) {
+        mCallbackExecutor.execute(runnable);
+    }
+
+    /**
+     * @return the number of {@link Query}s waiting for the {@link Resolver} with the given id
+     */
+    public int getQueueDepth(int resolverId) {
+        Lane lane = mLanes.get(resolverId);
+        return lane != null ? lane.getQueueDepth() : 0;
+    }
+
+    /**
+     * @return the number of {@link Query}s waiting for any {@link Resolver}
+     */
+    public int getQueueDepth() {
+        int queueDepth = 0;
+        for (Lane lane : mLanes.values()) {
+            queueDepth += lane.getQueueDepth();
+        }
+        return queueDepth;
+    }
+
+    /**
+     * @return the number of {@link Query}s which the {@link Resolver} with the given id currently
+     * resolves
+     */
+    public int getInFlightCount(int resolverId) {
+        Lane lane = mLanes.get(resolverId);
+        return lane != null ? lane.getInFlightCount() : 0;
+    }
+
+    /**
+     * @return the number of threads currently alive in all pools of this {@link
+     * ResolverScheduler}
+     */
+    public int getThreadCount() {
+        int threadCount = mCallbackExecutor.getPoolSize();
+        for (Lane lane : mLanes.values()) {
+            threadCount += lane.mExecutor.getPoolSize();
+        }
+        return threadCount;
+    }
+
+    /**
+     * @return the {@link LatencyHistogram} of the {@link Resolver} with the given id, or null if
+     * it hasn't resolved anything yet
+     */
+    public LatencyHistogram getLatencyHistogram(int resolverId) {
+        Lane lane = mLanes.get(resolverId);
+        return lane != null ? lane.mLatencyHistogram : null;
+    }
+
+    /**
+     * @return the number of timeouts which are waiting in the queue of the timeout executor,
+     * including the cancelled ones which haven't been removed yet
+     */
+    int getTimeoutQueueSize() {
+        return mTimeoutExecutor.getQueue().size();
+    }
+
+    /**
+     * @return the number of {@link Query}s which have been deferred because a queue was full
+     */
+    public int getDeferredCount() {
+        return mDeferredCount.get();
+    }
+
+    /**
+     * @return a short summary of the current load, suitable for logging
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("ResolverScheduler{queued=").append(getQueueDepth())
+                .append(", threads=").append(getThreadCount()).append(", deferred=")
+                .append(getDeferredCount());
+        for (Lane lane : mLanes.values()) {
+            sb.append(", latency").append(lane.mResolver.getId()).append("=")
+                    .append(lane.mLatencyHistogram);
+        }
+        return sb.append("}").toString();
+    }
+}
@@ -20,6 +20,7 @@ package org.tomahawk.libtomahawk.resolver;
 import org.tomahawk.libtomahawk.collection.Album;
 import org.tomahawk.libtomahawk.collection.Artist;
 import org.tomahawk.libtomahawk.collection.Track;
+import org.tomahawk.libtomahawk.utils.TomahawkUtils;
 
 import android.text.TextUtils;
 
@@ -45,6 +46,8 @@ public class Result {
      */
     private String mPath;
 
+    private String mCacheKey;
+
     private int mBitrate;
 
     private int mSize;
@@ -210,6 +213,19 @@ public class Result {
         return mIsLocal;
     }
 
+    /**
+     * @return the key which identifies this {@link org.tomahawk.libtomahawk.resolver.Result}.
+     * Computed once per path.
+     */
+    public String getCacheKey() {
+        String cacheKey = mCacheKey;
+        if (cacheKey == null) {
+            cacheKey = TomahawkUtils.getCacheKey(mPath);
+            mCacheKey = cacheKey;
+        }
+        return cacheKey;
+    }
+
     /**
      * @return the filePath/url to this {@link org.tomahawk.libtomahawk.resolver.Result}'s audio
      * data
@@ -226,6 +242,7 @@ public class Result {
      */
     public void setPath(String path) {
         this.mPath = path;
+        mCacheKey = null;
         if (path != null && !TextUtils.isEmpty(path)) {
             isResolved = true;
         }
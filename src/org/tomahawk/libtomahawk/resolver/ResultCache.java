@@ -0,0 +1,338 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.resolver;
+
+import org.tomahawk.libtomahawk.database.ResultCacheSQLiteHelper;
+import org.tomahawk.tomahawk_android.TomahawkApp;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A persistent cache of the best {@link Result} every {@link Resolver} has reported for a {@link
+ * Query}, keyed by the {@link Query}'s cache key. This way solved {@link Query}s survive restarts
+ * and the cached playlists don't have to be resolved through the network again on every start.
+ * Every entry has a {@link Resolver} specific time to live. Stale entries are still used, but
+ * their {@link Resolver} is asked to revalidate them in the background.
+ *
+ * All database access happens on a single worker thread.
+ */
+public class ResultCache {
+
+    private final static String TAG = ResultCache.class.getName();
+
+    private static final long HOUR = 60L * 60L * 1000L;
+
+    private static final long DAY = 24L * HOUR;
+
+    // Entries which are older than this are deleted completely
+    private static final long MAX_AGE = 30L * DAY;
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final String[] sAllResultsColumns = {
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_RESOLVERID,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_URL,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_SCORE,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_BITRATE,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_DURATION,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_TIMESTAMP,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_SIZE,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_LINKURL,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_PURCHASEURL,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_TRACKNAME,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_ALBUMNAME,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_ARTISTNAME,
+            ResultCacheSQLiteHelper.RESULTS_COLUMN_ALBUMPOS};
+
+    private ResultCacheSQLiteHelper mDbHelper;
+
+    private SQLiteDatabase mDatabase;
+
+    private ThreadPoolExecutor mExecutor;
+
+    /**
+     * A single cached {@link Result}. Besides the stream url, it keeps everything the {@link
+     * Resolver} has reported about it, so that the restored {@link Result} is scored and displayed
+     * like the original one.
+     */
+    public static class Entry {
+
+        private int mResolverId;
+
+        private String mUrl;
+
+        private float mScore;
+
+        private int mBitrate;
+
+        private long mDuration;
+
+        private long mTimeStamp;
+
+        private int mSize;
+
+        private String mLinkUrl;
+
+        private String mPurchaseUrl;
+
+        // The names of the Track the Resolver has found, which may differ from the Query's ones
+        private String mTrackName;
+
+        private String mAlbumName;
+
+        private String mArtistName;
+
+        private int mAlbumPos;
+
+        public int getResolverId() {
+            return mResolverId;
+        }
+
+        public String getUrl() {
+            return mUrl;
+        }
+
+        public float getScore() {
+            return mScore;
+        }
+
+        public int getBitrate() {
+            return mBitrate;
+        }
+
+        public long getDuration() {
+            return mDuration;
+        }
+
+        public int getSize() {
+            return mSize;
+        }
+
+        public String getLinkUrl() {
+            return mLinkUrl;
+        }
+
+        public String getPurchaseUrl() {
+            return mPurchaseUrl;
+        }
+
+        public String getTrackName() {
+            return mTrackName;
+        }
+
+        public String getAlbumName() {
+            return mAlbumName;
+        }
+
+        public String getArtistName() {
+            return mArtistName;
+        }
+
+        public int getAlbumPos() {
+            return mAlbumPos;
+        }
+
+        /**
+         * @return whether or not this {@link Entry} has outlived the time to live of its {@link
+         * Resolver} and should be revalidated
+         */
+        public boolean isStale() {
+            return System.currentTimeMillis() - mTimeStamp > getTimeToLive(mResolverId);
+        }
+    }
+
+    public ResultCache(Context context) {
+        mDbHelper = new ResultCacheSQLiteHelper(context);
+        mExecutor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ResultCache");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                deleteExpired();
+            }
+        });
+    }
+
+    /**
+     * @return how long {@link Result}s of the {@link Resolver} with the given id may be used
+     * without being revalidated. Stream urls of ex.fm tend to go stale quickly, whereas Spotify
+     * uris practically never change.
+     */
+    public static long getTimeToLive(int resolverId) {
+        switch (resolverId) {
+            case TomahawkApp.RESOLVER_ID_SPOTIFY:
+                return 7L * DAY;
+            case TomahawkApp.RESOLVER_ID_EXFM:
+                return 6L * HOUR;
+            default:
+                return DAY;
+        }
+    }
+
+    /**
+     * Run the given {@link Runnable} on this {@link ResultCache}'s worker thread, so that it can
+     * safely call {@link #get(String)}.
+     */
+    public void execute(Runnable runnable) {
+        mExecutor.execute(runnable);
+    }
+
+    /**
+     * Get every cached {@link Entry} of the {@link Query} with the given key. Blocks, so it should
+     * only be called from within a {@link Runnable} passed to {@link #execute(Runnable)}.
+     */
+    public ArrayList<Entry> get(String queryKey) {
+        ArrayList<Entry> entries = new ArrayList<Entry>();
+        SQLiteDatabase database = getDatabase();
+        if (database == null) {
+            return entries;
+        }
+        Cursor cursor = database.query(ResultCacheSQLiteHelper.TABLE_RESULTS,
+                sAllResultsColumns, ResultCacheSQLiteHelper.RESULTS_COLUMN_QUERYKEY + " = ?",
+                new String[]{queryKey}, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                Entry entry = new Entry();
+                entry.mResolverId = cursor.getInt(0);
+                entry.mUrl = cursor.getString(1);
+                entry.mScore = cursor.getFloat(2);
+                entry.mBitrate = cursor.getInt(3);
+                entry.mDuration = cursor.getLong(4);
+                entry.mTimeStamp = cursor.getLong(5);
+                entry.mSize = cursor.getInt(6);
+                entry.mLinkUrl = cursor.getString(7);
+                entry.mPurchaseUrl = cursor.getString(8);
+                entry.mTrackName = cursor.getString(9);
+                entry.mAlbumName = cursor.getString(10);
+                entry.mArtistName = cursor.getString(11);
+                entry.mAlbumPos = cursor.getInt(12);
+                entries.add(entry);
+            }
+        } finally {
+            cursor.close();
+        }
+        return entries;
+    }
+
+    /**
+     * Asynchronously store the given {@link Result} as the best {@link Result} the {@link
+     * Resolver} with the given id has found for the {@link Query} with the given key. If result
+     * is null, a previously cached {@link Result} of this {@link Resolver} is removed.
+     */
+    public void put(final String queryKey, final int resolverId, Result result) {
+        final ContentValues values;
+        if (result != null) {
+            values = new ContentValues();
+            values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_QUERYKEY, queryKey);
+            values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_RESOLVERID, resolverId);
+            values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_URL, result.getPath());
+            values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_SCORE, result.getTrackScore());
+            values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_BITRATE, result.getBitrate());
+            values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_SIZE, result.getSize());
+            values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_LINKURL, result.getLinkUrl());
+            values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_PURCHASEURL,
+                    result.getPurchaseUrl());
+            if (result.getTrack() != null) {
+                values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_DURATION,
+                        result.getTrack().getDuration());
+                values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_TRACKNAME,
+                        result.getTrack().getName());
+                values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_ALBUMPOS,
+                        result.getTrack().getAlbumPos());
+            } else {
+                values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_DURATION, 0);
+            }
+            if (result.getAlbum() != null) {
+                values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_ALBUMNAME,
+                        result.getAlbum().getName());
+            }
+            if (result.getArtist() != null) {
+                values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_ARTISTNAME,
+                        result.getArtist().getName());
+            }
+            values.put(ResultCacheSQLiteHelper.RESULTS_COLUMN_TIMESTAMP,
+                    System.currentTimeMillis());
+        } else {
+            values = null;
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                SQLiteDatabase database = getDatabase();
+                if (database == null) {
+                    return;
+                }
+                if (values != null) {
+                    database.insertWithOnConflict(ResultCacheSQLiteHelper.TABLE_RESULTS, null,
+                            values, SQLiteDatabase.CONFLICT_REPLACE);
+                } else {
+                    database.delete(ResultCacheSQLiteHelper.TABLE_RESULTS,
+                            ResultCacheSQLiteHelper.RESULTS_COLUMN_QUERYKEY + " = ? AND "
+                                    + ResultCacheSQLiteHelper.RESULTS_COLUMN_RESOLVERID + " = ?",
+                            new String[]{queryKey, String.valueOf(resolverId)});
+                }
+            }
+        });
+    }
+
+    /**
+     * Delete every {@link Entry} which is older than MAX_AGE
+     */
+    private void deleteExpired() {
+        SQLiteDatabase database = getDatabase();
+        if (database != null) {
+            int count = database.delete(ResultCacheSQLiteHelper.TABLE_RESULTS,
+                    ResultCacheSQLiteHelper.RESULTS_COLUMN_TIMESTAMP + " < ?",
+                    new String[]{String.valueOf(System.currentTimeMillis() - MAX_AGE)});
+            Log.d(TAG, "Deleted " + count + " expired entries");
+        }
+    }
+
+    /**
+     * Lazily open our database. Only called from the worker thread.
+     */
+    private SQLiteDatabase getDatabase() {
+        if (mDatabase == null) {
+            try {
+                mDatabase = mDbHelper.getWritableDatabase();
+            } catch (SQLException e) {
+                Log.e(TAG, "getDatabase: " + e.getClass() + ": " + e.getLocalizedMessage());
+            }
+        }
+        return mDatabase;
+    }
+}
@@ -33,7 +33,7 @@ public class ResultComparator implements Comparator<Result> {
     public static final int COMPARE_ARTIST_SCORE = 4;
 
     //Flag containing the current mode to be used
-    private static int mFlag = COMPARE_TRACK_SCORE;
+    private final int mFlag;
 
     /**
      * Construct this {@link ResultComparator}
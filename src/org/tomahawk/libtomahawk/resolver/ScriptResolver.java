@@ -30,7 +30,6 @@ import org.tomahawk.tomahawk_android.TomahawkApp;
 import android.graphics.drawable.Drawable;
 import android.os.Handler;
 import android.os.Looper;
-import android.os.Message;
 import android.util.Log;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
@@ -91,7 +90,8 @@ public class ScriptResolver implements Resolver {
 
     private boolean mStopped;
 
-    private Handler UiThreadHandler;
+    // Runs everything which has to touch the WebView on the main thread
+    private Handler mUiThreadHandler = new Handler(Looper.getMainLooper());
 
     /**
      * Construct a new {@link ScriptResolver}
@@ -178,50 +178,44 @@ public class ScriptResolver implements Resolver {
      * This method calls the js function resolver.init().
      */
     private void resolverInit() {
-        UiThreadHandler = new Handler(Looper.getMainLooper()) {
+        mUiThreadHandler.post(new Runnable() {
             @Override
-            public void handleMessage(Message inputMessage) {
+            public void run() {
                 mScriptEngine.loadUrl(
                         "javascript:" + RESOLVER_LEGACY_CODE + makeJSFunctionCallbackJava(
                                 R.id.scriptresolver_resolver_init, "resolver.init()", false));
             }
-        };
-        Message message = UiThreadHandler.obtainMessage();
-        message.sendToTarget();
+        });
     }
 
     /**
      * This method tries to get the {@link Resolver}'s settings.
      */
     private void resolverSettings() {
-        UiThreadHandler = new Handler(Looper.getMainLooper()) {
+        mUiThreadHandler.post(new Runnable() {
             @Override
-            public void handleMessage(Message inputMessage) {
+            public void run() {
                 mScriptEngine.loadUrl(
                         "javascript:" + RESOLVER_LEGACY_CODE + makeJSFunctionCallbackJava(
                                 R.id.scriptresolver_resolver_settings,
                                 "resolver.settings ? resolver.settings : getSettings() ", true));
             }
-        };
-        Message message = UiThreadHandler.obtainMessage();
-        message.sendToTarget();
+        });
     }
 
     /**
      * This method tries to get the {@link Resolver}'s UserConfig.
      */
     private void resolverUserConfig() {
-        UiThreadHandler = new Handler(Looper.getMainLooper()) {
+        mUiThreadHandler.post(new Runnable() {
             @Override
-            public void handleMessage(Message inputMessage) {
+            public void run() {
                 mScriptEngine.loadUrl(
                         "javascript:" + RESOLVER_LEGACY_CODE + makeJSFunctionCallbackJava(
                                 R.id.scriptresolver_resolver_userconfig, "resolver.getUserConfig()",
                                 true));
             }
-        };
-        Message message = UiThreadHandler.obtainMessage();
-        message.sendToTarget();
+        });
     }
 
     /**
@@ -257,9 +251,14 @@ public class ScriptResolver implements Resolver {
                         resolverSettings();
                     } else if (id == R.id.scriptresolver_add_track_results_string && obj != null) {
                         String qid = obj.get("qid").toString();
+                        String queryKey = mQueryKeys.remove(qid);
+                        if (queryKey == null) {
+                            // The script has already reported this query before
+                            return;
+                        }
                         JSONArray resultList = obj.getJSONArray("results");
-                        mTomahawkApp.getPipeLine()
-                                .reportResults(mQueryKeys.get(qid), parseResultList(resultList));
+                        mTomahawkApp.getPipeLine().reportResults(queryKey,
+                                parseResultList(resultList), mId);
                         mStopped = true;
                     }
                 } catch (JSONException e) {
@@ -271,8 +270,7 @@ public class ScriptResolver implements Resolver {
                 }
             }
         };
-        Thread t = new Thread(r);
-        t.start();
+        mTomahawkApp.getPipeLine().getResolverScheduler().executeCallback(r);
     }
 
     /**
@@ -285,9 +283,9 @@ public class ScriptResolver implements Resolver {
     public boolean resolve(final Query query) {
         if (mReady) {
             mStopped = false;
-            UiThreadHandler = new Handler(Looper.getMainLooper()) {
+            mUiThreadHandler.post(new Runnable() {
                 @Override
-                public void handleMessage(Message inputMessage) {
+                public void run() {
                     String qid = TomahawkApp.getSessionUniqueStringId();
                     mQueryKeys.put(qid, TomahawkUtils.getCacheKey(query));
                     if (!query.isFullTextQuery()) {
@@ -319,9 +317,7 @@ public class ScriptResolver implements Resolver {
                                                 + "' )", false));
                     }
                 }
-            };
-            Message message = UiThreadHandler.obtainMessage();
-            message.sendToTarget();
+            });
         }
         return mReady;
     }
@@ -463,4 +459,11 @@ public class ScriptResolver implements Resolver {
         return mWeight;
     }
 
+    /**
+     * @return this {@link ScriptResolver}'s timeout in milliseconds
+     */
+    @Override
+    public int getTimeout() {
+        return mTimeout;
+    }
 }
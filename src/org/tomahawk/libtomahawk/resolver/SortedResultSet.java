@@ -0,0 +1,91 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.resolver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A set of {@link Result}s mapped by key, which additionally keeps a copy-on-write snapshot of its
+ * {@link Result}s, sorted by the given {@link Comparator}. Every change sorts a fresh copy of the
+ * snapshot, so reading the sorted {@link Result}s never has to sort or copy anything.
+ */
+class SortedResultSet {
+
+    private final ConcurrentHashMap<String, Result> mResults
+            = new ConcurrentHashMap<String, Result>();
+
+    private final Comparator<Result> mComparator;
+
+    private volatile ArrayList<Result> mSnapshot = new ArrayList<Result>();
+
+    SortedResultSet(Comparator<Result> comparator) {
+        mComparator = comparator;
+    }
+
+    Result get(String key) {
+        return mResults.get(key);
+    }
+
+    /**
+     * Add the given {@link Result} under the given key, replacing the {@link Result} which has
+     * been stored under this key before. The whole snapshot is sorted again, because {@link
+     * Result}s can be shared between {@link Query}s, so that their scores may have changed since
+     * they have been added.
+     */
+    synchronized void put(String key, Result result) {
+        Result previous = mResults.put(key, result);
+        ArrayList<Result> snapshot = new ArrayList<Result>(mSnapshot.size() + 1);
+        snapshot.addAll(mSnapshot);
+        if (previous != null) {
+            snapshot.remove(previous);
+        }
+        snapshot.add(result);
+        // The snapshot is almost sorted already, which makes this cheap
+        Collections.sort(snapshot, mComparator);
+        mSnapshot = snapshot;
+    }
+
+    /**
+     * @return the removed {@link Result} or null, if there was no {@link Result} with the given
+     * key
+     */
+    synchronized Result remove(String key) {
+        Result previous = mResults.remove(key);
+        if (previous != null) {
+            ArrayList<Result> snapshot = new ArrayList<Result>(mSnapshot);
+            snapshot.remove(previous);
+            mSnapshot = snapshot;
+        }
+        return previous;
+    }
+
+    Collection<Result> values() {
+        return mResults.values();
+    }
+
+    /**
+     * @return the current sorted snapshot. It is shared and must not be modified.
+     */
+    ArrayList<Result> getSnapshot() {
+        return mSnapshot;
+    }
+}
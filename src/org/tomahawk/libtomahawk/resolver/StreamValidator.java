@@ -0,0 +1,258 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.resolver;
+
+import org.tomahawk.libtomahawk.utils.TomahawkUtils;
+
+import android.net.Uri;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks whether or not the stream urls of {@link Result}s are still available, by sending HEAD
+ * requests on a small, bounded thread pool. Every verdict is cached for a while, so that the same
+ * url is only checked once. A url which can't be requested at all, e.g. because it's malformed,
+ * is invalid right away. If a host can't be found, or if requests to it fail several times in a
+ * row, every url of that host is considered invalid for a short time, instead of waiting for
+ * every single request to fail. A single failed request, e.g. a timeout or a refused connection,
+ * doesn't invalidate anything.
+ */
+public class StreamValidator {
+
+    private final static String TAG = StreamValidator.class.getName();
+
+    public static final int VERDICT_UNKNOWN = 0;
+
+    public static final int VERDICT_VALID = 1;
+
+    public static final int VERDICT_INVALID = 2;
+
+    private static final int MAX_CONCURRENT_REQUESTS = 4;
+
+    private static final int REQUEST_TIMEOUT = 5000;
+
+    private static final long URL_VERDICT_TTL = 60L * 60L * 1000L;
+
+    private static final long HOST_VERDICT_TTL = 60L * 1000L;
+
+    // If more url verdicts are cached, the expired ones are purged
+    private static final int MAX_URL_VERDICTS = 1000;
+
+    // The number of requests to a host which have to fail in a row, before the host is considered
+    // unreachable
+    private static final int MAX_HOST_FAILURES = 3;
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private ThreadPoolExecutor mExecutor;
+
+    private ConcurrentHashMap<String, Verdict> mUrlVerdicts
+            = new ConcurrentHashMap<String, Verdict>();
+
+    // Time stamps of the last failed connection attempt, mapped by host
+    private ConcurrentHashMap<String, Long> mUnreachableHosts
+            = new ConcurrentHashMap<String, Long>();
+
+    // The number of requests which have failed in a row, mapped by host
+    private ConcurrentHashMap<String, AtomicInteger> mHostFailureCounts
+            = new ConcurrentHashMap<String, AtomicInteger>();
+
+    // Callbacks of every url which is currently being validated
+    private final HashMap<String, ArrayList<Runnable>> mPendingCallbacks
+            = new HashMap<String, ArrayList<Runnable>>();
+
+    private static class Verdict {
+
+        private boolean mIsValid;
+
+        private long mTimeStamp;
+
+        private Verdict(boolean isValid) {
+            mIsValid = isValid;
+            mTimeStamp = System.currentTimeMillis();
+        }
+    }
+
+    public StreamValidator() {
+        mExecutor = new ThreadPoolExecutor(MAX_CONCURRENT_REQUESTS, MAX_CONCURRENT_REQUESTS,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r,
+                                "StreamValidator-" + mCount.incrementAndGet());
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    }
+                });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return the cached verdict for the given url. Either VERDICT_VALID, VERDICT_INVALID or
+     * VERDICT_UNKNOWN, if the url hasn't been validated yet or its verdict has expired.
+     */
+    public int getVerdict(String url) {
+        long now = System.currentTimeMillis();
+        Verdict verdict = mUrlVerdicts.get(url);
+        if (verdict != null) {
+            if (now - verdict.mTimeStamp < URL_VERDICT_TTL) {
+                return verdict.mIsValid ? VERDICT_VALID : VERDICT_INVALID;
+            }
+            mUrlVerdicts.remove(url, verdict);
+        }
+        String host = getHost(url);
+        if (host != null) {
+            Long unreachableSince = mUnreachableHosts.get(host);
+            if (unreachableSince != null) {
+                if (now - unreachableSince < HOST_VERDICT_TTL) {
+                    return VERDICT_INVALID;
+                }
+                mUnreachableHosts.remove(host, unreachableSince);
+            }
+        }
+        return VERDICT_UNKNOWN;
+    }
+
+    /**
+     * Asynchronously validate the given url. The same url is never requested twice at the same
+     * time.
+     *
+     * @param onInvalid {@link Runnable} which is run on one of our worker threads, if the url
+     *                  turns out to be invalid
+     */
+    public void validate(final String url, Runnable onInvalid) {
+        synchronized (mPendingCallbacks) {
+            ArrayList<Runnable> callbacks = mPendingCallbacks.get(url);
+            if (callbacks != null) {
+                callbacks.add(onInvalid);
+                return;
+            }
+            callbacks = new ArrayList<Runnable>();
+            callbacks.add(onInvalid);
+            mPendingCallbacks.put(url, callbacks);
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean isValid;
+                if (getVerdict(url) != VERDICT_UNKNOWN) {
+                    isValid = getVerdict(url) == VERDICT_VALID;
+                } else {
+                    String host = getHost(url);
+                    int responseCode = host == null ? TomahawkUtils.HTTP_INVALID_URL
+                            : TomahawkUtils.httpHeaderRequestCode(url, REQUEST_TIMEOUT);
+                    if (responseCode == TomahawkUtils.HTTP_INVALID_URL) {
+                        isValid = false;
+                        putUrlVerdict(url, new Verdict(false));
+                    } else if (responseCode == TomahawkUtils.HTTP_REQUEST_FAILED) {
+                        // Might be a temporary problem, so we don't cache a verdict for the url
+                        isValid = !onHostFailed(host, false);
+                    } else if (responseCode == TomahawkUtils.HTTP_CONNECT_FAILED) {
+                        isValid = !onHostFailed(host, true);
+                    } else {
+                        mHostFailureCounts.remove(host);
+                        isValid = responseCode == HttpURLConnection.HTTP_OK;
+                        putUrlVerdict(url, new Verdict(isValid));
+                    }
+                }
+                ArrayList<Runnable> callbacks;
+                synchronized (mPendingCallbacks) {
+                    callbacks = mPendingCallbacks.remove(url);
+                }
+                if (!isValid) {
+                    Log.d(TAG, "Stream not available: " + url);
+                    for (Runnable callback : callbacks) {
+                        callback.run();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Cache the given verdict. If there are too many verdicts, the expired ones are purged first
+     * and if that's not enough, arbitrary ones, so that the cache can't grow without bound.
+     */
+    private void putUrlVerdict(String url, Verdict verdict) {
+        if (mUrlVerdicts.size() >= MAX_URL_VERDICTS) {
+            long now = System.currentTimeMillis();
+            Iterator<Verdict> iterator = mUrlVerdicts.values().iterator();
+            while (iterator.hasNext()) {
+                if (now - iterator.next().mTimeStamp >= URL_VERDICT_TTL) {
+                    iterator.remove();
+                }
+            }
+            iterator = mUrlVerdicts.values().iterator();
+            while (mUrlVerdicts.size() >= MAX_URL_VERDICTS && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        mUrlVerdicts.put(url, verdict);
+    }
+
+    /**
+     * @return the number of cached url verdicts
+     */
+    int getUrlVerdictCount() {
+        return mUrlVerdicts.size();
+    }
+
+    /**
+     * Count a failed request to the given host
+     *
+     * @param isFatal whether or not the host couldn't be found
+     * @return whether or not the host is now considered unreachable
+     */
+    private boolean onHostFailed(String host, boolean isFatal) {
+        AtomicInteger failureCount = mHostFailureCounts.get(host);
+        if (failureCount == null) {
+            mHostFailureCounts.putIfAbsent(host, new AtomicInteger());
+            failureCount = mHostFailureCounts.get(host);
+        }
+        if (isFatal || failureCount.incrementAndGet() >= MAX_HOST_FAILURES) {
+            Log.d(TAG, "Host considered unreachable: " + host);
+            mHostFailureCounts.remove(host);
+            mUnreachableHosts.put(host, System.currentTimeMillis());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the host of the given url or null, if it doesn't have one
+     */
+    private static String getHost(String url) {
+        String host = Uri.parse(url).getHost();
+        return TextUtils.isEmpty(host) ? null : host;
+    }
+}
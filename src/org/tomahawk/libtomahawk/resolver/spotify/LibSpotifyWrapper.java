@@ -88,6 +88,14 @@ public class LibSpotifyWrapper {
 
     native public static void nativesetbitrate(int bitratemode);
 
+    native private static void nativesetaudiobufferconfig(int bufferDepth, int enqueuedBuffers);
+
+    native private static int nativegetunderruncount();
+
+    native private static int nativegetbackpressurecount();
+
+    native private static int nativegetdroppedframecount();
+
     /**
      * Initialize libspotify
      *
@@ -248,6 +256,43 @@ public class LibSpotifyWrapper {
         }
     }
 
+    /**
+     * Configure the ring buffer between libspotify and our native OpenSLES layer. Takes effect
+     * the next time libspotify is initialized. A deeper ring causes fewer underruns, but makes
+     * pause and seek take longer to be heard.
+     *
+     * @param bufferDepth     the number of 100 ms buffers in the ring, between 2 and 64
+     * @param enqueuedBuffers the number of buffers which are enqueued to OpenSLES at the same
+     *                        time, between 1 and bufferDepth
+     */
+    public static void setAudioBufferConfig(int bufferDepth, int enqueuedBuffers) {
+        nativesetaudiobufferconfig(bufferDepth, enqueuedBuffers);
+    }
+
+    /**
+     * @return the number of times the OpenSLES player has run dry, while libspotify was still
+     * delivering audio
+     */
+    public static int getUnderrunCount() {
+        return mInitialized ? nativegetunderruncount() : 0;
+    }
+
+    /**
+     * @return the number of audio deliveries of libspotify, which didn't fit into the ring buffer
+     * completely and had to be delivered again. No audio is lost by this.
+     */
+    public static int getBackpressureCount() {
+        return mInitialized ? nativegetbackpressurecount() : 0;
+    }
+
+    /**
+     * @return the number of audio frames which have been dropped, because the ring buffer
+     * couldn't be allocated
+     */
+    public static int getDroppedFrameCount() {
+        return mInitialized ? nativegetdroppedframecount() : 0;
+    }
+
     /**
      * Login Spotify user. Does only need blob OR password. Not both.
      *
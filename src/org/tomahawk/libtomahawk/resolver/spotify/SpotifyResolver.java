@@ -45,6 +45,8 @@ public class SpotifyResolver implements Resolver {
 
     private int mWeight;
 
+    private int mTimeout;
+
     private boolean mReady;
 
     private boolean mAuthenticated;
@@ -66,6 +68,7 @@ public class SpotifyResolver implements Resolver {
         mId = id;
         mIcon = mTomahawkApp.getResources().getDrawable(R.drawable.spotify_icon);
         mWeight = 90;
+        mTimeout = 10000;
         mReady = true;
         mTomahawkApp.getPipeLine().onResolverReady();
         mStopped = true;
@@ -138,7 +141,7 @@ public class SpotifyResolver implements Resolver {
     public void onResolved(String qid) {
         mStopped = true;
         // report our results to the pipeline
-        mTomahawkApp.getPipeLine().reportResults(qid, mResults.get(qid));
+        mTomahawkApp.getPipeLine().reportResults(qid, mResults.get(qid), mId);
     }
 
     /**
@@ -155,4 +158,12 @@ public class SpotifyResolver implements Resolver {
     public void setAuthenticated(boolean authenticated) {
         mAuthenticated = authenticated;
     }
+
+    /**
+     * @return this {@link SpotifyResolver}'s timeout in milliseconds
+     */
+    @Override
+    public int getTimeout() {
+        return mTimeout;
+    }
 }
@@ -0,0 +1,106 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.utils;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * A precomputed key by which names are sorted. Leading articles like "The" are stripped, case and
+ * accents are ignored and the rest is compared by the rules of the default {@link Locale}. The
+ * expensive part is done once in {@link #get(String)}, comparing two {@link SortKey}s is a simple
+ * comparison of their collation bytes. Every {@link SortKey} also knows the section, which its
+ * name is listed under in a section index.
+ */
+public class SortKey implements Comparable<SortKey> {
+
+    public static final String SECTION_OTHER = "#";
+
+    private static final String[] ARTICLES = {"the ", "a ", "an "};
+
+    private static final Pattern DIACRITICS_PATTERN
+            = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+
+    private static Collator sCollator;
+
+    // The Locale which sCollator has been created for
+    private static Locale sCollatorLocale;
+
+    private final CollationKey mCollationKey;
+
+    private final String mSection;
+
+    private SortKey(CollationKey collationKey, String section) {
+        mCollationKey = collationKey;
+        mSection = section;
+    }
+
+    /**
+     * Compute the {@link SortKey} of the given name
+     */
+    public static SortKey get(String name) {
+        String strippedName = name != null ? stripArticle(name.trim()) : "";
+        String foldedName = DIACRITICS_PATTERN
+                .matcher(Normalizer.normalize(strippedName, Normalizer.Form.NFD)).replaceAll("");
+        Locale locale = Locale.getDefault();
+        String section = SECTION_OTHER;
+        if (foldedName.length() > 0 && Character.isLetter(foldedName.charAt(0))) {
+            section = foldedName.substring(0, 1).toUpperCase(locale);
+        }
+        CollationKey collationKey;
+        synchronized (SortKey.class) {
+            if (sCollator == null || !locale.equals(sCollatorLocale)) {
+                // The user has changed the language, so the new names are sorted by its rules
+                sCollator = Collator.getInstance(locale);
+                sCollator.setStrength(Collator.PRIMARY);
+                sCollatorLocale = locale;
+            }
+            collationKey = sCollator.getCollationKey(strippedName);
+        }
+        return new SortKey(collationKey, section);
+    }
+
+    /**
+     * @return the given name without its leading article, if it has one besides the article
+     */
+    private static String stripArticle(String name) {
+        for (String article : ARTICLES) {
+            if (name.length() > article.length()
+                    && name.regionMatches(true, 0, article, 0, article.length())) {
+                return name.substring(article.length()).trim();
+            }
+        }
+        return name;
+    }
+
+    /**
+     * @return the section of the section index, which the name of this {@link SortKey} is listed
+     * under. Either its upper case first letter without accents or {@link #SECTION_OTHER}.
+     */
+    public String getSection() {
+        return mSection;
+    }
+
+    @Override
+    public int compareTo(SortKey another) {
+        return mCollationKey.compareTo(another.mCollationKey);
+    }
+}
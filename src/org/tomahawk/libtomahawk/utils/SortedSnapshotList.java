@@ -0,0 +1,115 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A list which is kept sorted by the given {@link Comparator} and hands out immutable snapshots of
+ * its content. Added items are appended to the already sorted items and merged in lazily, the
+ * next time a snapshot is requested. Since the sort can make use of the already sorted run, this
+ * costs O(n + k log k) for k new items instead of a complete sort. As long as nothing has
+ * changed, the very same snapshot is returned again, without sorting or copying anything.
+ *
+ * The items are compared by identity, every item must only be added once.
+ */
+public class SortedSnapshotList<T> {
+
+    private final Comparator<? super T> mComparator;
+
+    private final ArrayList<T> mItems = new ArrayList<T>();
+
+    // The number of items at the beginning of mItems which are already sorted
+    private int mSortedCount;
+
+    private List<T> mSnapshot = Collections.emptyList();
+
+    private int mVersion;
+
+    private int mSnapshotVersion;
+
+    public SortedSnapshotList(Comparator<? super T> comparator) {
+        mComparator = comparator;
+    }
+
+    public synchronized void add(T item) {
+        mItems.add(item);
+        mVersion++;
+    }
+
+    public synchronized void addAll(Collection<? extends T> items) {
+        if (!items.isEmpty()) {
+            mItems.addAll(items);
+            mVersion++;
+        }
+    }
+
+    /**
+     * @return whether or not the given item has been contained in this {@link SortedSnapshotList}
+     */
+    public synchronized boolean remove(T item) {
+        for (int i = mItems.size() - 1; i >= 0; i--) {
+            if (mItems.get(i) == item) {
+                mItems.remove(i);
+                if (i < mSortedCount) {
+                    mSortedCount--;
+                }
+                mVersion++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized void clear() {
+        mItems.clear();
+        mSortedCount = 0;
+        mVersion++;
+    }
+
+    public synchronized int size() {
+        return mItems.size();
+    }
+
+    /**
+     * @return the version of this {@link SortedSnapshotList}'s content, which changes every time
+     * an item is added or removed
+     */
+    public synchronized int getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * @return the current sorted snapshot. It is shared and therefore unmodifiable.
+     */
+    public synchronized List<T> getSnapshot() {
+        if (mSnapshotVersion != mVersion) {
+            if (mSortedCount < mItems.size()) {
+                Collections.sort(mItems, mComparator);
+                mSortedCount = mItems.size();
+            }
+            mSnapshot = Collections.unmodifiableList(new ArrayList<T>(mItems));
+            mSnapshotVersion = mVersion;
+        }
+        return mSnapshot;
+    }
+}
@@ -33,11 +33,13 @@ import java.net.MalformedURLException;
 import java.net.ProtocolException;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.net.UnknownHostException;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 
@@ -48,6 +50,28 @@ public class TomahawkUtils {
 
     public static String TAG = TomahawkUtils.class.getName();
 
+    // Returned by httpHeaderRequestCode, if the host couldn't be found
+    public static final int HTTP_CONNECT_FAILED = -1;
+
+    // Returned by httpHeaderRequestCode, if the request failed otherwise, e.g. by timing out or
+    // because the connection has been refused
+    public static final int HTTP_REQUEST_FAILED = -2;
+
+    // Returned by httpHeaderRequestCode, if the url itself can't be requested, e.g. because it's
+    // malformed
+    public static final int HTTP_INVALID_URL = -3;
+
+    // Used as "infinity" outside of the band, small enough to not overflow when incremented
+    private static final int LEVENSHTEIN_OUT_OF_BAND = Integer.MAX_VALUE / 2;
+
+    // The two cost rows used by getLevenshteinDistance, reused per thread
+    private static final ThreadLocal<int[][]> sLevenshteinRows = new ThreadLocal<int[][]>() {
+        @Override
+        protected int[][] initialValue() {
+            return new int[2][64];
+        }
+    };
+
     /**
      * Author: Chas Emerick (source: http://mrfoo.de/archiv/1176-Levenshtein-Distance-in-Java.html)
      *
@@ -60,44 +84,86 @@ public class TomahawkUtils {
         if (s == null || t == null) {
             throw new IllegalArgumentException("Strings must not be null");
         }
-        if (TextUtils.isEmpty(s)) {
-            return t.length();
-        } else if (TextUtils.isEmpty(t)) {
-            return s.length();
+        return getLevenshteinDistance(s, t, Math.max(s.length(), t.length()));
+    }
+
+    /**
+     * Based on the implementation by Chas Emerick (source:
+     * http://mrfoo.de/archiv/1176-Levenshtein-Distance-in-Java.html)
+     *
+     * This method uses a banded variant of the LevenstheinDistance algorithm (Ukkonen) to compute
+     * the similarity of two strings. Only the cells within maxDistance of the diagonal are
+     * computed and the computation stops as soon as the distance is known to exceed maxDistance.
+     * The two cost rows are reused per thread, so that no arrays have to be allocated.
+     *
+     * @param maxDistance the maximum distance which is of interest, must not be negative
+     * @return the minimum number of single-character edits required to change one of the given
+     * strings into the other, or maxDistance + 1 if that number is greater than maxDistance
+     */
+    public static int getLevenshteinDistance(String s, String t, int maxDistance) {
+        if (s == null || t == null) {
+            throw new IllegalArgumentException("Strings must not be null");
+        }
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("maxDistance must not be negative");
+        }
+        // make s the shorter string, so that the rows are as short as possible
+        if (s.length() > t.length()) {
+            String tmp = s;
+            s = t;
+            t = tmp;
         }
         int n = s.length(); // length of s
         int m = t.length(); // length of t
-
-        if (n == 0) {
+        if (m - n > maxDistance) {
+            return maxDistance + 1;
+        } else if (n == 0) {
             return m;
-        } else if (m == 0) {
-            return n;
         }
 
-        int p[] = new int[n + 1]; //'previous' cost array, horizontally
-        int d[] = new int[n + 1]; // cost array, horizontally
+        int[][] rows = sLevenshteinRows.get();
+        if (rows[0].length < n + 1) {
+            rows[0] = new int[Math.max(n + 1, rows[0].length * 2)];
+            rows[1] = new int[rows[0].length];
+        }
+        int p[] = rows[0]; //'previous' cost array, horizontally
+        int d[] = rows[1]; // cost array, horizontally
         int _d[]; //placeholder to assist in swapping p and d
 
-        // indexes into strings s and t
-        int i; // iterates through s
-        int j; // iterates through t
-
-        char t_j; // jth character of t
-
-        int cost; // cost
-
-        for (i = 0; i <= n; i++) {
+        int boundary = Math.min(n, maxDistance) + 1;
+        for (int i = 0; i < boundary; i++) {
             p[i] = i;
         }
+        Arrays.fill(p, boundary, n + 1, LEVENSHTEIN_OUT_OF_BAND);
+        Arrays.fill(d, 0, n + 1, LEVENSHTEIN_OUT_OF_BAND);
 
-        for (j = 1; j <= m; j++) {
-            t_j = t.charAt(j - 1);
+        for (int j = 1; j <= m; j++) {
+            char t_j = t.charAt(j - 1); // jth character of t
             d[0] = j;
 
-            for (i = 1; i <= n; i++) {
-                cost = s.charAt(i - 1) == t_j ? 0 : 1;
-                // minimum of cell to the left+1, to the top+1, diagonally left and up +cost
-                d[i] = Math.min(Math.min(d[i - 1] + 1, p[i] + 1), p[i - 1] + cost);
+            // only compute the cells within the band around the diagonal
+            int min = Math.max(1, j - maxDistance);
+            int max = j > Integer.MAX_VALUE - maxDistance ? n : Math.min(n, j + maxDistance);
+            if (min > max) {
+                return maxDistance + 1;
+            }
+            if (min > 1) {
+                d[min - 1] = LEVENSHTEIN_OUT_OF_BAND;
+            }
+
+            int rowMin = min == 1 ? d[0] : LEVENSHTEIN_OUT_OF_BAND;
+            for (int i = min; i <= max; i++) {
+                if (s.charAt(i - 1) == t_j) {
+                    d[i] = p[i - 1];
+                } else {
+                    // minimum of cell to the left+1, to the top+1, diagonally left and up +1
+                    d[i] = 1 + Math.min(Math.min(d[i - 1], p[i]), p[i - 1]);
+                }
+                rowMin = Math.min(rowMin, d[i]);
+            }
+            if (rowMin > maxDistance) {
+                // the distance can only grow from here on
+                return maxDistance + 1;
             }
 
             // copy current distance counts to 'previous row' distance counts
@@ -108,7 +174,29 @@ public class TomahawkUtils {
 
         // our last action in the above loop was to switch d and p, so p now
         // actually has the most recent cost counts
-        return p[n];
+        return p[n] <= maxDistance ? p[n] : maxDistance + 1;
+    }
+
+    /**
+     * Compute a similarity score between 0 and 1 for the given two strings, based on their
+     * LevenstheinDistance.
+     *
+     * @param minScore scores below this value are of no interest. They are only guaranteed to be
+     *                 below minScore, which allows the distance computation to stop early.
+     * @return (maxLength - distance) / maxLength, or 1 if both strings are empty
+     */
+    public static float getSimilarityScore(String s, String t, float minScore) {
+        int maxLength = Math.max(s.length(), t.length());
+        if (maxLength == 0) {
+            return 1f;
+        }
+        int maxDistance = maxLength;
+        if (minScore > 0f) {
+            maxDistance = Math.max(0, Math.min(maxLength,
+                    (int) Math.floor(maxLength * (1f - minScore) + 0.0001f)));
+        }
+        int distance = getLevenshteinDistance(s, t, maxDistance);
+        return (float) (maxLength - distance) / maxLength;
     }
 
     /**
@@ -150,41 +238,43 @@ public class TomahawkUtils {
         return date;
     }
 
-    private static String getCacheKey(String... strings) {
-        String result = "";
+    /**
+     * Build a cache key out of the given Strings. The objects which are stored in our static
+     * caches compute their key only once and keep it, so this should rarely be called directly.
+     *
+     * @return the lowercase concatenation of all given Strings, each prefixed with "\t\t"
+     */
+    public static String getCacheKey(String... strings) {
+        int length = 0;
+        for (String s : strings) {
+            length += s.length() + 2;
+        }
+        StringBuilder builder = new StringBuilder(length);
         for (String s : strings) {
-            result += "\t\t" + s.toLowerCase();
+            builder.append("\t\t").append(s.toLowerCase());
         }
-        return result;
+        return builder.toString();
     }
 
     public static String getCacheKey(TomahawkBaseAdapter.TomahawkListItem tomahawkListItem) {
         if (tomahawkListItem instanceof Artist) {
-            return getCacheKey(tomahawkListItem.getName());
+            return ((Artist) tomahawkListItem).getCacheKey();
         } else if (tomahawkListItem instanceof Album) {
-            return getCacheKey(tomahawkListItem.getName(), tomahawkListItem.getArtist().getName());
+            return ((Album) tomahawkListItem).getCacheKey();
         } else if (tomahawkListItem instanceof Track) {
-            return getCacheKey(tomahawkListItem.getName(), tomahawkListItem.getAlbum().getName(),
-                    tomahawkListItem.getArtist().getName());
+            return ((Track) tomahawkListItem).getCacheKey();
         } else if (tomahawkListItem instanceof Query) {
-            Query query = ((Query) tomahawkListItem);
-            boolean isFullTextQuery = query.isFullTextQuery();
-            if (isFullTextQuery) {
-                return getCacheKey(query.getFullTextQuery());
-            } else {
-                return getCacheKey(query.getName(), query.getAlbum().getName(),
-                        query.getArtist().getName(), query.getResultHint());
-            }
+            return ((Query) tomahawkListItem).getCacheKey();
         }
         return "";
     }
 
     public static String getCacheKey(Image image) {
-        return getCacheKey(image.getImagePath());
+        return image.getCacheKey();
     }
 
     public static String getCacheKey(Result result) {
-        return getCacheKey(result.getPath());
+        return result.getCacheKey();
     }
 
     public static String httpsPost(String urlString, Multimap<String, String> params)
@@ -242,24 +332,43 @@ public class TomahawkUtils {
     }
 
     public static boolean httpHeaderRequest(String urlString) {
+        return httpHeaderRequestCode(urlString, 0) == HttpURLConnection.HTTP_OK;
+    }
+
+    /**
+     * Send a HEAD request to the given url
+     *
+     * @param timeout the connect and read timeout in milliseconds, 0 means no timeout
+     * @return the HTTP response code, {@link #HTTP_INVALID_URL} if the url can't be requested at
+     * all, {@link #HTTP_CONNECT_FAILED} if the host couldn't be found and {@link
+     * #HTTP_REQUEST_FAILED} if the request failed otherwise
+     */
+    public static int httpHeaderRequestCode(String urlString, int timeout) {
         try {
             URL url = new URL(urlString);
             HttpURLConnection connection = (HttpURLConnection) url.openConnection();
 
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
             connection.setRequestMethod("HEAD");
             connection.setInstanceFollowRedirects(false);
             connection.setRequestProperty("Accept-Encoding", "");
             int responseCode = connection.getResponseCode();
             connection.disconnect();
-            return responseCode == HttpURLConnection.HTTP_OK;
+            return responseCode;
         } catch (MalformedURLException e) {
             Log.e(TAG, "httpHeaderRequest: " + e.getClass() + ": " + e.getLocalizedMessage());
+            return HTTP_INVALID_URL;
         } catch (ProtocolException e) {
             Log.e(TAG, "httpHeaderRequest: " + e.getClass() + ": " + e.getLocalizedMessage());
+            return HTTP_INVALID_URL;
+        } catch (UnknownHostException e) {
+            Log.e(TAG, "httpHeaderRequest: " + e.getClass() + ": " + e.getLocalizedMessage());
+            return HTTP_CONNECT_FAILED;
         } catch (IOException e) {
             Log.e(TAG, "httpHeaderRequest: " + e.getClass() + ": " + e.getLocalizedMessage());
+            return HTTP_REQUEST_FAILED;
         }
-        return false;
     }
 
     public static String paramsListToString(Multimap<String, String> params)
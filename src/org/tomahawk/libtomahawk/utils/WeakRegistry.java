@@ -0,0 +1,217 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.utils;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A registry which maps cache keys to unique objects, like the static caches of {@link
+ * org.tomahawk.libtomahawk.resolver.Query}, {@link org.tomahawk.libtomahawk.collection.Artist}
+ * and {@link org.tomahawk.libtomahawk.collection.Album}. Values are only referenced weakly, so
+ * that every object which isn't referenced from anywhere else (e.g. the current playlist or a
+ * {@link org.tomahawk.libtomahawk.collection.UserCollection}) can be garbage collected. On top of
+ * that, up to maxKeptAliveCount objects which have been passed to {@link #keepAlive(String,
+ * Object)} are referenced strongly in LRU order, so that recently used objects survive for a
+ * while even if nothing else references them.
+ */
+public class WeakRegistry<V> {
+
+    private static CopyOnWriteArrayList<WeakRegistry<?>> sRegistries
+            = new CopyOnWriteArrayList<WeakRegistry<?>>();
+
+    private final String mName;
+
+    private final int mMaxKeptAliveCount;
+
+    private final ConcurrentHashMap<String, KeyedReference<V>> mEntries
+            = new ConcurrentHashMap<String, KeyedReference<V>>();
+
+    private final ReferenceQueue<V> mReferenceQueue = new ReferenceQueue<V>();
+
+    private final LinkedHashMap<String, V> mKeptAlive;
+
+    /**
+     * A {@link WeakReference} which remembers its key, so that it can be removed from the registry
+     * as soon as its referent has been garbage collected
+     */
+    private static class KeyedReference<V> extends WeakReference<V> {
+
+        private final String mKey;
+
+        private KeyedReference(String key, V value, ReferenceQueue<V> referenceQueue) {
+            super(value, referenceQueue);
+            mKey = key;
+        }
+    }
+
+    /**
+     * Construct a new {@link WeakRegistry}
+     *
+     * @param name              the name under which this {@link WeakRegistry}'s entry count is
+     *                          reported by {@link #getEntryCounts()}
+     * @param maxKeptAliveCount the maximum number of objects which are kept alive via {@link
+     *                          #keepAlive(String, Object)}. 0 disables the LRU completely.
+     */
+    public WeakRegistry(String name, final int maxKeptAliveCount) {
+        mName = name;
+        mMaxKeptAliveCount = maxKeptAliveCount;
+        mKeptAlive = new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxKeptAliveCount;
+            }
+        };
+        sRegistries.add(this);
+    }
+
+    /**
+     * @return the object which is registered under the given key, or null if there is none
+     */
+    public V get(String key) {
+        expungeStaleEntries();
+        KeyedReference<V> reference = mEntries.get(key);
+        V value = reference != null ? reference.get() : null;
+        if (value != null && mMaxKeptAliveCount > 0) {
+            synchronized (mKeptAlive) {
+                // mKeptAlive is access-ordered, so this moves the key to the most recently used end
+                mKeptAlive.get(key);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Atomically register the given object under the given key, if there isn't already a living
+     * object registered under that key.
+     *
+     * @return the object which has already been registered under the given key, or null if the
+     * given object has been registered
+     */
+    public V putIfAbsent(String key, V value) {
+        expungeStaleEntries();
+        KeyedReference<V> reference = new KeyedReference<V>(key, value, mReferenceQueue);
+        while (true) {
+            KeyedReference<V> cachedReference = mEntries.putIfAbsent(key, reference);
+            if (cachedReference == null) {
+                return null;
+            }
+            V cachedValue = cachedReference.get();
+            if (cachedValue != null) {
+                return cachedValue;
+            }
+            // The cached object has already been garbage collected, so we replace it
+            if (mEntries.replace(key, cachedReference, reference)) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Remove the object with the given key from this {@link WeakRegistry}
+     */
+    public void remove(String key) {
+        mEntries.remove(key);
+        synchronized (mKeptAlive) {
+            mKeptAlive.remove(key);
+        }
+    }
+
+    /**
+     * Reference the given object strongly, so that it isn't garbage collected until it has been
+     * the least recently used of the last maxKeptAliveCount objects that have been kept alive.
+     * Every {@link #get(String)} counts as a use.
+     */
+    public void keepAlive(String key, V value) {
+        if (mMaxKeptAliveCount > 0) {
+            synchronized (mKeptAlive) {
+                mKeptAlive.put(key, value);
+            }
+        }
+    }
+
+    /**
+     * Release all objects which have been kept alive via {@link #keepAlive(String, Object)}
+     */
+    public void trim() {
+        synchronized (mKeptAlive) {
+            mKeptAlive.clear();
+        }
+    }
+
+    /**
+     * @return an {@link ArrayList} containing every living object in this {@link WeakRegistry}
+     */
+    public ArrayList<V> values() {
+        expungeStaleEntries();
+        ArrayList<V> values = new ArrayList<V>(mEntries.size());
+        for (KeyedReference<V> reference : mEntries.values()) {
+            V value = reference.get();
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return the number of entries in this {@link WeakRegistry}
+     */
+    public int size() {
+        expungeStaleEntries();
+        return mEntries.size();
+    }
+
+    /**
+     * Remove every entry whose object has been garbage collected
+     */
+    private void expungeStaleEntries() {
+        Reference<? extends V> reference;
+        while ((reference = mReferenceQueue.poll()) != null) {
+            KeyedReference<?> keyedReference = (KeyedReference<?>) reference;
+            mEntries.remove(keyedReference.mKey, keyedReference);
+        }
+    }
+
+    /**
+     * @return the name and number of live entries of every {@link WeakRegistry}
+     */
+    public static Map<String, Integer> getEntryCounts() {
+        LinkedHashMap<String, Integer> entryCounts = new LinkedHashMap<String, Integer>();
+        for (WeakRegistry<?> registry : sRegistries) {
+            entryCounts.put(registry.mName, registry.size());
+        }
+        return entryCounts;
+    }
+
+    /**
+     * Release every object which has only been kept alive by the LRU of a {@link WeakRegistry}.
+     * Should be called if the system is low on memory.
+     */
+    public static void trimAll() {
+        for (WeakRegistry<?> registry : sRegistries) {
+            registry.trim();
+        }
+    }
+}
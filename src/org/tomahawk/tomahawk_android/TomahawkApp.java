@@ -32,6 +32,7 @@ import org.tomahawk.libtomahawk.resolver.PipeLine;
 import org.tomahawk.libtomahawk.resolver.ScriptResolver;
 import org.tomahawk.libtomahawk.resolver.spotify.LibSpotifyWrapper;
 import org.tomahawk.libtomahawk.resolver.spotify.SpotifyResolver;
+import org.tomahawk.libtomahawk.utils.WeakRegistry;
 import org.tomahawk.tomahawk_android.utils.ContentViewer;
 import org.tomahawk.tomahawk_android.utils.TomahawkExceptionReporter;
 
@@ -164,6 +165,8 @@ public class TomahawkApp extends Application {
     public void onLowMemory() {
         LibSpotifyWrapper.pause();
         LibSpotifyWrapper.destroy();
+        WeakRegistry.trimAll();
+        Log.d(TAG, "onLowMemory - registry entry counts: " + WeakRegistry.getEntryCounts());
     }
 
     /**
@@ -19,6 +19,7 @@ package org.tomahawk.tomahawk_android.adapters;
 
 import org.tomahawk.libtomahawk.collection.Album;
 import org.tomahawk.libtomahawk.collection.Artist;
+import org.tomahawk.libtomahawk.utils.SortKey;
 
 import android.app.Activity;
 import android.widget.BaseAdapter;
@@ -63,6 +64,11 @@ public abstract class TomahawkBaseAdapter extends BaseAdapter {
          */
         public String getName();
 
+        /**
+         * @return the precomputed {@link SortKey} of the corresponding name/title
+         */
+        public SortKey getSortKey();
+
         /**
          * @return the corresponding {@link org.tomahawk.libtomahawk.collection.Artist}
          */
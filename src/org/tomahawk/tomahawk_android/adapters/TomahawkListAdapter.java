@@ -33,6 +33,7 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
+import android.widget.SectionIndexer;
 import android.widget.TextView;
 
 import java.util.ArrayList;
@@ -44,7 +45,8 @@ import se.emilsjolander.stickylistheaders.StickyListHeadersListView;
 /**
  * This class is used to populate a {@link se.emilsjolander.stickylistheaders.StickyListHeadersListView}.
  */
-public class TomahawkListAdapter extends TomahawkBaseAdapter implements StickyListHeadersAdapter {
+public class TomahawkListAdapter extends TomahawkBaseAdapter
+        implements StickyListHeadersAdapter, SectionIndexer {
 
     private LayoutInflater mLayoutInflater;
 
@@ -70,6 +72,15 @@ public class TomahawkListAdapter extends TomahawkBaseAdapter implements StickyLi
 
     private boolean mShowAddButton = false;
 
+    // Only lists which are sorted by name can be indexed by the first letters of their items
+    private boolean mShowSections = false;
+
+    // The section index used by the fast scroller. Built lazily from the items' SortKeys and
+    // dropped whenever the data set changes
+    private String[] mSections;
+
+    private int[] mSectionPositions;
+
     /**
      * Constructs a new {@link TomahawkListAdapter}.
      *
@@ -193,6 +204,16 @@ public class TomahawkListAdapter extends TomahawkBaseAdapter implements StickyLi
         this.mShowPlaystate = showPlaystate;
     }
 
+    /**
+     * Set whether or not to provide the fast scroller with a section index. Only makes sense, if
+     * the items are sorted by name.
+     */
+    public void setShowSections(boolean showSections) {
+        mShowSections = showSections;
+        mSections = null;
+        mSectionPositions = null;
+    }
+
     /**
      * Set whether or not to show by which {@link org.tomahawk.libtomahawk.resolver.Resolver} the
      * {@link TomahawkListItem} has been resolved
@@ -516,6 +537,92 @@ public class TomahawkListAdapter extends TomahawkBaseAdapter implements StickyLi
         return result;
     }
 
+    /**
+     * Drop the section index, so that it's rebuilt from the changed items
+     */
+    @Override
+    public void notifyDataSetChanged() {
+        mSections = null;
+        mSectionPositions = null;
+        super.notifyDataSetChanged();
+    }
+
+    /**
+     * Build the section index from the precomputed {@link org.tomahawk.libtomahawk.utils.SortKey}s
+     * of all displayed items. A new section starts wherever an item's section differs from the
+     * previous one, so no names have to be compared here. Stays empty, unless {@link
+     * #setShowSections(boolean)} has been enabled.
+     */
+    private void ensureSections() {
+        if (mSections != null) {
+            return;
+        }
+        ArrayList<String> sections = new ArrayList<String>();
+        ArrayList<Integer> sectionPositions = new ArrayList<Integer>();
+        List<List<TomahawkListItem>> listArray = mFiltered ? mFilteredListArray : mListArray;
+        if (mShowSections && listArray != null) {
+            int position = 0;
+            String lastSection = null;
+            for (List<TomahawkListItem> list : listArray) {
+                for (TomahawkListItem item : list) {
+                    String section = item.getSortKey().getSection();
+                    if (!section.equals(lastSection)) {
+                        sections.add(section);
+                        sectionPositions.add(position);
+                        lastSection = section;
+                    }
+                    position++;
+                }
+            }
+        }
+        mSections = sections.toArray(new String[sections.size()]);
+        mSectionPositions = new int[sectionPositions.size()];
+        for (int i = 0; i < mSectionPositions.length; i++) {
+            mSectionPositions[i] = sectionPositions.get(i);
+        }
+    }
+
+    /**
+     * @return the sections shown by the fast scroller
+     */
+    @Override
+    public Object[] getSections() {
+        ensureSections();
+        return mSections;
+    }
+
+    /**
+     * @return the position of the first item in the given section
+     */
+    @Override
+    public int getPositionForSection(int section) {
+        ensureSections();
+        if (mSectionPositions.length == 0) {
+            return 0;
+        }
+        section = Math.max(0, Math.min(section, mSectionPositions.length - 1));
+        return mSectionPositions[section];
+    }
+
+    /**
+     * @return the section which the item at the given position is listed under
+     */
+    @Override
+    public int getSectionForPosition(int position) {
+        ensureSections();
+        int low = 0;
+        int high = mSectionPositions.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mSectionPositions[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
     /**
      * @return the {@link TomahawkListItem} shown in the content header
      */
@@ -75,10 +75,16 @@ public class ChooseUserPlaylistDialog extends DialogFragment {
             public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
                 UserPlaylistsDataSource userPlaylistsDataSource = ((TomahawkApp) getActivity()
                         .getApplication()).getUserPlaylistsDataSource();
+                final UserCollection userCollection = (UserCollection) ((TomahawkApp) getActivity()
+                        .getApplication()).getSourceList().getCollectionFromId(UserCollection.Id);
                 userPlaylistsDataSource.addQueriesToUserPlaylist(
-                        mUserCollection.getLocalUserPlaylists().get(position).getId(), mQueries);
-                ((UserCollection) ((TomahawkApp) getActivity().getApplication()).getSourceList()
-                        .getCollectionFromId(UserCollection.Id)).updateUserPlaylists();
+                        mUserCollection.getLocalUserPlaylists().get(position).getId(), mQueries,
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                userCollection.updateUserPlaylists();
+                            }
+                        });
                 getDialog().dismiss();
             }
         });
@@ -138,19 +138,25 @@ public class CreateUserPlaylistDialog extends DialogFragment {
                 R.string.playbackplaylistfragment_title_string) : editText.getText().toString();
         UserPlaylistsDataSource userPlaylistsDataSource = ((TomahawkApp) getActivity()
                 .getApplication()).getUserPlaylistsDataSource();
+        final UserCollection userCollection = (UserCollection) ((TomahawkApp) getActivity()
+                .getApplication()).getSourceList().getCollectionFromId(UserCollection.Id);
+        Runnable callback = new Runnable() {
+            @Override
+            public void run() {
+                userCollection.updateUserPlaylists();
+            }
+        };
         if (mPlaylist != null) {
             userPlaylistsDataSource
                     .storeUserPlaylist(UserPlaylist
                             .fromQueryList(TomahawkApp.getLifetimeUniqueStringId(),
-                                    playlistName, mPlaylist.getQueries()));
+                                    playlistName, mPlaylist.getQueries()), callback);
         } else {
             userPlaylistsDataSource.storeUserPlaylist(
                     UserPlaylist
                             .fromQueryList(TomahawkApp.getLifetimeUniqueStringId(), playlistName,
-                                    new ArrayList<Query>()));
+                                    new ArrayList<Query>()), callback);
         }
-        ((UserCollection) ((TomahawkApp) getActivity().getApplication()).getSourceList()
-                .getCollectionFromId(UserCollection.Id)).updateUserPlaylists();
     }
 
     /**
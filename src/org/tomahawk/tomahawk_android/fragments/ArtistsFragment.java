@@ -83,7 +83,9 @@ public class ArtistsFragment extends TomahawkFragment implements OnItemClickList
         List<List<TomahawkBaseAdapter.TomahawkListItem>> listArray
                 = new ArrayList<List<TomahawkBaseAdapter.TomahawkListItem>>();
         listArray.add(artists);
-        setListAdapter(new TomahawkListAdapter(getActivity(), listArray));
+        TomahawkListAdapter tomahawkListAdapter = new TomahawkListAdapter(getActivity(), listArray);
+        tomahawkListAdapter.setShowSections(true);
+        setListAdapter(tomahawkListAdapter);
 
         getListView().setOnItemClickListener(this);
         getListView().setAreHeadersSticky(false);
@@ -30,6 +30,7 @@ import org.tomahawk.tomahawk_android.adapters.TomahawkListAdapter;
 import org.tomahawk.tomahawk_android.services.PlaybackService;
 
 import android.os.Bundle;
+import android.text.TextUtils;
 import android.view.View;
 import android.widget.AdapterView;
 import android.widget.AdapterView.OnItemClickListener;
@@ -38,6 +39,7 @@ import android.widget.CompoundButton;
 import android.widget.TextView;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -50,8 +52,18 @@ public class SearchableFragment extends TomahawkFragment
     public static final String SEARCHABLEFRAGMENT_QUERY_STRING
             = "org.tomahawk.tomahawk_android.SEARCHABLEFRAGMENT_QUERY_ID";
 
+    // The maximum number of tracks of the stored playlists which are shown as local results
+    private static final int LOCAL_SEARCH_LIMIT = 50;
+
     private String mCurrentQueryString;
 
+    // The full text Query which is currently shown. Referenced here, so that it isn't garbage
+    // collected while it's shown.
+    private Query mCurrentQuery;
+
+    // The tracks of the stored playlists matching the current query string
+    private ArrayList<Query> mLocalQueries = new ArrayList<Query>();
+
     /**
      * Restore the {@link String} inside the search {@link TextView}. Either through the
      * savedInstanceState {@link Bundle} or through the a {@link Bundle} provided in the Arguments.
@@ -157,8 +169,22 @@ public class SearchableFragment extends TomahawkFragment
      */
     public void showQueryResults(String queryKey) {
         Query query = mPipeline.getQuery(queryKey);
+        if (query == null && mCurrentQuery != null
+                && queryKey.equals(TomahawkUtils.getCacheKey(mCurrentQuery))) {
+            query = mCurrentQuery;
+        }
+        if (query == null) {
+            return;
+        }
         mCurrentQueryString = query.getFullTextQuery();
-        mShownQueries = query.getTrackQueries();
+        mShownQueries = new ArrayList<Query>(query.getTrackQueries());
+        // Keep showing the local results, which the PipeLine didn't find again
+        HashSet<Query> shownQueries = new HashSet<Query>(mShownQueries);
+        for (Query localQuery : mLocalQueries) {
+            if (!shownQueries.contains(localQuery)) {
+                mShownQueries.add(localQuery);
+            }
+        }
     }
 
     public void showInfoResults(String requestId) {
@@ -212,9 +238,19 @@ public class SearchableFragment extends TomahawkFragment
      */
     public void resolveFullTextQuery(String fullTextQuery) {
         mCurrentQueryString = fullTextQuery;
+        // Show the matching tracks of the stored playlists right away, while the PipeLine is busy
+        mLocalQueries = mTomahawkApp.getUserPlaylistsDataSource()
+                .searchUserPlaylistQueries(fullTextQuery, LOCAL_SEARCH_LIMIT);
+        mShownQueries = new ArrayList<Query>(mLocalQueries);
+        updateAdapter();
         CheckBox onlineSourcesCheckBox = (CheckBox) mTomahawkMainActivity
                 .findViewById(R.id.search_onlinesources_checkbox);
-        String queryId = mPipeline.resolve(fullTextQuery, !onlineSourcesCheckBox.isChecked());
+        String queryId = null;
+        mCurrentQuery = null;
+        if (!TextUtils.isEmpty(fullTextQuery)) {
+            mCurrentQuery = Query.get(fullTextQuery, !onlineSourcesCheckBox.isChecked());
+            queryId = mPipeline.resolve(mCurrentQuery);
+        }
         mCorrespondingQueryIds.clear();
         if (onlineSourcesCheckBox.isChecked()) {
             mCurrentRequestIds.clear();
@@ -22,6 +22,7 @@ import org.tomahawk.libtomahawk.collection.Album;
 import org.tomahawk.libtomahawk.collection.Artist;
 import org.tomahawk.libtomahawk.collection.Collection;
 import org.tomahawk.libtomahawk.collection.CollectionLoader;
+import org.tomahawk.libtomahawk.collection.PagedQueryList;
 import org.tomahawk.libtomahawk.collection.Playlist;
 import org.tomahawk.libtomahawk.collection.UserCollection;
 import org.tomahawk.libtomahawk.collection.UserPlaylist;
@@ -63,6 +64,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.TreeMap;
 
 import se.emilsjolander.stickylistheaders.StickyListHeadersListView;
@@ -96,6 +98,8 @@ public class TomahawkFragment extends TomahawkListFragment
 
     private static final long PIPELINE_RESULT_REPORTER_DELAY = 500;
 
+    private static final int MAX_CONTENT_HEADER_ARTISTS = 10;
+
     private TomahawkFragmentReceiver mTomahawkFragmentReceiver;
 
     protected HashSet<String> mCurrentRequestIds = new HashSet<String>();
@@ -192,16 +196,30 @@ public class TomahawkFragment extends TomahawkListFragment
             if (getArguments().containsKey(TOMAHAWK_ALBUM_KEY)
                     && !TextUtils.isEmpty(getArguments().getString(TOMAHAWK_ALBUM_KEY))) {
                 mAlbum = Album.getAlbumByKey(getArguments().getString(TOMAHAWK_ALBUM_KEY));
-                if (!mAlbum.isResolvedByInfoSystem()) {
-                    mCurrentRequestIds.add(mInfoSystem.resolve(mAlbum));
+                if (mAlbum == null) {
+                    // The Album has been garbage collected while we were in the background
+                    mTomahawkApp.getContentViewer().back();
+                } else {
+                    if (!mAlbum.isResolvedByInfoSystem()) {
+                        mCurrentRequestIds.add(mInfoSystem.resolve(mAlbum));
+                    }
+                    mTomahawkMainActivity.startLoadingAnimation();
                 }
-                mTomahawkMainActivity.startLoadingAnimation();
             }
             if (getArguments().containsKey(TOMAHAWK_USER_PLAYLIST_KEY) && !TextUtils.isEmpty(
                     getArguments().getString(TOMAHAWK_USER_PLAYLIST_KEY))) {
+                // Only the summary, the tracks are read page by page as they are shown
                 mUserPlaylist = mTomahawkMainActivity.getUserCollection()
-                        .getUserPlaylistById(getArguments().getString(TOMAHAWK_USER_PLAYLIST_KEY));
-                if (mUserPlaylist.getContentHeaderArtists().size() == 0) {
+                        .getUserPlaylistSummaryById(
+                                getArguments().getString(TOMAHAWK_USER_PLAYLIST_KEY));
+                if (mUserPlaylist.getContentHeaderArtists().size() == 0
+                        && mUserPlaylist.isSummary()) {
+                    for (String artistName : mTomahawkApp.getUserPlaylistsDataSource()
+                            .getUserPlaylistArtistNames(mUserPlaylist.getId(),
+                                    MAX_CONTENT_HEADER_ARTISTS)) {
+                        addContentHeaderArtist(Artist.get(artistName));
+                    }
+                } else if (mUserPlaylist.getContentHeaderArtists().size() == 0) {
                     final HashMap<Artist, Integer> countMap = new HashMap<Artist, Integer>();
                     for (Query query : mUserPlaylist.getQueries()) {
                         Artist artist = query.getArtist();
@@ -221,14 +239,9 @@ public class TomahawkFragment extends TomahawkListFragment
                     );
                     sortedCountMap.putAll(countMap);
                     for (Artist artist : sortedCountMap.keySet()) {
-                        mUserPlaylist.addContentHeaderArtists(artist);
-                        if (!artist.isResolvedByInfoSystem()) {
-                            ArrayList<String> requestIds = mInfoSystem.resolve(artist, true);
-                            for (String requestId : requestIds) {
-                                mCurrentRequestIds.add(requestId);
-                            }
-                        }
-                        if (mUserPlaylist.getContentHeaderArtists().size() == 10) {
+                        addContentHeaderArtist(artist);
+                        if (mUserPlaylist.getContentHeaderArtists().size()
+                                == MAX_CONTENT_HEADER_ARTISTS) {
                             break;
                         }
                     }
@@ -237,13 +250,18 @@ public class TomahawkFragment extends TomahawkListFragment
             if (getArguments().containsKey(TOMAHAWK_ARTIST_KEY) && !TextUtils
                     .isEmpty(getArguments().getString(TOMAHAWK_ARTIST_KEY))) {
                 mArtist = Artist.getArtistByKey(getArguments().getString(TOMAHAWK_ARTIST_KEY));
-                if (!mArtist.isResolvedByInfoSystem()) {
-                    ArrayList<String> requestIds = mInfoSystem.resolve(mArtist, false);
-                    for (String requestId : requestIds) {
-                        mCurrentRequestIds.add(requestId);
+                if (mArtist == null) {
+                    // The Artist has been garbage collected while we were in the background
+                    mTomahawkApp.getContentViewer().back();
+                } else {
+                    if (!mArtist.isResolvedByInfoSystem()) {
+                        ArrayList<String> requestIds = mInfoSystem.resolve(mArtist, false);
+                        for (String requestId : requestIds) {
+                            mCurrentRequestIds.add(requestId);
+                        }
                     }
+                    mTomahawkMainActivity.startLoadingAnimation();
                 }
-                mTomahawkMainActivity.startLoadingAnimation();
             }
             if (getArguments().containsKey(TOMAHAWK_HUB_ID)
                     && getArguments().getInt(TOMAHAWK_HUB_ID) > 0) {
@@ -393,21 +411,44 @@ public class TomahawkFragment extends TomahawkListFragment
     @Override
     public void onFakeContextItemSelected(TomahawkMainActivity tomahawkMainActivity,
             String menuItemTitle, TomahawkBaseAdapter.TomahawkListItem tomahawkListItem) {
-        UserCollection userCollection = tomahawkMainActivity.getUserCollection();
+        final UserCollection userCollection = tomahawkMainActivity.getUserCollection();
         ArrayList<Query> queries = new ArrayList<Query>();
         PlaybackService playbackService = tomahawkMainActivity.getPlaybackService();
+        if (tomahawkListItem instanceof UserPlaylist
+                && ((UserPlaylist) tomahawkListItem).isSummary()) {
+            // Lists of playlists only contain their summaries, so we have to load its tracks
+            UserPlaylist userPlaylist = userCollection
+                    .getUserPlaylistById(((UserPlaylist) tomahawkListItem).getId());
+            if (userPlaylist != null) {
+                tomahawkListItem = userPlaylist;
+            }
+        }
         if (menuItemTitle.equals(tomahawkMainActivity.getResources()
                 .getString(R.string.fake_context_menu_delete))) {
             if (tomahawkListItem instanceof UserPlaylist) {
                 ((TomahawkApp) tomahawkMainActivity.getApplication()).getUserPlaylistsDataSource()
-                        .deleteUserPlaylist(((UserPlaylist) tomahawkListItem).getId());
-                userCollection.updateUserPlaylists();
+                        .deleteUserPlaylist(((UserPlaylist) tomahawkListItem).getId(),
+                                new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        userCollection.updateUserPlaylists();
+                                    }
+                                });
             } else if (tomahawkListItem instanceof Query && mUserPlaylist != null) {
                 ((TomahawkApp) tomahawkMainActivity.getApplication()).getUserPlaylistsDataSource()
-                        .deleteQueryInUserPlaylist(mUserPlaylist.getId(), (Query) tomahawkListItem);
-                userCollection.updateUserPlaylists();
-                mUserPlaylist = userCollection.getUserPlaylistById(mUserPlaylist.getId());
-                updateAdapter();
+                        .deleteQueryInUserPlaylist(mUserPlaylist.getId(), (Query) tomahawkListItem,
+                                new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        userCollection.updateUserPlaylists();
+                                        if (isAdded()) {
+                                            mUserPlaylist = userCollection
+                                                    .getUserPlaylistSummaryById(
+                                                            mUserPlaylist.getId());
+                                            updateAdapter();
+                                        }
+                                    }
+                                });
             } else if (playbackService != null && this instanceof PlaybackFragment
                     && tomahawkListItem instanceof Query) {
                 if (TomahawkUtils.getCacheKey(playbackService.getCurrentTrack())
@@ -466,16 +507,16 @@ public class TomahawkFragment extends TomahawkListFragment
                         if (mIsLocal) {
                             queries = mAlbum.getLocalQueries();
                         } else {
-                            queries = mAlbum.getQueries();
+                            queries = new ArrayList<Query>(mAlbum.getQueries());
                         }
                     } else if (mArtist != null) {
                         if (mIsLocal) {
-                            queries = mArtist.getLocalQueries();
+                            queries = new ArrayList<Query>(mArtist.getLocalQueries());
                         } else {
-                            queries = mArtist.getQueries();
+                            queries = new ArrayList<Query>(mArtist.getQueries());
                         }
                     } else if (mUserPlaylist != null) {
-                        queries = mUserPlaylist.getQueries();
+                        queries = getUserPlaylistQueries();
                     } else {
                         queries.add((Query) tomahawkListItem);
                     }
@@ -489,12 +530,12 @@ public class TomahawkFragment extends TomahawkListFragment
                     playlist = UserPlaylist
                             .fromQueryList(UserPlaylistsDataSource.CACHED_PLAYLIST_ID,
                                     UserPlaylistsDataSource.CACHED_PLAYLIST_NAME,
-                                    ((Album) tomahawkListItem).getQueries());
+                                    new ArrayList<Query>(((Album) tomahawkListItem).getQueries()));
                 } else if (tomahawkListItem instanceof Artist) {
                     playlist = UserPlaylist
                             .fromQueryList(UserPlaylistsDataSource.CACHED_PLAYLIST_ID,
                                     UserPlaylistsDataSource.CACHED_PLAYLIST_NAME,
-                                    ((Artist) tomahawkListItem).getQueries());
+                                    new ArrayList<Query>(((Artist) tomahawkListItem).getQueries()));
                 }
                 if (playbackService != null) {
                     playbackService.setCurrentPlaylist(playlist);
@@ -512,13 +553,13 @@ public class TomahawkFragment extends TomahawkListFragment
                 if (mIsLocal) {
                     queries = ((Album) tomahawkListItem).getLocalQueries();
                 } else {
-                    queries = ((Album) tomahawkListItem).getQueries();
+                    queries = new ArrayList<Query>(((Album) tomahawkListItem).getQueries());
                 }
             } else if (tomahawkListItem instanceof Artist) {
                 if (mIsLocal) {
-                    queries = ((Artist) tomahawkListItem).getLocalQueries();
+                    queries = new ArrayList<Query>(((Artist) tomahawkListItem).getLocalQueries());
                 } else {
-                    queries = ((Artist) tomahawkListItem).getQueries();
+                    queries = new ArrayList<Query>(((Artist) tomahawkListItem).getQueries());
                 }
             }
             if (playbackService != null) {
@@ -540,13 +581,13 @@ public class TomahawkFragment extends TomahawkListFragment
                 if (mIsLocal) {
                     queries = ((Album) tomahawkListItem).getLocalQueries();
                 } else {
-                    queries = ((Album) tomahawkListItem).getQueries();
+                    queries = new ArrayList<Query>(((Album) tomahawkListItem).getQueries());
                 }
             } else if (tomahawkListItem instanceof Artist) {
                 if (mIsLocal) {
-                    queries = ((Artist) tomahawkListItem).getLocalQueries();
+                    queries = new ArrayList<Query>(((Artist) tomahawkListItem).getLocalQueries());
                 } else {
-                    queries = ((Artist) tomahawkListItem).getQueries();
+                    queries = new ArrayList<Query>(((Artist) tomahawkListItem).getQueries());
                 }
             }
             if (playbackService != null) {
@@ -563,13 +604,13 @@ public class TomahawkFragment extends TomahawkListFragment
                 if (mIsLocal) {
                     queries = ((Album) tomahawkListItem).getLocalQueries();
                 } else {
-                    queries = ((Album) tomahawkListItem).getQueries();
+                    queries = new ArrayList<Query>(((Album) tomahawkListItem).getQueries());
                 }
             } else if (tomahawkListItem instanceof Artist) {
                 if (mIsLocal) {
-                    queries = ((Artist) tomahawkListItem).getLocalQueries();
+                    queries = new ArrayList<Query>(((Artist) tomahawkListItem).getLocalQueries());
                 } else {
-                    queries = ((Artist) tomahawkListItem).getQueries();
+                    queries = new ArrayList<Query>(((Artist) tomahawkListItem).getQueries());
                 }
             }
             new ChooseUserPlaylistDialog(userCollection, queries)
@@ -665,14 +706,51 @@ public class TomahawkFragment extends TomahawkListFragment
         updateShowPlaystate();
     }
 
+    /**
+     * @return the {@link Query}s which are shown, in the order of the list. Subclasses which
+     * don't keep them in mShownQueries override this.
+     */
+    protected List<Query> getShownQueries() {
+        return mShownQueries;
+    }
+
+    /**
+     * @return all {@link Query}s of mUserPlaylist. If it's only a summary, they are read from the
+     * database now, e.g. because the whole playlist is about to be queued.
+     */
+    protected ArrayList<Query> getUserPlaylistQueries() {
+        if (mUserPlaylist.isSummary()) {
+            UserPlaylist userPlaylist = mTomahawkMainActivity.getUserCollection()
+                    .getUserPlaylistById(mUserPlaylist.getId());
+            if (userPlaylist != null) {
+                return userPlaylist.getQueries();
+            }
+        }
+        return mUserPlaylist.getQueries();
+    }
+
+    private void addContentHeaderArtist(Artist artist) {
+        mUserPlaylist.addContentHeaderArtists(artist);
+        if (!artist.isResolvedByInfoSystem()) {
+            ArrayList<String> requestIds = mInfoSystem.resolve(artist, true);
+            for (String requestId : requestIds) {
+                mCurrentRequestIds.add(requestId);
+            }
+        }
+    }
+
     public boolean shouldShowPlaystate() {
         PlaybackService playbackService = mTomahawkMainActivity.getPlaybackService();
         if (playbackService != null) {
             Playlist playlist = playbackService.getCurrentPlaylist();
-            if (playlist != null && playlist.getCount() == mShownQueries.size()) {
+            List<Query> shownQueries = getShownQueries();
+            if (playlist != null && playlist.getCount() == shownQueries.size()) {
                 for (int i = 0; i < playlist.getCount(); i++) {
-                    if (!TomahawkUtils.getCacheKey(playlist.peekQueryAtPos(i))
-                            .equals(TomahawkUtils.getCacheKey(mShownQueries.get(i)))) {
+                    // Only the loaded pages are compared, nothing is read just for this
+                    Query shownQuery = shownQueries instanceof PagedQueryList
+                            ? ((PagedQueryList) shownQueries).peek(i) : shownQueries.get(i);
+                    if (shownQuery != null && !TomahawkUtils.getCacheKey(playlist.peekQueryAtPos(i))
+                            .equals(TomahawkUtils.getCacheKey(shownQuery))) {
                         return false;
                     }
                 }
@@ -735,8 +813,8 @@ public class TomahawkFragment extends TomahawkListFragment
     protected void resolveQueriesFromTo(int start, int end) {
         ArrayList<Query> qs = new ArrayList<Query>();
         for (int i = start; i < end; i++) {
-            if (i >= 0 && i < mShownQueries.size()) {
-                Query q = mShownQueries.get(i);
+            if (i >= 0 && i < getShownQueries().size()) {
+                Query q = getShownQueries().get(i);
                 if (!q.isSolved() && !mCorrespondingQueryIds
                         .contains(TomahawkUtils.getCacheKey(q))) {
                     qs.add(q);
@@ -744,7 +822,8 @@ public class TomahawkFragment extends TomahawkListFragment
             }
         }
         if (!qs.isEmpty()) {
-            HashSet<String> qids = mPipeline.resolve(qs);
+            // The visible rows are resolved via the PipeLine's priority lane
+            HashSet<String> qids = mPipeline.resolve(qs, false, true);
             mCorrespondingQueryIds.addAll(qids);
             mTomahawkMainActivity.startLoadingAnimation();
         }
@@ -19,6 +19,7 @@ package org.tomahawk.tomahawk_android.fragments;
 
 import org.tomahawk.libtomahawk.collection.Album;
 import org.tomahawk.libtomahawk.collection.Collection;
+import org.tomahawk.libtomahawk.collection.PagedQueryList;
 import org.tomahawk.libtomahawk.collection.Track;
 import org.tomahawk.libtomahawk.collection.UserCollection;
 import org.tomahawk.libtomahawk.collection.UserPlaylist;
@@ -41,6 +42,7 @@ import android.widget.AdapterView;
 import android.widget.AdapterView.OnItemClickListener;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -51,6 +53,9 @@ public class TracksFragment extends TomahawkFragment implements OnItemClickListe
 
     private boolean mShouldShowLoadingAnimation = false;
 
+    // The tracks of mUserPlaylist, if only its summary has been loaded
+    private PagedQueryList mPagedQueries;
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -116,16 +121,17 @@ public class TracksFragment extends TomahawkFragment implements OnItemClickListe
                     if (mIsLocal) {
                         queries = mAlbum.getLocalQueries();
                     } else {
-                        queries = mAlbum.getQueries();
+                        queries = new ArrayList<Query>(mAlbum.getQueries());
                     }
                 } else if (mArtist != null) {
                     if (mIsLocal) {
-                        queries = mArtist.getLocalQueries();
+                        queries = new ArrayList<Query>(mArtist.getLocalQueries());
                     } else {
-                        queries = mArtist.getQueries();
+                        queries = new ArrayList<Query>(mArtist.getQueries());
                     }
                 } else if (mUserPlaylist != null) {
-                    queries = mUserPlaylist.getQueries();
+                    // The whole playlist is queued, so it has to be loaded completely now
+                    queries = getUserPlaylistQueries();
                 } else {
                     queries.addAll(mTomahawkMainActivity.getUserCollection().getQueries());
                 }
@@ -210,10 +216,20 @@ public class TracksFragment extends TomahawkFragment implements OnItemClickListe
             }
         } else if (mUserPlaylist != null) {
             mTomahawkMainActivity.setTitle(mUserPlaylist.getName());
-            queries.addAll(mUserPlaylist.getQueries());
             List<List<TomahawkBaseAdapter.TomahawkListItem>> listArray
                     = new ArrayList<List<TomahawkBaseAdapter.TomahawkListItem>>();
-            listArray.add(queries);
+            if (mUserPlaylist.isSummary()) {
+                if (mPagedQueries == null || mPagedQueries.getSummary() != mUserPlaylist) {
+                    mPagedQueries = new PagedQueryList(mTomahawkApp.getUserPlaylistsDataSource(),
+                            mUserPlaylist);
+                }
+                listArray.add(Collections
+                        .<TomahawkBaseAdapter.TomahawkListItem>unmodifiableList(mPagedQueries));
+            } else {
+                mPagedQueries = null;
+                queries.addAll(mUserPlaylist.getQueries());
+                listArray.add(queries);
+            }
             if (getListAdapter() == null) {
                 tomahawkListAdapter = new TomahawkListAdapter(mTomahawkMainActivity, listArray);
                 tomahawkListAdapter.setShowResolvedBy(true);
@@ -235,6 +251,7 @@ public class TracksFragment extends TomahawkFragment implements OnItemClickListe
             listArray.add(queries);
             if (getListAdapter() == null) {
                 tomahawkListAdapter = new TomahawkListAdapter(mTomahawkMainActivity, listArray);
+                tomahawkListAdapter.setShowSections(true);
                 getListView().setAreHeadersSticky(false);
                 setListAdapter(tomahawkListAdapter);
             } else {
@@ -252,6 +269,11 @@ public class TracksFragment extends TomahawkFragment implements OnItemClickListe
         getListView().setOnItemClickListener(this);
     }
 
+    @Override
+    protected List<Query> getShownQueries() {
+        return mPagedQueries != null ? mPagedQueries : mShownQueries;
+    }
+
     /**
      * @return the {@link Album} associated with this {@link TracksFragment}
      */
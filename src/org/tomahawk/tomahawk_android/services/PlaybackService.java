@@ -28,15 +28,20 @@ import org.tomahawk.libtomahawk.collection.UserCollection;
 import org.tomahawk.libtomahawk.collection.UserPlaylist;
 import org.tomahawk.libtomahawk.database.UserPlaylistsDataSource;
 import org.tomahawk.libtomahawk.infosystem.InfoSystem;
+import org.tomahawk.libtomahawk.resolver.LookAheadScheduler;
 import org.tomahawk.libtomahawk.resolver.PipeLine;
 import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.resolver.Result;
 import org.tomahawk.libtomahawk.utils.TomahawkUtils;
 import org.tomahawk.tomahawk_android.R;
 import org.tomahawk.tomahawk_android.TomahawkApp;
 import org.tomahawk.tomahawk_android.activities.TomahawkMainActivity;
 import org.tomahawk.tomahawk_android.fragments.FakePreferenceFragment;
+import org.tomahawk.tomahawk_android.utils.AudioCache;
+import org.tomahawk.tomahawk_android.utils.AudioCacheProxy;
 import org.tomahawk.tomahawk_android.utils.TomahawkMediaPlayer;
 
+import android.annotation.TargetApi;
 import android.app.Notification;
 import android.app.PendingIntent;
 import android.app.Service;
@@ -57,6 +62,7 @@ import android.net.NetworkInfo;
 import android.os.Binder;
 import android.os.Build;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
 import android.os.Message;
 import android.os.PowerManager;
@@ -68,9 +74,9 @@ import android.text.TextUtils;
 import android.util.Log;
 import android.widget.RemoteViews;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -117,11 +123,17 @@ public class PlaybackService extends Service {
 
     private static final int DELAY_TO_KILL = 300000;
 
+    // The number of Querys after the current one, whose beginning is prefetched into the cache
+    private static final int PREFETCH_COUNT = 3;
+
+    // How long onDestroy waits for the playback thread to release the MediaPlayers
+    private static final long PLAYBACK_THREAD_JOIN_TIMEOUT = 2000L;
+
     private TomahawkApp mTomahawkApp;
 
     private PipeLine mPipeLine;
 
-    protected HashSet<String> mCorrespondingQueryIds = new HashSet<String>();
+    private LookAheadScheduler mLookAheadScheduler;
 
     protected ConcurrentHashMap<String, String> mCurrentRequestIds
             = new ConcurrentHashMap<String, String>();
@@ -130,7 +142,18 @@ public class PlaybackService extends Service {
 
     private TomahawkMediaPlayer mTomahawkMediaPlayer;
 
-    private String mLastPreparedPath = "";
+    private AudioCache mAudioCache;
+
+    private AudioCacheProxy mAudioCacheProxy;
+
+    // The path of the Result which has been requested to be prepared last
+    private volatile String mLastPreparedPath = "";
+
+    // The Query and its Result which are currently being prepared. Only ever accessed from the
+    // playback thread
+    private Query mPreparingQuery;
+
+    private Result mPreparingResult;
 
     private PowerManager.WakeLock mWakeLock;
 
@@ -138,6 +161,25 @@ public class PlaybackService extends Service {
 
     private Handler mHandler;
 
+    // Every transition of the TomahawkMediaPlayer is done on this thread, one after another
+    private HandlerThread mPlaybackHandlerThread;
+
+    private Handler mPlaybackHandler;
+
+    private Runnable mHandlePlayStateRunnable = new Runnable() {
+        @Override
+        public void run() {
+            doHandlePlayState();
+        }
+    };
+
+    private Runnable mPrepareNextQueryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            doPrepareNextQuery();
+        }
+    };
+
     private Bitmap mNotificationBitmap = null;
 
     private Image mNotificationBitmapImage = null;
@@ -320,8 +362,13 @@ public class PlaybackService extends Service {
     public void onCreate() {
         mTomahawkApp = (TomahawkApp) getApplication();
         mPipeLine = mTomahawkApp.getPipeLine();
+        mLookAheadScheduler = new LookAheadScheduler(this, mPipeLine);
 
         mHandler = new Handler();
+        mPlaybackHandlerThread = new HandlerThread("PlaybackThread",
+                android.os.Process.THREAD_PRIORITY_AUDIO);
+        mPlaybackHandlerThread.start();
+        mPlaybackHandler = new Handler(mPlaybackHandlerThread.getLooper());
 
         // Initialize PhoneCallListener
         TelephonyManager telephonyManager = (TelephonyManager) getSystemService(
@@ -388,9 +435,26 @@ public class PlaybackService extends Service {
     public void onDestroy() {
         pause(true);
         saveState();
+        // The writer would only store the last save after a delay, which we might not survive
+        ((TomahawkApp) getApplication()).getUserPlaylistsDataSource().flushCachedUserPlaylist();
         unregisterReceiver(mPlaybackServiceBroadcastReceiver);
-        mTomahawkMediaPlayer.release();
+        mPlaybackHandler.removeCallbacksAndMessages(null);
+        // The MediaPlayers are only ever touched on the playback thread, so release them there
+        final TomahawkMediaPlayer tomahawkMediaPlayer = mTomahawkMediaPlayer;
+        mPlaybackHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                tomahawkMediaPlayer.release();
+            }
+        });
+        quitPlaybackThread();
+        try {
+            mPlaybackHandlerThread.join(PLAYBACK_THREAD_JOIN_TIMEOUT);
+        } catch (InterruptedException e) {
+            Log.e(TAG, "onDestroy: " + e.getClass() + ": " + e.getLocalizedMessage());
+        }
         mTomahawkMediaPlayer = null;
+        mAudioCacheProxy.stop();
         if (mWakeLock.isHeld()) {
             mWakeLock.release();
         }
@@ -398,18 +462,48 @@ public class PlaybackService extends Service {
         super.onDestroy();
     }
 
+    /**
+     * Let the playback thread finish every message which has been posted so far and quit
+     * afterwards
+     */
+    @TargetApi(18)
+    private void quitPlaybackThread() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            mPlaybackHandlerThread.quitSafely();
+        } else {
+            mPlaybackHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mPlaybackHandlerThread.quit();
+                }
+            });
+        }
+    }
+
     /**
      * Called if given {@link TomahawkMediaPlayer} has been prepared for playback
      */
-    public void onPrepared(TomahawkMediaPlayer tmp) {
-        Log.d(TAG, "Mediaplayer is prepared.");
-        handlePlayState();
+    public void onPrepared(final TomahawkMediaPlayer tmp) {
+        mPlaybackHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (tmp == mTomahawkMediaPlayer) {
+                    Log.d(TAG, "Mediaplayer is prepared.");
+                    mPreparingQuery = null;
+                    mPreparingResult = null;
+                    doHandlePlayState();
+                    doPrepareNextQuery();
+                }
+            }
+        });
     }
 
     /**
-     * Called if an error has occurred while trying to prepare {@link TomahawkMediaPlayer}
+     * Called if an error has occurred while trying to prepare or play the given {@link
+     * TomahawkMediaPlayer}. If it has been preparing, we fail over to the next best {@link Result}
+     * right away, otherwise we skip to the next track.
      */
-    public boolean onError(TomahawkMediaPlayer tmp, int what, int extra) {
+    public boolean onError(final TomahawkMediaPlayer tmp, int what, int extra) {
         String whatString = "CODE UNSPECIFIED";
         switch (what) {
             case MediaPlayer.MEDIA_ERROR_UNKNOWN:
@@ -420,10 +514,26 @@ public class PlaybackService extends Service {
         }
 
         Log.e(TAG, "onError - " + whatString);
-        if (tmp == mTomahawkMediaPlayer && isNetworkAvailable()) {
-            next();
-        }
-        return false;
+        mPlaybackHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (tmp != mTomahawkMediaPlayer) {
+                    return;
+                }
+                if (mPreparingQuery != null) {
+                    failOver(mPreparingQuery, mPreparingResult);
+                } else if (isNetworkAvailable()) {
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            next();
+                        }
+                    });
+                }
+            }
+        });
+        // The error has been handled, so that onCompletion isn't called on top of it
+        return true;
     }
 
     /**
@@ -431,24 +541,33 @@ public class PlaybackService extends Service {
      * playing a song. Prepare the next track if possible, otherwise stop.
      */
     public void onCompletion(TomahawkMediaPlayer tmp) {
-        if (mCurrentPlaylist == null) {
-            stop();
-            return;
-        }
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mCurrentPlaylist == null) {
+                    stop();
+                    return;
+                }
 
-        Query query = mCurrentPlaylist.getNextQuery();
-        if (query != null) {
-            setCurrentQuery(query);
-        } else {
-            stop();
-        }
+                Query query = mCurrentPlaylist.getNextQuery();
+                if (query != null) {
+                    setCurrentQuery(query);
+                } else {
+                    stop();
+                }
+            }
+        });
     }
 
     /**
      * Initializes the {@link TomahawkMediaPlayer}. Sets the listeners and AudioStreamType.
      */
     public void initMediaPlayer() {
-        mTomahawkMediaPlayer = new TomahawkMediaPlayer(this);
+        mAudioCache = new AudioCache(new File(getCacheDir(), "audio"),
+                AudioCache.DEFAULT_MAX_SIZE);
+        mAudioCacheProxy = new AudioCacheProxy(mAudioCache);
+        mAudioCacheProxy.start();
+        mTomahawkMediaPlayer = new TomahawkMediaPlayer(this, mAudioCacheProxy);
     }
 
     /**
@@ -562,6 +681,14 @@ public class PlaybackService extends Service {
      * Update the TomahawkMediaPlayer so that it reflects the current playState
      */
     public void handlePlayState() {
+        mPlaybackHandler.post(mHandlePlayStateRunnable);
+    }
+
+    /**
+     * Update the TomahawkMediaPlayer so that it reflects the current playState. Must only be called
+     * on the playback thread.
+     */
+    private void doHandlePlayState() {
         if (!isPreparing()) {
             try {
                 switch (mPlayState) {
@@ -605,6 +732,7 @@ public class PlaybackService extends Service {
         if (mCurrentPlaylist != null) {
             Query query = mCurrentPlaylist.getNextQuery();
             if (query != null) {
+                mLookAheadScheduler.onSkip();
                 setCurrentQuery(query);
             }
         }
@@ -617,6 +745,7 @@ public class PlaybackService extends Service {
         if (mCurrentPlaylist != null) {
             Query query = mCurrentPlaylist.getPreviousQuery();
             if (query != null) {
+                mLookAheadScheduler.onSkip();
                 setCurrentQuery(query);
             }
         }
@@ -627,6 +756,8 @@ public class PlaybackService extends Service {
      */
     public void setShuffled(boolean shuffled) {
         mCurrentPlaylist.setShuffled(shuffled);
+        mLookAheadScheduler.update(mCurrentPlaylist);
+        prepareNextQuery();
         sendBroadcast(new Intent(BROADCAST_PLAYLISTCHANGED));
     }
 
@@ -635,6 +766,8 @@ public class PlaybackService extends Service {
      */
     public void setRepeating(boolean repeating) {
         mCurrentPlaylist.setRepeating(repeating);
+        mLookAheadScheduler.update(mCurrentPlaylist);
+        prepareNextQuery();
         sendBroadcast(new Intent(BROADCAST_PLAYLISTCHANGED));
     }
 
@@ -682,8 +815,7 @@ public class PlaybackService extends Service {
             getCurrentQuery().setCurrentlyPlaying(false);
         }
         if (mTomahawkMediaPlayer != null && query != null) {
-            resolveQueriesFromTo(getCurrentPlaylist().getCurrentQueryIndex(),
-                    getCurrentPlaylist().getCurrentQueryIndex() + 10);
+            mLookAheadScheduler.update(getCurrentPlaylist());
             if (query.isPlayable() && query.getPreferredTrackResult() != null) {
                 mKillTimerHandler.removeCallbacksAndMessages(null);
                 Message msg = mKillTimerHandler.obtainMessage();
@@ -708,67 +840,183 @@ public class PlaybackService extends Service {
                     }
                 }
 
-                if (isPlaying()
-                        && !mLastPreparedPath.equals(query.getPreferredTrackResult().getPath())) {
+                String path = query.getPreferredTrackResult().getPath();
+                if (isPlaying() && (!mLastPreparedPath.equals(path)
+                        || mTomahawkMediaPlayer.getState() == TomahawkMediaPlayer.STATE_STOPPED)) {
                     query.setCurrentlyPlaying(true);
-                    Runnable releaseRunnable = new Runnable() {
+                    mLastPreparedPath = path;
+                    mPlaybackHandler.post(new Runnable() {
                         @Override
                         public void run() {
-                            int loopCounter = 0;
-                            while (true) {
-                                if (loopCounter++ > 3) {
-                                    query.blacklistTrackResult(query.getPreferredTrackResult());
-                                    if (query.getPreferredTrackResult() == null) {
-                                        Log.e(TAG, "MediaPlayer was unable to prepare the track");
-                                        mLastPreparedPath = "";
-                                        if (((TomahawkApp) getApplication()).getPipeLine() != null
-                                                && !((TomahawkApp) getApplication()).getPipeLine()
-                                                .isResolving()) {
-                                            next();
-                                        }
-                                        break;
-                                    } else {
-                                        loopCounter = 0;
-                                    }
-                                }
-                                long startTime = System.currentTimeMillis();
-                                mTomahawkMediaPlayer.release();
-                                initMediaPlayer();
-                                long endTime = System.currentTimeMillis();
-                                Log.d(TAG, "MediaPlayer reinitialize in " + (endTime - startTime)
-                                        + "ms, preparing=" + isPreparing());
-                                try {
-                                    boolean isSpotifyUrl =
-                                            query.getPreferredTrackResult().getResolvedBy().getId()
-                                                    == TomahawkApp.RESOLVER_ID_SPOTIFY;
-                                    mTomahawkMediaPlayer.prepare(
-                                            query.getPreferredTrackResult().getPath(),
-                                            isSpotifyUrl);
-                                } catch (IllegalStateException e1) {
-                                    Log.e(TAG, "setDataSource() IllegalStateException, msg:" + e1
-                                            .getLocalizedMessage() + " , preparing="
-                                            + isPreparing());
-                                    continue;
-                                } catch (IOException e2) {
-                                    Log.e(TAG, "setDataSource() IOException, msg:" + e2
-                                            .getLocalizedMessage() + " , preparing="
-                                            + isPreparing());
-                                    continue;
-                                }
-                                mLastPreparedPath = query.getPreferredTrackResult().getPath();
-                                break;
-                            }
+                            prepare(query);
                         }
-                    };
-                    new Thread(releaseRunnable).start();
+                    });
                 }
             } else if (((TomahawkApp) getApplication()).getPipeLine() != null
-                    && !((TomahawkApp) getApplication()).getPipeLine().isResolving()) {
+                    && !((TomahawkApp) getApplication()).getPipeLine().isResolving(query)) {
                 next();
             }
         }
     }
 
+    /**
+     * Prepare the preferred {@link Result} of the given {@link Query}, unless another {@link Query}
+     * has become the current one in the meantime. A prepare which is still in progress is
+     * cancelled. Must only be called on the playback thread.
+     */
+    private void prepare(Query query) {
+        if (query != getCurrentQuery()) {
+            // This request has been superseded by a newer one
+            return;
+        } else if (!isPlaying()) {
+            // Playback has been paused in the meantime. Prepare again, once it's resumed.
+            mLastPreparedPath = "";
+            return;
+        }
+        Result result = query.getPreferredTrackResult();
+        if (result == null) {
+            failOver(query, null);
+            return;
+        }
+        String path = result.getPath();
+        mLastPreparedPath = path;
+        if (mTomahawkMediaPlayer.switchTo(path)) {
+            // The track has already been prepared in the background
+            mPreparingQuery = null;
+            mPreparingResult = null;
+            doHandlePlayState();
+            doPrepareNextQuery();
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        mTomahawkMediaPlayer.resetCurrent();
+        Log.d(TAG, "MediaPlayer reinitialized in " + (System.currentTimeMillis() - startTime)
+                + "ms");
+        mPreparingQuery = query;
+        mPreparingResult = result;
+        try {
+            boolean isSpotifyUrl = result.getResolvedBy().getId()
+                    == TomahawkApp.RESOLVER_ID_SPOTIFY;
+            mTomahawkMediaPlayer.prepare(path, isSpotifyUrl);
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "prepare: " + e.getClass() + ": " + e.getLocalizedMessage());
+            failOver(query, result);
+        } catch (IOException e) {
+            Log.e(TAG, "prepare: " + e.getClass() + ": " + e.getLocalizedMessage());
+            failOver(query, result);
+        }
+    }
+
+    /**
+     * Blacklist the given {@link Result}, which couldn't be prepared, and go on with the next best
+     * {@link Result} of the given {@link Query}. If there is none left, skip to the next track.
+     * Must only be called on the playback thread.
+     */
+    private void failOver(final Query query, Result result) {
+        mPreparingQuery = null;
+        mPreparingResult = null;
+        if (result != null) {
+            query.blacklistTrackResult(result);
+        }
+        if (query.getPreferredTrackResult() != null) {
+            prepare(query);
+        } else {
+            Log.e(TAG, "MediaPlayer was unable to prepare the track");
+            mLastPreparedPath = "";
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (query == getCurrentQuery() && mPipeLine != null
+                            && !mPipeLine.isResolving(query)) {
+                        next();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Let the {@link TomahawkMediaPlayer} prepare the next {@link Query} of the current {@link
+     * Playlist} in the background, so that there's no gap when it's started. Has to be called every
+     * time the next {@link Query} might have changed.
+     */
+    private void prepareNextQuery() {
+        mPlaybackHandler.post(mPrepareNextQueryRunnable);
+    }
+
+    /**
+     * Must only be called on the playback thread
+     */
+    private void doPrepareNextQuery() {
+        if (mTomahawkMediaPlayer == null || mCurrentPlaylist == null) {
+            return;
+        }
+        Query query = mCurrentPlaylist.peekNextQuery();
+        if (query != null && query.isPlayable() && query.getPreferredTrackResult() != null) {
+            boolean isSpotifyUrl = query.getPreferredTrackResult().getResolvedBy().getId()
+                    == TomahawkApp.RESOLVER_ID_SPOTIFY;
+            mTomahawkMediaPlayer.prepareNext(query.getPreferredTrackResult().getPath(),
+                    isSpotifyUrl);
+        } else {
+            mTomahawkMediaPlayer.prepareNext(null, false);
+        }
+        if (isUnmeteredNetworkAvailable()) {
+            int currentIndex = mCurrentPlaylist.getCurrentQueryIndex();
+            int count = mCurrentPlaylist.getCount();
+            for (int i = 1; i <= PREFETCH_COUNT && i < count; i++) {
+                int index = currentIndex + i;
+                if (index >= count) {
+                    if (!mCurrentPlaylist.isRepeating()) {
+                        break;
+                    }
+                    index -= count;
+                }
+                Query upcomingQuery = mCurrentPlaylist.peekQueryAtPos(index);
+                if (upcomingQuery != null && upcomingQuery.isPlayable()
+                        && upcomingQuery.getPreferredTrackResult() != null
+                        && upcomingQuery.getPreferredTrackResult().getResolvedBy().getId()
+                        != TomahawkApp.RESOLVER_ID_SPOTIFY) {
+                    mAudioCacheProxy.prefetch(upcomingQuery.getPreferredTrackResult().getPath());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the time in ms between the end of the last track and the start of the next one or
+     * -1, if there hasn't been any transition yet
+     */
+    public long getLastTransitionGap() {
+        return mTomahawkMediaPlayer != null ? mTomahawkMediaPlayer.getLastTransitionGap() : -1;
+    }
+
+    /**
+     * @return the ratio of streams which could be started from the {@link AudioCache}
+     */
+    public float getAudioCacheHitRatio() {
+        return mAudioCache != null ? mAudioCache.getHitRatio() : 0f;
+    }
+
+    /**
+     * @return the number of bytes which have been streamed from the {@link AudioCache} instead of
+     * the network
+     */
+    public long getAudioCacheBytesSaved() {
+        return mAudioCache != null ? mAudioCache.getBytesSaved() : 0;
+    }
+
+    /**
+     * @return whether or not an unmetered connection like wi-fi is available
+     */
+    private boolean isUnmeteredNetworkAvailable() {
+        ConnectivityManager connectivityManager = (ConnectivityManager) getSystemService(
+                Context.CONNECTIVITY_SERVICE);
+        NetworkInfo activeNetworkInfo = connectivityManager.getActiveNetworkInfo();
+        return activeNetworkInfo != null && activeNetworkInfo.isConnected()
+                && (activeNetworkInfo.getType() == ConnectivityManager.TYPE_WIFI
+                || activeNetworkInfo.getType() == ConnectivityManager.TYPE_ETHERNET);
+    }
+
     /**
      * @return whether or not wi-fi is available
      */
@@ -814,6 +1062,8 @@ public class PlaybackService extends Service {
         if (wasEmpty && mCurrentPlaylist.getCount() > 0) {
             setCurrentQuery(mCurrentPlaylist.getQueryAtPos(0));
         }
+        mLookAheadScheduler.update(mCurrentPlaylist);
+        prepareNextQuery();
         sendBroadcast(new Intent(BROADCAST_PLAYLISTCHANGED));
     }
 
@@ -837,6 +1087,8 @@ public class PlaybackService extends Service {
         if (wasEmpty && mCurrentPlaylist.getCount() > 0) {
             setCurrentQuery(mCurrentPlaylist.getQueryAtPos(0));
         }
+        mLookAheadScheduler.update(mCurrentPlaylist);
+        prepareNextQuery();
         sendBroadcast(new Intent(BROADCAST_PLAYLISTCHANGED));
     }
 
@@ -848,6 +1100,8 @@ public class PlaybackService extends Service {
         if (mCurrentPlaylist.getCount() == 0) {
             pause(true);
         }
+        mLookAheadScheduler.update(mCurrentPlaylist);
+        prepareNextQuery();
         sendBroadcast(new Intent(BROADCAST_PLAYLISTCHANGED));
     }
 
@@ -859,6 +1113,8 @@ public class PlaybackService extends Service {
         if (mCurrentPlaylist.getCount() == 0) {
             pause(true);
         }
+        mLookAheadScheduler.update(mCurrentPlaylist);
+        prepareNextQuery();
         sendBroadcast(new Intent(BROADCAST_PLAYLISTCHANGED));
     }
 
@@ -1032,26 +1288,12 @@ public class PlaybackService extends Service {
         return null;
     }
 
-    private void resolveQueriesFromTo(int start, int end) {
-        ArrayList<Query> qs = new ArrayList<Query>();
-        for (int i = start; i < end; i++) {
-            if (i >= 0 && i < mCurrentPlaylist.getQueries().size()) {
-                Query q = mCurrentPlaylist.peekQueryAtPos(i);
-                if (!q.isSolved() && !mCorrespondingQueryIds
-                        .contains(TomahawkUtils.getCacheKey(q))) {
-                    qs.add(q);
-                }
-            }
-        }
-        if (!qs.isEmpty()) {
-            HashSet<String> qids = mPipeLine.resolve(qs);
-            mCorrespondingQueryIds.addAll(qids);
-        }
-    }
-
     private void onPipeLineResultsReported(String qId) {
         if (mCurrentPlaylist != null && TomahawkUtils.getCacheKey(getCurrentQuery()).equals(qId)) {
             setCurrentQuery(mCurrentPlaylist.getCurrentQuery());
+        } else if (mCurrentPlaylist != null && mCurrentPlaylist.peekNextQuery() != null
+                && TomahawkUtils.getCacheKey(mCurrentPlaylist.peekNextQuery()).equals(qId)) {
+            prepareNextQuery();
         }
     }
 
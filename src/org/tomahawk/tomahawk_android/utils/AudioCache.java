@@ -0,0 +1,414 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.tomahawk_android.utils;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size-bounded cache of streamed audio files on disk. Of every url, the first bytes are cached
+ * as one contiguous piece, which grows as the url is read further. The total length of every url
+ * is known, so that a fully cached url can be served without any network access. If the cache
+ * exceeds its maximum size, the least recently used urls are evicted, unless they are currently
+ * read or written.
+ *
+ * The index of the urls which have been cached before is read on a background thread, so that
+ * constructing an {@link AudioCache} doesn't touch the disk. Until the index is ready, the cache
+ * is treated as empty: nothing is served from it and nothing is written to it.
+ *
+ * Also keeps track of how many requests could be served from the cache and how many bytes have
+ * been saved by it.
+ */
+public class AudioCache {
+
+    private final static String TAG = AudioCache.class.getName();
+
+    public static final long DEFAULT_MAX_SIZE = 100L * 1024L * 1024L;
+
+    private static final String DATA_SUFFIX = ".data";
+
+    private static final String META_SUFFIX = ".meta";
+
+    private File mDirectory;
+
+    private long mMaxSize;
+
+    private long mTotalSize;
+
+    // All entries in the order of their last access, the least recently used one first
+    private LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<String, Entry>(16, 0.75f,
+            true);
+
+    // Released as soon as the index has been read
+    private CountDownLatch mIndexLatch = new CountDownLatch(1);
+
+    private AtomicLong mHitCount = new AtomicLong();
+
+    private AtomicLong mMissCount = new AtomicLong();
+
+    private AtomicLong mBytesFromCache = new AtomicLong();
+
+    private AtomicLong mBytesFromNetwork = new AtomicLong();
+
+    /**
+     * The cached piece of a single url
+     */
+    public static class Entry {
+
+        private String mKey;
+
+        private File mDataFile;
+
+        private File mMetaFile;
+
+        // The number of bytes from the start of the url, which are cached
+        private long mLength;
+
+        // The total length of the url, -1 if it's not known yet
+        private long mContentLength = -1;
+
+        private String mContentType;
+
+        private int mReaderCount;
+
+        private boolean mIsWriting;
+
+        // Whether or not this Entry has been opened before the index was ready. It's not part of
+        // the cache and must never be written.
+        private boolean mIsDetached;
+
+        private Entry(File directory, String key) {
+            mKey = key;
+            mDataFile = new File(directory, key + DATA_SUFFIX);
+            mMetaFile = new File(directory, key + META_SUFFIX);
+        }
+
+        public File getDataFile() {
+            return mDataFile;
+        }
+
+        public synchronized long getLength() {
+            return mLength;
+        }
+
+        public synchronized long getContentLength() {
+            return mContentLength;
+        }
+
+        public synchronized String getContentType() {
+            return mContentType;
+        }
+
+        public synchronized boolean isComplete() {
+            return mContentLength >= 0 && mLength >= mContentLength;
+        }
+    }
+
+    /**
+     * Construct a new {@link AudioCache} and start reading the index of the urls which have been
+     * cached in the given directory before
+     */
+    public AudioCache(File directory, long maxSize) {
+        mDirectory = directory;
+        mMaxSize = maxSize;
+        Thread indexThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    readIndex();
+                } finally {
+                    mIndexLatch.countDown();
+                }
+            }
+        }, "AudioCacheIndex");
+        indexThread.setPriority(Thread.MIN_PRIORITY);
+        indexThread.start();
+    }
+
+    private void readIndex() {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Log.e(TAG, "readIndex - couldn't create directory " + mDirectory);
+        }
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        // Restore the order of the last access by the files' modification times
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long diff = lhs.lastModified() - rhs.lastModified();
+                return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+            }
+        });
+        LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+        long totalSize = 0;
+        for (File file : files) {
+            if (!file.getName().endsWith(DATA_SUFFIX)) {
+                continue;
+            }
+            String key = file.getName().substring(0,
+                    file.getName().length() - DATA_SUFFIX.length());
+            Entry entry = new Entry(mDirectory, key);
+            if (readMeta(entry)) {
+                entry.mLength = Math.min(file.length(), entry.mContentLength);
+                entries.put(key, entry);
+                totalSize += entry.mLength;
+            } else {
+                file.delete();
+                entry.mMetaFile.delete();
+            }
+        }
+        synchronized (this) {
+            // Entries which have been opened in the meantime are all detached, so nothing can
+            // have been added to mEntries so far
+            mEntries = entries;
+            mTotalSize = totalSize;
+            trimToSize();
+        }
+        Log.d(TAG, "readIndex - " + entries.size() + " urls, " + totalSize + " bytes");
+    }
+
+    /**
+     * Wait until the index has been read
+     *
+     * @return whether or not the index is ready
+     */
+    boolean awaitIndex(long timeout) throws InterruptedException {
+        return mIndexLatch.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    private static boolean readMeta(Entry entry) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(entry.mMetaFile));
+            entry.mContentLength = in.readLong();
+            entry.mContentType = in.readBoolean() ? in.readUTF() : null;
+            return entry.mContentLength >= 0;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Open the {@link Entry} of the given url. It won't be evicted until it has been closed again
+     * by {@link #close(Entry)}.
+     */
+    public synchronized Entry open(String url) {
+        String key = getKey(url);
+        if (mIndexLatch.getCount() > 0) {
+            Entry entry = new Entry(mDirectory, key);
+            entry.mIsDetached = true;
+            entry.mReaderCount++;
+            return entry;
+        }
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            entry = new Entry(mDirectory, key);
+            mEntries.put(key, entry);
+        }
+        entry.mReaderCount++;
+        if (entry.mDataFile.exists()) {
+            entry.mDataFile.setLastModified(System.currentTimeMillis());
+        }
+        return entry;
+    }
+
+    public synchronized void close(Entry entry) {
+        entry.mReaderCount--;
+        if (entry.mIsDetached) {
+            return;
+        }
+        if (entry.mReaderCount == 0 && entry.getLength() == 0) {
+            // Nothing has been cached
+            mEntries.remove(entry.mKey);
+        }
+        trimToSize();
+    }
+
+    /**
+     * Try to become the only writer of the given {@link Entry}
+     *
+     * @param contentLength the total length of the url
+     * @param contentType   the content type of the url, may be null
+     * @return a stream to which the bytes following the currently cached ones have to be written
+     * or null, if someone else is already writing the given {@link Entry} or it has been opened
+     * before the index was ready
+     */
+    public OutputStream beginWrite(Entry entry, long contentLength, String contentType) {
+        synchronized (this) {
+            long knownContentLength = entry.getContentLength();
+            if (entry.mIsDetached || entry.mIsWriting || entry.isComplete()
+                    || (knownContentLength >= 0 && knownContentLength != contentLength)) {
+                return null;
+            }
+            entry.mIsWriting = true;
+        }
+        try {
+            if (entry.getContentLength() < 0) {
+                writeMeta(entry, contentLength, contentType);
+                synchronized (entry) {
+                    entry.mContentLength = contentLength;
+                    entry.mContentType = contentType;
+                }
+            }
+            return new FileOutputStream(entry.mDataFile, true);
+        } catch (IOException e) {
+            Log.e(TAG, "beginWrite: " + e.getClass() + ": " + e.getLocalizedMessage());
+            endWrite(entry);
+            return null;
+        }
+    }
+
+    /**
+     * Called by the writer of the given {@link Entry} every time it has appended the given number
+     * of bytes to the stream it got from {@link #beginWrite(Entry, long, String)}. Other {@link
+     * Entry}s are evicted right away if necessary, so that a long write can't push the cache far
+     * beyond its maximum size.
+     */
+    public void onWritten(Entry entry, int byteCount) {
+        synchronized (entry) {
+            entry.mLength += byteCount;
+        }
+        synchronized (this) {
+            mTotalSize += byteCount;
+            trimToSize();
+        }
+    }
+
+    public synchronized void endWrite(Entry entry) {
+        entry.mIsWriting = false;
+        trimToSize();
+    }
+
+    private static void writeMeta(Entry entry, long contentLength, String contentType)
+            throws IOException {
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(entry.mMetaFile));
+        try {
+            out.writeLong(contentLength);
+            out.writeBoolean(contentType != null);
+            if (contentType != null) {
+                out.writeUTF(contentType);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Evict the least recently used {@link Entry}s, until the cache fits into its maximum size
+     * again. Must only be called while holding the lock of this {@link AudioCache}.
+     */
+    private void trimToSize() {
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (mTotalSize > mMaxSize && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.mReaderCount == 0 && !entry.mIsWriting) {
+                Log.d(TAG, "trimToSize - evicting " + entry.mKey + " (" + entry.mLength
+                        + " bytes)");
+                mTotalSize -= entry.mLength;
+                entry.mDataFile.delete();
+                entry.mMetaFile.delete();
+                iterator.remove();
+            }
+        }
+    }
+
+    public void onHit(long bytesFromCache) {
+        mHitCount.incrementAndGet();
+        mBytesFromCache.addAndGet(bytesFromCache);
+    }
+
+    public void onMiss() {
+        mMissCount.incrementAndGet();
+    }
+
+    public void onBytesFromNetwork(long bytesFromNetwork) {
+        mBytesFromNetwork.addAndGet(bytesFromNetwork);
+    }
+
+    /**
+     * @return the ratio of requests which could be started from the cache, between 0 and 1
+     */
+    public float getHitRatio() {
+        long requestCount = mHitCount.get() + mMissCount.get();
+        return requestCount > 0 ? (float) mHitCount.get() / requestCount : 0f;
+    }
+
+    /**
+     * @return the number of bytes which have been served from the cache instead of the network
+     */
+    public long getBytesSaved() {
+        return mBytesFromCache.get();
+    }
+
+    /**
+     * @return the number of bytes which have been read from the network
+     */
+    public long getBytesFromNetwork() {
+        return mBytesFromNetwork.get();
+    }
+
+    public synchronized long getTotalSize() {
+        return mTotalSize;
+    }
+
+    private static String getKey(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest(url.getBytes("UTF-8"))) {
+                key.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return String.valueOf(url.hashCode());
+        } catch (IOException e) {
+            return String.valueOf(url.hashCode());
+        }
+    }
+
+    static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Log.e(TAG, "closeQuietly: " + e.getClass() + ": " + e.getLocalizedMessage());
+            }
+        }
+    }
+}
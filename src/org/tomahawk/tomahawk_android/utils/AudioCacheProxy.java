@@ -0,0 +1,532 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.tomahawk_android.utils;
+
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local HTTP proxy on the loopback interface, through which the {@link android.media.MediaPlayer}
+ * streams http urls. Every stream is served from the {@link AudioCache} as far as it has been
+ * cached, the rest is fetched from the original url and written to the {@link AudioCache} on the
+ * way. Range requests, which the {@link android.media.MediaPlayer} sends when seeking, are
+ * supported. A seek beyond the cached part is streamed directly, without being cached.
+ *
+ * The beginning of urls which are about to be played can be prefetched via {@link
+ * #prefetch(String)}, so that their playback starts from the cache.
+ *
+ * Every proxy url carries a random token, which is created anew for every {@link AudioCacheProxy}.
+ * Requests without it are rejected, so that other apps can't use the proxy to make requests in our
+ * name or to read what we have cached.
+ */
+public class AudioCacheProxy {
+
+    private final static String TAG = AudioCacheProxy.class.getName();
+
+    // The number of bytes at the start of a url, which are fetched by prefetch(String)
+    private static final int PREFETCH_SIZE = 512 * 1024;
+
+    private static final int MAX_CONNECTIONS = 4;
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private static final int CONNECT_TIMEOUT = 10000;
+
+    private static final int READ_TIMEOUT = 20000;
+
+    private static final String DEFAULT_CONTENT_TYPE = "audio/mpeg";
+
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-\\d*");
+
+    private static final Pattern CONTENT_RANGE_PATTERN = Pattern.compile("bytes \\d+-\\d+/(\\d+)");
+
+    private AudioCache mAudioCache;
+
+    // Has to be given by every request, see getProxyUrl(String)
+    private final String mToken;
+
+    private ServerSocket mServerSocket;
+
+    private ThreadPoolExecutor mConnectionExecutor;
+
+    private ThreadPoolExecutor mPrefetchExecutor;
+
+    // The urls which are currently queued to be prefetched or are being prefetched
+    private Set<String> mPrefetchingUrls = Collections.synchronizedSet(new HashSet<String>());
+
+    /**
+     * The upstream connection to the original url
+     */
+    private static class Upstream {
+
+        HttpURLConnection mConnection;
+
+        InputStream mInputStream;
+
+        // The total length of the url, -1 if it isn't known
+        long mContentLength = -1;
+
+        String mContentType;
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger mThreadNumber = new AtomicInteger(1);
+
+        private final String mName;
+
+        private final int mPriority;
+
+        NamedThreadFactory(String name, int priority) {
+            mName = name;
+            mPriority = priority;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, mName + " #" + mThreadNumber.getAndIncrement());
+            thread.setPriority(mPriority);
+            return thread;
+        }
+    }
+
+    public AudioCacheProxy(AudioCache audioCache) {
+        mAudioCache = audioCache;
+        SecureRandom random = new SecureRandom();
+        mToken = Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong());
+        mConnectionExecutor = new ThreadPoolExecutor(MAX_CONNECTIONS, MAX_CONNECTIONS, 30,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new NamedThreadFactory("AudioCacheProxy", Thread.NORM_PRIORITY));
+        mConnectionExecutor.allowCoreThreadTimeOut(true);
+        mPrefetchExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new NamedThreadFactory("AudioCachePrefetch", Thread.MIN_PRIORITY));
+        mPrefetchExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Start listening on a free port of the loopback interface
+     */
+    public synchronized void start() {
+        if (mServerSocket != null) {
+            return;
+        }
+        try {
+            mServerSocket = new ServerSocket();
+            mServerSocket.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+        } catch (IOException e) {
+            Log.e(TAG, "start: " + e.getClass() + ": " + e.getLocalizedMessage());
+            mServerSocket = null;
+            return;
+        }
+        final ServerSocket serverSocket = mServerSocket;
+        Thread acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        final Socket socket = serverSocket.accept();
+                        mConnectionExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                handleConnection(socket);
+                            }
+                        });
+                    } catch (IOException e) {
+                        if (!serverSocket.isClosed()) {
+                            Log.e(TAG, "accept: " + e.getClass() + ": "
+                                    + e.getLocalizedMessage());
+                        }
+                    }
+                }
+            }
+        }, "AudioCacheProxyAccept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        Log.d(TAG, "start - listening on port " + mServerSocket.getLocalPort());
+    }
+
+    public synchronized void stop() {
+        if (mServerSocket != null) {
+            try {
+                mServerSocket.close();
+            } catch (IOException e) {
+                Log.e(TAG, "stop: " + e.getClass() + ": " + e.getLocalizedMessage());
+            }
+            mServerSocket = null;
+        }
+        mConnectionExecutor.shutdownNow();
+        mPrefetchExecutor.shutdownNow();
+    }
+
+    /**
+     * @return the url through which the given url is streamed via this {@link AudioCacheProxy}.
+     * Urls which aren't http urls and all urls while the proxy isn't running are returned
+     * unchanged.
+     */
+    public synchronized String getProxyUrl(String url) {
+        if (mServerSocket == null || !isHttpUrl(url)) {
+            return url;
+        }
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort() + "/?token=" + mToken + "&url="
+                + Uri.encode(url);
+    }
+
+    /**
+     * Fetch the beginning of the given url into the {@link AudioCache} in the background
+     */
+    public void prefetch(final String url) {
+        if (!isHttpUrl(url) || mPrefetchExecutor.isShutdown() || !mPrefetchingUrls.add(url)) {
+            return;
+        }
+        mPrefetchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    doPrefetch(url);
+                } finally {
+                    mPrefetchingUrls.remove(url);
+                }
+            }
+        });
+    }
+
+    private void doPrefetch(String url) {
+        AudioCache.Entry entry = mAudioCache.open(url);
+        Upstream upstream = null;
+        OutputStream cacheOutputStream = null;
+        try {
+            long position = entry.getLength();
+            if (position >= PREFETCH_SIZE || entry.isComplete()) {
+                return;
+            }
+            upstream = openUpstream(url, position);
+            if (upstream.mContentLength < 0) {
+                return;
+            }
+            cacheOutputStream = mAudioCache.beginWrite(entry, upstream.mContentLength,
+                    upstream.mContentType);
+            if (cacheOutputStream == null || entry.getLength() != position) {
+                return;
+            }
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long remaining = PREFETCH_SIZE - position;
+            int read;
+            while (remaining > 0 && (read = upstream.mInputStream.read(buffer, 0,
+                    (int) Math.min(buffer.length, remaining))) != -1) {
+                cacheOutputStream.write(buffer, 0, read);
+                mAudioCache.onWritten(entry, read);
+                mAudioCache.onBytesFromNetwork(read);
+                remaining -= read;
+            }
+            Log.d(TAG, "doPrefetch - " + entry.getLength() + " bytes of " + url);
+        } catch (IOException e) {
+            Log.e(TAG, "doPrefetch: " + e.getClass() + ": " + e.getLocalizedMessage());
+        } finally {
+            if (cacheOutputStream != null) {
+                AudioCache.closeQuietly(cacheOutputStream);
+                mAudioCache.endWrite(entry);
+            }
+            closeUpstream(upstream);
+            mAudioCache.close(entry);
+        }
+    }
+
+    private void handleConnection(Socket socket) {
+        try {
+            socket.setSoTimeout(READ_TIMEOUT);
+            InputStream in = socket.getInputStream();
+            String requestLine = readLine(in);
+            if (requestLine == null) {
+                return;
+            }
+            long start = 0;
+            boolean isRangeRequest = false;
+            String line;
+            while ((line = readLine(in)) != null && line.length() > 0) {
+                int colon = line.indexOf(':');
+                if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Range")) {
+                    Matcher matcher = RANGE_PATTERN.matcher(line.substring(colon + 1).trim());
+                    if (matcher.matches()) {
+                        start = Long.parseLong(matcher.group(1));
+                        isRangeRequest = true;
+                    }
+                }
+            }
+            String[] parts = requestLine.split(" ");
+            Uri uri = parts.length > 1 ? Uri.parse("http://127.0.0.1" + parts[1]) : null;
+            String url = uri != null ? uri.getQueryParameter("url") : null;
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+            if (uri == null || !mToken.equals(uri.getQueryParameter("token"))) {
+                Log.e(TAG, "handleConnection - rejecting request without a valid token");
+                writeStatus(out, "403 Forbidden");
+            } else if (url == null || !isHttpUrl(url)) {
+                writeStatus(out, "400 Bad Request");
+            } else {
+                serve(out, url, start, isRangeRequest);
+            }
+            out.flush();
+        } catch (IOException e) {
+            // Most likely the MediaPlayer has closed the connection, because it's seeking
+            Log.d(TAG, "handleConnection: " + e.getClass() + ": " + e.getLocalizedMessage());
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                Log.e(TAG, "handleConnection: " + e.getClass() + ": " + e.getLocalizedMessage());
+            }
+        }
+    }
+
+    /**
+     * Serve the given url from the given position on. The part which has been cached is read from
+     * the {@link AudioCache}, the rest from the original url. If the cached part ends right where
+     * the rest starts, the rest is written to the {@link AudioCache} as well. The original url is
+     * always opened before any headers are sent, so that a failure can still be reported as such.
+     */
+    private void serve(OutputStream out, String url, long start, boolean isRangeRequest)
+            throws IOException {
+        AudioCache.Entry entry = mAudioCache.open(url);
+        Upstream upstream = null;
+        OutputStream cacheOutputStream = null;
+        try {
+            long cachedLength = entry.getLength();
+            boolean isHit = start < cachedLength;
+            long contentLength;
+            String contentType;
+            long position;
+            if (isHit) {
+                contentLength = entry.getContentLength();
+                contentType = entry.getContentType();
+                position = cachedLength;
+            } else {
+                contentLength = -1;
+                contentType = null;
+                position = start;
+            }
+            if (!isHit || position < contentLength) {
+                try {
+                    upstream = openUpstream(url, position);
+                } catch (IOException e) {
+                    Log.e(TAG, "serve: " + e.getClass() + ": " + e.getLocalizedMessage());
+                    writeStatus(out, "502 Bad Gateway");
+                    return;
+                }
+                if (!isHit) {
+                    contentLength = upstream.mContentLength;
+                    contentType = upstream.mContentType;
+                }
+            }
+            writeHeaders(out, start, contentLength, contentType, isRangeRequest);
+
+            if (isHit) {
+                mAudioCache.onHit(copyFromCache(entry, start, cachedLength, out));
+            } else {
+                mAudioCache.onMiss();
+            }
+            if (upstream != null) {
+                if (contentLength >= 0 && position == cachedLength) {
+                    cacheOutputStream = mAudioCache.beginWrite(entry, contentLength,
+                            contentType);
+                    if (cacheOutputStream != null && entry.getLength() != position) {
+                        // Someone else has written to the cache in the meantime
+                        AudioCache.closeQuietly(cacheOutputStream);
+                        mAudioCache.endWrite(entry);
+                        cacheOutputStream = null;
+                    }
+                }
+                copyFromUpstream(entry, upstream, out, cacheOutputStream);
+            }
+        } finally {
+            if (cacheOutputStream != null) {
+                AudioCache.closeQuietly(cacheOutputStream);
+                mAudioCache.endWrite(entry);
+            }
+            closeUpstream(upstream);
+            mAudioCache.close(entry);
+            Log.d(TAG, "serve - hit ratio " + mAudioCache.getHitRatio() + ", bytes saved "
+                    + mAudioCache.getBytesSaved() + ", bytes from network "
+                    + mAudioCache.getBytesFromNetwork());
+        }
+    }
+
+    private long copyFromCache(AudioCache.Entry entry, long start, long end, OutputStream out)
+            throws IOException {
+        FileInputStream in = new FileInputStream(entry.getDataFile());
+        long copied = 0;
+        try {
+            skipFully(in, start);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long remaining = end - start;
+            int read;
+            while (remaining > 0 && (read = in.read(buffer, 0,
+                    (int) Math.min(buffer.length, remaining))) != -1) {
+                out.write(buffer, 0, read);
+                copied += read;
+                remaining -= read;
+            }
+        } finally {
+            AudioCache.closeQuietly(in);
+        }
+        return copied;
+    }
+
+    private void copyFromUpstream(AudioCache.Entry entry, Upstream upstream, OutputStream out,
+            OutputStream cacheOutputStream) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = upstream.mInputStream.read(buffer)) != -1) {
+            mAudioCache.onBytesFromNetwork(read);
+            if (cacheOutputStream != null) {
+                // Write to the cache first, so that it's kept even if the client disconnects
+                cacheOutputStream.write(buffer, 0, read);
+                mAudioCache.onWritten(entry, read);
+            }
+            out.write(buffer, 0, read);
+        }
+    }
+
+    /**
+     * Open a connection to the given url, which starts at the given position
+     */
+    private static Upstream openUpstream(String url, long position) throws IOException {
+        Upstream upstream = new Upstream();
+        upstream.mConnection = (HttpURLConnection) new URL(url).openConnection();
+        upstream.mConnection.setConnectTimeout(CONNECT_TIMEOUT);
+        upstream.mConnection.setReadTimeout(READ_TIMEOUT);
+        if (position > 0) {
+            upstream.mConnection.setRequestProperty("Range", "bytes=" + position + "-");
+        }
+        int responseCode = upstream.mConnection.getResponseCode();
+        upstream.mContentType = upstream.mConnection.getContentType();
+        if (responseCode == HttpURLConnection.HTTP_PARTIAL) {
+            String contentRange = upstream.mConnection.getHeaderField("Content-Range");
+            Matcher matcher = contentRange != null
+                    ? CONTENT_RANGE_PATTERN.matcher(contentRange) : null;
+            if (matcher != null && matcher.matches()) {
+                upstream.mContentLength = Long.parseLong(matcher.group(1));
+            }
+            upstream.mInputStream = upstream.mConnection.getInputStream();
+        } else if (responseCode == HttpURLConnection.HTTP_OK) {
+            String contentLength = upstream.mConnection.getHeaderField("Content-Length");
+            if (contentLength != null) {
+                try {
+                    upstream.mContentLength = Long.parseLong(contentLength);
+                } catch (NumberFormatException e) {
+                    upstream.mContentLength = -1;
+                }
+            }
+            upstream.mInputStream = upstream.mConnection.getInputStream();
+            // The server has ignored our Range header
+            skipFully(upstream.mInputStream, position);
+        } else {
+            upstream.mConnection.disconnect();
+            throw new IOException("Unexpected response code " + responseCode + " for " + url);
+        }
+        return upstream;
+    }
+
+    private static void closeUpstream(Upstream upstream) {
+        if (upstream != null) {
+            AudioCache.closeQuietly(upstream.mInputStream);
+            upstream.mConnection.disconnect();
+        }
+    }
+
+    private static void writeHeaders(OutputStream out, long start, long contentLength,
+            String contentType, boolean isRangeRequest) throws IOException {
+        StringBuilder headers = new StringBuilder();
+        if (isRangeRequest && contentLength >= 0) {
+            headers.append("HTTP/1.1 206 Partial Content\r\n");
+            headers.append("Content-Range: bytes ").append(start).append("-")
+                    .append(contentLength - 1).append("/").append(contentLength).append("\r\n");
+        } else {
+            headers.append("HTTP/1.1 200 OK\r\n");
+        }
+        if (contentLength >= 0) {
+            headers.append("Content-Length: ").append(contentLength - start).append("\r\n");
+        }
+        headers.append("Content-Type: ")
+                .append(contentType != null ? contentType : DEFAULT_CONTENT_TYPE).append("\r\n");
+        headers.append("Accept-Ranges: bytes\r\n");
+        headers.append("Connection: close\r\n\r\n");
+        out.write(headers.toString().getBytes("US-ASCII"));
+    }
+
+    private static void writeStatus(OutputStream out, String status) throws IOException {
+        out.write(("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n")
+                .getBytes("US-ASCII"));
+    }
+
+    /**
+     * @return the next line of the given stream without its line break, or null if the stream
+     * has ended
+     */
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                return line.toString();
+            } else if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.length() > 0 ? line.toString() : null;
+    }
+
+    private static void skipFully(InputStream in, long byteCount) throws IOException {
+        while (byteCount > 0) {
+            long skipped = in.skip(byteCount);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    throw new IOException("Stream has ended before the requested position");
+                }
+                skipped = 1;
+            }
+            byteCount -= skipped;
+        }
+    }
+
+    private static boolean isHttpUrl(String url) {
+        return url != null && (url.startsWith("http://") || url.startsWith("https://"));
+    }
+}
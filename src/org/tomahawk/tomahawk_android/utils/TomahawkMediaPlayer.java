@@ -21,62 +21,188 @@ import org.tomahawk.libtomahawk.collection.Track;
 import org.tomahawk.libtomahawk.resolver.spotify.LibSpotifyWrapper;
 import org.tomahawk.tomahawk_android.services.PlaybackService;
 
+import android.annotation.TargetApi;
 import android.media.AudioManager;
 import android.media.MediaPlayer;
+import android.os.Build;
+import android.util.Log;
 
 import java.io.IOException;
 
 /**
  * This class wraps a standard {@link MediaPlayer} object together with all functionality to be able
  * to directly playback spotify-resolved tracks with OpenSLES .
+ *
+ * While a {@link Track} is playing, the next {@link Track} can be prepared in the background by a
+ * second {@link MediaPlayer}. On devices which support it, the second {@link MediaPlayer} is
+ * chained to the first one via setNextMediaPlayer, so that the platform starts it without any gap.
+ * Otherwise both {@link MediaPlayer}s are swapped as soon as the current {@link Track} has been
+ * completed. The time between the end of a {@link Track} and the start of the next one is kept
+ * track of as the transition gap. Chained transitions happen inside the platform, where we can't
+ * measure them, so they are only counted and left out of the transition gap.
+ *
+ * The current {@link MediaPlayer} is driven by an explicit state machine. Urls are prepared
+ * asynchronously, calls which aren't valid in the current state are ignored instead of being
+ * passed on to the {@link MediaPlayer}.
  */
 public class TomahawkMediaPlayer
         implements MediaPlayer.OnPreparedListener, MediaPlayer.OnErrorListener,
         MediaPlayer.OnCompletionListener {
 
+    private final static String TAG = TomahawkMediaPlayer.class.getName();
+
+    // Nothing has been prepared yet or the last prepare has been cancelled
+    public static final int STATE_IDLE = 0;
+
+    public static final int STATE_PREPARING = 1;
+
+    public static final int STATE_PREPARED = 2;
+
+    public static final int STATE_STARTED = 3;
+
+    public static final int STATE_PAUSED = 4;
+
+    public static final int STATE_STOPPED = 5;
+
+    // Preparing or playing the current url has failed
+    public static final int STATE_ERROR = 6;
+
     private PlaybackService mPlaybackService;
 
+    // Streams http urls through the AudioCache, may be null
+    private AudioCacheProxy mAudioCacheProxy;
+
     private MediaPlayer mMediaPlayer;
 
+    // The url which has been prepared by mMediaPlayer or OpenSLES
+    private String mCurrentUrl;
+
     // Whether to use the MediaPlayer or OpenSLES
     private boolean mUseMediaPlayer;
 
-    private boolean mIsPreparing;
+    private int mState = STATE_IDLE;
+
+    // The MediaPlayer which prepares the next url in the background
+    private MediaPlayer mNextMediaPlayer;
 
-    private boolean mIsPlaying;
+    private String mNextUrl;
+
+    private boolean mIsNextPrepared;
+
+    // Whether or not mNextMediaPlayer has been set as mMediaPlayer's next MediaPlayer
+    private boolean mIsNextChained;
+
+    // The time at which the last transition has been started or 0, if there is none in progress
+    private long mTransitionStartTime;
+
+    private long mLastTransitionGap = -1;
+
+    private long mTotalTransitionGap;
+
+    private int mTransitionCount;
+
+    private int mChainedTransitionCount;
+
+    // The volume set by setVolume, which every new MediaPlayer has to be given as well
+    private float mLeftVolume = 1f;
+
+    private float mRightVolume = 1f;
 
     /**
      * Construct a new {@link TomahawkMediaPlayer}
+     *
+     * @param audioCacheProxy the {@link AudioCacheProxy} through which http urls are streamed. If
+     *                        null, they are streamed directly.
      */
-    public TomahawkMediaPlayer(PlaybackService playbackService) {
+    public TomahawkMediaPlayer(PlaybackService playbackService, AudioCacheProxy audioCacheProxy) {
         mPlaybackService = playbackService;
-        mMediaPlayer = new MediaPlayer();
-        mMediaPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
-        mMediaPlayer.setOnPreparedListener(this);
-        mMediaPlayer.setOnErrorListener(this);
-        mMediaPlayer.setOnCompletionListener(this);
+        mAudioCacheProxy = audioCacheProxy;
+        mMediaPlayer = createMediaPlayer();
+    }
+
+    /**
+     * @return the url which the {@link MediaPlayer} should actually read the given url from
+     */
+    private String getDataSource(String url) {
+        return mAudioCacheProxy != null ? mAudioCacheProxy.getProxyUrl(url) : url;
+    }
+
+    private MediaPlayer createMediaPlayer() {
+        MediaPlayer mediaPlayer = new MediaPlayer();
+        mediaPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
+        mediaPlayer.setOnPreparedListener(this);
+        mediaPlayer.setOnErrorListener(this);
+        mediaPlayer.setOnCompletionListener(this);
+        mediaPlayer.setVolume(mLeftVolume, mRightVolume);
+        return mediaPlayer;
     }
 
     @Override
     public void onPrepared(MediaPlayer mp) {
-        mIsPreparing = false;
+        synchronized (this) {
+            if (mp != null && mp == mNextMediaPlayer) {
+                mIsNextPrepared = true;
+                chainNextMediaPlayer();
+                return;
+            } else if ((mp != null && mp != mMediaPlayer) || (mp == null && mUseMediaPlayer)
+                    || mState != STATE_PREPARING) {
+                // This prepare has been superseded in the meantime
+                return;
+            }
+            setState(STATE_PREPARED);
+            chainNextMediaPlayer();
+        }
         mPlaybackService.onPrepared(this);
     }
 
     @Override
     public boolean onError(MediaPlayer mp, int what, int extra) {
+        synchronized (this) {
+            if (mp != null && mp == mNextMediaPlayer) {
+                // The next url will simply be prepared the usual way, once it's needed
+                Log.e(TAG, "onError - couldn't prepare next url " + mNextUrl + ", what=" + what);
+                releaseNextMediaPlayer();
+                return true;
+            } else if (mp != null && mp != mMediaPlayer) {
+                return true;
+            }
+            setState(STATE_ERROR);
+        }
         return mPlaybackService.onError(this, what, extra);
     }
 
     @Override
     public void onCompletion(MediaPlayer mp) {
+        synchronized (this) {
+            if (mp != null && mp != mMediaPlayer) {
+                return;
+            }
+            if (mState != STATE_STARTED) {
+                return;
+            }
+            if (mIsNextPrepared) {
+                boolean wasChained = mIsNextChained;
+                switchToNextMediaPlayer();
+                if (wasChained) {
+                    // The platform has already started the next MediaPlayer by itself
+                    setState(STATE_STARTED);
+                    mChainedTransitionCount++;
+                } else {
+                    mTransitionStartTime = System.currentTimeMillis();
+                    start();
+                }
+            } else {
+                mTransitionStartTime = System.currentTimeMillis();
+                setState(STATE_STOPPED);
+            }
+        }
         mPlaybackService.onCompletion(this);
     }
 
     /**
      * @return the current track position
      */
-    public int getCurrentPosition() {
+    public synchronized int getCurrentPosition() {
         if (mUseMediaPlayer) {
             return mMediaPlayer.getCurrentPosition();
         } else {
@@ -84,23 +210,63 @@ public class TomahawkMediaPlayer
         }
     }
 
-    public void setVolume(float leftVolume, float rightVolume) {
+    public synchronized void setVolume(float leftVolume, float rightVolume) {
+        mLeftVolume = leftVolume;
+        mRightVolume = rightVolume;
         mMediaPlayer.setVolume(leftVolume, rightVolume);
+        if (mNextMediaPlayer != null) {
+            mNextMediaPlayer.setVolume(leftVolume, rightVolume);
+        }
+    }
+
+    public synchronized void release() {
+        releaseNextMediaPlayer();
+        mMediaPlayer.release();
     }
 
-    public void release() {
+    /**
+     * Release the current {@link MediaPlayer} and replace it with a new one, so that a new url can
+     * be prepared. A prepare which is still in progress is cancelled by this. The {@link
+     * MediaPlayer} which prepares the next url is kept.
+     */
+    public synchronized void resetCurrent() {
+        if (mState == STATE_STARTED) {
+            mTransitionStartTime = System.currentTimeMillis();
+        }
+        mIsNextChained = false;
         mMediaPlayer.release();
+        mMediaPlayer = createMediaPlayer();
+        mCurrentUrl = null;
+        mUseMediaPlayer = false;
+        setState(STATE_IDLE);
     }
 
-    public boolean isPlaying() {
-        return mIsPlaying;
+    private void setState(int state) {
+        if (mState != state) {
+            Log.d(TAG, "State " + mState + " -> " + state);
+            mState = state;
+        }
+    }
+
+    /**
+     * @return the state of the current {@link MediaPlayer}. One of the STATE_ constants.
+     */
+    public synchronized int getState() {
+        return mState;
+    }
+
+    public synchronized boolean isPlaying() {
+        return mState == STATE_STARTED;
     }
 
     /**
      * Start playing the previously prepared {@link Track}
      */
-    public void start() throws IllegalStateException {
-        mIsPlaying = true;
+    public synchronized void start() throws IllegalStateException {
+        if (mState != STATE_PREPARED && mState != STATE_PAUSED) {
+            return;
+        }
+        setState(STATE_STARTED);
         if (mUseMediaPlayer) {
             mMediaPlayer.start();
             // mMediaplayer.seekTo(0) should be called whenever a Track has just been prepared
@@ -111,13 +277,18 @@ public class TomahawkMediaPlayer
         } else {
             LibSpotifyWrapper.play();
         }
+        recordTransitionGap();
     }
 
     /**
      * Pause playing the current {@link Track}
      */
-    public void pause() throws IllegalStateException {
-        mIsPlaying = false;
+    public synchronized void pause() throws IllegalStateException {
+        if (mState != STATE_STARTED) {
+            return;
+        }
+        setState(STATE_PAUSED);
+        mTransitionStartTime = 0;
         if (mUseMediaPlayer) {
             mMediaPlayer.pause();
         } else {
@@ -128,8 +299,12 @@ public class TomahawkMediaPlayer
     /**
      * Stop playing the current {@link Track}
      */
-    public void stop() throws IllegalStateException {
-        mIsPlaying = false;
+    public synchronized void stop() throws IllegalStateException {
+        if (mState != STATE_PREPARED && mState != STATE_STARTED && mState != STATE_PAUSED) {
+            return;
+        }
+        setState(STATE_STOPPED);
+        mTransitionStartTime = 0;
         if (mUseMediaPlayer) {
             mMediaPlayer.stop();
         } else {
@@ -140,7 +315,10 @@ public class TomahawkMediaPlayer
     /**
      * Seek to the given playback position (in ms)
      */
-    public void seekTo(int msec) throws IllegalStateException {
+    public synchronized void seekTo(int msec) throws IllegalStateException {
+        if (mState != STATE_PREPARED && mState != STATE_STARTED && mState != STATE_PAUSED) {
+            return;
+        }
         if (mUseMediaPlayer) {
             mMediaPlayer.seekTo(msec);
         } else {
@@ -149,30 +327,192 @@ public class TomahawkMediaPlayer
     }
 
     /**
-     * Prepare the given url
+     * Prepare the given url asynchronously. Once it's prepared, {@link
+     * PlaybackService#onPrepared(TomahawkMediaPlayer)} is called, if it fails {@link
+     * PlaybackService#onError(TomahawkMediaPlayer, int, int)}. Should only be called after {@link
+     * #resetCurrent()}.
      *
      * @param url          the url to prepare
      * @param isSpotifyUrl whether or not the given url is a spotify url
      */
-    public void prepare(String url, boolean isSpotifyUrl)
+    public synchronized void prepare(String url, boolean isSpotifyUrl)
             throws IllegalStateException, IOException {
-        mIsPreparing = true;
-        if (isSpotifyUrl) {
-            mUseMediaPlayer = false;
-            if (mMediaPlayer.isPlaying()) {
-                mMediaPlayer.stop();
+        setState(STATE_PREPARING);
+        mCurrentUrl = url;
+        try {
+            if (isSpotifyUrl) {
+                mUseMediaPlayer = false;
+                LibSpotifyWrapper.prepare(url, this);
+            } else {
+                mUseMediaPlayer = true;
+                LibSpotifyWrapper.pause();
+                mMediaPlayer.setDataSource(getDataSource(url));
+                mMediaPlayer.prepareAsync();
             }
-            mMediaPlayer.reset();
-            LibSpotifyWrapper.prepare(url, this);
-        } else {
-            mUseMediaPlayer = true;
+        } catch (IOException e) {
+            setState(STATE_ERROR);
+            throw e;
+        } catch (IllegalStateException e) {
+            setState(STATE_ERROR);
+            throw e;
+        }
+    }
+
+    /**
+     * Prepare the given url in the background, so that it can be played right after the current
+     * {@link Track}. Spotify urls can't be prepared in the background, since there's only one
+     * OpenSLES stream.
+     *
+     * @param url          the url to prepare next. If null, no url is prepared next.
+     * @param isSpotifyUrl whether or not the given url is a spotify url
+     */
+    public synchronized void prepareNext(String url, boolean isSpotifyUrl) {
+        if (url != null && url.equals(mNextUrl)) {
+            return;
+        }
+        releaseNextMediaPlayer();
+        if (url == null || isSpotifyUrl) {
+            return;
+        }
+        mNextMediaPlayer = createMediaPlayer();
+        mNextUrl = url;
+        try {
+            mNextMediaPlayer.setDataSource(getDataSource(url));
+            mNextMediaPlayer.prepareAsync();
+        } catch (IOException e) {
+            Log.e(TAG, "prepareNext: " + e.getClass() + ": " + e.getLocalizedMessage());
+            releaseNextMediaPlayer();
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "prepareNext: " + e.getClass() + ": " + e.getLocalizedMessage());
+            releaseNextMediaPlayer();
+        }
+    }
+
+    /**
+     * Switch to the given url, if it has already been prepared. Either because the current {@link
+     * Track} has been completed and the next {@link MediaPlayer} has taken over, or because the
+     * given url is the one which has been prepared in the background.
+     *
+     * @return whether or not the given url is now the current one. If false, it has to be prepared
+     * by calling {@link #prepare(String, boolean)}.
+     */
+    public synchronized boolean switchTo(String url) {
+        if (url == null) {
+            return false;
+        } else if (url.equals(mCurrentUrl) && (mState == STATE_PREPARED
+                || mState == STATE_STARTED || mState == STATE_PAUSED)) {
+            return true;
+        } else if (mIsNextPrepared && url.equals(mNextUrl)) {
+            boolean wasPlaying = mState == STATE_STARTED;
+            if (wasPlaying) {
+                mTransitionStartTime = System.currentTimeMillis();
+            }
+            switchToNextMediaPlayer();
+            if (wasPlaying) {
+                start();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Make the prepared next {@link MediaPlayer} the current one and release the old one
+     */
+    private void switchToNextMediaPlayer() {
+        MediaPlayer oldMediaPlayer = mMediaPlayer;
+        if (!mUseMediaPlayer) {
             LibSpotifyWrapper.pause();
-            mMediaPlayer.setDataSource(url);
-            mMediaPlayer.prepare();
         }
+        mMediaPlayer = mNextMediaPlayer;
+        mCurrentUrl = mNextUrl;
+        mUseMediaPlayer = true;
+        setState(STATE_PREPARED);
+        mNextMediaPlayer = null;
+        mNextUrl = null;
+        mIsNextPrepared = false;
+        mIsNextChained = false;
+        oldMediaPlayer.release();
+    }
+
+    /**
+     * Let the platform start the next {@link MediaPlayer} as soon as the current one has been
+     * completed, if both are prepared and the device supports it
+     */
+    @TargetApi(16)
+    private void chainNextMediaPlayer() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN && mUseMediaPlayer
+                && mState != STATE_IDLE && mState != STATE_PREPARING && mState != STATE_ERROR
+                && mIsNextPrepared && !mIsNextChained) {
+            try {
+                mMediaPlayer.setNextMediaPlayer(mNextMediaPlayer);
+                mIsNextChained = true;
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "chainNextMediaPlayer: " + e.getClass() + ": "
+                        + e.getLocalizedMessage());
+            } catch (IllegalArgumentException e) {
+                Log.e(TAG, "chainNextMediaPlayer: " + e.getClass() + ": "
+                        + e.getLocalizedMessage());
+            }
+        }
+    }
+
+    @TargetApi(16)
+    private void releaseNextMediaPlayer() {
+        if (mIsNextChained && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            try {
+                mMediaPlayer.setNextMediaPlayer(null);
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "releaseNextMediaPlayer: " + e.getClass() + ": "
+                        + e.getLocalizedMessage());
+            }
+        }
+        if (mNextMediaPlayer != null) {
+            mNextMediaPlayer.release();
+        }
+        mNextMediaPlayer = null;
+        mNextUrl = null;
+        mIsNextPrepared = false;
+        mIsNextChained = false;
+    }
+
+    private void recordTransitionGap() {
+        if (mTransitionStartTime > 0) {
+            mLastTransitionGap = System.currentTimeMillis() - mTransitionStartTime;
+            mTotalTransitionGap += mLastTransitionGap;
+            mTransitionCount++;
+            mTransitionStartTime = 0;
+            Log.d(TAG, "Transition gap " + mLastTransitionGap + "ms (" + getAverageTransitionGap()
+                    + "ms on average over " + mTransitionCount + " transitions)");
+        }
+    }
+
+    /**
+     * @return the time in ms between the end of the last {@link Track} and the start of the next
+     * one or -1, if there hasn't been any transition yet
+     */
+    public synchronized long getLastTransitionGap() {
+        return mLastTransitionGap;
+    }
+
+    /**
+     * @return the average time in ms between the end of a {@link Track} and the start of the next
+     * one or -1, if there hasn't been any transition yet
+     */
+    public synchronized long getAverageTransitionGap() {
+        return mTransitionCount > 0 ? mTotalTransitionGap / mTransitionCount : -1;
+    }
+
+    /**
+     * @return the number of transitions which the platform has done by itself, because the next
+     * {@link MediaPlayer} had been chained to the current one. They aren't part of the transition
+     * gap.
+     */
+    public synchronized int getChainedTransitionCount() {
+        return mChainedTransitionCount;
     }
 
-    public boolean isPreparing() {
-        return mIsPreparing;
+    public synchronized boolean isPreparing() {
+        return mState == STATE_PREPARING;
     }
 }
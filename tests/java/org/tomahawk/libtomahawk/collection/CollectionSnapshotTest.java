@@ -0,0 +1,135 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+import android.test.AndroidTestCase;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+public class CollectionSnapshotTest extends AndroidTestCase {
+
+    private File mFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mFile = new File(getContext().getCacheDir(), "test_collection.snapshot");
+        mFile.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mFile.delete();
+        super.tearDown();
+    }
+
+    private void writeSnapshot(int trackCount) {
+        HashMap<Long, CollectionSnapshot.AlbumInfo> albumInfos
+                = new HashMap<Long, CollectionSnapshot.AlbumInfo>();
+        CollectionSnapshot.AlbumInfo albumInfo = new CollectionSnapshot.AlbumInfo();
+        albumInfo.mAlbumArt = "/sdcard/albumart.jpg";
+        albumInfos.put(1L, albumInfo);
+        ArrayList<CollectionSnapshot.TrackInfo> trackInfos
+                = new ArrayList<CollectionSnapshot.TrackInfo>();
+        for (int i = 0; i < trackCount; i++) {
+            CollectionSnapshot.TrackInfo trackInfo = new CollectionSnapshot.TrackInfo();
+            trackInfo.mId = i;
+            trackInfo.mPath = "/sdcard/track" + i + ".mp3";
+            trackInfo.mTitle = "Track " + i;
+            trackInfo.mArtistName = "Artist";
+            trackInfo.mAlbumId = 1L;
+            trackInfo.mAlbumName = "Album";
+            trackInfos.add(trackInfo);
+        }
+        assertTrue(new CollectionSnapshot(mFile).write(albumInfos, trackInfos));
+    }
+
+    /**
+     * Overwrite the int at the given position of the snapshot file
+     */
+    private void overwriteInt(long position, int value) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            file.seek(position);
+            file.writeInt(value);
+        } finally {
+            file.close();
+        }
+    }
+
+    private void assertRejected() {
+        assertFalse(new CollectionSnapshot(mFile).read());
+        assertFalse("A snapshot which couldn't be decoded must be deleted", mFile.exists());
+    }
+
+    public void testReadWritten() {
+        writeSnapshot(10);
+        CollectionSnapshot snapshot = new CollectionSnapshot(mFile);
+        assertTrue(snapshot.read());
+        assertEquals("/sdcard/albumart.jpg", snapshot.getAlbumInfos().get(1L).mAlbumArt);
+        assertNull(snapshot.getAlbumInfos().get(1L).mFirstYear);
+        assertEquals(10, snapshot.getTrackInfos().size());
+        assertEquals("Track 9", snapshot.getTrackInfos().get(9).mTitle);
+        assertEquals(1L, snapshot.getTrackInfos().get(9).mAlbumId);
+    }
+
+    public void testMissingFile() {
+        assertFalse(new CollectionSnapshot(mFile).read());
+    }
+
+    public void testHugeCountIsRejected() throws IOException {
+        writeSnapshot(10);
+        // The album count follows the magic number and the version
+        overwriteInt(8, Integer.MAX_VALUE);
+        assertRejected();
+    }
+
+    public void testNegativeCountIsRejected() throws IOException {
+        writeSnapshot(10);
+        overwriteInt(8, -1);
+        assertRejected();
+    }
+
+    public void testTruncatedFileIsRejected() throws IOException {
+        writeSnapshot(10);
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            file.setLength(file.length() - 5);
+        } finally {
+            file.close();
+        }
+        assertRejected();
+    }
+
+    public void testTrailingDataIsRejected() throws IOException {
+        writeSnapshot(10);
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(mFile, true));
+        try {
+            out.writeInt(42);
+        } finally {
+            out.close();
+        }
+        assertRejected();
+    }
+}
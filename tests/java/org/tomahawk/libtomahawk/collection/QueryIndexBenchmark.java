@@ -0,0 +1,163 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.resolver.QueryComparator;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Compares lookups in the {@link QueryIndex} to scanning every {@link Query} of the collection, the
+ * way the DataBaseResolver did before, for collections of different sizes. Both have to find the
+ * same {@link Query}s in the same order.
+ */
+public class QueryIndexBenchmark extends TestCase {
+
+    private final static String TAG = QueryIndexBenchmark.class.getName();
+
+    private static final int ROUNDS = 20;
+
+    private static final String[] WORDS = {"love", "night", "the", "blue", "dancing", "heart",
+            "river", "song", "remix", "live", "version", "summer", "dream", "fire", "radio"};
+
+    private static String randomName(Random random, int wordCount) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < wordCount; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return the given number of random {@link Query}s, sorted like Collection.getQueries()
+     */
+    private static ArrayList<Query> createQueries(int count) {
+        Random random = new Random(42);
+        ArrayList<Query> queries = new ArrayList<Query>();
+        for (int i = 0; i < count; i++) {
+            queries.add(Query.get(randomName(random, 3) + " " + i, randomName(random, 2),
+                    randomName(random, 2), false));
+        }
+        return queries;
+    }
+
+    private static ArrayList<Query> scan(ArrayList<Query> sortedQueries, String fullTextQuery) {
+        ArrayList<Query> queries = new ArrayList<Query>();
+        for (Query query : sortedQueries) {
+            if (query.getName().toLowerCase().contains(fullTextQuery)
+                    || query.getArtist().getName().toLowerCase().contains(fullTextQuery)
+                    || query.getAlbum().getName().toLowerCase().contains(fullTextQuery)) {
+                queries.add(query);
+            }
+        }
+        return queries;
+    }
+
+    private static ArrayList<Query> scan(ArrayList<Query> sortedQueries, String trackName,
+            String albumName, String artistName) {
+        ArrayList<Query> queries = new ArrayList<Query>();
+        for (Query query : sortedQueries) {
+            if (query.getName().toLowerCase().contains(trackName)
+                    && query.getArtist().getName().toLowerCase().contains(artistName)
+                    && query.getAlbum().getName().toLowerCase().contains(albumName)) {
+                queries.add(query);
+            }
+        }
+        return queries;
+    }
+
+    private void benchmark(int count) {
+        ArrayList<Query> queries = createQueries(count);
+        QueryIndex index = new QueryIndex();
+        long start = System.nanoTime();
+        for (Query query : queries) {
+            index.add(query);
+        }
+        long buildTime = (System.nanoTime() - start) / 1000000L;
+        ArrayList<Query> sortedQueries = new ArrayList<Query>(queries);
+        Collections.sort(sortedQueries, new QueryComparator(QueryComparator.COMPARE_ALPHA));
+
+        String[] searches = {"dancing", "ver", "summer dream", "fire 1", "zzz"};
+        long indexTime = 0;
+        long scanTime = 0;
+        for (String search : searches) {
+            ArrayList<Query> indexResults = null;
+            ArrayList<Query> scanResults = null;
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                indexResults = index.find(search);
+            }
+            indexTime += System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                scanResults = scan(sortedQueries, search);
+            }
+            scanTime += System.nanoTime() - start;
+            assertEquals(search, scanResults, indexResults);
+        }
+        assertEquals(scan(sortedQueries, "love", "night", "blue"),
+                index.find("love", "night", "blue"));
+        Log.d(TAG, count + " tracks: building the index took " + buildTime + "ms, a lookup "
+                + indexTime / 1000L / ROUNDS / searches.length + "us, a scan "
+                + scanTime / 1000L / ROUNDS / searches.length + "us");
+    }
+
+    public void testFind1k() {
+        benchmark(1000);
+    }
+
+    public void testFind10k() {
+        benchmark(10000);
+    }
+
+    public void testFind100k() {
+        benchmark(100000);
+    }
+
+    public void testRemoveCompacts() {
+        ArrayList<Query> queries = createQueries(1000);
+        QueryIndex index = new QueryIndex();
+        for (Query query : queries) {
+            index.add(query);
+        }
+        ArrayList<Query> remaining = new ArrayList<Query>();
+        for (int i = 0; i < queries.size(); i++) {
+            if (i % 4 == 0) {
+                remaining.add(queries.get(i));
+            } else {
+                index.remove(queries.get(i));
+            }
+        }
+        assertEquals(remaining.size(), index.size());
+        // Every removed Query has left its slot, apart from those removed after the last rebuild
+        assertTrue(index.getSlotCount() <= 2 * remaining.size());
+
+        Collections.sort(remaining, new QueryComparator(QueryComparator.COMPARE_ALPHA));
+        assertEquals(scan(remaining, "dancing"), index.find("dancing"));
+    }
+}
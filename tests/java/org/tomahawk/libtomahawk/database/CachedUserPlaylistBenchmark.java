@@ -0,0 +1,115 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.database;
+
+import org.tomahawk.libtomahawk.collection.UserPlaylist;
+import org.tomahawk.libtomahawk.resolver.Query;
+
+import android.content.Context;
+import android.test.AndroidTestCase;
+import android.test.RenamingDelegatingContext;
+import android.util.Log;
+
+import java.util.ArrayList;
+
+/**
+ * Measures how long saving the playback queue takes, the way the PlaybackService does it: the
+ * first save of a queue of QUEUE_SIZE tracks, followed by saves of small changes to it. Runs
+ * against a separate database.
+ */
+public class CachedUserPlaylistBenchmark extends AndroidTestCase {
+
+    private final static String TAG = CachedUserPlaylistBenchmark.class.getName();
+
+    private static final int QUEUE_SIZE = 5000;
+
+    // Same as DATABASE_NAME
+    private static final String DATABASE_NAME = "userplaylists.db";
+
+    private Context mContext;
+
+    private UserPlaylistsDataSource mDataSource;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext = new RenamingDelegatingContext(getContext(), "test_");
+        mContext.deleteDatabase(DATABASE_NAME);
+        mDataSource = new UserPlaylistsDataSource(mContext);
+        mDataSource.open();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mDataSource.close();
+        // Writes are done in order, so this also waits until the database has been closed
+        mDataSource.flushCachedUserPlaylist();
+        mContext.deleteDatabase(DATABASE_NAME);
+        super.tearDown();
+    }
+
+    /**
+     * Save the given queue and block until it has been written
+     *
+     * @return the time it took in milliseconds
+     */
+    private long save(String description, ArrayList<Query> queries) {
+        long start = System.nanoTime();
+        mDataSource.storeCachedUserPlaylist(UserPlaylist.fromQueryList(
+                UserPlaylistsDataSource.CACHED_PLAYLIST_ID,
+                UserPlaylistsDataSource.CACHED_PLAYLIST_NAME, queries, queries.get(0)));
+        long requestTime = (System.nanoTime() - start) / 1000000L;
+        mDataSource.flushCachedUserPlaylist();
+        long saveTime = (System.nanoTime() - start) / 1000000L;
+        Log.d(TAG, description + ": " + queries.size() + " tracks, request took " + requestTime
+                + "ms, saved after " + saveTime + "ms");
+        return saveTime;
+    }
+
+    private void assertStored(ArrayList<Query> queries) {
+        ArrayList<Query> storedQueries = mDataSource.getCachedUserPlaylist().getQueries();
+        assertEquals(queries.size(), storedQueries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            assertEquals(queries.get(i).getName(), storedQueries.get(i).getName());
+        }
+    }
+
+    public void testSaveQueue() {
+        ArrayList<Query> queries = new ArrayList<Query>();
+        for (int i = 0; i < QUEUE_SIZE; i++) {
+            queries.add(Query.get("Track " + i, "Album " + i / 10, "Artist " + i / 100, false));
+        }
+        save("initial save", queries);
+        assertStored(queries);
+
+        // Nothing has changed, so nothing has to be written
+        save("unchanged", queries);
+
+        queries.add(Query.get("Appended", "Album", "Artist", false));
+        save("one track appended", queries);
+        assertStored(queries);
+
+        queries.add(0, queries.remove(queries.size() / 2));
+        save("one track moved to the front", queries);
+        assertStored(queries);
+
+        queries.remove(0);
+        save("first track removed", queries);
+        assertStored(queries);
+    }
+}
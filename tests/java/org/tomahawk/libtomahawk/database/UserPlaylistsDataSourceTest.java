@@ -0,0 +1,231 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.database;
+
+import org.tomahawk.libtomahawk.collection.PagedQueryList;
+import org.tomahawk.libtomahawk.collection.UserPlaylist;
+import org.tomahawk.libtomahawk.resolver.Query;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.test.RenamingDelegatingContext;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs against a separate database, so that the user's playlists are never touched
+ */
+public class UserPlaylistsDataSourceTest extends AndroidTestCase {
+
+    private static final long TIMEOUT = 10000L;
+
+    // Same as DATABASE_NAME
+    private static final String DATABASE_NAME = "userplaylists.db";
+
+    private static final String OLAFUR = "\u00d3lafur Arnalds";
+
+    private Context mContext;
+
+    private UserPlaylistsDataSource mDataSource;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext = new RenamingDelegatingContext(getContext(), "test_");
+        mContext.deleteDatabase(DATABASE_NAME);
+        mDataSource = new UserPlaylistsDataSource(mContext);
+        mDataSource.open();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        waitForWrites();
+        mDataSource.close();
+        waitForWrites();
+        mContext.deleteDatabase(DATABASE_NAME);
+        super.tearDown();
+    }
+
+    /**
+     * Wait until every write which has been requested so far is done
+     */
+    private void waitForWrites() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        mDataSource.runAfterWrites(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(TIMEOUT, TimeUnit.MILLISECONDS));
+    }
+
+    private void storePlaylist(String id, ArrayList<Query> queries) throws InterruptedException {
+        mDataSource.storeUserPlaylist(UserPlaylist.fromQueryList(id, id, queries));
+        waitForWrites();
+    }
+
+    public void testSearchNonAsciiTrackNames() throws InterruptedException {
+        ArrayList<Query> queries = new ArrayList<Query>();
+        queries.add(Query.get("Near Light", "Living Room Songs", OLAFUR, false));
+        queries.add(Query.get("Hopp\u00edpolla", "Takk...", "Sigur R\u00f3s", false));
+        queries.add(Query.get("Unrelated", "Album", "Artist", false));
+        storePlaylist("fts", queries);
+
+        // The non-ASCII letters are matched in the case they have been stored in
+        assertEquals(1, mDataSource.searchUserPlaylistQueries("\u00d3lafur", 10).size());
+        assertEquals(1, mDataSource.searchUserPlaylistQueries("\u00d3laf", 10).size());
+        assertEquals(1, mDataSource.searchUserPlaylistQueries("\u00d3LAFUR arn", 10).size());
+        assertEquals(1, mDataSource.searchUserPlaylistQueries("hopp\u00edpolla", 10).size());
+        assertEquals(1, mDataSource.searchUserPlaylistQueries("R\u00f3s takk", 10).size());
+        // Non-ASCII punctuation belongs to the word, like in the index
+        assertEquals(0, mDataSource.searchUserPlaylistQueries("sigur\u2013ros", 10).size());
+        // ASCII punctuation and operators are only separators
+        assertEquals(1, mDataSource.searchUserPlaylistQueries("near-light NEAR", 10).size());
+        assertEquals(0, mDataSource.searchUserPlaylistQueries("\"* -", 10).size());
+    }
+
+    public void testSearchHistory() throws InterruptedException {
+        mDataSource.addEntryToSearchHistory(OLAFUR);
+        mDataSource.addEntryToSearchHistory("Sigur R\u00f3s");
+        waitForWrites();
+
+        Cursor cursor = mDataSource.getSearchHistoryCursor("\u00d3lafur");
+        try {
+            assertEquals(1, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+        cursor = mDataSource.getSearchHistoryCursor("r\u00f3");
+        try {
+            assertEquals(1, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testDeleteQueryInUserPlaylist() throws InterruptedException {
+        Query first = Query.get("Near Light", "Living Room Songs", OLAFUR, false);
+        Query second = Query.get("Unrelated", "Album", "Artist", false);
+        ArrayList<Query> queries = new ArrayList<Query>();
+        queries.add(first);
+        queries.add(second);
+        queries.add(first);
+        storePlaylist("delete", queries);
+
+        // Only the first occurrence is deleted
+        mDataSource.deleteQueryInUserPlaylist("delete", first, null);
+        waitForWrites();
+        ArrayList<Query> storedQueries = mDataSource.getUserPlaylist("delete").getQueries();
+        assertEquals(2, storedQueries.size());
+        assertSame(second, storedQueries.get(0));
+        assertSame(first, storedQueries.get(1));
+    }
+
+    public void testPagedPlaylist() throws InterruptedException {
+        ArrayList<Query> queries = new ArrayList<Query>();
+        for (int i = 0; i < 120; i++) {
+            queries.add(Query.get("Track " + i, "Album", i % 3 == 0 ? OLAFUR : "Artist " + i,
+                    false));
+        }
+        storePlaylist("paged", queries);
+
+        UserPlaylist summary = mDataSource.getUserPlaylistSummary("paged");
+        assertTrue(summary.isSummary());
+        assertEquals(120, summary.getTrackCount());
+
+        // Every page is read in the order of the playlist
+        ArrayList<Query> window = mDataSource.getUserPlaylistQueries("paged", 50, 50);
+        assertEquals(50, window.size());
+        assertSame(queries.get(50), window.get(0));
+        assertSame(queries.get(99), window.get(49));
+        assertEquals(20, mDataSource.getUserPlaylistQueries("paged", 100, 50).size());
+
+        PagedQueryList pagedQueries = new PagedQueryList(mDataSource, summary);
+        assertEquals(120, pagedQueries.size());
+        assertNull(pagedQueries.peek(119));
+        assertSame(queries.get(119), pagedQueries.get(119));
+        assertSame(queries.get(101), pagedQueries.peek(101));
+
+        ArrayList<String> artistNames = mDataSource.getUserPlaylistArtistNames("paged", 10);
+        assertEquals(10, artistNames.size());
+        assertEquals(OLAFUR, artistNames.get(0));
+    }
+
+    public void testWriterSurvivesFailedWrite() throws InterruptedException {
+        // Binding the null id throws an IllegalArgumentException, not an SQLException
+        mDataSource.deleteQueryInUserPlaylist(null,
+                Query.get("Near Light", "Living Room Songs", OLAFUR, false), null);
+        ArrayList<Query> queries = new ArrayList<Query>();
+        queries.add(Query.get("Unrelated", "Album", "Artist", false));
+        storePlaylist("survivor", queries);
+        assertEquals(1, mDataSource.getUserPlaylist("survivor").getQueries().size());
+    }
+
+    /**
+     * @return the details of every step of the query plan of the given query
+     */
+    private String explainQueryPlan(String sql, String[] selectionArgs) {
+        SQLiteDatabase database = new TomahawkSQLiteHelper(mContext).getReadableDatabase();
+        Cursor cursor = database.rawQuery("EXPLAIN QUERY PLAN " + sql, selectionArgs);
+        try {
+            StringBuilder plan = new StringBuilder();
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(cursor.getColumnIndex("detail"))).append("\n");
+            }
+            return plan.toString();
+        } finally {
+            cursor.close();
+            database.close();
+        }
+    }
+
+    public void testPlaylistTracksQueryPlan() {
+        // The same query by which the stored tracks of a playlist are read
+        String plan = explainQueryPlan("SELECT * FROM `" + TomahawkSQLiteHelper.TABLE_TRACKS
+                + "` WHERE `" + TomahawkSQLiteHelper.TRACKS_COLUMN_IDUSERPLAYLISTS + "` = ?"
+                + " ORDER BY `" + TomahawkSQLiteHelper.TRACKS_COLUMN_POSITION + "`, `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_ID + "`", new String[]{"fts"});
+        assertTrue(plan, plan.contains(
+                "INDEX " + TomahawkSQLiteHelper.INDEX_TRACKS_PLAYLIST_POSITION));
+        // The index already delivers the rows in the right order
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    public void testSearchHistoryQueryPlan() {
+        // The same query by which the search history is searched for a prefix
+        String plan = explainQueryPlan("SELECT `" + TomahawkSQLiteHelper.FTS_COLUMN_DOCID
+                + "`, `" + TomahawkSQLiteHelper.SEARCHHISTORY_COLUMN_ENTRY + "` FROM `"
+                + TomahawkSQLiteHelper.TABLE_SEARCHHISTORY_FTS + "` WHERE `"
+                + TomahawkSQLiteHelper.TABLE_SEARCHHISTORY_FTS + "` MATCH ? ORDER BY `"
+                + TomahawkSQLiteHelper.FTS_COLUMN_DOCID + "` DESC", new String[]{"ola*"});
+        assertTrue(plan, plan.contains("VIRTUAL TABLE INDEX"));
+        // Index 0 would be a full scan of the full-text table
+        assertFalse(plan, plan.contains("VIRTUAL TABLE INDEX 0:"));
+
+        // An entry which is added again is looked up by its unique index
+        plan = explainQueryPlan("DELETE FROM `" + TomahawkSQLiteHelper.TABLE_SEARCHHISTORY
+                + "` WHERE `" + TomahawkSQLiteHelper.SEARCHHISTORY_COLUMN_ENTRY + "` = ?",
+                new String[]{OLAFUR});
+        assertTrue(plan, plan.contains("USING INDEX") || plan.contains("USING COVERING INDEX"));
+    }
+}
@@ -0,0 +1,241 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.resolver;
+
+import org.tomahawk.libtomahawk.utils.TomahawkUtils;
+import org.tomahawk.tomahawk_android.TomahawkApp;
+
+import android.graphics.drawable.Drawable;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports ex.fm {@link Result}s to the {@link PipeLine}, whose stream urls point to a local HTTP
+ * stub server, which answers every url ending with "/ok" with 200 and everything else with 404.
+ */
+public class PipeLineValidationTest extends AndroidTestCase {
+
+    private final static String TAG = PipeLineValidationTest.class.getName();
+
+    private static final int RESULT_COUNT = 50;
+
+    // reportResults must never wait for the network
+    private static final long MAX_REPORT_LATENCY = 200L;
+
+    private static final long TIMEOUT = 10000L;
+
+    private ServerSocket mServerSocket;
+
+    // The stub server doesn't answer any request until this latch has been released
+    private CountDownLatch mServerGate;
+
+    private PipeLine mPipeLine;
+
+    private StubResolver mResolver;
+
+    private static class StubResolver implements Resolver {
+
+        private CountDownLatch mResolveLatch = new CountDownLatch(1);
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public boolean isResolving() {
+            return false;
+        }
+
+        @Override
+        public Drawable getIcon() {
+            return null;
+        }
+
+        @Override
+        public boolean resolve(Query query) {
+            mResolveLatch.countDown();
+            return true;
+        }
+
+        @Override
+        public int getId() {
+            return TomahawkApp.RESOLVER_ID_EXFM;
+        }
+
+        @Override
+        public int getWeight() {
+            return 30;
+        }
+
+        @Override
+        public int getTimeout() {
+            return 30000;
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mServerGate = new CountDownLatch(1);
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!mServerSocket.isClosed()) {
+                    try {
+                        final Socket socket = mServerSocket.accept();
+                        new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                answer(socket);
+                            }
+                        }).start();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }
+        }).start();
+        mPipeLine = new PipeLine((TomahawkApp) getContext().getApplicationContext());
+        mResolver = new StubResolver();
+        mPipeLine.addResolver(mResolver);
+        mPipeLine.setAllResolversAdded(true);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mServerGate.countDown();
+        mServerSocket.close();
+        super.tearDown();
+    }
+
+    private void answer(Socket socket) {
+        try {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+            String requestLine = reader.readLine();
+            String line = requestLine;
+            while (line != null && line.length() > 0) {
+                line = reader.readLine();
+            }
+            mServerGate.await();
+            String path = requestLine != null ? requestLine.split(" ")[1] : "";
+            String status = path.endsWith("/ok") ? "200 OK" : "404 Not Found";
+            OutputStream out = socket.getOutputStream();
+            out.write(("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n")
+                    .getBytes("US-ASCII"));
+            out.flush();
+        } catch (IOException e) {
+            Log.e(TAG, "answer: " + e.getClass() + ": " + e.getLocalizedMessage());
+        } catch (InterruptedException e) {
+            Log.e(TAG, "answer: " + e.getClass() + ": " + e.getLocalizedMessage());
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                Log.e(TAG, "answer: " + e.getClass() + ": " + e.getLocalizedMessage());
+            }
+        }
+    }
+
+    private String getUrl(int i, boolean isValid) {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort() + "/track" + i
+                + (isValid ? "/ok" : "/missing");
+    }
+
+    /**
+     * Submit a fresh {@link Query} and wait until it has been handed to our {@link StubResolver},
+     * so that the {@link PipeLine} accepts its {@link Result}s
+     */
+    private Query resolveQuery(String trackName) throws InterruptedException {
+        Query q = Query.get(trackName + " " + System.nanoTime(), "Album", "Artist", false);
+        mPipeLine.resolve(q, false, true);
+        assertTrue(mResolver.mResolveLatch.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        return q;
+    }
+
+    private ArrayList<Result> createResults(Query q, int count, boolean alternateValidity) {
+        ArrayList<Result> results = new ArrayList<Result>();
+        for (int i = 0; i < count; i++) {
+            Result result = new Result(getUrl(i, alternateValidity && i % 2 == 0), q);
+            result.setResolvedBy(mResolver);
+            results.add(result);
+        }
+        return results;
+    }
+
+    private static boolean waitForTrackResultCount(Query q, int count)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (q.getTrackResults().size() != count) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(20);
+        }
+        return true;
+    }
+
+    public void testReportResultsLatency() throws InterruptedException {
+        Query q = resolveQuery("Latency");
+        ArrayList<Result> results = createResults(q, RESULT_COUNT, true);
+
+        long start = System.nanoTime();
+        mPipeLine.reportResults(TomahawkUtils.getCacheKey(q), results,
+                TomahawkApp.RESOLVER_ID_EXFM);
+        long latency = (System.nanoTime() - start) / 1000000L;
+        Log.d(TAG, "reportResults of " + RESULT_COUNT + " results took " + latency + "ms");
+
+        // Every result is added optimistically, while the stub server hasn't answered yet
+        assertTrue("reportResults took " + latency + "ms", latency < MAX_REPORT_LATENCY);
+        assertEquals(RESULT_COUNT, q.getTrackResults().size());
+
+        mServerGate.countDown();
+        assertTrue(waitForTrackResultCount(q, RESULT_COUNT / 2));
+        for (Result result : q.getTrackResults()) {
+            assertTrue(result.getPath().endsWith("/ok"));
+        }
+        assertTrue(q.getPreferredTrackResult().getPath().endsWith("/ok"));
+    }
+
+    public void testPlayingResultIsNeverRemoved() throws InterruptedException {
+        Query q = resolveQuery("Playing");
+        mPipeLine.reportResults(TomahawkUtils.getCacheKey(q), createResults(q, 2, false),
+                TomahawkApp.RESOLVER_ID_EXFM);
+        Result playingResult = q.getPreferredTrackResult();
+        assertNotNull(playingResult);
+        q.setCurrentlyPlaying(true);
+
+        mServerGate.countDown();
+        assertTrue(waitForTrackResultCount(q, 1));
+        assertSame(playingResult, q.getPreferredTrackResult());
+        assertSame(playingResult, q.getTrackResults().get(0));
+    }
+}
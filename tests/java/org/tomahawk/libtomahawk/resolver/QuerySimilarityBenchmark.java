@@ -0,0 +1,117 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.resolver;
+
+import org.tomahawk.libtomahawk.collection.Album;
+import org.tomahawk.libtomahawk.collection.Artist;
+import org.tomahawk.libtomahawk.collection.Track;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Measures how long scoring a typical batch of {@link Result}s takes, once with every score
+ * computed exactly and once pruned below the PipeLine's minimum score.
+ */
+public class QuerySimilarityBenchmark extends TestCase {
+
+    private final static String TAG = QuerySimilarityBenchmark.class.getName();
+
+    // Same as PipeLine.MINSCORE
+    private static final float MINSCORE = 0.5F;
+
+    private static final int RESULT_COUNT = 2000;
+
+    private static final int ROUNDS = 5;
+
+    private static final String[] WORDS = {"love", "night", "the", "blue", "dancing", "heart",
+            "river", "song", "remix", "live", "version", "summer", "dream", "fire", "radio"};
+
+    private static String randomName(Random random, int wordCount) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < wordCount; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return builder.toString();
+    }
+
+    private static ArrayList<Result> createResults(Random random) {
+        ArrayList<Result> results = new ArrayList<Result>();
+        for (int i = 0; i < RESULT_COUNT; i++) {
+            Artist artist = Artist.get(randomName(random, 2));
+            Album album = Album.get(randomName(random, 3), artist);
+            Track track = Track.get(randomName(random, 4), album, artist);
+            results.add(new Result("http://example.com/" + i, track));
+        }
+        return results;
+    }
+
+    private static long score(Query query, ArrayList<Result> results, float minScore,
+            float[] scores) {
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < results.size(); i++) {
+                scores[i] = query.howSimilar(results.get(i),
+                        PipeLine.PIPELINE_SEARCHTYPE_TRACKS, minScore);
+            }
+        }
+        return (System.nanoTime() - start) / ROUNDS;
+    }
+
+    private void benchmark(Query query, ArrayList<Result> results) {
+        float[] exactScores = new float[results.size()];
+        float[] prunedScores = new float[results.size()];
+        // Warm up, so that the first measurement isn't distorted by the JIT
+        score(query, results, MINSCORE, prunedScores);
+        long exactTime = score(query, results, 0F, exactScores);
+        long prunedTime = score(query, results, MINSCORE, prunedScores);
+        Log.d(TAG, query.getName() + ": " + results.size() + " results, exact "
+                + exactTime / 1000 + "us, pruned " + prunedTime / 1000 + "us");
+
+        for (int i = 0; i < results.size(); i++) {
+            if (exactScores[i] >= MINSCORE) {
+                assertEquals(exactScores[i], prunedScores[i], 0f);
+            } else {
+                assertTrue(prunedScores[i] < MINSCORE);
+            }
+        }
+    }
+
+    public void testTrackQuery() {
+        Random random = new Random(42);
+        ArrayList<Result> results = createResults(random);
+        Result target = results.get(0);
+        Query query = Query.get(target.getTrack().getName(), target.getAlbum().getName(),
+                target.getArtist().getName(), false);
+        benchmark(query, results);
+    }
+
+    public void testFullTextQuery() {
+        Random random = new Random(42);
+        ArrayList<Result> results = createResults(random);
+        Query query = Query.get(randomName(random, 3), false);
+        benchmark(query, results);
+    }
+}
@@ -0,0 +1,134 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.resolver;
+
+import org.tomahawk.libtomahawk.utils.TomahawkUtils;
+import org.tomahawk.tomahawk_android.TomahawkApp;
+
+import android.graphics.drawable.Drawable;
+import android.test.AndroidTestCase;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Lets a {@link Resolver}, which answers right away, resolve lots of {@link Query}s, so that
+ * almost every timeout is cancelled and the queue overflows
+ */
+public class ResolverSchedulerTest extends AndroidTestCase {
+
+    private static final int QUERY_COUNT = 1000;
+
+    private static final long TIMEOUT = 30000L;
+
+    private ResolverScheduler mResolverScheduler;
+
+    private class InstantResolver implements Resolver {
+
+        private Set<String> mResolvedKeys = Collections.synchronizedSet(new HashSet<String>());
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public boolean isResolving() {
+            return false;
+        }
+
+        @Override
+        public Drawable getIcon() {
+            return null;
+        }
+
+        @Override
+        public boolean resolve(Query query) {
+            mResolvedKeys.add(TomahawkUtils.getCacheKey(query));
+            mResolverScheduler.onResolved(getId(), TomahawkUtils.getCacheKey(query));
+            return true;
+        }
+
+        @Override
+        public int getId() {
+            return TomahawkApp.RESOLVER_ID_EXFM;
+        }
+
+        @Override
+        public int getWeight() {
+            return 30;
+        }
+
+        @Override
+        public int getTimeout() {
+            // Long enough that no timeout ever runs during the test
+            return 60000;
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mResolverScheduler = new ResolverScheduler(
+                new PipeLine((TomahawkApp) getContext().getApplicationContext()));
+    }
+
+    public void testCancelledTimeoutsAreRemoved() throws InterruptedException {
+        Resolver resolver = new InstantResolver();
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            Query q = Query.get("Track " + i + " " + System.nanoTime(), "Album", "Artist", false);
+            mResolverScheduler.schedule(resolver, q, false);
+            // Stay below the maximum queue length, so that no Query is deferred
+            while (mResolverScheduler.getQueueDepth(resolver.getId()) > 20) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(1);
+            }
+        }
+        while (mResolverScheduler.getQueueDepth(resolver.getId()) > 0
+                || mResolverScheduler.getInFlightCount(resolver.getId()) > 0) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        assertEquals(0, mResolverScheduler.getDeferredCount());
+        // Either every cancelled timeout has been removed right away or they have been purged
+        // every once in a while. They mustn't pile up until their deadline.
+        int timeoutQueueSize = mResolverScheduler.getTimeoutQueueSize();
+        assertTrue("timeout queue size " + timeoutQueueSize, timeoutQueueSize < 100);
+    }
+
+    public void testOverflowIsDeferredNotDropped() throws InterruptedException {
+        InstantResolver resolver = new InstantResolver();
+        Set<String> queryKeys = new HashSet<String>();
+        // Schedule everything at once, way more than fits into the queue
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            Query q = Query.get("Track " + i + " " + System.nanoTime(), "Album", "Artist", false);
+            queryKeys.add(TomahawkUtils.getCacheKey(q));
+            mResolverScheduler.schedule(resolver, q, false);
+        }
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (mResolverScheduler.getQueueDepth(resolver.getId()) > 0
+                || mResolverScheduler.getInFlightCount(resolver.getId()) > 0) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        assertTrue(mResolverScheduler.getDeferredCount() > 0);
+        assertEquals(queryKeys, resolver.mResolvedKeys);
+    }
+}
@@ -0,0 +1,119 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.resolver;
+
+import org.tomahawk.libtomahawk.collection.Album;
+import org.tomahawk.libtomahawk.collection.Artist;
+import org.tomahawk.libtomahawk.collection.Track;
+import org.tomahawk.tomahawk_android.TomahawkApp;
+
+import android.content.Context;
+import android.test.AndroidTestCase;
+import android.test.RenamingDelegatingContext;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs against a separate database, so that the user's cached results are never touched
+ */
+public class ResultCacheTest extends AndroidTestCase {
+
+    private static final long TIMEOUT = 10000L;
+
+    // Same as DATABASE_NAME of ResultCacheSQLiteHelper
+    private static final String DATABASE_NAME = "resultcache.db";
+
+    private Context mContext;
+
+    private ResultCache mResultCache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext = new RenamingDelegatingContext(getContext(), "test_");
+        mContext.deleteDatabase(DATABASE_NAME);
+        mResultCache = new ResultCache(mContext);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        get("");
+        mContext.deleteDatabase(DATABASE_NAME);
+        super.tearDown();
+    }
+
+    /**
+     * Get the cached entries on the worker thread, after every pending put is done
+     */
+    private ArrayList<ResultCache.Entry> get(final String queryKey) throws InterruptedException {
+        final ArrayList<ResultCache.Entry> entries = new ArrayList<ResultCache.Entry>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        mResultCache.execute(new Runnable() {
+            @Override
+            public void run() {
+                entries.addAll(mResultCache.get(queryKey));
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        return entries;
+    }
+
+    public void testMetadataSurvives() throws InterruptedException {
+        Artist artist = Artist.get("Sigur R\u00f3s");
+        Album album = Album.get("Takk...", artist);
+        Track track = Track.get("Hopp\u00edpolla", album, artist);
+        track.setAlbumPos(2);
+        track.setDuration(270000L);
+        Result result = new Result("http://example.com/hoppipolla.mp3", track);
+        result.setTrackScore(0.9f);
+        result.setBitrate(320);
+        result.setSize(10800000);
+        result.setLinkUrl("http://example.com/hoppipolla");
+        result.setPurchaseUrl("http://example.com/buy/hoppipolla");
+        mResultCache.put("hoppipolla", TomahawkApp.RESOLVER_ID_EXFM, result);
+
+        ArrayList<ResultCache.Entry> entries = get("hoppipolla");
+        assertEquals(1, entries.size());
+        ResultCache.Entry entry = entries.get(0);
+        assertEquals(TomahawkApp.RESOLVER_ID_EXFM, entry.getResolverId());
+        assertEquals(result.getPath(), entry.getUrl());
+        assertEquals(0.9f, entry.getScore());
+        assertEquals(320, entry.getBitrate());
+        assertEquals(10800000, entry.getSize());
+        assertEquals(270000L, entry.getDuration());
+        assertEquals(result.getLinkUrl(), entry.getLinkUrl());
+        assertEquals(result.getPurchaseUrl(), entry.getPurchaseUrl());
+        assertEquals(track.getName(), entry.getTrackName());
+        assertEquals(album.getName(), entry.getAlbumName());
+        assertEquals(artist.getName(), entry.getArtistName());
+        assertEquals(2, entry.getAlbumPos());
+        assertFalse(entry.isStale());
+    }
+
+    public void testRemove() throws InterruptedException {
+        Query q = Query.get("Near Light", "Living Room Songs", "\u00d3lafur Arnalds", false);
+        mResultCache.put("nearlight", TomahawkApp.RESOLVER_ID_EXFM,
+                new Result("http://example.com/nearlight.mp3", q));
+        assertEquals(1, get("nearlight").size());
+        mResultCache.put("nearlight", TomahawkApp.RESOLVER_ID_EXFM, null);
+        assertEquals(0, get("nearlight").size());
+    }
+}
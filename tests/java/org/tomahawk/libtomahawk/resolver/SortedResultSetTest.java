@@ -0,0 +1,66 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.resolver;
+
+import org.tomahawk.libtomahawk.collection.Album;
+import org.tomahawk.libtomahawk.collection.Artist;
+import org.tomahawk.libtomahawk.collection.Track;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+
+public class SortedResultSetTest extends TestCase {
+
+    private static Result createResult(String url, float trackScore) {
+        Artist artist = Artist.get("Artist");
+        Track track = Track.get("Track", Album.get("Album", artist), artist);
+        Result result = new Result(url, track);
+        result.setTrackScore(trackScore);
+        return result;
+    }
+
+    private static void assertSorted(ArrayList<Result> results) {
+        for (int i = 1; i < results.size(); i++) {
+            assertTrue(results.get(i - 1).getTrackScore() >= results.get(i).getTrackScore());
+        }
+    }
+
+    public void testSharedResultScoreChange() {
+        SortedResultSet set = new SortedResultSet(
+                new ResultComparator(ResultComparator.COMPARE_TRACK_SCORE));
+        Result shared = createResult("http://example.com/shared", 0.9f);
+        set.put("shared", shared);
+        set.put("a", createResult("http://example.com/a", 0.8f));
+        set.put("b", createResult("http://example.com/b", 0.7f));
+
+        // Another Query scores the shared Result, after it has been added here
+        shared.setTrackScore(0.1f);
+        set.put("c", createResult("http://example.com/c", 0.75f));
+        set.put("d", createResult("http://example.com/d", 0.5f));
+
+        ArrayList<Result> snapshot = set.getSnapshot();
+        assertEquals(5, snapshot.size());
+        assertSorted(snapshot);
+        assertSame(shared, snapshot.get(4));
+
+        assertSame(shared, set.remove("shared"));
+        assertEquals(4, set.getSnapshot().size());
+        assertSorted(set.getSnapshot());
+    }
+}
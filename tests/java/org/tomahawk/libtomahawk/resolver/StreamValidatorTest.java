@@ -0,0 +1,107 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.resolver;
+
+import android.test.AndroidTestCase;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Validates urls, which are malformed or point to a local port which refuses every connection
+ */
+public class StreamValidatorTest extends AndroidTestCase {
+
+    private static final long TIMEOUT = 10000L;
+
+    // Connections to a local port are refused right away, so every request is done by then
+    private static final long SETTLE_TIME = 1000L;
+
+    private StreamValidator mStreamValidator;
+
+    private String mRefusingHost;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mStreamValidator = new StreamValidator();
+        // Grab a free port and close it again, so that every connection to it is refused
+        ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+        mRefusingHost = "127.0.0.1:" + serverSocket.getLocalPort();
+        serverSocket.close();
+    }
+
+    private static Runnable countDown(final CountDownLatch latch, final AtomicInteger count) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                count.incrementAndGet();
+                latch.countDown();
+            }
+        };
+    }
+
+    public void testMalformedUrlDoesNotInvalidateHost() throws InterruptedException {
+        String url = "htp://" + mRefusingHost + "/malformed";
+        CountDownLatch latch = new CountDownLatch(1);
+        mStreamValidator.validate(url, countDown(latch, new AtomicInteger()));
+        assertTrue(latch.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(StreamValidator.VERDICT_INVALID, mStreamValidator.getVerdict(url));
+        assertEquals(StreamValidator.VERDICT_UNKNOWN,
+                mStreamValidator.getVerdict("http://" + mRefusingHost + "/other"));
+    }
+
+    public void testUrlWithoutHostIsInvalid() throws InterruptedException {
+        String url = "http:///nohost";
+        CountDownLatch latch = new CountDownLatch(1);
+        mStreamValidator.validate(url, countDown(latch, new AtomicInteger()));
+        assertTrue(latch.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(StreamValidator.VERDICT_INVALID, mStreamValidator.getVerdict(url));
+    }
+
+    public void testRefusedConnectionsCountTowardsHostFailures() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger invalidCount = new AtomicInteger();
+        Runnable onInvalid = countDown(latch, invalidCount);
+        // Only the third refused connection in a row makes the host unreachable
+        for (int i = 0; i < 3; i++) {
+            mStreamValidator.validate("http://" + mRefusingHost + "/track" + i, onInvalid);
+        }
+        assertTrue(latch.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        Thread.sleep(SETTLE_TIME);
+        assertEquals(1, invalidCount.get());
+        assertEquals(StreamValidator.VERDICT_INVALID,
+                mStreamValidator.getVerdict("http://" + mRefusingHost + "/other"));
+    }
+
+    public void testUrlVerdictsAreCapped() throws InterruptedException {
+        int urlCount = 1500;
+        CountDownLatch latch = new CountDownLatch(urlCount);
+        AtomicInteger invalidCount = new AtomicInteger();
+        for (int i = 0; i < urlCount; i++) {
+            mStreamValidator.validate("http:///track" + i, countDown(latch, invalidCount));
+        }
+        assertTrue(latch.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(urlCount, invalidCount.get());
+        int urlVerdictCount = mStreamValidator.getUrlVerdictCount();
+        assertTrue("url verdict count " + urlVerdictCount, urlVerdictCount <= 1000);
+    }
+}
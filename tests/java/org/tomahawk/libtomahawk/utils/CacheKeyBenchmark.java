@@ -0,0 +1,131 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.utils;
+
+import org.tomahawk.libtomahawk.collection.Album;
+import org.tomahawk.libtomahawk.collection.Artist;
+import org.tomahawk.libtomahawk.collection.Track;
+import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.tomahawk_android.adapters.TomahawkBaseAdapter;
+
+import android.os.Debug;
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+
+/**
+ * Compares building the cache keys of a whole collection the way TomahawkUtils.getCacheKey did
+ * before, by concatenating the names every time, to the keys which are computed once and kept on
+ * the objects. Both have to produce the very same keys.
+ */
+public class CacheKeyBenchmark extends TestCase {
+
+    private final static String TAG = CacheKeyBenchmark.class.getName();
+
+    private static final int TRACK_COUNT = 10000;
+
+    private static final int ROUNDS = 10;
+
+    /**
+     * The key builder as it was, concatenating one String after the other
+     */
+    private static String getOldCacheKey(String... strings) {
+        String result = "";
+        for (String s : strings) {
+            result += "\t\t" + s.toLowerCase();
+        }
+        return result;
+    }
+
+    private static String getOldCacheKey(TomahawkBaseAdapter.TomahawkListItem tomahawkListItem) {
+        if (tomahawkListItem instanceof Artist) {
+            return getOldCacheKey(tomahawkListItem.getName());
+        } else if (tomahawkListItem instanceof Album) {
+            return getOldCacheKey(tomahawkListItem.getName(),
+                    tomahawkListItem.getArtist().getName());
+        } else if (tomahawkListItem instanceof Track) {
+            return getOldCacheKey(tomahawkListItem.getName(),
+                    tomahawkListItem.getAlbum().getName(), tomahawkListItem.getArtist().getName());
+        } else if (tomahawkListItem instanceof Query) {
+            Query query = ((Query) tomahawkListItem);
+            if (query.isFullTextQuery()) {
+                return getOldCacheKey(query.getFullTextQuery());
+            } else {
+                return getOldCacheKey(query.getName(), query.getAlbum().getName(),
+                        query.getArtist().getName(), query.getResultHint());
+            }
+        }
+        return "";
+    }
+
+    /**
+     * @return the {@link Query}s, {@link Track}s, {@link Album}s and {@link Artist}s of a
+     * collection with the given number of tracks
+     */
+    private static ArrayList<TomahawkBaseAdapter.TomahawkListItem> createCollection(int count) {
+        ArrayList<TomahawkBaseAdapter.TomahawkListItem> items
+                = new ArrayList<TomahawkBaseAdapter.TomahawkListItem>();
+        for (int i = 0; i < count; i++) {
+            Artist artist = Artist.get("Artist " + i / 100);
+            Album album = Album.get("Album " + i / 10, artist);
+            items.add(artist);
+            items.add(album);
+            items.add(Track.get("Track Name " + i, album, artist));
+            items.add(Query.get("Track Name " + i, album.getName(), artist.getName(), false));
+        }
+        return items;
+    }
+
+    public void testCacheKeys() {
+        ArrayList<TomahawkBaseAdapter.TomahawkListItem> items = createCollection(TRACK_COUNT);
+        for (TomahawkBaseAdapter.TomahawkListItem item : items) {
+            assertEquals(getOldCacheKey(item), TomahawkUtils.getCacheKey(item));
+        }
+
+        Debug.startAllocCounting();
+        try {
+            Debug.resetThreadAllocCount();
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                for (TomahawkBaseAdapter.TomahawkListItem item : items) {
+                    getOldCacheKey(item);
+                }
+            }
+            long oldTime = (System.nanoTime() - start) / 1000000L;
+            int oldAllocCount = Debug.getThreadAllocCount();
+
+            Debug.resetThreadAllocCount();
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                for (TomahawkBaseAdapter.TomahawkListItem item : items) {
+                    TomahawkUtils.getCacheKey(item);
+                }
+            }
+            long newTime = (System.nanoTime() - start) / 1000000L;
+            int newAllocCount = Debug.getThreadAllocCount();
+
+            Log.d(TAG, items.size() + " keys x " + ROUNDS + ": concatenating took " + oldTime
+                    + "ms and " + oldAllocCount + " allocations, cached keys took " + newTime
+                    + "ms and " + newAllocCount + " allocations");
+        } finally {
+            Debug.stopAllocCounting();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.utils;
+
+import junit.framework.TestCase;
+
+import java.util.Locale;
+
+public class SortKeyTest extends TestCase {
+
+    private Locale mDefaultLocale;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDefaultLocale = Locale.getDefault();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Locale.setDefault(mDefaultLocale);
+        super.tearDown();
+    }
+
+    public void testCollatorFollowsLocale() {
+        // Swedish sorts the letter "\u00d6" after "Z", German sorts it like an "O"
+        Locale.setDefault(new Locale("sv", "SE"));
+        assertTrue(SortKey.get("\u00d6ster").compareTo(SortKey.get("Zebra")) > 0);
+        Locale.setDefault(Locale.GERMANY);
+        assertTrue(SortKey.get("\u00d6ster").compareTo(SortKey.get("Zebra")) < 0);
+    }
+
+    public void testArticleAndSection() {
+        Locale.setDefault(Locale.US);
+        assertEquals(0, SortKey.get("The Beatles").compareTo(SortKey.get("beatles")));
+        assertEquals("B", SortKey.get("The Beatles").getSection());
+        assertEquals("E", SortKey.get("\u00c9lan").getSection());
+        assertEquals(SortKey.SECTION_OTHER, SortKey.get("2Pac").getSection());
+    }
+}
@@ -0,0 +1,126 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.utils;
+
+import org.tomahawk.libtomahawk.collection.Artist;
+import org.tomahawk.libtomahawk.collection.TomahawkListItemComparator;
+import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.resolver.QueryComparator;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures what the ArtistsFragment and TracksFragment cost on a library of LIBRARY_SIZE tracks:
+ * keeping the sorted lists of artists and tracks up to date while the library is imported chunk
+ * by chunk and getting them again on every further broadcast. Compares that to copying and
+ * sorting the whole list every time, as these lists used to be built.
+ */
+public class SortedSnapshotListBenchmark extends TestCase {
+
+    private final static String TAG = SortedSnapshotListBenchmark.class.getName();
+
+    private static final int LIBRARY_SIZE = 50000;
+
+    private static final int TRACKS_PER_ARTIST = 10;
+
+    // Same as UserCollection.IMPORT_CHUNK_SIZE
+    private static final int IMPORT_CHUNK_SIZE = 250;
+
+    // The number of broadcasts after the import, on which nothing has changed
+    private static final int UNCHANGED_ROUNDS = 20;
+
+    private static String randomName(Random random) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 12; i++) {
+            builder.append((char) ('a' + random.nextInt(26)));
+        }
+        return builder.toString();
+    }
+
+    private <T> void benchmark(String description, ArrayList<T> items,
+            Comparator<? super T> comparator) {
+        SortedSnapshotList<T> sortedList = new SortedSnapshotList<T>(comparator);
+        long start = System.nanoTime();
+        for (int i = 0; i < items.size(); i += IMPORT_CHUNK_SIZE) {
+            sortedList.addAll(items.subList(i, Math.min(i + IMPORT_CHUNK_SIZE, items.size())));
+            sortedList.getSnapshot();
+        }
+        long importTime = (System.nanoTime() - start) / 1000000L;
+        List<T> snapshot = sortedList.getSnapshot();
+        start = System.nanoTime();
+        for (int i = 0; i < UNCHANGED_ROUNDS; i++) {
+            assertSame(snapshot, sortedList.getSnapshot());
+        }
+        long unchangedTime = (System.nanoTime() - start) / 1000000L;
+
+        start = System.nanoTime();
+        ArrayList<T> sortedItems = null;
+        for (int i = 0; i < items.size(); i += IMPORT_CHUNK_SIZE) {
+            sortedItems = new ArrayList<T>(items.subList(0,
+                    Math.min(i + IMPORT_CHUNK_SIZE, items.size())));
+            Collections.sort(sortedItems, comparator);
+        }
+        long fullSortImportTime = (System.nanoTime() - start) / 1000000L;
+        start = System.nanoTime();
+        for (int i = 0; i < UNCHANGED_ROUNDS; i++) {
+            sortedItems = new ArrayList<T>(items);
+            Collections.sort(sortedItems, comparator);
+        }
+        long fullSortUnchangedTime = (System.nanoTime() - start) / 1000000L;
+        Log.d(TAG, description + ": " + items.size() + " items, import " + importTime
+                + "ms (full sorts " + fullSortImportTime + "ms), " + UNCHANGED_ROUNDS
+                + " unchanged broadcasts " + unchangedTime + "ms (full sorts "
+                + fullSortUnchangedTime + "ms)");
+
+        assertEquals(sortedItems, snapshot);
+        try {
+            snapshot.add(items.get(0));
+            fail("The snapshot must not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    public void testArtistsFragment() {
+        Random random = new Random(42);
+        ArrayList<Artist> artists = new ArrayList<Artist>();
+        for (int i = 0; i < LIBRARY_SIZE / TRACKS_PER_ARTIST; i++) {
+            artists.add(Artist.get(randomName(random) + " " + i));
+        }
+        benchmark("artists", artists,
+                new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ALPHA));
+    }
+
+    public void testTracksFragment() {
+        Random random = new Random(42);
+        ArrayList<Query> queries = new ArrayList<Query>();
+        for (int i = 0; i < LIBRARY_SIZE; i++) {
+            queries.add(Query.get(randomName(random) + " " + i, "Album " + i / TRACKS_PER_ARTIST,
+                    "Artist " + i / TRACKS_PER_ARTIST, false));
+        }
+        benchmark("tracks", queries, new QueryComparator(QueryComparator.COMPARE_ALPHA));
+    }
+}
@@ -0,0 +1,89 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.utils;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+public class TomahawkUtilsTest extends TestCase {
+
+    /**
+     * The plain LevenstheinDistance with a full cost matrix, to check the banded variant against
+     */
+    private static int naiveLevenshteinDistance(String s, String t) {
+        int[][] d = new int[s.length() + 1][t.length() + 1];
+        for (int i = 0; i <= s.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= t.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= s.length(); i++) {
+            for (int j = 1; j <= t.length(); j++) {
+                int cost = s.charAt(i - 1) == t.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1),
+                        d[i - 1][j - 1] + cost);
+            }
+        }
+        return d[s.length()][t.length()];
+    }
+
+    private static String randomString(Random random, int maxLength) {
+        StringBuilder builder = new StringBuilder();
+        int length = random.nextInt(maxLength + 1);
+        for (int i = 0; i < length; i++) {
+            // A small alphabet, so that the strings share characters
+            builder.append((char) ('a' + random.nextInt(4)));
+        }
+        return builder.toString();
+    }
+
+    public void testBandedLevenshteinDistance() {
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            String s = randomString(random, 20);
+            String t = randomString(random, 20);
+            int distance = naiveLevenshteinDistance(s, t);
+            assertEquals(distance, TomahawkUtils.getLevenshteinDistance(s, t));
+            int maxDistance = random.nextInt(21);
+            int expected = distance <= maxDistance ? distance : maxDistance + 1;
+            assertEquals(s + " / " + t + " / " + maxDistance, expected,
+                    TomahawkUtils.getLevenshteinDistance(s, t, maxDistance));
+        }
+    }
+
+    public void testNegativeMaxDistanceIsRejected() {
+        try {
+            TomahawkUtils.getLevenshteinDistance("abc", "abd", -1);
+            fail("A negative maxDistance must be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testSimilarityScore() {
+        assertEquals(1f, TomahawkUtils.getSimilarityScore("", "", 0f), 0f);
+        assertEquals(1f, TomahawkUtils.getSimilarityScore("", "", 0.5f), 0f);
+        assertEquals(0f, TomahawkUtils.getSimilarityScore("", "abc", 0f), 0f);
+        assertEquals(1f, TomahawkUtils.getSimilarityScore("abcd", "abcd", 0.5f), 0f);
+        assertEquals(0.75f, TomahawkUtils.getSimilarityScore("abcd", "abce", 0.5f), 0f);
+        assertTrue(TomahawkUtils.getSimilarityScore("abcd", "wxyz", 0.5f) < 0.5f);
+        assertTrue(TomahawkUtils.getSimilarityScore("abcd", "abce", 2f) < 1f);
+    }
+}
@@ -0,0 +1,128 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.utils;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lets several threads register objects under the same keys at the same time. Every thread has to
+ * end up with the very same object per key.
+ */
+public class WeakRegistryTest extends TestCase {
+
+    private static final int THREAD_COUNT = 8;
+
+    private static final int KEY_COUNT = 10000;
+
+    private static final long TIMEOUT = 30000L;
+
+    /**
+     * Get the object registered under the given key or register a new one, the same way as
+     * Query.get, Artist.get and Album.get do
+     */
+    private static Object getOrRegister(WeakRegistry<Object> registry, String key) {
+        Object value = registry.get(key);
+        if (value == null) {
+            value = new Object();
+            Object cachedValue = registry.putIfAbsent(key, value);
+            if (cachedValue != null) {
+                value = cachedValue;
+            }
+        }
+        registry.keepAlive(key, value);
+        return value;
+    }
+
+    /**
+     * Start THREAD_COUNT threads at once, which all call getOrRegister for every key
+     *
+     * @return the objects which every thread has got, indexed by thread and key
+     */
+    private static Object[][] race(final WeakRegistry<Object> registry)
+            throws InterruptedException {
+        final Object[][] values = new Object[THREAD_COUNT][KEY_COUNT];
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch doneLatch = new CountDownLatch(THREAD_COUNT);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            final int threadIndex = i;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                        for (int j = 0; j < KEY_COUNT; j++) {
+                            // Every thread starts at another key, every other one goes backwards
+                            int key = (j + threadIndex * KEY_COUNT / THREAD_COUNT) % KEY_COUNT;
+                            if (threadIndex % 2 == 1) {
+                                key = KEY_COUNT - 1 - key;
+                            }
+                            values[threadIndex][key] = getOrRegister(registry, "key" + key);
+                        }
+                    } catch (Throwable e) {
+                        error.set(e);
+                    } finally {
+                        doneLatch.countDown();
+                    }
+                }
+            }).start();
+        }
+        startLatch.countDown();
+        assertTrue(doneLatch.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertNull(error.get());
+        return values;
+    }
+
+    private static void assertUnique(WeakRegistry<Object> registry, Object[][] values) {
+        for (int key = 0; key < KEY_COUNT; key++) {
+            assertNotNull(values[0][key]);
+            for (int i = 1; i < THREAD_COUNT; i++) {
+                assertSame("key" + key, values[0][key], values[i][key]);
+            }
+            assertSame("key" + key, values[0][key], registry.get("key" + key));
+        }
+        assertEquals(KEY_COUNT, registry.size());
+    }
+
+    public void testUniqueUnderContention() throws InterruptedException {
+        // A small LRU, so that the threads also contend for it
+        WeakRegistry<Object> registry = new WeakRegistry<Object>("test", 100);
+        assertUnique(registry, race(registry));
+    }
+
+    public void testUniqueAfterGarbageCollection() throws InterruptedException {
+        WeakRegistry<Object> registry = new WeakRegistry<Object>("test", 0);
+        // Register objects which nobody references, so that the threads have to replace the
+        // entries of the collected ones
+        for (int key = 0; key < KEY_COUNT; key++) {
+            registry.putIfAbsent("key" + key, new Object());
+        }
+        ArrayList<byte[]> garbage = new ArrayList<byte[]>();
+        for (int i = 0; i < 16; i++) {
+            garbage.add(new byte[1024 * 1024]);
+        }
+        garbage.clear();
+        System.gc();
+        assertUnique(registry, race(registry));
+    }
+}
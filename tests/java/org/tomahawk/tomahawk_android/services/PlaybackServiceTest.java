@@ -0,0 +1,217 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.tomahawk_android.services;
+
+import org.tomahawk.libtomahawk.collection.UserPlaylist;
+import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.resolver.Resolver;
+import org.tomahawk.libtomahawk.resolver.Result;
+import org.tomahawk.tomahawk_android.TomahawkApp;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.test.AndroidTestCase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Skips through a {@link UserPlaylist}, whose urls point to a local HTTP stub server, which never
+ * answers. So every {@link org.tomahawk.tomahawk_android.utils.TomahawkMediaPlayer} stays in the
+ * preparing state and nothing is ever played.
+ */
+public class PlaybackServiceTest extends AndroidTestCase {
+
+    private static final int SKIP_COUNT = 100;
+
+    private static final long TIMEOUT = 10000L;
+
+    private ServerSocket mServerSocket;
+
+    private final ArrayList<Socket> mSockets = new ArrayList<Socket>();
+
+    // The paths of every request which has reached the stub server
+    private final Set<String> mRequestedPaths = Collections.synchronizedSet(new HashSet<String>());
+
+    private PlaybackService mPlaybackService;
+
+    private final CountDownLatch mConnectedLatch = new CountDownLatch(1);
+
+    private final ServiceConnection mConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            mPlaybackService = ((PlaybackService.PlaybackServiceBinder) service).getService();
+            mConnectedLatch.countDown();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+        }
+    };
+
+    private static class StubResolver implements Resolver {
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public boolean isResolving() {
+            return false;
+        }
+
+        @Override
+        public Drawable getIcon() {
+            return null;
+        }
+
+        @Override
+        public boolean resolve(Query query) {
+            return true;
+        }
+
+        @Override
+        public int getId() {
+            return TomahawkApp.RESOLVER_ID_EXFM;
+        }
+
+        @Override
+        public int getWeight() {
+            return 30;
+        }
+
+        @Override
+        public int getTimeout() {
+            return 30000;
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!mServerSocket.isClosed()) {
+                    try {
+                        Socket socket = mServerSocket.accept();
+                        synchronized (mSockets) {
+                            mSockets.add(socket);
+                        }
+                        BufferedReader reader = new BufferedReader(
+                                new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+                        String requestLine = reader.readLine();
+                        if (requestLine != null) {
+                            mRequestedPaths.add(requestLine.split(" ")[1]);
+                        }
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }
+        }).start();
+        getContext().bindService(new Intent(getContext(), PlaybackService.class), mConnection,
+                Context.BIND_AUTO_CREATE);
+        assertTrue(mConnectedLatch.await(TIMEOUT, TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                mPlaybackService.pause(true);
+            }
+        });
+        getContext().unbindService(mConnection);
+        mServerSocket.close();
+        synchronized (mSockets) {
+            for (Socket socket : mSockets) {
+                socket.close();
+            }
+        }
+        super.tearDown();
+    }
+
+    private void runOnMainThread(final Runnable runnable) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                runnable.run();
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(TIMEOUT, TimeUnit.MILLISECONDS));
+    }
+
+    private String getPath(int i) {
+        return "/skip" + i;
+    }
+
+    public void testSkipPreparesSinglePlayer() throws InterruptedException {
+        StubResolver resolver = new StubResolver();
+        final ArrayList<Query> queries = new ArrayList<Query>();
+        for (int i = 0; i <= SKIP_COUNT; i++) {
+            Query q = Query.get("Skip " + i + " " + System.nanoTime(), "Album", "Artist", false);
+            Result result = new Result("http://127.0.0.1:" + mServerSocket.getLocalPort()
+                    + getPath(i), q);
+            result.setResolvedBy(resolver);
+            q.addTrackResult(result);
+            queries.add(q);
+        }
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                mPlaybackService.setCurrentPlaylist(
+                        UserPlaylist.fromQueryList("skip", "skip", queries));
+                mPlaybackService.start();
+                for (int i = 0; i < SKIP_COUNT; i++) {
+                    mPlaybackService.next();
+                }
+            }
+        });
+        assertSame(queries.get(SKIP_COUNT), mPlaybackService.getCurrentQuery());
+
+        // Only the last Query is left preparing
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!mRequestedPaths.contains(getPath(SKIP_COUNT))) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+        assertTrue(mPlaybackService.isPreparing());
+    }
+}
@@ -0,0 +1,358 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.tomahawk_android.utils;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tests the {@link AudioCache} and the {@link AudioCacheProxy} in front of it. The proxy streams
+ * from a local HTTP stub server, which serves {@link #CONTENT} and supports open-ended range
+ * requests.
+ */
+public class AudioCacheTest extends AndroidTestCase {
+
+    private final static String TAG = AudioCacheTest.class.getName();
+
+    private static final int MAX_SIZE = 1000;
+
+    private static final long TIMEOUT = 10000L;
+
+    private static final int CACHED_HEAD = 1000;
+
+    private static final byte[] CONTENT = new byte[64 * 1024];
+
+    static {
+        for (int i = 0; i < CONTENT.length; i++) {
+            CONTENT[i] = (byte) (i % 251);
+        }
+    }
+
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-");
+
+    private File mDirectory;
+
+    private AudioCache mAudioCache;
+
+    private ServerSocket mServerSocket;
+
+    // The start of every request the stub server has received, 0 if it wasn't a range request
+    private List<Long> mRequestedStarts = Collections.synchronizedList(new ArrayList<Long>());
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDirectory = new File(getContext().getCacheDir(), "test_audiocache");
+        deleteDirectory();
+        mAudioCache = createAudioCache(MAX_SIZE);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (mServerSocket != null) {
+            mServerSocket.close();
+        }
+        deleteDirectory();
+        super.tearDown();
+    }
+
+    private void deleteDirectory() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    private AudioCache createAudioCache(long maxSize) throws InterruptedException {
+        AudioCache audioCache = new AudioCache(mDirectory, maxSize);
+        assertTrue(audioCache.awaitIndex(TIMEOUT));
+        return audioCache;
+    }
+
+    private void startStubServer() throws IOException {
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!mServerSocket.isClosed()) {
+                    try {
+                        final Socket socket = mServerSocket.accept();
+                        new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                answer(socket);
+                            }
+                        }).start();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }
+        }).start();
+    }
+
+    private void answer(Socket socket) {
+        try {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+            long start = 0;
+            String line = reader.readLine();
+            while (line != null && line.length() > 0) {
+                if (line.toLowerCase().startsWith("range:")) {
+                    Matcher matcher = RANGE_PATTERN.matcher(line.substring(6).trim());
+                    if (matcher.matches()) {
+                        start = Long.parseLong(matcher.group(1));
+                    }
+                }
+                line = reader.readLine();
+            }
+            mRequestedStarts.add(start);
+            String headers;
+            if (start > 0) {
+                headers = "HTTP/1.1 206 Partial Content\r\nContent-Range: bytes " + start + "-"
+                        + (CONTENT.length - 1) + "/" + CONTENT.length + "\r\n";
+            } else {
+                headers = "HTTP/1.1 200 OK\r\n";
+            }
+            headers += "Content-Length: " + (CONTENT.length - start)
+                    + "\r\nContent-Type: audio/mpeg\r\nConnection: close\r\n\r\n";
+            OutputStream out = socket.getOutputStream();
+            out.write(headers.getBytes("US-ASCII"));
+            out.write(CONTENT, (int) start, (int) (CONTENT.length - start));
+            out.flush();
+        } catch (IOException e) {
+            Log.e(TAG, "answer: " + e.getClass() + ": " + e.getLocalizedMessage());
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                Log.e(TAG, "answer: " + e.getClass() + ": " + e.getLocalizedMessage());
+            }
+        }
+    }
+
+    private String getStubUrl() {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort() + "/track.mp3";
+    }
+
+    /**
+     * Cache the first given number of bytes of {@link #CONTENT} as the given url
+     */
+    private void cacheHead(AudioCache audioCache, String url, int byteCount) throws IOException {
+        AudioCache.Entry entry = audioCache.open(url);
+        OutputStream out = audioCache.beginWrite(entry, CONTENT.length, "audio/mpeg");
+        assertNotNull(out);
+        try {
+            out.write(CONTENT, 0, byteCount);
+            audioCache.onWritten(entry, byteCount);
+        } finally {
+            out.close();
+            audioCache.endWrite(entry);
+            audioCache.close(entry);
+        }
+    }
+
+    private static long getCachedLength(AudioCache audioCache, String url) {
+        AudioCache.Entry entry = audioCache.open(url);
+        try {
+            return entry.getLength();
+        } finally {
+            audioCache.close(entry);
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Cache the given number of bytes of the given url in one go
+     */
+    private void cache(String url, int byteCount) throws IOException {
+        AudioCache.Entry entry = mAudioCache.open(url);
+        OutputStream out = mAudioCache.beginWrite(entry, byteCount, null);
+        assertNotNull(out);
+        try {
+            out.write(new byte[byteCount]);
+            mAudioCache.onWritten(entry, byteCount);
+        } finally {
+            out.close();
+            mAudioCache.endWrite(entry);
+            mAudioCache.close(entry);
+        }
+    }
+
+    public void testTrimWhileWriting() throws IOException {
+        cache("http://example.com/1", 400);
+        cache("http://example.com/2", 400);
+        assertEquals(800, mAudioCache.getTotalSize());
+
+        AudioCache.Entry entry = mAudioCache.open("http://example.com/3");
+        OutputStream out = mAudioCache.beginWrite(entry, 2000, null);
+        assertNotNull(out);
+        try {
+            for (int i = 0; i < 6; i++) {
+                out.write(new byte[100]);
+                mAudioCache.onWritten(entry, 100);
+                // The least recently used urls have to make room while the write goes on
+                assertTrue(mAudioCache.getTotalSize() <= Math.max(MAX_SIZE, entry.getLength()));
+            }
+            assertEquals(600, entry.getLength());
+            assertEquals(1000, mAudioCache.getTotalSize());
+        } finally {
+            out.close();
+            mAudioCache.endWrite(entry);
+            mAudioCache.close(entry);
+        }
+    }
+
+    public void testProxyRejectsRequestsWithoutToken() throws IOException {
+        AudioCacheProxy proxy = new AudioCacheProxy(mAudioCache);
+        proxy.start();
+        try {
+            String proxyUrl = proxy.getProxyUrl("http://example.com/track.mp3");
+            assertTrue(proxyUrl.startsWith("http://127.0.0.1:"));
+            String withoutToken = proxyUrl.replaceFirst("token=[0-9a-f]+&", "");
+            assertFalse(withoutToken.equals(proxyUrl));
+
+            HttpURLConnection connection
+                    = (HttpURLConnection) new URL(withoutToken).openConnection();
+            try {
+                assertEquals(HttpURLConnection.HTTP_FORBIDDEN, connection.getResponseCode());
+            } finally {
+                connection.disconnect();
+            }
+            // A wrong token is just as bad as none
+            connection = (HttpURLConnection) new URL(
+                    proxyUrl.replaceFirst("token=[0-9a-f]+", "token=0")).openConnection();
+            try {
+                assertEquals(HttpURLConnection.HTTP_FORBIDDEN, connection.getResponseCode());
+            } finally {
+                connection.disconnect();
+            }
+        } finally {
+            proxy.stop();
+        }
+    }
+
+    public void testCachedHeadIsContinuedFromUpstream() throws Exception {
+        startStubServer();
+        AudioCache audioCache = createAudioCache(AudioCache.DEFAULT_MAX_SIZE);
+        cacheHead(audioCache, getStubUrl(), CACHED_HEAD);
+        AudioCacheProxy proxy = new AudioCacheProxy(audioCache);
+        proxy.start();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(
+                    proxy.getProxyUrl(getStubUrl())).openConnection();
+            try {
+                assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+                assertTrue(Arrays.equals(CONTENT, readFully(connection.getInputStream())));
+            } finally {
+                connection.disconnect();
+            }
+            // Only the part after the cached head has been fetched, and it's cached now as well
+            assertEquals(Collections.singletonList((long) CACHED_HEAD), mRequestedStarts);
+            assertEquals(CONTENT.length, getCachedLength(audioCache, getStubUrl()));
+        } finally {
+            proxy.stop();
+        }
+    }
+
+    public void testRangeRequestIsAnsweredWithPartialContent() throws Exception {
+        startStubServer();
+        AudioCache audioCache = createAudioCache(AudioCache.DEFAULT_MAX_SIZE);
+        cacheHead(audioCache, getStubUrl(), CACHED_HEAD);
+        AudioCacheProxy proxy = new AudioCacheProxy(audioCache);
+        proxy.start();
+        try {
+            int start = CACHED_HEAD / 2;
+            HttpURLConnection connection = (HttpURLConnection) new URL(
+                    proxy.getProxyUrl(getStubUrl())).openConnection();
+            connection.setRequestProperty("Range", "bytes=" + start + "-");
+            try {
+                assertEquals(HttpURLConnection.HTTP_PARTIAL, connection.getResponseCode());
+                assertEquals("bytes " + start + "-" + (CONTENT.length - 1) + "/" + CONTENT.length,
+                        connection.getHeaderField("Content-Range"));
+                assertEquals(String.valueOf(CONTENT.length - start),
+                        connection.getHeaderField("Content-Length"));
+                assertTrue(Arrays.equals(Arrays.copyOfRange(CONTENT, start, CONTENT.length),
+                        readFully(connection.getInputStream())));
+            } finally {
+                connection.disconnect();
+            }
+        } finally {
+            proxy.stop();
+        }
+    }
+
+    public void testSeekPastCachedPartIsNotCached() throws Exception {
+        startStubServer();
+        AudioCache audioCache = createAudioCache(AudioCache.DEFAULT_MAX_SIZE);
+        cacheHead(audioCache, getStubUrl(), CACHED_HEAD);
+        AudioCacheProxy proxy = new AudioCacheProxy(audioCache);
+        proxy.start();
+        try {
+            int start = CACHED_HEAD * 5;
+            HttpURLConnection connection = (HttpURLConnection) new URL(
+                    proxy.getProxyUrl(getStubUrl())).openConnection();
+            connection.setRequestProperty("Range", "bytes=" + start + "-");
+            try {
+                assertEquals(HttpURLConnection.HTTP_PARTIAL, connection.getResponseCode());
+                assertEquals("bytes " + start + "-" + (CONTENT.length - 1) + "/" + CONTENT.length,
+                        connection.getHeaderField("Content-Range"));
+                assertTrue(Arrays.equals(Arrays.copyOfRange(CONTENT, start, CONTENT.length),
+                        readFully(connection.getInputStream())));
+            } finally {
+                connection.disconnect();
+            }
+            // Streamed directly from the requested position, the cached head stays as it was
+            assertEquals(Collections.singletonList((long) start), mRequestedStarts);
+            assertEquals(CACHED_HEAD, getCachedLength(audioCache, getStubUrl()));
+        } finally {
+            proxy.stop();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2014, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.tomahawk_android.utils;
+
+import android.test.AndroidTestCase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Skips through urls, which point to a local HTTP stub server, which never answers. So every
+ * prepare stays in progress and the {@link TomahawkMediaPlayer} never calls back into a {@link
+ * org.tomahawk.tomahawk_android.services.PlaybackService}.
+ */
+public class TomahawkMediaPlayerTest extends AndroidTestCase {
+
+    private static final int SKIP_COUNT = 100;
+
+    private static final long TIMEOUT = 10000L;
+
+    private ServerSocket mServerSocket;
+
+    private final ArrayList<Socket> mSockets = new ArrayList<Socket>();
+
+    // The paths of every request which has reached the stub server
+    private final Set<String> mRequestedPaths = Collections.synchronizedSet(new HashSet<String>());
+
+    // The paths of every request whose connection hasn't been closed by the client yet
+    private final Set<String> mOpenPaths = Collections.synchronizedSet(new HashSet<String>());
+
+    private TomahawkMediaPlayer mTomahawkMediaPlayer;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!mServerSocket.isClosed()) {
+                    try {
+                        final Socket socket = mServerSocket.accept();
+                        synchronized (mSockets) {
+                            mSockets.add(socket);
+                        }
+                        new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                holdConnection(socket);
+                            }
+                        }).start();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }
+        }).start();
+        mTomahawkMediaPlayer = new TomahawkMediaPlayer(null, null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mTomahawkMediaPlayer.release();
+        mServerSocket.close();
+        synchronized (mSockets) {
+            for (Socket socket : mSockets) {
+                socket.close();
+            }
+        }
+        super.tearDown();
+    }
+
+    /**
+     * Reads the request of the given connection and keeps it open without ever answering, until
+     * the client closes it.
+     */
+    private void holdConnection(Socket socket) {
+        String path = null;
+        try {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+            String requestLine = reader.readLine();
+            if (requestLine == null) {
+                return;
+            }
+            path = requestLine.split(" ")[1];
+            mOpenPaths.add(path);
+            mRequestedPaths.add(path);
+            while (reader.read() != -1) {
+                // Skip the rest of the request
+            }
+        } catch (IOException e) {
+            // The client has reset the connection
+        } finally {
+            if (path != null) {
+                mOpenPaths.remove(path);
+            }
+        }
+    }
+
+    private Set<String> getOpenPaths() {
+        synchronized (mOpenPaths) {
+            return new HashSet<String>(mOpenPaths);
+        }
+    }
+
+    private String getPath(int i) {
+        return "/skip" + i;
+    }
+
+    public void testSkipKeepsOnlyLastConnection() throws Exception {
+        for (int i = 0; i <= SKIP_COUNT; i++) {
+            mTomahawkMediaPlayer.resetCurrent();
+            mTomahawkMediaPlayer.prepare("http://127.0.0.1:" + mServerSocket.getLocalPort()
+                    + getPath(i), false);
+        }
+        assertTrue(mTomahawkMediaPlayer.isPreparing());
+
+        // Every superseded prepare has been cancelled and its connection closed
+        Set<String> expected = Collections.singleton(getPath(SKIP_COUNT));
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!mRequestedPaths.contains(getPath(SKIP_COUNT)) || !expected.equals(getOpenPaths())) {
+            assertTrue("still open: " + getOpenPaths(), System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+        assertTrue(mTomahawkMediaPlayer.isPreparing());
+    }
+}